@@ -2,15 +2,30 @@ package xiaozhi.common.aspect;
 
 import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.exception.RenException;
+import xiaozhi.common.redis.RedisBatch;
+import xiaozhi.common.redis.RedisCircuitBreaker;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
 /**
  * Redis切面处理类
+ * 未开启Redis时RedisUtils使用本地内存存储，这里只统一处理异常；
+ * 开启Redis时经过熔断器，Redis不可用或熔断期间降级：读取按未命中返回，由调用方回源数据库，写入跳过
  * Copyright (c) 人人开源 All rights reserved.
  * Website: https://www.renren.io
  */
@@ -18,23 +33,89 @@ import org.springframework.stereotype.Component;
 @Aspect
 @Component
 public class RedisAspect {
+    /**
+     * 写入或删除键的方法，降级时记录第一个参数对应的键
+     */
+    private static final Set<String> WRITE_METHODS = Set.of(
+            "set", "setIfGreater", "setBytes", "delete", "hMSet", "hSet", "hDel", "expire", "expireAt", "leftPush", "sAdd", "executePipelined");
+
     /**
      * 是否开启redis缓存  true开启   false关闭
      */
-    @Value("${renren.redis.open}")
+    @Value("${renren.redis.open:false}")
     private boolean open;
 
+    private final RedisCircuitBreaker circuitBreaker;
+
+    public RedisAspect(RedisCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
     @Around("execution(* xiaozhi.common.redis.RedisUtils.*(..))")
     public Object around(ProceedingJoinPoint point) throws Throwable {
-        Object result = null;
-        if (open) {
-            try {
-                result = point.proceed();
-            } catch (Exception e) {
+        if (open && !circuitBreaker.tryAcquire()) {
+            return degrade(point);
+        }
+        boolean resolved = false;
+        try {
+            Object result = point.proceed();
+            if (open) {
+                resolved = true;
+                circuitBreaker.onSuccess();
+            }
+            return result;
+        } catch (DataAccessException e) {
+            if (!open) {
                 log.error("redis error", e);
                 throw new RenException(ErrorCode.REDIS_ERROR);
             }
+            resolved = true;
+            circuitBreaker.onFailure();
+            log.error("redis error, degraded: {}", e.getMessage());
+            return degrade(point);
+        } catch (Exception e) {
+            log.error("redis error", e);
+            throw new RenException(ErrorCode.REDIS_ERROR);
+        } finally {
+            // 其他异常无法判断Redis是否可用，放弃本次探测，避免熔断器停留在探测中
+            if (open && !resolved) {
+                circuitBreaker.releaseProbe();
+            }
+        }
+    }
+
+    /**
+     * 降级返回，读取返回未命中，写入记录待失效的键
+     */
+    @SuppressWarnings("unchecked")
+    private Object degrade(ProceedingJoinPoint point) {
+        MethodSignature signature = (MethodSignature) point.getSignature();
+        Object[] args = point.getArgs();
+        if (WRITE_METHODS.contains(signature.getName()) && args.length > 0) {
+            if (args[0] instanceof String key) {
+                circuitBreaker.addPending(Collections.singletonList(key));
+            } else if (args[0] instanceof Collection<?> keys) {
+                List<String> pending = new ArrayList<>(keys.size());
+                keys.forEach(key -> pending.add(String.valueOf(key)));
+                circuitBreaker.addPending(pending);
+            } else if (args[0] instanceof Consumer<?> commands) {
+                circuitBreaker.addPending(RedisBatch.keysOf((Consumer<RedisBatch>) commands));
+            }
+        }
+
+        Class<?> returnType = signature.getReturnType();
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == long.class) {
+            return 0L;
+        }
+        if (Map.class.isAssignableFrom(returnType)) {
+            return new HashMap<>();
+        }
+        if (List.class.isAssignableFrom(returnType)) {
+            return Collections.emptyList();
         }
-        return result;
+        return null;
     }
 }
@@ -42,4 +42,9 @@ public interface ErrorCode {
     int DEL_MYSELF_ERROR = 10032;
     // 验证码错误
     int VERIFICATION_CODE = 10033;
+    // 登录限流
+    int LOGIN_TOO_FREQUENT = 10057;
+    int SERVER_BUSY = 10058;
+    // 激活码分配
+    int ACTIVATION_CODE_EXHAUSTED = 10059;
 }
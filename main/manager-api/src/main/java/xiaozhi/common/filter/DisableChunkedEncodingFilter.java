@@ -7,7 +7,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import jakarta.servlet.http.HttpServletRequest;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
@@ -15,10 +14,21 @@ import java.nio.charset.StandardCharsets;
 
 /**
  * 禁用分块传输编码的过滤器
- * 通过包装响应对象，在响应发送前计算并设置Content-Length头
+ * 通过包装响应对象，将响应内容写入池化的缓冲区，在响应发送前设置Content-Length头后一次性写出
  */
 @Component
 public class DisableChunkedEncodingFilter extends OncePerRequestFilter {
+    /**
+     * 固件下载路径，由控制器自行设置Content-Length并直接发送文件，不能缓冲到内存
+     */
+    private static final String FIRMWARE_DOWNLOAD_PATH = "/ota/firmware/";
+
+    private final ResponseBufferPool bufferPool = new ResponseBufferPool();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().contains(FIRMWARE_DOWNLOAD_PATH);
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) 
@@ -26,9 +36,14 @@ public class DisableChunkedEncodingFilter extends OncePerRequestFilter {
         
         // 对于API请求，强制使用Content-Length
         if (request.getRequestURI().contains("/xiaozhi/ota")) {
-            ContentLengthResponseWrapper responseWrapper = new ContentLengthResponseWrapper(response);
-            filterChain.doFilter(request, responseWrapper);
-            responseWrapper.flushBuffer();
+            ResponseBufferPool.Buffer buffer = bufferPool.acquire();
+            try {
+                ContentLengthResponseWrapper responseWrapper = new ContentLengthResponseWrapper(response, buffer);
+                filterChain.doFilter(request, responseWrapper);
+                responseWrapper.commit();
+            } finally {
+                bufferPool.release(buffer);
+            }
         } else {
             // 其他请求正常处理
             filterChain.doFilter(request, response);
@@ -39,19 +54,23 @@ public class DisableChunkedEncodingFilter extends OncePerRequestFilter {
      * 内部类：响应包装器，计算内容长度
      */
     private static class ContentLengthResponseWrapper extends HttpServletResponseWrapper {
-        private final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        private final ResponseBufferPool.Buffer buffer;
+        private final ServletOutputStream outputStream;
         private PrintWriter printWriter;
+        private boolean committed;
 
-        public ContentLengthResponseWrapper(HttpServletResponse response) {
+        public ContentLengthResponseWrapper(HttpServletResponse response, ResponseBufferPool.Buffer buffer) {
             super(response);
-        }
+            this.buffer = buffer;
+            this.outputStream = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    buffer.write(b);
+                }
 
-        @Override
-        public ServletOutputStream getOutputStream() throws IOException {
-            return new ServletOutputStream() {
                 @Override
-                public void write(int b) throws IOException {
-                    byteArrayOutputStream.write(b);
+                public void write(byte[] b, int off, int len) {
+                    buffer.write(b, off, len);
                 }
 
                 @Override
@@ -67,29 +86,59 @@ public class DisableChunkedEncodingFilter extends OncePerRequestFilter {
         }
 
         @Override
-        public PrintWriter getWriter() throws IOException {
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
             if (printWriter == null) {
-                printWriter = new PrintWriter(new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8));
+                printWriter = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
             }
             return printWriter;
         }
 
+        /**
+         * 处理过程中的刷新只刷新字符流，内容统一在commit时写出
+         */
         @Override
-        public void flushBuffer() throws IOException {
+        public void flushBuffer() {
             if (printWriter != null) {
                 printWriter.flush();
             }
-            
-            byte[] bytes = byteArrayOutputStream.toByteArray();
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            buffer.reset();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            buffer.reset();
+        }
+
+        /**
+         * 设置内容长度并一次性写出缓冲区内容
+         */
+        public void commit() throws IOException {
+            if (committed) {
+                return;
+            }
+            committed = true;
+            flushBuffer();
             
             // 设置内容长度，显式禁用分块传输
             HttpServletResponse httpResponse = (HttpServletResponse) getResponse();
             httpResponse.setHeader("Transfer-Encoding", "identity");
-            httpResponse.setContentLength(bytes.length);
+            httpResponse.setContentLength(buffer.size());
             
             // 写入实际内容
-            getResponse().getOutputStream().write(bytes);
-            getResponse().getOutputStream().flush();
+            ServletOutputStream out = httpResponse.getOutputStream();
+            buffer.writeTo(out);
+            out.flush();
         }
     }
-} 
\ No newline at end of file
+}
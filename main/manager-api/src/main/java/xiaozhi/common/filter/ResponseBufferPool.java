@@ -0,0 +1,114 @@
+package xiaozhi.common.filter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 响应缓冲区池
+ * 复用预分配大小的字节缓冲区，避免每个请求都创建新的ByteArrayOutputStream并在结束时再复制一次
+ */
+public class ResponseBufferPool {
+    /**
+     * 缓冲区初始大小，足以容纳常见的OTA响应
+     */
+    public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+    /**
+     * 超过该大小的缓冲区用完后直接丢弃，不放回池中
+     */
+    public static final int DEFAULT_MAX_RETAINED_CAPACITY = 64 * 1024;
+    /**
+     * 池中最多保留的缓冲区数量
+     */
+    public static final int DEFAULT_MAX_POOLED = 256;
+
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+    private final ArrayBlockingQueue<Buffer> pool;
+
+    public ResponseBufferPool() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_RETAINED_CAPACITY, DEFAULT_MAX_POOLED);
+    }
+
+    public ResponseBufferPool(int initialCapacity, int maxRetainedCapacity, int maxPooled) {
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+        this.pool = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * 借出一个已清空的缓冲区，池为空时新建
+     */
+    public Buffer acquire() {
+        Buffer buffer = pool.poll();
+        return buffer != null ? buffer : new Buffer(initialCapacity);
+    }
+
+    /**
+     * 归还缓冲区，池已满或缓冲区过大时丢弃
+     */
+    public void release(Buffer buffer) {
+        if (buffer == null || buffer.bytes.length > maxRetainedCapacity) {
+            return;
+        }
+        buffer.reset();
+        pool.offer(buffer);
+    }
+
+    /**
+     * 当前池中空闲缓冲区数量
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * 可增长的字节缓冲区，非线程安全，同一时间只属于一个请求
+     */
+    public static class Buffer extends OutputStream {
+        private byte[] bytes;
+        private int count;
+
+        Buffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (off < 0 || len < 0 || off + len > b.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        /**
+         * 一次性写出全部内容
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, count);
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public void reset() {
+            count = 0;
+        }
+
+        private void ensureCapacity(int minCapacity) {
+            if (minCapacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, minCapacity));
+            }
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package xiaozhi.common.redis;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 本地内存存储
+ * 未开启Redis时作为{@link RedisUtils}的后端，单实例部署不运行Redis也能使用缓存。
+ * 支持字符串、哈希、集合和列表，按Redis的语义处理过期时间：读取时检查，定期清理；
+ * 键数超过上限时淘汰最近最少使用的键，集合类型为空时删除键，单个集合的元素数超过上限时拒绝写入。
+ * 已撤销令牌和令牌代数关系到令牌能否通过验证，淘汰后已撤销的令牌会重新生效，
+ * 这些键单独保存，不参与淘汰和元素数限制，只随过期时间删除
+ */
+@Component
+public class LocalRedisStore {
+    /**
+     * 最大键数
+     */
+    private static final long MAXIMUM_SIZE = 100000;
+    /**
+     * 单个哈希、集合或列表的最大元素数
+     */
+    static final int MAXIMUM_COLLECTION_SIZE = 10000;
+    /**
+     * 不参与淘汰的键前缀：已撤销令牌集合{@link RedisKeys#getRevokedTokensKey}和设备令牌代数{@link RedisKeys#getDeviceTokenGenerationKey}
+     */
+    private static final String[] PINNED_PREFIXES = {"token:revoked:", "token:generation:"};
+
+    private final Cache<String, Entry> store = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE).recordStats().build();
+    private final ConcurrentHashMap<String, Entry> pinned = new ConcurrentHashMap<>();
+
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public void set(String key, Object value, long expire) {
+        map(key).put(key, new Entry(Type.STRING, value, expireAt(expire)));
+    }
+
+    public Object get(String key) {
+        return as(live(key), Type.STRING);
+    }
+
+    /**
+     * 键不存在或当前值小于给定值时写入
+     *
+     * @return 是否写入
+     */
+    public boolean setIfGreater(String key, long value, long expire) {
+        boolean[] written = new boolean[1];
+        map(key).compute(key, (k, entry) -> {
+            entry = unlessExpired(entry);
+            if (as(entry, Type.STRING) instanceof Number current && current.longValue() >= value) {
+                return entry;
+            }
+            written[0] = true;
+            return new Entry(Type.STRING, value, expireAt(expire));
+        });
+        return written[0];
+    }
+
+    public void delete(String key) {
+        map(key).remove(key);
+    }
+
+    public void delete(Collection<String> keys) {
+        for (String key : keys) {
+            delete(key);
+        }
+    }
+
+    public Object hGet(String key, String field) {
+        Map<String, Object> hash = asHash(live(key));
+        return hash != null ? hash.get(field) : null;
+    }
+
+    /**
+     * 读取整个哈希，返回副本
+     */
+    public Map<String, Object> hGetAll(String key) {
+        Map<String, Object> hash = asHash(live(key));
+        return hash != null ? new LinkedHashMap<>(hash) : new LinkedHashMap<>();
+    }
+
+    public void hPutAll(String key, Map<String, Object> map) {
+        map(key).compute(key, (k, entry) -> {
+            entry = getOrCreate(entry, Type.HASH, ConcurrentHashMap::new);
+            Map<String, Object> hash = asHash(entry);
+            int size = hash.size();
+            for (String field : map.keySet()) {
+                if (!hash.containsKey(field)) {
+                    size++;
+                }
+            }
+            checkSize(k, size);
+            hash.putAll(map);
+            return entry;
+        });
+    }
+
+    public void hPut(String key, String field, Object value) {
+        map(key).compute(key, (k, entry) -> {
+            entry = getOrCreate(entry, Type.HASH, ConcurrentHashMap::new);
+            Map<String, Object> hash = asHash(entry);
+            if (!hash.containsKey(field)) {
+                checkSize(k, hash.size() + 1);
+            }
+            hash.put(field, value);
+            return entry;
+        });
+    }
+
+    public void hDel(String key, Object... fields) {
+        map(key).computeIfPresent(key, (k, entry) -> {
+            Map<String, Object> hash = asHash(unlessExpired(entry));
+            if (hash == null) {
+                return null;
+            }
+            for (Object field : fields) {
+                hash.remove(field);
+            }
+            return hash.isEmpty() ? null : entry;
+        });
+    }
+
+    /**
+     * 设置过期时长，不大于0时删除键
+     *
+     * @param expire 过期时长（秒）
+     */
+    public void expire(String key, long expire) {
+        if (expire <= 0) {
+            delete(key);
+            return;
+        }
+        expireAt(key, new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expire)));
+    }
+
+    public void expireAt(String key, Date date) {
+        map(key).computeIfPresent(key, (k, entry) -> {
+            entry = unlessExpired(entry);
+            if (entry != null) {
+                entry.expireAt = date.getTime();
+                entry = unlessExpired(entry);
+            }
+            return entry;
+        });
+    }
+
+    public void leftPush(String key, Object value) {
+        map(key).compute(key, (k, entry) -> {
+            entry = getOrCreate(entry, Type.LIST, ConcurrentLinkedDeque::new);
+            Deque<Object> list = asList(entry);
+            checkSize(k, list.size() + 1);
+            list.addFirst(value);
+            return entry;
+        });
+    }
+
+    public Object rightPop(String key) {
+        Object[] value = new Object[1];
+        map(key).computeIfPresent(key, (k, entry) -> {
+            Deque<Object> list = asList(unlessExpired(entry));
+            if (list == null) {
+                return null;
+            }
+            value[0] = list.pollLast();
+            return list.isEmpty() ? null : entry;
+        });
+        return value[0];
+    }
+
+    public boolean sIsMember(String key, Object value) {
+        Set<Object> set = asSet(live(key));
+        return set != null && set.contains(value);
+    }
+
+    public long sAdd(String key, Object... values) {
+        long[] count = new long[1];
+        map(key).compute(key, (k, entry) -> {
+            entry = getOrCreate(entry, Type.SET, ConcurrentHashMap::newKeySet);
+            Set<Object> set = asSet(entry);
+            checkSize(k, set.size() + (int) Arrays.stream(values).distinct().filter(value -> !set.contains(value)).count());
+            for (Object value : values) {
+                if (set.add(value)) {
+                    count[0]++;
+                }
+            }
+            return entry;
+        });
+        return count[0];
+    }
+
+    /**
+     * 定期清理过期的键
+     */
+    @Scheduled(fixedDelay = 60 * 1000L, initialDelay = 60 * 1000L)
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        sweep(store.asMap(), now);
+        sweep(pinned, now);
+    }
+
+    private void sweep(Map<String, Entry> map, long now) {
+        map.values().removeIf(entry -> {
+            if (entry.isExpired(now)) {
+                expiredCount.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 获取存储统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", store.size());
+        stats.put("maximumSize", MAXIMUM_SIZE);
+        stats.put("pinnedSize", pinned.size());
+        stats.put("hitCount", store.stats().hitCount());
+        stats.put("missCount", store.stats().missCount());
+        stats.put("evictionCount", store.stats().evictionCount());
+        stats.put("expiredCount", expiredCount.sum());
+        stats.put("rejectedCount", rejectedCount.sum());
+        return stats;
+    }
+
+    /**
+     * 键所在的存储，不参与淘汰的键单独保存
+     */
+    private ConcurrentMap<String, Entry> map(String key) {
+        return isPinned(key) ? pinned : store.asMap();
+    }
+
+    static boolean isPinned(String key) {
+        for (String prefix : PINNED_PREFIXES) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 写入后元素数超过上限时拒绝，与Redis超出内存上限时拒绝写入一致；不参与淘汰的键不限制
+     */
+    private void checkSize(String key, int size) {
+        if (size > MAXIMUM_COLLECTION_SIZE && !isPinned(key)) {
+            rejectedCount.increment();
+            throw new IllegalStateException("键" + key + "的元素数超过上限" + MAXIMUM_COLLECTION_SIZE);
+        }
+    }
+
+    /**
+     * 获取未过期的条目，已过期的条目同时删除
+     */
+    private Entry live(String key) {
+        Entry entry = isPinned(key) ? pinned.get(key) : store.getIfPresent(key);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            map(key).remove(key, entry);
+            expiredCount.increment();
+            return null;
+        }
+        return entry;
+    }
+
+    private Entry unlessExpired(Entry entry) {
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            expiredCount.increment();
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 键不存在或已过期时创建新的集合类型条目，不过期；已存在时保留原过期时间
+     */
+    private Entry getOrCreate(Entry entry, Type type, Supplier<Object> factory) {
+        entry = unlessExpired(entry);
+        if (entry == null) {
+            return new Entry(type, factory.get(), 0);
+        }
+        as(entry, type);
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asHash(Entry entry) {
+        return (Map<String, Object>) as(entry, Type.HASH);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<Object> asSet(Entry entry) {
+        return (Set<Object>) as(entry, Type.SET);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Deque<Object> asList(Entry entry) {
+        return (Deque<Object>) as(entry, Type.LIST);
+    }
+
+    private static Object as(Entry entry, Type type) {
+        if (entry == null) {
+            return null;
+        }
+        if (entry.type != type) {
+            // 与Redis的WRONGTYPE一致
+            throw new IllegalStateException("键的类型为" + entry.type + "，不是" + type);
+        }
+        return entry.value;
+    }
+
+    private static long expireAt(long expire) {
+        if (expire == RedisUtils.NOT_EXPIRE) {
+            return 0;
+        }
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.max(expire, 1));
+    }
+
+    private enum Type {
+        STRING, HASH, SET, LIST
+    }
+
+    private static final class Entry {
+        private final Type type;
+        private final Object value;
+        /**
+         * 过期时间点（毫秒），0表示不过期
+         */
+        private volatile long expireAt;
+
+        private Entry(Type type, Object value, long expireAt) {
+            this.type = type;
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isExpired(long now) {
+            long time = expireAt;
+            return time != 0 && time <= now;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package xiaozhi.common.redis;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Redis本地近端缓存
+ * 在{@link RedisUtils}的读取前增加一级本地缓存，只缓存按键前缀配置的命名空间，每个命名空间有独立的容量和过期时间。
+ * 通过RedisUtils写入或删除时本地失效，并通过Redis发布通知其他实例失效；
+ * 本地过期时间较短，兜底丢失的通知和Redis中自然过期的键
+ */
+@Slf4j
+@Component
+public class NearCache {
+    /**
+     * 命名空间配置
+     */
+    private static final List<Policy> POLICIES = List.of(
+            // 系统参数，见RedisKeys.getSysParamsKey
+            new Policy("sys:params", 1000, 5 * 60),
+            // 用户名，见RedisKeys.getSysUserName
+            new Policy("sys:user:name", 10000, 10 * 60),
+            // 激活码详情，见RedisKeys.getActivationCodeKey
+            new Policy("activation:code:", 10000, 30)
+    );
+
+    /**
+     * 一条失效通知中多个键的分隔符
+     */
+    private static final String SEPARATOR = "\n";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final boolean enabled;
+    private final List<Namespace> namespaces = new ArrayList<>();
+
+    public NearCache(RedisTemplate<String, Object> redisTemplate,
+                     @Value("${renren.redis.open:false}") boolean redisEnabled,
+                     @Value("${renren.redis.near-cache:true}") boolean nearCacheEnabled) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = redisEnabled && nearCacheEnabled;
+        for (Policy policy : POLICIES) {
+            namespaces.add(new Namespace(policy));
+        }
+    }
+
+    /**
+     * 读取键的值，本地未缓存时从Redis加载
+     *
+     * @param key    键
+     * @param loader 从Redis读取
+     */
+    public Object get(String key, Supplier<Object> loader) {
+        Namespace namespace = find(key);
+        if (namespace == null) {
+            return loader.get();
+        }
+        Object value = namespace.values.getIfPresent(key);
+        if (value != null) {
+            namespace.hitCount.increment();
+            return value;
+        }
+        namespace.missCount.increment();
+        long version = namespace.version.get();
+        value = loader.get();
+        if (value != null && namespace.version.get() == version) {
+            namespace.values.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 读取哈希字段，本地未缓存时从Redis加载
+     *
+     * @param key    键
+     * @param field  字段
+     * @param loader 从Redis读取
+     */
+    public Object hGet(String key, String field, Supplier<Object> loader) {
+        Namespace namespace = find(key);
+        if (namespace == null || field == null) {
+            return loader.get();
+        }
+        ConcurrentMap<String, Object> fields = namespace.fields.getIfPresent(key);
+        Object value = fields != null ? fields.get(field) : null;
+        if (value != null) {
+            namespace.hitCount.increment();
+            return value;
+        }
+        namespace.missCount.increment();
+        long version = namespace.version.get();
+        value = loader.get();
+        if (value != null && namespace.version.get() == version) {
+            if (fields == null) {
+                fields = new ConcurrentHashMap<>();
+                ConcurrentMap<String, Object> existing = namespace.fields.asMap().putIfAbsent(key, fields);
+                if (existing != null) {
+                    fields = existing;
+                }
+            }
+            fields.put(field, value);
+        }
+        return value;
+    }
+
+    /**
+     * 读取整个哈希，本地未缓存时从Redis加载，返回的Map可以修改
+     *
+     * @param key    键
+     * @param loader 从Redis读取
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> hGetAll(String key, Supplier<Map<String, Object>> loader) {
+        Namespace namespace = find(key);
+        if (namespace == null) {
+            return loader.get();
+        }
+        Object value = namespace.values.getIfPresent(key);
+        if (value instanceof Map) {
+            namespace.hitCount.increment();
+            return new LinkedHashMap<>((Map<String, Object>) value);
+        }
+        namespace.missCount.increment();
+        long version = namespace.version.get();
+        Map<String, Object> map = loader.get();
+        if (map != null && !map.isEmpty() && namespace.version.get() == version) {
+            namespace.values.put(key, Collections.unmodifiableMap(new LinkedHashMap<>(map)));
+        }
+        return map;
+    }
+
+    /**
+     * 键已写入或删除，本地失效并通知其他实例
+     *
+     * @param key 键
+     */
+    public void invalidate(String key) {
+        if (evict(key)) {
+            publish(key);
+        }
+    }
+
+    /**
+     * 多个键已写入或删除，本地失效并以一条通知告知其他实例
+     *
+     * @param keys 键
+     */
+    public void invalidate(Collection<String> keys) {
+        List<String> evicted = new ArrayList<>();
+        for (String key : keys) {
+            if (evict(key)) {
+                evicted.add(key);
+            }
+        }
+        if (!evicted.isEmpty()) {
+            publish(String.join(SEPARATOR, evicted));
+        }
+    }
+
+    /**
+     * 处理其他实例发布的失效通知，只失效本地缓存
+     *
+     * @param message 键，多个键以换行分隔
+     */
+    public void onMessage(String message) {
+        if (message == null) {
+            return;
+        }
+        for (String key : message.split(SEPARATOR)) {
+            evict(key);
+        }
+    }
+
+    /**
+     * 获取各命名空间的命中统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        for (Namespace namespace : namespaces) {
+            long hitCount = namespace.hitCount.sum();
+            long missCount = namespace.missCount.sum();
+            Map<String, Object> namespaceStats = new LinkedHashMap<>();
+            namespaceStats.put("size", namespace.values.size() + namespace.fields.size());
+            namespaceStats.put("maximumSize", namespace.policy.maximumSize);
+            namespaceStats.put("expireSeconds", namespace.policy.expireSeconds);
+            namespaceStats.put("hitCount", hitCount);
+            namespaceStats.put("missCount", missCount);
+            namespaceStats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+            namespaceStats.put("invalidateCount", namespace.invalidateCount.sum());
+            stats.put(namespace.policy.prefix, namespaceStats);
+        }
+        return stats;
+    }
+
+    private boolean evict(String key) {
+        Namespace namespace = find(key);
+        if (namespace == null) {
+            return false;
+        }
+        // 先增加版本，正在从Redis加载的旧值不再放入本地缓存
+        namespace.version.incrementAndGet();
+        namespace.values.invalidate(key);
+        namespace.fields.invalidate(key);
+        namespace.invalidateCount.increment();
+        return true;
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(RedisKeys.getNearCacheInvalidateChannel(), message);
+        } catch (Exception e) {
+            // 写入已经成功，其他实例的本地缓存在过期后更新
+            log.warn("近端缓存失效通知发送失败: {}", e.getMessage());
+        }
+    }
+
+    private Namespace find(String key) {
+        if (!enabled || key == null) {
+            return null;
+        }
+        for (Namespace namespace : namespaces) {
+            if (key.startsWith(namespace.policy.prefix)) {
+                return namespace;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 命名空间缓存策略
+     *
+     * @param prefix        键前缀
+     * @param maximumSize   最大缓存键数
+     * @param expireSeconds 本地过期时间（秒）
+     */
+    private record Policy(String prefix, long maximumSize, long expireSeconds) {
+    }
+
+    private static final class Namespace {
+        private final Policy policy;
+        /**
+         * 键 -> 值或整个哈希
+         */
+        private final Cache<String, Object> values;
+        /**
+         * 哈希键 -> 已加载的字段
+         */
+        private final Cache<String, ConcurrentMap<String, Object>> fields;
+        /**
+         * 失效次数，加载期间发生失效时放弃缓存加载结果
+         */
+        private final AtomicLong version = new AtomicLong();
+
+        private final LongAdder hitCount = new LongAdder();
+        private final LongAdder missCount = new LongAdder();
+        private final LongAdder invalidateCount = new LongAdder();
+
+        private Namespace(Policy policy) {
+            this.policy = policy;
+            this.values = CacheBuilder.newBuilder().maximumSize(policy.maximumSize)
+                    .expireAfterWrite(policy.expireSeconds, TimeUnit.SECONDS).build();
+            this.fields = CacheBuilder.newBuilder().maximumSize(policy.maximumSize)
+                    .expireAfterWrite(policy.expireSeconds, TimeUnit.SECONDS).build();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package xiaozhi.common.redis;
+
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Redis批量命令
+ * 在{@link RedisUtils#executePipelined}中使用，所有命令一次发送，只需一次网络往返；
+ * 写入和设置过期时间由多条命令组成时放在同一个MULTI中，保证不会留下没有过期时间的键。
+ * 未开启Redis时直接写入本地内存存储
+ */
+public class RedisBatch {
+    private final RedisOperations<String, Object> operations;
+    /**
+     * 写入或删除的键，执行后使近端缓存失效
+     */
+    private final Collection<String> keys;
+    private final LocalRedisStore localStore;
+
+    RedisBatch(RedisOperations<String, Object> operations, Collection<String> keys) {
+        this.operations = operations;
+        this.keys = keys;
+        this.localStore = null;
+    }
+
+    RedisBatch(LocalRedisStore localStore) {
+        this.operations = null;
+        this.keys = new ArrayList<>();
+        this.localStore = localStore;
+    }
+
+    private RedisBatch(Collection<String> keys) {
+        this.operations = null;
+        this.keys = keys;
+        this.localStore = null;
+    }
+
+    /**
+     * 只记录批量命令写入或删除的键，不执行
+     *
+     * @param commands 批量命令
+     * @return 写入或删除的键
+     */
+    public static List<String> keysOf(Consumer<RedisBatch> commands) {
+        List<String> keys = new ArrayList<>();
+        commands.accept(new RedisBatch(keys));
+        return keys;
+    }
+
+    /**
+     * 写入并设置过期时间（SET EX）
+     *
+     * @param expire 过期时长（秒），{@link RedisUtils#NOT_EXPIRE}表示不过期
+     */
+    public RedisBatch set(String key, Object value, long expire) {
+        if (localStore != null) {
+            localStore.set(key, value, expire);
+            return this;
+        }
+        keys.add(key);
+        if (operations == null) {
+            return this;
+        }
+        if (expire == RedisUtils.NOT_EXPIRE) {
+            operations.opsForValue().set(key, value);
+        } else {
+            operations.opsForValue().set(key, value, toSeconds(expire), TimeUnit.SECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * 写入二进制值并设置过期时间，不经过JSON序列化
+     *
+     * @param expire 过期时长（秒），{@link RedisUtils#NOT_EXPIRE}表示不过期
+     */
+    public RedisBatch setBytes(String key, byte[] value, long expire) {
+        if (localStore != null) {
+            localStore.set(key, value, expire);
+            return this;
+        }
+        keys.add(key);
+        if (operations == null) {
+            return this;
+        }
+        operations.execute((RedisCallback<Object>) connection -> connection.stringCommands()
+                .set(RedisUtils.rawKey(key), value, RedisUtils.expiration(expire), RedisStringCommands.SetOption.upsert()));
+        return this;
+    }
+
+    /**
+     * 写入哈希并设置过期时间
+     */
+    public RedisBatch hMSet(String key, Map<String, Object> map, long expire) {
+        if (localStore != null) {
+            localStore.hPutAll(key, map);
+            localExpire(key, expire);
+            return this;
+        }
+        keys.add(key);
+        if (operations == null) {
+            return this;
+        }
+        if (expire == RedisUtils.NOT_EXPIRE) {
+            operations.opsForHash().putAll(key, map);
+            return this;
+        }
+        operations.multi();
+        operations.opsForHash().putAll(key, map);
+        operations.expire(key, toSeconds(expire), TimeUnit.SECONDS);
+        operations.exec();
+        return this;
+    }
+
+    /**
+     * 写入哈希字段并设置过期时间
+     */
+    public RedisBatch hSet(String key, String field, Object value, long expire) {
+        if (localStore != null) {
+            localStore.hPut(key, field, value);
+            localExpire(key, expire);
+            return this;
+        }
+        keys.add(key);
+        if (operations == null) {
+            return this;
+        }
+        if (expire == RedisUtils.NOT_EXPIRE) {
+            operations.opsForHash().put(key, field, value);
+            return this;
+        }
+        operations.multi();
+        operations.opsForHash().put(key, field, value);
+        operations.expire(key, toSeconds(expire), TimeUnit.SECONDS);
+        operations.exec();
+        return this;
+    }
+
+    /**
+     * 从左侧写入列表并设置过期时间
+     */
+    public RedisBatch leftPush(String key, Object value, long expire) {
+        if (localStore != null) {
+            localStore.leftPush(key, value);
+            localExpire(key, expire);
+            return this;
+        }
+        keys.add(key);
+        if (operations == null) {
+            return this;
+        }
+        if (expire == RedisUtils.NOT_EXPIRE) {
+            operations.opsForList().leftPush(key, value);
+            return this;
+        }
+        operations.multi();
+        operations.opsForList().leftPush(key, value);
+        operations.expire(key, toSeconds(expire), TimeUnit.SECONDS);
+        operations.exec();
+        return this;
+    }
+
+    /**
+     * 添加元素到集合并设置过期时间点
+     */
+    public RedisBatch sAdd(String key, Date expireAt, Object... values) {
+        if (localStore != null) {
+            localStore.sAdd(key, values);
+            localStore.expireAt(key, expireAt);
+            return this;
+        }
+        keys.add(key);
+        if (operations == null) {
+            return this;
+        }
+        operations.multi();
+        operations.opsForSet().add(key, values);
+        operations.expireAt(key, expireAt);
+        operations.exec();
+        return this;
+    }
+
+    public RedisBatch delete(String key) {
+        if (localStore != null) {
+            localStore.delete(key);
+            return this;
+        }
+        keys.add(key);
+        if (operations == null) {
+            return this;
+        }
+        operations.delete(key);
+        return this;
+    }
+
+    public RedisBatch delete(Collection<String> keys) {
+        if (localStore != null) {
+            localStore.delete(keys);
+            return this;
+        }
+        this.keys.addAll(keys);
+        if (operations == null) {
+            return this;
+        }
+        operations.delete(keys);
+        return this;
+    }
+
+    private void localExpire(String key, long expire) {
+        if (expire != RedisUtils.NOT_EXPIRE) {
+            localStore.expire(key, toSeconds(expire));
+        }
+    }
+
+    /**
+     * 过期时长至少为1秒：SET EX不接受0，剩余不足1秒的缓存按1秒处理
+     */
+    private static long toSeconds(long expire) {
+        return Math.max(expire, 1);
+    }
+}
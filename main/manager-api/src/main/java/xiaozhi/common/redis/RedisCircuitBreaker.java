@@ -0,0 +1,327 @@
+package xiaozhi.common.redis;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis熔断器
+ * 连续失败达到阈值后熔断，熔断期间Redis调用直接降级，不再等待连接超时；
+ * 熔断一段时间后放行一次调用探测，成功则恢复，失败则继续熔断。
+ * 降级期间跳过的写入和删除记录为待失效的键，之后第一次调用成功时删除，避免Redis中留下过期的缓存；
+ * 待失效的键过多时改为记录键所在的命名空间，删除时扫描整个命名空间。
+ * 删除在后台线程执行，扫描命名空间耗时较长，不占用触发删除的请求线程
+ */
+@Slf4j
+@Component
+public class RedisCircuitBreaker {
+    /**
+     * 熔断的连续失败次数
+     */
+    private static final int FAILURE_THRESHOLD = 5;
+    /**
+     * 熔断后开始探测的时间（毫秒）
+     */
+    private static final long OPEN_MILLIS = 30 * 1000L;
+    /**
+     * 最多记录的待失效键数
+     */
+    private static final int MAX_PENDING_KEYS = 10000;
+    /**
+     * 最多记录的待失效命名空间数
+     */
+    private static final int MAX_PENDING_NAMESPACES = 1000;
+    /**
+     * 扫描命名空间时每批删除的键数
+     */
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    public enum State {
+        /**
+         * 正常
+         */
+        CLOSED,
+        /**
+         * 熔断
+         */
+        OPEN,
+        /**
+         * 探测中
+         */
+        HALF_OPEN
+    }
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final NearCache nearCache;
+    private final long openMillis;
+    /**
+     * 执行删除待失效键的后台线程
+     */
+    private final Executor flushExecutor;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+    /**
+     * 执行探测调用的线程
+     */
+    private volatile Thread probeThread;
+
+    /**
+     * 降级期间跳过写入或删除的键
+     */
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+    /**
+     * 待失效的键超过上限后记录的命名空间
+     */
+    private final Set<String> pendingNamespaces = ConcurrentHashMap.newKeySet();
+    private volatile boolean pendingOverflow;
+    /**
+     * 是否已提交或正在执行删除，同一时间只有一个删除任务
+     */
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder degradedCount = new LongAdder();
+    private final LongAdder openCount = new LongAdder();
+
+    @Autowired
+    public RedisCircuitBreaker(RedisTemplate<String, Object> redisTemplate, NearCache nearCache) {
+        this(redisTemplate, nearCache, OPEN_MILLIS);
+    }
+
+    RedisCircuitBreaker(RedisTemplate<String, Object> redisTemplate, NearCache nearCache, long openMillis) {
+        this(redisTemplate, nearCache, openMillis, new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), runnable -> {
+                    Thread thread = new Thread(runnable, "redis-pending-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    RedisCircuitBreaker(RedisTemplate<String, Object> redisTemplate, NearCache nearCache, long openMillis,
+                        Executor flushExecutor) {
+        this.redisTemplate = redisTemplate;
+        this.nearCache = nearCache;
+        this.openMillis = openMillis;
+        this.flushExecutor = flushExecutor;
+    }
+
+    /**
+     * 是否放行本次调用，熔断超时后第一个调用作为探测放行
+     */
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            probeThread = Thread.currentThread();
+            return true;
+        }
+        degradedCount.increment();
+        return false;
+    }
+
+    /**
+     * 调用成功，探测成功时恢复；未熔断时有待失效的键则提交后台删除
+     */
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        State current = state.get();
+        if (current == State.HALF_OPEN && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            probeThread = null;
+            log.info("Redis已恢复，关闭熔断");
+            current = State.CLOSED;
+        }
+        if (current == State.CLOSED && (!pendingKeys.isEmpty() || !pendingNamespaces.isEmpty())
+                && flushing.compareAndSet(false, true)) {
+            try {
+                flushExecutor.execute(this::invalidatePending);
+            } catch (RejectedExecutionException e) {
+                // 已关闭时放弃，下次调用成功时重试
+                flushing.set(false);
+            }
+        }
+    }
+
+    /**
+     * 调用失败，探测失败或连续失败达到阈值时熔断
+     */
+    public void onFailure() {
+        failureCount.increment();
+        if (state.compareAndSet(State.HALF_OPEN, State.OPEN)) {
+            probeThread = null;
+            openedAt = System.currentTimeMillis();
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= FAILURE_THRESHOLD
+                && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            openedAt = System.currentTimeMillis();
+            openCount.increment();
+            log.warn("Redis连续失败{}次，熔断{}秒", FAILURE_THRESHOLD, openMillis / 1000);
+        }
+    }
+
+    /**
+     * 探测调用既未成功也未因Redis失败结束（如序列化异常）时放弃本次探测，
+     * 保持熔断但不重新计时，下一次调用立即重新探测
+     */
+    public void releaseProbe() {
+        if (probeThread == Thread.currentThread() && state.compareAndSet(State.HALF_OPEN, State.OPEN)) {
+            probeThread = null;
+        }
+    }
+
+    /**
+     * 记录降级期间跳过写入或删除的键
+     */
+    public void addPending(Collection<String> keys) {
+        for (String key : keys) {
+            if (pendingKeys.size() < MAX_PENDING_KEYS || pendingKeys.contains(key)) {
+                pendingKeys.add(key);
+                continue;
+            }
+            if (!pendingOverflow) {
+                pendingOverflow = true;
+                log.warn("待失效的Redis键超过{}个，其余键按命名空间失效", MAX_PENDING_KEYS);
+            }
+            String namespace = namespaceOf(key);
+            if (pendingNamespaces.size() < MAX_PENDING_NAMESPACES || pendingNamespaces.contains(namespace)) {
+                pendingNamespaces.add(namespace);
+            } else {
+                log.error("待失效的Redis命名空间超过{}个，键{}在缓存过期后更新", MAX_PENDING_NAMESPACES, key);
+            }
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * 累计失败次数，变化说明期间可能有Redis写入或发布被跳过
+     */
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    /**
+     * 获取熔断统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.get());
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("failureCount", failureCount.sum());
+        stats.put("degradedCount", degradedCount.sum());
+        stats.put("openCount", openCount.sum());
+        stats.put("openedAt", openedAt > 0 ? new Date(openedAt) : null);
+        stats.put("pendingKeys", pendingKeys.size());
+        stats.put("pendingNamespaces", pendingNamespaces.size());
+        stats.put("pendingOverflow", pendingOverflow);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flushExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * 删除待失效的键和命名空间，由onSuccess提交到后台线程执行
+     */
+    private void invalidatePending() {
+        try {
+            List<String> keys = new ArrayList<>(pendingKeys);
+            if (!keys.isEmpty()) {
+                redisTemplate.delete(keys);
+                nearCache.invalidate(keys);
+                keys.forEach(pendingKeys::remove);
+                log.info("删除降级期间跳过写入的键{}个", keys.size());
+            }
+            for (String namespace : new ArrayList<>(pendingNamespaces)) {
+                long count = invalidateNamespace(namespace);
+                pendingNamespaces.remove(namespace);
+                log.info("删除降级期间跳过写入的命名空间{}，键{}个", namespace, count);
+            }
+            if (pendingNamespaces.isEmpty()) {
+                pendingOverflow = false;
+            }
+        } catch (Exception e) {
+            // 保留未删除的键，下次调用成功时重试
+            log.error("删除待失效的Redis键失败", e);
+            onFailure();
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * 扫描并分批删除命名空间下的所有键
+     *
+     * @return 删除的键数
+     */
+    private long invalidateNamespace(String namespace) {
+        long count = 0;
+        List<String> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+        ScanOptions options = ScanOptions.scanOptions().match(namespace + "*").count(SCAN_BATCH_SIZE).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= SCAN_BATCH_SIZE) {
+                    count += deleteBatch(batch);
+                }
+            }
+        }
+        return count + deleteBatch(batch);
+    }
+
+    private int deleteBatch(List<String> batch) {
+        int size = batch.size();
+        if (size > 0) {
+            redisTemplate.delete(batch);
+            nearCache.invalidate(batch);
+            batch.clear();
+        }
+        return size;
+    }
+
+    /**
+     * 键所在的命名空间：去掉最后一段的前缀，如token:active:bin:1的命名空间为token:active:bin:；
+     * 不超过两段的键（如sys:params）本身就是固定的键，命名空间为键自身
+     */
+    static String namespaceOf(String key) {
+        int index = key.lastIndexOf(':');
+        if (index < 0 || key.indexOf(':') == index) {
+            return key;
+        }
+        return key.substring(0, index + 1);
+    }
+}
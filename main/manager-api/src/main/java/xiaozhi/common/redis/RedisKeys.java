@@ -78,24 +78,80 @@ public class RedisKeys {
     }
 
     /**
-     * 激活码详情Key
+     * 激活码详情Key，值为二进制编码，与旧的哈希格式区分
      */
     public static String getActivationCodeKey(String code) {
-        return "activation:code:" + code;
+        return "activation:code:bin:" + code;
     }
 
     /**
-     * 设备当前活跃令牌Key
+     * 设备当前活跃令牌Key，值为二进制编码，与旧的字符串格式区分
      */
     public static String getDeviceActiveTokenKey(Long deviceId) {
-        return "token:active:" + deviceId;
+        return "token:active:bin:" + deviceId;
     }
 
     /**
-     * 已撤销令牌集合Key
+     * 已撤销令牌集合Key，按令牌过期日期分片
      */
-    public static String getRevokedTokensKey() {
-        return "token:revoked";
+    public static String getRevokedTokensKey(long expireDay) {
+        return "token:revoked:" + expireDay;
+    }
+
+    /**
+     * 设备令牌代数Key
+     */
+    public static String getDeviceTokenGenerationKey(Long deviceId) {
+        return "token:generation:" + deviceId;
+    }
+
+    /**
+     * 设备令牌代数变更通知频道
+     */
+    public static String getTokenGenerationChannel() {
+        return "token:generation";
+    }
+
+    /**
+     * 设备签到缓存失效通知频道
+     */
+    public static String getDeviceCheckinInvalidateChannel() {
+        return "device:checkin:invalidate";
+    }
+
+    /**
+     * 令牌撤销通知频道
+     */
+    public static String getTokenRevocationChannel() {
+        return "token:revocation";
+    }
+
+    /**
+     * Shiro认证授权缓存Key
+     */
+    public static String getShiroCacheKey(String cacheName, String key) {
+        return "sys:shiro:" + cacheName + ":" + key;
+    }
+
+    /**
+     * Shiro认证授权缓存失效通知频道
+     */
+    public static String getShiroCacheEvictChannel() {
+        return "sys:shiro:evict";
+    }
+
+    /**
+     * 用户权限变更通知频道
+     */
+    public static String getPermissionRefreshChannel() {
+        return "sys:permission:refresh";
+    }
+
+    /**
+     * 近端缓存失效通知频道
+     */
+    public static String getNearCacheInvalidateChannel() {
+        return "sys:cache:invalidate";
     }
 
 }
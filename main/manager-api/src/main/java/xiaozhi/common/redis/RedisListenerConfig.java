@@ -0,0 +1,33 @@
+package xiaozhi.common.redis;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Redis通知订阅配置
+ * 所有失效通知共用一个监听容器，只占用一个订阅连接，各模块在自己的配置中向该容器注册频道；
+ * 仅在开启Redis时订阅
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "renren.redis", name = "open", havingValue = "true")
+public class RedisListenerConfig {
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory,
+                                                                       RedisTemplate<String, Object> redisTemplate,
+                                                                       NearCache nearCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        // 近端缓存失效通知
+        container.addMessageListener((message, pattern) -> {
+            Object value = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            nearCache.onMessage(value != null ? value.toString() : null);
+        }, new ChannelTopic(RedisKeys.getNearCacheInvalidateChannel()));
+        return container;
+    }
+}
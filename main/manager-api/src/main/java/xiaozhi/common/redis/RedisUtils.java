@@ -1,16 +1,31 @@
 package xiaozhi.common.redis;
 
 import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Redis工具类
+ * 未开启Redis时使用本地内存存储{@link LocalRedisStore}
  * Copyright (c) 人人开源 All rights reserved.
  * Website: https://www.renren.io
  */
@@ -18,6 +33,15 @@ import java.util.concurrent.TimeUnit;
 public class RedisUtils {
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
+    @Resource
+    private NearCache nearCache;
+    @Resource
+    private LocalRedisStore localStore;
+    /**
+     * 是否开启redis缓存  true开启   false关闭，关闭时使用本地内存存储
+     */
+    @Value("${renren.redis.open:false}")
+    private boolean open;
 
     /**
      * 默认过期时长为24小时，单位：秒
@@ -36,22 +60,63 @@ public class RedisUtils {
      */
     public final static long NOT_EXPIRE = -1L;
 
+    /**
+     * 键不存在或当前值小于参数时写入，ARGV[2]为过期时长（秒），不大于0时不过期
+     */
+    private static final RedisScript<Long> SET_IF_GREATER_SCRIPT = new DefaultRedisScript<>(
+            "local current = tonumber(redis.call('GET', KEYS[1])) "
+                    + "if current ~= nil and current >= tonumber(ARGV[1]) then return 0 end "
+                    + "if tonumber(ARGV[2]) > 0 then redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2]) "
+                    + "else redis.call('SET', KEYS[1], ARGV[1]) end "
+                    + "return 1", Long.class);
+
     public void set(String key, Object value, long expire) {
-        redisTemplate.opsForValue().set(key, value);
-        if (expire != NOT_EXPIRE) {
-            expire(key, expire);
+        if (!open) {
+            localStore.set(key, value, expire);
+            return;
         }
+        if (expire == NOT_EXPIRE) {
+            redisTemplate.opsForValue().set(key, value);
+        } else {
+            redisTemplate.opsForValue().set(key, value, Math.max(expire, 1), TimeUnit.SECONDS);
+        }
+        nearCache.invalidate(key);
     }
 
     public void set(String key, Object value) {
         set(key, value, DEFAULT_EXPIRE);
     }
 
+    /**
+     * 键不存在或当前值小于给定值时写入，用于只增不减的值，并发写入时较小的旧值不会覆盖新值
+     * @param key 键
+     * @param value 值
+     * @param expire 过期时长（秒）
+     * @return 是否写入
+     */
+    public boolean setIfGreater(String key, long value, long expire) {
+        if (!open) {
+            return localStore.setIfGreater(key, value, expire);
+        }
+        Long written = redisTemplate.execute(SET_IF_GREATER_SCRIPT, Collections.singletonList(key),
+                value, expire == NOT_EXPIRE ? 0L : Math.max(expire, 1));
+        nearCache.invalidate(key);
+        return written != null && written == 1L;
+    }
+
     public Object get(String key, long expire) {
-        Object value = redisTemplate.opsForValue().get(key);
-        if (expire != NOT_EXPIRE) {
-            expire(key, expire);
+        if (!open) {
+            Object value = localStore.get(key);
+            if (expire != NOT_EXPIRE) {
+                localStore.expire(key, expire);
+            }
+            return value;
         }
+        if (expire == NOT_EXPIRE) {
+            return nearCache.get(key, () -> redisTemplate.opsForValue().get(key));
+        }
+        Object value = redisTemplate.opsForValue().get(key);
+        expire(key, expire);
         return value;
     }
 
@@ -59,21 +124,66 @@ public class RedisUtils {
         return get(key, NOT_EXPIRE);
     }
 
+    /**
+     * 写入二进制值，不经过JSON序列化，用于编码后的缓存对象
+     * @param key 键
+     * @param value 值
+     * @param expire 过期时长（秒）
+     */
+    public void setBytes(String key, byte[] value, long expire) {
+        if (!open) {
+            localStore.set(key, value, expire);
+            return;
+        }
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.stringCommands()
+                .set(rawKey(key), value, expiration(expire), RedisStringCommands.SetOption.upsert()));
+        nearCache.invalidate(key);
+    }
+
+    /**
+     * 读取二进制值
+     * @param key 键
+     * @return 值，不存在时为null
+     */
+    public byte[] getBytes(String key) {
+        if (!open) {
+            return (byte[]) localStore.get(key);
+        }
+        return (byte[]) nearCache.get(key,
+                () -> redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey(key))));
+    }
+
     public void delete(String key) {
+        if (!open) {
+            localStore.delete(key);
+            return;
+        }
         redisTemplate.delete(key);
+        nearCache.invalidate(key);
     }
 
     public void delete(Collection<String> keys) {
+        if (!open) {
+            localStore.delete(keys);
+            return;
+        }
         redisTemplate.delete(keys);
+        nearCache.invalidate(keys);
     }
 
     public Object hGet(String key, String field) {
-        return redisTemplate.opsForHash().get(key, field);
+        if (!open) {
+            return localStore.hGet(key, field);
+        }
+        return nearCache.hGet(key, field, () -> redisTemplate.opsForHash().get(key, field));
     }
 
     public Map<String, Object> hGetAll(String key) {
+        if (!open) {
+            return localStore.hGetAll(key);
+        }
         HashOperations<String, String, Object> hashOperations = redisTemplate.opsForHash();
-        return hashOperations.entries(key);
+        return nearCache.hGetAll(key, () -> hashOperations.entries(key));
     }
 
     public void hMSet(String key, Map<String, Object> map) {
@@ -81,11 +191,7 @@ public class RedisUtils {
     }
 
     public void hMSet(String key, Map<String, Object> map, long expire) {
-        redisTemplate.opsForHash().putAll(key, map);
-
-        if (expire != NOT_EXPIRE) {
-            expire(key, expire);
-        }
+        executePipelined(batch -> batch.hMSet(key, map, expire));
     }
 
     public void hSet(String key, String field, Object value) {
@@ -93,19 +199,32 @@ public class RedisUtils {
     }
 
     public void hSet(String key, String field, Object value, long expire) {
-        redisTemplate.opsForHash().put(key, field, value);
-
-        if (expire != NOT_EXPIRE) {
-            expire(key, expire);
-        }
+        executePipelined(batch -> batch.hSet(key, field, value, expire));
     }
 
     public void expire(String key, long expire) {
+        if (!open) {
+            localStore.expire(key, expire);
+            return;
+        }
         redisTemplate.expire(key, expire, TimeUnit.SECONDS);
     }
 
+    public void expireAt(String key, Date date) {
+        if (!open) {
+            localStore.expireAt(key, date);
+            return;
+        }
+        redisTemplate.expireAt(key, date);
+    }
+
     public void hDel(String key, Object... fields) {
+        if (!open) {
+            localStore.hDel(key, fields);
+            return;
+        }
         redisTemplate.opsForHash().delete(key, fields);
+        nearCache.invalidate(key);
     }
 
     public void leftPush(String key, Object value) {
@@ -113,14 +232,13 @@ public class RedisUtils {
     }
 
     public void leftPush(String key, Object value, long expire) {
-        redisTemplate.opsForList().leftPush(key, value);
-
-        if (expire != NOT_EXPIRE) {
-            expire(key, expire);
-        }
+        executePipelined(batch -> batch.leftPush(key, value, expire));
     }
 
     public Object rightPop(String key) {
+        if (!open) {
+            return localStore.rightPop(key);
+        }
         return redisTemplate.opsForList().rightPop(key);
     }
 
@@ -131,6 +249,9 @@ public class RedisUtils {
      * @return 是否存在
      */
     public boolean sIsMember(String key, Object value) {
+        if (!open) {
+            return localStore.sIsMember(key, value);
+        }
         return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(key, value));
     }
     
@@ -141,7 +262,64 @@ public class RedisUtils {
      * @return 添加的元素数量
      */
     public long sAdd(String key, Object... values) {
+        if (!open) {
+            return localStore.sAdd(key, values);
+        }
         Long count = redisTemplate.opsForSet().add(key, values);
         return count == null ? 0 : count;
     }
-}
\ No newline at end of file
+
+    /**
+     * 添加元素到集合并设置过期时间点，一次往返
+     * @param key 键
+     * @param expireAt 过期时间点
+     * @param values 值
+     */
+    public void sAdd(String key, Date expireAt, Object... values) {
+        executePipelined(batch -> batch.sAdd(key, expireAt, values));
+    }
+
+    /**
+     * 以管道方式批量执行命令，所有命令一次发送
+     * @param commands 批量命令
+     * @return 各命令的结果，使用本地内存存储时为空
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> executePipelined(Consumer<RedisBatch> commands) {
+        if (!open) {
+            commands.accept(new RedisBatch(localStore));
+            return Collections.emptyList();
+        }
+        List<String> keys = new ArrayList<>();
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                commands.accept(new RedisBatch((RedisOperations<String, Object>) operations, keys));
+                return null;
+            }
+        });
+        nearCache.invalidate(keys);
+        return results;
+    }
+
+    static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static Expiration expiration(long expire) {
+        return expire == NOT_EXPIRE ? Expiration.persistent() : Expiration.seconds(Math.max(expire, 1));
+    }
+
+    /**
+     * 发布消息
+     * @param channel 频道
+     * @param message 消息
+     */
+    public void publish(String channel, Object message) {
+        if (!open) {
+            // 未开启Redis时为单实例部署，没有其他实例需要通知
+            return;
+        }
+        redisTemplate.convertAndSend(channel, message);
+    }
+}
@@ -0,0 +1,74 @@
+package xiaozhi.common.redis.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 紧凑二进制读取，与{@link BinaryWriter}对应
+ * 数据不完整或格式错误时抛出IllegalArgumentException
+ */
+public final class BinaryReader {
+    private final byte[] buffer;
+    private int position;
+
+    public BinaryReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    public int readByte() {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public byte[] readBytes() {
+        int length = readLength();
+        byte[] value = new byte[length];
+        System.arraycopy(buffer, position, value, 0, length);
+        position += length;
+        return value;
+    }
+
+    public long readUnsignedVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("变长整数过长");
+    }
+
+    public long readVarLong() {
+        long value = readUnsignedVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public String readString() {
+        int length = readLength();
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * 是否已读取全部数据
+     */
+    public boolean isEnd() {
+        return position == buffer.length;
+    }
+
+    private int readLength() {
+        long length = readUnsignedVarLong();
+        if (length > buffer.length - position) {
+            throw new IllegalArgumentException("长度超出数据范围: " + length);
+        }
+        return (int) length;
+    }
+
+    private void require(int length) {
+        if (position + length > buffer.length) {
+            throw new IllegalArgumentException("数据不完整");
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package xiaozhi.modules.device.activation;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.modules.device.constant.DeviceConstant;
+import xiaozhi.modules.device.dao.ActivationCodeDao;
+import xiaozhi.modules.device.entity.ActivationCodeEntity;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 激活码分配器
+ * 用位图记录100000~999999共900000个激活码的占用情况，通过CAS无锁抢占空闲位，分配时不再逐个查询数据库。
+ * 启动时从数据库中的有效激活码初始化，激活码过期或使用后释放，并定期与数据库对账。
+ * 确认和释放应在事务提交后调用，对账期间的变更记录下来并在替换位图前重放，不会被数据库快照覆盖
+ */
+@Slf4j
+@Component
+public class ActivationCodeAllocator implements CommandLineRunner {
+    /**
+     * 最小激活码
+     */
+    public static final int MIN_CODE = 100000;
+    /**
+     * 激活码空间大小
+     */
+    public static final int CODE_SPACE = 900000;
+
+    private static final int WORDS = (CODE_SPACE + 63) >>> 6;
+    /**
+     * 已分配但超过该时间（毫秒）仍未确认的激活码，对账时不再保留（通常是插入失败）
+     */
+    private static final long PENDING_TIMEOUT = 60 * 1000L;
+
+    private final ActivationCodeDao activationCodeDao;
+    /**
+     * 占用位图，每位对应一个激活码
+     */
+    private volatile AtomicLongArray bits = newBitmap();
+    /**
+     * 已分配但尚未确认写入数据库的激活码，对账时保留
+     */
+    private final Map<Integer, Long> pending = new ConcurrentHashMap<>();
+    /**
+     * 对账期间的变更，下标 -> 是否占用，对账时重放到新位图；未在对账时为null
+     */
+    private volatile Map<Integer, Boolean> journal;
+    /**
+     * 分配和释放持有读锁，对账替换位图时持有写锁，保证变更要么写入旧位图并记录到变更中，要么直接写入新位图
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile boolean seeded;
+
+    private final LongAdder allocateCount = new LongAdder();
+    private final LongAdder releaseCount = new LongAdder();
+    private final LongAdder conflictCount = new LongAdder();
+
+    public ActivationCodeAllocator(ActivationCodeDao activationCodeDao) {
+        this.activationCodeDao = activationCodeDao;
+    }
+
+    @Override
+    public void run(String... args) {
+        ensureSeeded();
+    }
+
+    /**
+     * 分配一个空闲激活码
+     * 从随机位置开始查找空闲位并CAS抢占，占用率不高时期望一次命中
+     *
+     * @return 6位数字激活码
+     */
+    public String allocate() {
+        ensureSeeded();
+        swapLock.readLock().lock();
+        try {
+            AtomicLongArray bitmap = bits;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int start = random.nextInt(WORDS);
+            int offset = random.nextInt(64);
+            for (int i = 0; i < WORDS; i++) {
+                int word = (start + i) % WORDS;
+                long value = bitmap.get(word);
+                while (value != -1L) {
+                    long free = ~value;
+                    // 优先取随机偏移之后的空闲位，避免同一个字内按顺序分配
+                    long preferred = free & (-1L << offset);
+                    int bit = Long.numberOfTrailingZeros(preferred != 0 ? preferred : free);
+                    long updated = value | (1L << bit);
+                    if (bitmap.compareAndSet(word, value, updated)) {
+                        int index = (word << 6) + bit;
+                        pending.put(index, System.currentTimeMillis());
+                        journal(index, true);
+                        allocateCount.increment();
+                        return String.valueOf(MIN_CODE + index);
+                    }
+                    value = bitmap.get(word);
+                }
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        throw new RenException(ErrorCode.ACTIVATION_CODE_EXHAUSTED);
+    }
+
+    /**
+     * 激活码已写入数据库并提交，不再需要在对账时额外保留
+     * 需要在事务提交后调用，否则对账可能读不到未提交的激活码而将其释放
+     *
+     * @param code 激活码
+     */
+    public void confirm(String code) {
+        int index = indexOf(code);
+        if (index < 0) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            pending.remove(index);
+            journal(index, true);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 激活码已被其他实例占用（插入时违反唯一约束），保持占用状态并记录冲突
+     *
+     * @param code 激活码
+     */
+    public void conflict(String code) {
+        confirm(code);
+        conflictCount.increment();
+    }
+
+    /**
+     * 标记激活码已被占用
+     *
+     * @param code 激活码
+     */
+    public void reserve(String code) {
+        int index = indexOf(code);
+        if (index < 0) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            set(bits, index);
+            journal(index, true);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 激活码过期或已使用，释放以便重新分配
+     * 需要在事务提交后调用，事务回滚时激活码仍然有效，不能被重新分配
+     *
+     * @param code 激活码
+     */
+    public void release(String code) {
+        int index = indexOf(code);
+        if (index < 0) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            pending.remove(index);
+            long previous = clear(bits, index);
+            journal(index, false);
+            if ((previous & (1L << (index & 63))) != 0) {
+                releaseCount.increment();
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 与数据库对账，以数据库中的有效激活码为准重建位图，
+     * 修正其他实例释放或占用的激活码以及事务回滚后未释放的激活码
+     */
+    @Scheduled(fixedDelay = 30 * 60 * 1000L, initialDelay = 30 * 60 * 1000L)
+    public synchronized void reconcile() {
+        // 先开始记录变更再读取数据库，读取期间的分配和释放不会丢失
+        Map<Integer, Boolean> changes = new ConcurrentHashMap<>();
+        journal = changes;
+        AtomicLongArray bitmap;
+        try {
+            bitmap = loadFromDatabase();
+        } catch (RuntimeException e) {
+            journal = null;
+            throw e;
+        }
+
+        swapLock.writeLock().lock();
+        try {
+            // 重放读取期间的变更，数据库快照可能早于这些变更
+            changes.forEach((index, occupied) -> {
+                if (occupied) {
+                    set(bitmap, index);
+                } else {
+                    clear(bitmap, index);
+                }
+            });
+            // 保留已分配但尚未写入的激活码
+            long expireBefore = System.currentTimeMillis() - PENDING_TIMEOUT;
+            pending.values().removeIf(allocateTime -> allocateTime < expireBefore);
+            for (Integer index : pending.keySet()) {
+                set(bitmap, index);
+            }
+            bits = bitmap;
+            journal = null;
+            seeded = true;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        log.info("激活码分配器对账完成，已占用: {}，重放变更: {}", countAllocated(bitmap), changes.size());
+    }
+
+    /**
+     * 获取分配统计
+     */
+    public Map<String, Object> getStats() {
+        long allocated = countAllocated(bits);
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("capacity", CODE_SPACE);
+        stats.put("allocated", allocated);
+        stats.put("free", CODE_SPACE - allocated);
+        stats.put("pending", pending.size());
+        stats.put("allocateCount", allocateCount.sum());
+        stats.put("releaseCount", releaseCount.sum());
+        stats.put("conflictCount", conflictCount.sum());
+        return stats;
+    }
+
+    private void ensureSeeded() {
+        if (seeded) {
+            return;
+        }
+        synchronized (this) {
+            if (!seeded) {
+                reconcile();
+            }
+        }
+    }
+
+    private AtomicLongArray loadFromDatabase() {
+        AtomicLongArray bitmap = newBitmap();
+        List<ActivationCodeEntity> codes = activationCodeDao.selectList(
+                new LambdaQueryWrapper<ActivationCodeEntity>()
+                        .select(ActivationCodeEntity::getCode)
+                        .eq(ActivationCodeEntity::getStatus, DeviceConstant.ActivationStatus.VALID)
+        );
+        for (ActivationCodeEntity entity : codes) {
+            int index = indexOf(entity.getCode());
+            if (index >= 0) {
+                set(bitmap, index);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * 创建位图，超出激活码空间的尾部位预先标记为占用
+     */
+    private static AtomicLongArray newBitmap() {
+        AtomicLongArray bitmap = new AtomicLongArray(WORDS);
+        for (int index = CODE_SPACE; index < WORDS << 6; index++) {
+            set(bitmap, index);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 对账期间记录变更，调用方需持有读锁
+     */
+    private void journal(int index, boolean occupied) {
+        Map<Integer, Boolean> changes = journal;
+        if (changes != null) {
+            changes.put(index, occupied);
+        }
+    }
+
+    private static void set(AtomicLongArray bitmap, int index) {
+        long mask = 1L << (index & 63);
+        bitmap.getAndUpdate(index >>> 6, value -> value | mask);
+    }
+
+    /**
+     * 清除占用位
+     *
+     * @return 清除前的字
+     */
+    private static long clear(AtomicLongArray bitmap, int index) {
+        long mask = 1L << (index & 63);
+        return bitmap.getAndUpdate(index >>> 6, value -> value & ~mask);
+    }
+
+    private static long countAllocated(AtomicLongArray bitmap) {
+        long count = 0;
+        for (int i = 0; i < WORDS; i++) {
+            count += Long.bitCount(bitmap.get(i));
+        }
+        // 扣除尾部填充位
+        return count - ((WORDS << 6) - CODE_SPACE);
+    }
+
+    /**
+     * 激活码转换为位图下标，非法激活码返回-1
+     */
+    private static int indexOf(String code) {
+        if (code == null || code.length() != 6) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < 6; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value >= MIN_CODE ? value - MIN_CODE : -1;
+    }
+}
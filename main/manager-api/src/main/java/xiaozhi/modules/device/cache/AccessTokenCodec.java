@@ -0,0 +1,138 @@
+package xiaozhi.modules.device.cache;
+
+import xiaozhi.common.redis.codec.BinaryReader;
+import xiaozhi.common.redis.codec.BinaryWriter;
+import xiaozhi.modules.device.dto.AccessTokenDTO;
+
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 设备令牌缓存的二进制编码
+ * 以一个Redis字符串保存令牌及其元数据。JWT的三段按Base64URL解码后保存原始字节，比字符串少四分之一，
+ * 解码后重新编码与原令牌不一致时（非标准的JWT）按字符串保存。
+ * 版本不识别或数据损坏时解码返回null，按缓存未命中处理
+ */
+public final class AccessTokenCodec {
+    private static final int VERSION = 1;
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_DEVICE_ID = 1 << 1;
+    private static final int HAS_TOKEN = 1 << 2;
+    private static final int COMPACT_TOKEN = 1 << 3;
+    private static final int HAS_IS_REVOKED = 1 << 4;
+    private static final int HAS_CREATE_DATE = 1 << 5;
+    private static final int HAS_EXPIRE_TIME = 1 << 6;
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private AccessTokenCodec() {
+    }
+
+    public static byte[] encode(AccessTokenDTO dto) {
+        String token = dto.getToken();
+        byte[][] parts = token != null ? splitToken(token) : null;
+        int flags = (dto.getId() != null ? HAS_ID : 0)
+                | (dto.getDeviceId() != null ? HAS_DEVICE_ID : 0)
+                | (token != null ? HAS_TOKEN : 0)
+                | (parts != null ? COMPACT_TOKEN : 0)
+                | (dto.getIsRevoked() != null ? HAS_IS_REVOKED : 0)
+                | (dto.getCreateDate() != null ? HAS_CREATE_DATE : 0)
+                | (dto.getExpireTime() != null ? HAS_EXPIRE_TIME : 0);
+
+        BinaryWriter writer = new BinaryWriter(token != null ? token.length() + 32 : 32);
+        writer.writeByte(VERSION).writeByte(flags);
+        if (dto.getId() != null) {
+            writer.writeVarLong(dto.getId());
+        }
+        if (dto.getDeviceId() != null) {
+            writer.writeVarLong(dto.getDeviceId());
+        }
+        if (parts != null) {
+            for (byte[] part : parts) {
+                writer.writeBytes(part);
+            }
+        } else if (token != null) {
+            writer.writeString(token);
+        }
+        if (dto.getIsRevoked() != null) {
+            writer.writeVarLong(dto.getIsRevoked());
+        }
+        long createTime = 0;
+        if (dto.getCreateDate() != null) {
+            createTime = dto.getCreateDate().getTime();
+            writer.writeVarLong(createTime);
+        }
+        if (dto.getExpireTime() != null) {
+            writer.writeVarLong(dto.getExpireTime().getTime() - createTime);
+        }
+        return writer.toByteArray();
+    }
+
+    public static AccessTokenDTO decode(byte[] bytes) {
+        if (bytes == null || bytes.length < 2) {
+            return null;
+        }
+        try {
+            BinaryReader reader = new BinaryReader(bytes);
+            if (reader.readByte() != VERSION) {
+                return null;
+            }
+            int flags = reader.readByte();
+            AccessTokenDTO dto = new AccessTokenDTO();
+            if ((flags & HAS_ID) != 0) {
+                dto.setId(reader.readVarLong());
+            }
+            if ((flags & HAS_DEVICE_ID) != 0) {
+                dto.setDeviceId(reader.readVarLong());
+            }
+            if ((flags & COMPACT_TOKEN) != 0) {
+                dto.setToken(ENCODER.encodeToString(reader.readBytes()) + '.'
+                        + ENCODER.encodeToString(reader.readBytes()) + '.'
+                        + ENCODER.encodeToString(reader.readBytes()));
+            } else if ((flags & HAS_TOKEN) != 0) {
+                dto.setToken(reader.readString());
+            }
+            if ((flags & HAS_IS_REVOKED) != 0) {
+                dto.setIsRevoked((int) reader.readVarLong());
+            }
+            long createTime = 0;
+            if ((flags & HAS_CREATE_DATE) != 0) {
+                createTime = reader.readVarLong();
+                dto.setCreateDate(new Date(createTime));
+            }
+            if ((flags & HAS_EXPIRE_TIME) != 0) {
+                dto.setExpireTime(new Date(createTime + reader.readVarLong()));
+            }
+            return reader.isEnd() ? dto : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 将JWT拆分为三段原始字节，不是标准的三段Base64URL时返回null
+     */
+    private static byte[][] splitToken(String token) {
+        int first = token.indexOf('.');
+        int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+        if (second < 0 || token.indexOf('.', second + 1) >= 0) {
+            return null;
+        }
+        String[] segments = {token.substring(0, first), token.substring(first + 1, second), token.substring(second + 1)};
+        byte[][] parts = new byte[3][];
+        try {
+            for (int i = 0; i < 3; i++) {
+                parts[i] = DECODER.decode(segments[i]);
+                // 非规范编码（填充或多余的位）无法原样还原
+                if (!ENCODER.encodeToString(parts[i]).equals(segments[i])) {
+                    return null;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return parts;
+    }
+}
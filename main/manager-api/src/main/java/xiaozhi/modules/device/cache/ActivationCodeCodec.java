@@ -0,0 +1,138 @@
+package xiaozhi.modules.device.cache;
+
+import xiaozhi.common.redis.codec.BinaryReader;
+import xiaozhi.common.redis.codec.BinaryWriter;
+import xiaozhi.modules.device.dto.ActivationCodeDTO;
+
+import java.util.Date;
+
+/**
+ * 激活码缓存的二进制编码
+ * 以一个Redis字符串保存，取代逐字段保存字符串的哈希：
+ * 版本号、字段存在标志，之后按固定顺序写入存在的字段；
+ * 纯数字激活码按数值保存，过期时间保存为相对创建时间的差值。
+ * 版本不识别或数据损坏时解码返回null，按缓存未命中处理
+ */
+public final class ActivationCodeCodec {
+    private static final int VERSION = 1;
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_CODE = 1 << 1;
+    private static final int NUMERIC_CODE = 1 << 2;
+    private static final int HAS_DEVICE_ID = 1 << 3;
+    private static final int HAS_STATUS = 1 << 4;
+    private static final int HAS_CREATE_DATE = 1 << 5;
+    private static final int HAS_EXPIRE_TIME = 1 << 6;
+
+    /**
+     * 按数值保存的激活码最大长度，不超过long的范围
+     */
+    private static final int MAX_NUMERIC_LENGTH = 18;
+
+    private ActivationCodeCodec() {
+    }
+
+    public static byte[] encode(ActivationCodeDTO dto) {
+        String code = dto.getCode();
+        boolean numeric = isNumeric(code);
+        int flags = (dto.getId() != null ? HAS_ID : 0)
+                | (code != null ? HAS_CODE : 0)
+                | (numeric ? NUMERIC_CODE : 0)
+                | (dto.getDeviceId() != null ? HAS_DEVICE_ID : 0)
+                | (dto.getStatus() != null ? HAS_STATUS : 0)
+                | (dto.getCreateDate() != null ? HAS_CREATE_DATE : 0)
+                | (dto.getExpireTime() != null ? HAS_EXPIRE_TIME : 0);
+
+        BinaryWriter writer = new BinaryWriter(32);
+        writer.writeByte(VERSION).writeByte(flags);
+        if (dto.getId() != null) {
+            writer.writeVarLong(dto.getId());
+        }
+        if (numeric) {
+            // 保留前导零：先写长度，再写数值
+            writer.writeByte(code.length()).writeUnsignedVarLong(Long.parseLong(code));
+        } else if (code != null) {
+            writer.writeString(code);
+        }
+        if (dto.getDeviceId() != null) {
+            writer.writeVarLong(dto.getDeviceId());
+        }
+        if (dto.getStatus() != null) {
+            writer.writeVarLong(dto.getStatus());
+        }
+        long createTime = 0;
+        if (dto.getCreateDate() != null) {
+            createTime = dto.getCreateDate().getTime();
+            writer.writeVarLong(createTime);
+        }
+        if (dto.getExpireTime() != null) {
+            writer.writeVarLong(dto.getExpireTime().getTime() - createTime);
+        }
+        return writer.toByteArray();
+    }
+
+    public static ActivationCodeDTO decode(byte[] bytes) {
+        if (bytes == null || bytes.length < 2) {
+            return null;
+        }
+        try {
+            BinaryReader reader = new BinaryReader(bytes);
+            if (reader.readByte() != VERSION) {
+                return null;
+            }
+            int flags = reader.readByte();
+            ActivationCodeDTO dto = new ActivationCodeDTO();
+            if ((flags & HAS_ID) != 0) {
+                dto.setId(reader.readVarLong());
+            }
+            if ((flags & NUMERIC_CODE) != 0) {
+                int length = reader.readByte();
+                dto.setCode(pad(reader.readUnsignedVarLong(), length));
+            } else if ((flags & HAS_CODE) != 0) {
+                dto.setCode(reader.readString());
+            }
+            if ((flags & HAS_DEVICE_ID) != 0) {
+                dto.setDeviceId(reader.readVarLong());
+            }
+            if ((flags & HAS_STATUS) != 0) {
+                dto.setStatus((int) reader.readVarLong());
+            }
+            long createTime = 0;
+            if ((flags & HAS_CREATE_DATE) != 0) {
+                createTime = reader.readVarLong();
+                dto.setCreateDate(new Date(createTime));
+            }
+            if ((flags & HAS_EXPIRE_TIME) != 0) {
+                dto.setExpireTime(new Date(createTime + reader.readVarLong()));
+            }
+            return reader.isEnd() ? dto : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isNumeric(String code) {
+        if (code == null || code.isEmpty() || code.length() > MAX_NUMERIC_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String pad(long value, int length) {
+        String digits = Long.toString(value);
+        if (digits.length() > length) {
+            throw new IllegalArgumentException("激活码长度不符: " + length);
+        }
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = digits.length(); i < length; i++) {
+            builder.append('0');
+        }
+        return builder.append(digits).toString();
+    }
+}
@@ -0,0 +1,239 @@
+package xiaozhi.modules.device.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.common.utils.TransactionUtils;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已激活设备OTA签到缓存
+ * 以MAC地址为键缓存设备ID，以设备ID为键缓存当前有效令牌，
+ * 已激活设备重复签到时直接命中缓存，只有未命中或设备状态变更时才访问数据库。
+ * 失效时在事务提交后通过Redis发布通知，各实例同时失效本地缓存
+ */
+@Slf4j
+@Component
+public class DeviceCheckinCache {
+    /**
+     * 最大缓存设备数
+     */
+    private static final long MAXIMUM_SIZE = 100000;
+    /**
+     * 令牌剩余有效期低于该值（毫秒）时视为未命中，走数据库重新获取
+     */
+    private static final long TOKEN_EXPIRE_MARGIN = 60 * 1000L;
+
+    /**
+     * MAC地址 -> 已激活设备ID
+     */
+    private final Cache<String, Long> activeDevices = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE).expireAfterAccess(1, TimeUnit.DAYS).build();
+    /**
+     * 设备ID -> MAC地址，失效设备时据此删除MAC地址映射
+     */
+    private final Cache<Long, String> deviceMacs = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE).expireAfterAccess(1, TimeUnit.DAYS).build();
+    /**
+     * 设备ID -> 当前有效令牌
+     */
+    private final Cache<Long, TokenEntry> deviceTokens = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE).build();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder invalidateCount = new LongAdder();
+    private final LongAdder messageCount = new LongAdder();
+
+    private final RedisUtils redisUtils;
+
+    public DeviceCheckinCache(RedisUtils redisUtils) {
+        this.redisUtils = redisUtils;
+    }
+
+    /**
+     * 获取已激活设备的ID和有效令牌，两者来自同一次查找，保证令牌属于返回的设备
+     *
+     * @param macAddress 设备MAC地址
+     * @return 签到信息，未命中返回null
+     */
+    public Checkin getActiveCheckin(String macAddress) {
+        Long deviceId = activeDevices.getIfPresent(macAddress);
+        TokenEntry entry = deviceId != null ? deviceTokens.getIfPresent(deviceId) : null;
+        if (entry == null || entry.expireAt - System.currentTimeMillis() < TOKEN_EXPIRE_MARGIN) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return new Checkin(deviceId, entry.token);
+    }
+
+    /**
+     * 记录已激活设备的MAC地址
+     *
+     * @param macAddress 设备MAC地址
+     * @param deviceId   设备ID
+     */
+    public void bindActiveDevice(String macAddress, Long deviceId) {
+        if (macAddress == null || deviceId == null) {
+            return;
+        }
+        activeDevices.put(macAddress, deviceId);
+        deviceMacs.put(deviceId, macAddress);
+    }
+
+    /**
+     * 缓存设备的有效令牌
+     * 只缓存当前密钥接受的令牌，由获取令牌时校验；签名算法随配置变更需重启，本地缓存随之清空，
+     * 迁移期内接受的HMAC令牌在迁移期结束前均已过期，因此缓存中不会留下被拒绝的令牌
+     *
+     * @param deviceId   设备ID
+     * @param token      令牌
+     * @param expireTime 令牌过期时间
+     */
+    public void putToken(Long deviceId, String token, Date expireTime) {
+        if (deviceId == null || token == null || expireTime == null) {
+            return;
+        }
+        deviceTokens.put(deviceId, new TokenEntry(token, expireTime.getTime()));
+    }
+
+    /**
+     * 设备状态变更或令牌撤销时失效缓存，并通知其他实例
+     *
+     * @param deviceId 设备ID
+     */
+    public void invalidate(Long deviceId) {
+        if (deviceId == null) {
+            return;
+        }
+        invalidate(List.of(deviceId));
+    }
+
+    /**
+     * 批量失效设备缓存，并以一条通知同步到其他实例
+     * 本地立即失效；提交后再次失效并发布通知，避免提交前其他线程读到旧数据重新写入缓存
+     *
+     * @param deviceIds 设备ID集合
+     */
+    public void invalidate(Collection<Long> deviceIds) {
+        if (deviceIds == null) {
+            return;
+        }
+        List<Long> ids = deviceIds.stream().filter(Objects::nonNull).toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+        evict(ids);
+        String message = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        TransactionUtils.afterCommit(() -> {
+            evict(ids);
+            redisUtils.publish(RedisKeys.getDeviceCheckinInvalidateChannel(), message);
+        });
+    }
+
+    /**
+     * 处理其他实例发布的失效通知
+     *
+     * @param message 逗号分隔的设备ID
+     */
+    public void onMessage(String message) {
+        if (message == null || message.isEmpty()) {
+            return;
+        }
+        for (String part : message.split(",")) {
+            try {
+                evict(List.of(Long.parseLong(part)));
+            } catch (NumberFormatException e) {
+                log.warn("无效的签到缓存失效通知: {}", message);
+                return;
+            }
+        }
+        messageCount.increment();
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        activeDevices.invalidateAll();
+        deviceMacs.invalidateAll();
+        deviceTokens.invalidateAll();
+        invalidateCount.increment();
+    }
+
+    /**
+     * 获取命中统计
+     */
+    public Map<String, Object> getStats() {
+        long hits = hitCount.sum();
+        long misses = missCount.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hitCount", hits);
+        stats.put("missCount", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0D : (double) hits / (hits + misses));
+        stats.put("invalidateCount", invalidateCount.sum());
+        stats.put("messageCount", messageCount.sum());
+        stats.put("deviceSize", activeDevices.size());
+        stats.put("tokenSize", deviceTokens.size());
+        return stats;
+    }
+
+    /**
+     * 失效本地缓存的令牌和MAC地址映射，MAC地址已绑定到其他设备时保留
+     */
+    private void evict(Collection<Long> deviceIds) {
+        for (Long deviceId : deviceIds) {
+            deviceTokens.invalidate(deviceId);
+            String macAddress = deviceMacs.getIfPresent(deviceId);
+            if (macAddress != null) {
+                deviceMacs.invalidate(deviceId);
+                activeDevices.asMap().remove(macAddress, deviceId);
+            }
+            invalidateCount.increment();
+        }
+    }
+
+    /**
+     * 已激活设备的签到信息
+     */
+    public static final class Checkin {
+        private final Long deviceId;
+        private final String token;
+
+        private Checkin(Long deviceId, String token) {
+            this.deviceId = deviceId;
+            this.token = token;
+        }
+
+        public Long getDeviceId() {
+            return deviceId;
+        }
+
+        public String getToken() {
+            return token;
+        }
+    }
+
+    private static final class TokenEntry {
+        private final String token;
+        private final long expireAt;
+
+        private TokenEntry(String token, long expireAt) {
+            this.token = token;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package xiaozhi.modules.device.cache;
+
+import org.springframework.stereotype.Component;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.security.jwt.JwtTokenProvider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已撤销令牌存储
+ * 按令牌过期日期分片保存令牌摘要，每个分片在其中所有令牌过期后自然过期，
+ * 占用的内存只与尚未过期的已撤销令牌数量有关，查询时只访问令牌所在的分片
+ */
+@Component
+public class RevokedTokenStore {
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    /**
+     * 分片在最后一个令牌过期后额外保留的时间（毫秒）
+     */
+    private static final long SHARD_EXPIRE_MARGIN = 60 * 60 * 1000L;
+
+    private final RedisUtils redisUtils;
+    private final JwtTokenProvider jwtTokenProvider;
+
+    public RevokedTokenStore(RedisUtils redisUtils, JwtTokenProvider jwtTokenProvider) {
+        this.redisUtils = redisUtils;
+        this.jwtTokenProvider = jwtTokenProvider;
+    }
+
+    /**
+     * 记录已撤销令牌
+     *
+     * @param token 令牌
+     */
+    public void add(String token) {
+        addAll(Collections.singletonList(token));
+    }
+
+    /**
+     * 批量记录已撤销令牌，每个分片一次写入
+     * 分片按令牌自身声明的过期时间计算，与验证时从声明中取得的过期时间一致
+     *
+     * @param tokens 令牌
+     */
+    public void addAll(Collection<String> tokens) {
+        long now = System.currentTimeMillis();
+        Map<Long, List<String>> shards = new HashMap<>();
+        for (String token : tokens) {
+            Date expireTime = token != null ? jwtTokenProvider.getExpirationFromToken(token) : null;
+            // 已过期的令牌本身无法通过验证，无需记录
+            if (expireTime == null || expireTime.getTime() <= now) {
+                continue;
+            }
+            shards.computeIfAbsent(expireTime.getTime() / DAY_MILLIS, key -> new ArrayList<>())
+                    .add(JwtTokenProvider.hashToken(token));
+        }
+        if (shards.isEmpty()) {
+            return;
+        }
+        // 所有分片一次发送，分片的过期时间固定为当天结束之后，重复设置不会延长
+        redisUtils.executePipelined(batch -> shards.forEach((day, hashes) ->
+                batch.sAdd(RedisKeys.getRevokedTokensKey(day),
+                        new Date((day + 1) * DAY_MILLIS + SHARD_EXPIRE_MARGIN), hashes.toArray())));
+    }
+
+    /**
+     * 判断令牌是否已被撤销
+     *
+     * @param token      令牌
+     * @param expireTime 令牌声明的过期时间
+     * @return 是否已撤销
+     */
+    public boolean contains(String token, Date expireTime) {
+        if (token == null || expireTime == null) {
+            return false;
+        }
+        long day = expireTime.getTime() / DAY_MILLIS;
+        return redisUtils.sIsMember(RedisKeys.getRevokedTokensKey(day), JwtTokenProvider.hashToken(token));
+    }
+}
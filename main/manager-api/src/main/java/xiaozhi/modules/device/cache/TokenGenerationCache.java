@@ -0,0 +1,194 @@
+package xiaozhi.modules.device.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.common.utils.TransactionUtils;
+import xiaozhi.modules.device.dao.DeviceDao;
+import xiaozhi.modules.device.entity.DeviceEntity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 设备令牌代数缓存
+ * 令牌签发时携带设备当前代数，撤销设备所有令牌只需将代数加一，代数小于当前值的令牌即视为已撤销。
+ * 代数以数据库为准，缓存在本地和Redis中，变更在事务提交后通过Redis发布通知同步到其他实例；
+ * 代数只增不减，Redis中只写入更大的值，回源时读到的旧值不会覆盖并发递增的新值
+ */
+@Slf4j
+@Component
+public class TokenGenerationCache {
+    /**
+     * 最大缓存设备数
+     */
+    private static final long MAXIMUM_SIZE = 100000;
+
+    private final DeviceDao deviceDao;
+    private final RedisUtils redisUtils;
+
+    /**
+     * 设备ID -> 当前令牌代数，定期过期以弥补丢失的变更通知
+     */
+    private final Cache<Long, Integer> generations = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE).expireAfterWrite(5, TimeUnit.MINUTES).build();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder staleCount = new LongAdder();
+    private final LongAdder incrementCount = new LongAdder();
+
+    public TokenGenerationCache(DeviceDao deviceDao, RedisUtils redisUtils) {
+        this.deviceDao = deviceDao;
+        this.redisUtils = redisUtils;
+    }
+
+    /**
+     * 获取设备当前令牌代数
+     *
+     * @param deviceId 设备ID
+     * @return 令牌代数，设备不存在返回0
+     */
+    public int get(Long deviceId) {
+        if (deviceId == null) {
+            return 0;
+        }
+        Integer generation = generations.getIfPresent(deviceId);
+        if (generation != null) {
+            hitCount.increment();
+            return generation;
+        }
+        missCount.increment();
+
+        Object cached = redisUtils.get(RedisKeys.getDeviceTokenGenerationKey(deviceId));
+        if (cached instanceof Number) {
+            generation = ((Number) cached).intValue();
+        } else {
+            DeviceEntity device = deviceDao.selectOne(new LambdaQueryWrapper<DeviceEntity>()
+                    .select(DeviceEntity::getTokenGeneration)
+                    .eq(DeviceEntity::getId, deviceId));
+            generation = device != null && device.getTokenGeneration() != null ? device.getTokenGeneration() : 0;
+            redisUtils.setIfGreater(RedisKeys.getDeviceTokenGenerationKey(deviceId), generation, RedisUtils.DEFAULT_EXPIRE);
+        }
+        return generations.asMap().merge(deviceId, generation, Math::max);
+    }
+
+    /**
+     * 批量获取设备当前令牌代数，未缓存的设备一次查询
+     *
+     * @param deviceIds 设备ID
+     * @return 设备ID -> 令牌代数
+     */
+    public Map<Long, Integer> getAll(Collection<Long> deviceIds) {
+        Map<Long, Integer> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long deviceId : deviceIds) {
+            Integer generation = generations.getIfPresent(deviceId);
+            if (generation != null) {
+                hitCount.increment();
+                result.put(deviceId, generation);
+            } else {
+                missing.add(deviceId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        missCount.add(missing.size());
+
+        List<DeviceEntity> devices = deviceDao.selectList(new LambdaQueryWrapper<DeviceEntity>()
+                .select(DeviceEntity::getId, DeviceEntity::getTokenGeneration)
+                .in(DeviceEntity::getId, missing));
+        for (DeviceEntity device : devices) {
+            int generation = device.getTokenGeneration() != null ? device.getTokenGeneration() : 0;
+            result.put(device.getId(), generations.asMap().merge(device.getId(), generation, Math::max));
+        }
+        for (Long deviceId : missing) {
+            result.putIfAbsent(deviceId, 0);
+        }
+        return result;
+    }
+
+    /**
+     * 令牌代数是否仍为当前代
+     *
+     * @param deviceId   设备ID
+     * @param generation 令牌携带的代数
+     * @return 不小于设备当前代数返回true
+     */
+    public boolean isCurrent(Long deviceId, int generation) {
+        if (generation >= get(deviceId)) {
+            return true;
+        }
+        staleCount.increment();
+        return false;
+    }
+
+    /**
+     * 设备令牌代数加一，使之前签发的所有令牌失效
+     * 缓存和通知在事务提交后更新，事务回滚时不会提前拒绝仍然有效的令牌
+     *
+     * @param deviceId 设备ID
+     * @return 新的令牌代数
+     */
+    public int increment(Long deviceId) {
+        deviceDao.update(null, new LambdaUpdateWrapper<DeviceEntity>()
+                .eq(DeviceEntity::getId, deviceId)
+                .setSql("token_generation = token_generation + 1"));
+        DeviceEntity device = deviceDao.selectOne(new LambdaQueryWrapper<DeviceEntity>()
+                .select(DeviceEntity::getTokenGeneration)
+                .eq(DeviceEntity::getId, deviceId));
+        int generation = device != null && device.getTokenGeneration() != null ? device.getTokenGeneration() : 0;
+
+        TransactionUtils.afterCommit(() -> {
+            generations.asMap().merge(deviceId, generation, Math::max);
+            redisUtils.setIfGreater(RedisKeys.getDeviceTokenGenerationKey(deviceId), generation, RedisUtils.DEFAULT_EXPIRE);
+            redisUtils.publish(RedisKeys.getTokenGenerationChannel(), deviceId + ":" + generation);
+        });
+        incrementCount.increment();
+        return generation;
+    }
+
+    /**
+     * 处理其他实例发布的代数变更通知
+     *
+     * @param message 设备ID:令牌代数
+     */
+    public void onMessage(String message) {
+        int index = message == null ? -1 : message.indexOf(':');
+        if (index <= 0) {
+            log.warn("无效的令牌代数通知: {}", message);
+            return;
+        }
+        try {
+            Long deviceId = Long.parseLong(message.substring(0, index));
+            int generation = Integer.parseInt(message.substring(index + 1));
+            generations.asMap().merge(deviceId, generation, Math::max);
+        } catch (NumberFormatException e) {
+            log.warn("无效的令牌代数通知: {}", message);
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", generations.size());
+        stats.put("hitCount", hitCount.sum());
+        stats.put("missCount", missCount.sum());
+        stats.put("staleCount", staleCount.sum());
+        stats.put("incrementCount", incrementCount.sum());
+        return stats;
+    }
+}
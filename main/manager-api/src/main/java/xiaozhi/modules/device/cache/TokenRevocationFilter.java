@@ -0,0 +1,199 @@
+package xiaozhi.modules.device.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import xiaozhi.common.redis.RedisCircuitBreaker;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.device.constant.DeviceConstant;
+import xiaozhi.modules.device.dao.AccessTokenDao;
+import xiaozhi.modules.device.entity.AccessTokenEntity;
+import xiaozhi.modules.security.config.JwtConfig;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 设备令牌撤销过滤器
+ * 按设备记录最近一次撤销的时间，签发时间不晚于该时间的令牌视为可能已撤销，需要查询数据库确认；
+ * 其余签名和过期时间有效的令牌直接通过，验证不再依赖Redis和数据库。
+ * 撤销时通过Redis发布通知同步到其他实例，并定期从数据库中未过期的已撤销令牌重建，弥补丢失的通知。
+ * Redis熔断期间通知无法送达，所有令牌都查询数据库确认；本实例的Redis出现失败后在恢复时立即重建。
+ * 只有发布方的发布失败而本实例Redis正常时，依靠定期重建兜底，撤销最多延迟一个重建周期生效
+ */
+@Slf4j
+@Component
+public class TokenRevocationFilter implements CommandLineRunner {
+
+    /**
+     * 不知道被撤销令牌的创建时间时，撤销时间额外增加的余量（毫秒），容忍各实例之间的时钟偏差
+     */
+    private static final long CLOCK_SKEW_MARGIN = 5000L;
+
+    private final AccessTokenDao accessTokenDao;
+    private final RedisUtils redisUtils;
+    private final RedisCircuitBreaker circuitBreaker;
+    /**
+     * 令牌最长有效期（毫秒），超过该时间的撤销记录不再需要保留
+     */
+    private final long maxTokenLifetime;
+
+    /**
+     * 设备ID -> 最近一次撤销时间
+     */
+    private final Map<Long, Long> revokedBefore = new ConcurrentHashMap<>();
+    /**
+     * 上次重建时Redis的累计失败次数
+     */
+    private final AtomicLong reloadedFailures = new AtomicLong();
+
+    private final LongAdder passCount = new LongAdder();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder revokeCount = new LongAdder();
+    private final LongAdder messageCount = new LongAdder();
+    private final LongAdder degradedCount = new LongAdder();
+
+    public TokenRevocationFilter(AccessTokenDao accessTokenDao, RedisUtils redisUtils,
+                                 RedisCircuitBreaker circuitBreaker, JwtConfig jwtConfig) {
+        this.accessTokenDao = accessTokenDao;
+        this.redisUtils = redisUtils;
+        this.circuitBreaker = circuitBreaker;
+        this.maxTokenLifetime = Math.max(DeviceConstant.DEFAULT_TOKEN_EXPIRE_HOURS * 3600L,
+                jwtConfig.getExpiration()) * 1000L;
+    }
+
+    @Override
+    public void run(String... args) {
+        reload();
+    }
+
+    /**
+     * 判断令牌是否可能已被撤销
+     *
+     * @param deviceId   设备ID
+     * @param issuedAt   签发时间
+     * @param expiration 过期时间
+     * @return 可能已撤销返回true，需要查询数据库确认
+     */
+    public boolean mightBeRevoked(Long deviceId, Date issuedAt, Date expiration) {
+        if (deviceId == null || issuedAt == null || expiration == null
+                || expiration.getTime() - issuedAt.getTime() > maxTokenLifetime) {
+            hitCount.increment();
+            return true;
+        }
+        if (circuitBreaker.getState() != RedisCircuitBreaker.State.CLOSED) {
+            degradedCount.increment();
+            return true;
+        }
+        resyncIfFailed();
+        Long revokeTime = revokedBefore.get(deviceId);
+        // JWT签发时间精确到秒，同一秒内签发的令牌也按可能已撤销处理
+        if (revokeTime != null && issuedAt.getTime() <= revokeTime) {
+            hitCount.increment();
+            return true;
+        }
+        passCount.increment();
+        return false;
+    }
+
+    /**
+     * 记录设备令牌撤销并通知其他实例
+     * 以被撤销令牌的创建时间作为撤销时间：令牌由同一实例先签发再写入数据库，创建时间不早于签发时间，
+     * 可以覆盖被撤销的令牌，且不受实例之间时钟偏差的影响；撤销后重新签发的令牌不会命中过滤器
+     *
+     * @param deviceId   设备ID
+     * @param createDate 被撤销令牌的创建时间，为空时以当前时间加时钟偏差余量作为撤销时间
+     */
+    public void revoke(Long deviceId, Date createDate) {
+        if (deviceId == null) {
+            return;
+        }
+        long revokeTime = createDate != null ? createDate.getTime() : System.currentTimeMillis() + CLOCK_SKEW_MARGIN;
+        record(deviceId, revokeTime);
+        revokeCount.increment();
+        redisUtils.publish(RedisKeys.getTokenRevocationChannel(), deviceId + ":" + revokeTime);
+    }
+
+    /**
+     * 处理其他实例发布的撤销通知
+     *
+     * @param message 设备ID:撤销时间
+     */
+    public void onMessage(String message) {
+        int index = message == null ? -1 : message.indexOf(':');
+        if (index <= 0) {
+            log.warn("无效的令牌撤销通知: {}", message);
+            return;
+        }
+        try {
+            record(Long.parseLong(message.substring(0, index)), Long.parseLong(message.substring(index + 1)));
+            messageCount.increment();
+        } catch (NumberFormatException e) {
+            log.warn("无效的令牌撤销通知: {}", message);
+        }
+    }
+
+    /**
+     * 从数据库中未过期的已撤销令牌重建，并清理已超过令牌最长有效期的记录
+     */
+    @Scheduled(fixedDelay = 5 * 60 * 1000L, initialDelay = 5 * 60 * 1000L)
+    public void reload() {
+        reloadedFailures.set(circuitBreaker.getFailureCount());
+        List<AccessTokenEntity> revoked = accessTokenDao.selectList(
+                new LambdaQueryWrapper<AccessTokenEntity>()
+                        .select(AccessTokenEntity::getDeviceId, AccessTokenEntity::getCreateDate)
+                        .eq(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.YES)
+                        .gt(AccessTokenEntity::getExpireTime, new Date())
+        );
+        for (AccessTokenEntity token : revoked) {
+            // 令牌在写入数据库之前签发，以创建时间作为撤销时间的下限即可覆盖该令牌
+            if (token.getCreateDate() != null) {
+                record(token.getDeviceId(), token.getCreateDate().getTime());
+            }
+        }
+
+        long expireBefore = System.currentTimeMillis() - maxTokenLifetime;
+        revokedBefore.values().removeIf(revokeTime -> revokeTime < expireBefore);
+        log.info("令牌撤销过滤器重建完成，设备数: {}", revokedBefore.size());
+    }
+
+    /**
+     * 获取过滤统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("deviceSize", revokedBefore.size());
+        stats.put("passCount", passCount.sum());
+        stats.put("hitCount", hitCount.sum());
+        stats.put("revokeCount", revokeCount.sum());
+        stats.put("messageCount", messageCount.sum());
+        stats.put("degradedCount", degradedCount.sum());
+        return stats;
+    }
+
+    /**
+     * Redis失败期间其他实例的撤销通知可能丢失，恢复后由一个线程立即从数据库重建
+     */
+    private void resyncIfFailed() {
+        long seen = reloadedFailures.get();
+        long failures = circuitBreaker.getFailureCount();
+        if (failures != seen && reloadedFailures.compareAndSet(seen, failures)) {
+            log.info("Redis失败后重建令牌撤销过滤器");
+            reload();
+        }
+    }
+
+    private void record(Long deviceId, long revokeTime) {
+        if (deviceId != null) {
+            revokedBefore.merge(deviceId, revokeTime, Math::max);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package xiaozhi.modules.device.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 固件托管属性类
+ * 从配置文件加载属性
+ */
+@Data
+@Component("firmwareProperties")
+@ConfigurationProperties(prefix = "xiaozhi.firmware")
+public class FirmwareProperties {
+    /**
+     * 固件文件存储目录
+     */
+    private String storagePath = "./firmware";
+
+    /**
+     * 固件下载地址前缀，设备通过该地址访问本服务的固件下载接口
+     */
+    private String downloadBaseUrl = "http://localhost:8002/xiaozhi-esp32-api";
+}
@@ -2,6 +2,9 @@ package xiaozhi.modules.device.config;
 
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * OTA配置類
  * 用於保存WebSocket服務器的配置信息
@@ -34,6 +37,21 @@ public class OtaConfig {
      */
     private boolean enableDeviceTypeMapping = false;
 
+    /**
+     * WebSocket後端節點池，為空時使用單個server/port/path
+     */
+    private List<OtaProperties.WebsocketBackend> backends = new ArrayList<>();
+
+    /**
+     * 後端上報連接數的密鑰
+     */
+    private String reportSecret;
+
+    /**
+     * 後端上報超時時間（秒）
+     */
+    private int reportTimeoutSeconds = 60;
+
     public String getServer() {
         return server;
     }
@@ -73,4 +91,28 @@ public class OtaConfig {
     public void setEnableDeviceTypeMapping(boolean enableDeviceTypeMapping) {
         this.enableDeviceTypeMapping = enableDeviceTypeMapping;
     }
-} 
\ No newline at end of file
+
+    public List<OtaProperties.WebsocketBackend> getBackends() {
+        return backends;
+    }
+
+    public void setBackends(List<OtaProperties.WebsocketBackend> backends) {
+        this.backends = backends;
+    }
+
+    public String getReportSecret() {
+        return reportSecret;
+    }
+
+    public void setReportSecret(String reportSecret) {
+        this.reportSecret = reportSecret;
+    }
+
+    public int getReportTimeoutSeconds() {
+        return reportTimeoutSeconds;
+    }
+
+    public void setReportTimeoutSeconds(int reportTimeoutSeconds) {
+        this.reportTimeoutSeconds = reportTimeoutSeconds;
+    }
+}
@@ -24,6 +24,9 @@ public class OtaConfigAutoConfiguration {
         config.setPath(properties.getPath());
         config.setOtaPath(properties.getOtaPath());
         config.setEnableDeviceTypeMapping(properties.isEnableDeviceTypeMapping());
+        config.setBackends(properties.getBackends());
+        config.setReportSecret(properties.getReportSecret());
+        config.setReportTimeoutSeconds(properties.getReportTimeoutSeconds());
         return config;
     }
 } 
\ No newline at end of file
@@ -4,6 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * OTA属性类
  * 从配置文件加载属性
@@ -36,4 +39,45 @@ public class OtaProperties {
      * 是否启用设备类型映射
      */
     private boolean enableDeviceTypeMapping = false;
-} 
\ No newline at end of file
+
+    /**
+     * WebSocket后端节点池，为空时所有设备使用上面的server/port/path
+     */
+    private List<WebsocketBackend> backends = new ArrayList<>();
+
+    /**
+     * 后端上报连接数时携带的密钥，为空时不校验
+     */
+    private String reportSecret;
+
+    /**
+     * 后端超过该时间（秒）未上报连接数则视为下线
+     */
+    private int reportTimeoutSeconds = 60;
+
+    /**
+     * WebSocket后端节点
+     */
+    @Data
+    public static class WebsocketBackend {
+        /**
+         * WebSocket服务器地址
+         */
+        private String server;
+
+        /**
+         * WebSocket服务端口
+         */
+        private int port = 8765;
+
+        /**
+         * WebSocket路径
+         */
+        private String path = "/ws";
+
+        /**
+         * 权重，决定哈希环上的虚拟节点数量和承载连接的比例
+         */
+        private int weight = 1;
+    }
+}
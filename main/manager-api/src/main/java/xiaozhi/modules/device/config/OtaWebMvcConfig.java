@@ -0,0 +1,25 @@
+package xiaozhi.modules.device.config;
+
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import xiaozhi.modules.device.ota.OtaResponseEncoder;
+import xiaozhi.modules.device.ota.OtaResponseHttpMessageConverter;
+
+import java.util.List;
+
+/**
+ * OTA接口MVC配置
+ * 将OTA响应转换器放在最前面，优先于Jackson转换器
+ */
+@Configuration
+@AllArgsConstructor
+public class OtaWebMvcConfig implements WebMvcConfigurer {
+    private final OtaResponseEncoder otaResponseEncoder;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new OtaResponseHttpMessageConverter(otaResponseEncoder));
+    }
+}
@@ -0,0 +1,44 @@
+package xiaozhi.modules.device.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.modules.device.cache.DeviceCheckinCache;
+import xiaozhi.modules.device.cache.TokenGenerationCache;
+import xiaozhi.modules.device.cache.TokenRevocationFilter;
+
+/**
+ * 令牌撤销、令牌代数变更和设备签到缓存失效通知订阅配置
+ * 注册到共用的Redis监听容器；仅在开启Redis时订阅，未开启Redis时为单实例部署，本地撤销过滤器即可
+ */
+@Configuration
+@AllArgsConstructor
+@ConditionalOnProperty(prefix = "renren.redis", name = "open", havingValue = "true")
+public class TokenRevocationListenerConfig {
+    private final RedisMessageListenerContainer container;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final TokenRevocationFilter tokenRevocationFilter;
+    private final TokenGenerationCache tokenGenerationCache;
+    private final DeviceCheckinCache deviceCheckinCache;
+
+    @PostConstruct
+    public void subscribe() {
+        container.addMessageListener((message, pattern) -> {
+            Object value = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            tokenRevocationFilter.onMessage(value != null ? value.toString() : null);
+        }, new ChannelTopic(RedisKeys.getTokenRevocationChannel()));
+        container.addMessageListener((message, pattern) -> {
+            Object value = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            tokenGenerationCache.onMessage(value != null ? value.toString() : null);
+        }, new ChannelTopic(RedisKeys.getTokenGenerationChannel()));
+        container.addMessageListener((message, pattern) -> {
+            Object value = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            deviceCheckinCache.onMessage(value != null ? value.toString() : null);
+        }, new ChannelTopic(RedisKeys.getDeviceCheckinInvalidateChannel()));
+    }
+}
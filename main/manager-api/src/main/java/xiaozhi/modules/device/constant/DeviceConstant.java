@@ -60,6 +60,21 @@ public class DeviceConstant {
         public static final int YES = 1;
     }
     
+    /**
+     * 固件状态
+     */
+    public static class FirmwareStatus {
+        /**
+         * 停用
+         */
+        public static final int DISABLED = 0;
+        
+        /**
+         * 启用
+         */
+        public static final int ENABLED = 1;
+    }
+    
     /**
      * 激活码有效期（分钟）
      */
@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 import xiaozhi.common.page.PageData;
 import xiaozhi.common.utils.Result;
+import xiaozhi.modules.device.cache.TokenGenerationCache;
+import xiaozhi.modules.device.cache.TokenRevocationFilter;
 import xiaozhi.modules.device.constant.DeviceConstant;
 import xiaozhi.modules.device.dto.AccessTokenDTO;
 import xiaozhi.modules.device.service.AccessTokenService;
@@ -22,6 +24,8 @@ import java.util.Map;
 public class AccessTokenController {
 
     private final AccessTokenService accessTokenService;
+    private final TokenRevocationFilter tokenRevocationFilter;
+    private final TokenGenerationCache tokenGenerationCache;
 
     @GetMapping("page")
     @Operation(summary = "令牌分頁查詢")
@@ -54,6 +58,18 @@ public class AccessTokenController {
         return new Result<AccessTokenDTO>().ok(result);
     }
 
+    @GetMapping("revocation/stats")
+    @Operation(summary = "令牌撤銷過濾器統計")
+    public Result<Map<String, Object>> revocationStats() {
+        return new Result<Map<String, Object>>().ok(tokenRevocationFilter.getStats());
+    }
+
+    @GetMapping("generation/stats")
+    @Operation(summary = "令牌代數緩存統計")
+    public Result<Map<String, Object>> generationStats() {
+        return new Result<Map<String, Object>>().ok(tokenGenerationCache.getStats());
+    }
+
     @PostMapping("revoke/{id}")
     @Operation(summary = "撤銷令牌")
     public Result revoke(@PathVariable("id") Long id) {
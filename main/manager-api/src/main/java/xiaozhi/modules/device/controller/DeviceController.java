@@ -6,11 +6,16 @@ import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 import xiaozhi.common.page.PageData;
 import xiaozhi.common.utils.Result;
+import xiaozhi.modules.device.activation.ActivationCodeAllocator;
+import xiaozhi.modules.device.cache.DeviceCheckinCache;
 import xiaozhi.modules.device.constant.DeviceConstant;
 import xiaozhi.modules.device.dto.DeviceDTO;
+import xiaozhi.modules.device.ota.WebsocketBackendPool;
 import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.device.task.ExpirySweeper;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -23,6 +28,10 @@ import java.util.Map;
 public class DeviceController {
 
     private final DeviceService deviceService;
+    private final DeviceCheckinCache deviceCheckinCache;
+    private final WebsocketBackendPool websocketBackendPool;
+    private final ActivationCodeAllocator activationCodeAllocator;
+    private final ExpirySweeper expirySweeper;
 
     @GetMapping("page")
     @Operation(summary = "设备分页查询")
@@ -85,6 +94,30 @@ public class DeviceController {
         return new Result();
     }
 
+    @GetMapping("checkin/stats")
+    @Operation(summary = "OTA签到缓存统计")
+    public Result<Map<String, Object>> checkinStats() {
+        return new Result<Map<String, Object>>().ok(deviceCheckinCache.getStats());
+    }
+
+    @GetMapping("websocket/backends")
+    @Operation(summary = "WebSocket后端负载统计")
+    public Result<List<Map<String, Object>>> websocketBackends() {
+        return new Result<List<Map<String, Object>>>().ok(websocketBackendPool.getStats());
+    }
+
+    @GetMapping("activation/stats")
+    @Operation(summary = "激活码分配统计")
+    public Result<Map<String, Object>> activationStats() {
+        return new Result<Map<String, Object>>().ok(activationCodeAllocator.getStats());
+    }
+
+    @GetMapping("sweep/stats")
+    @Operation(summary = "过期数据清理进度")
+    public Result<Map<String, Object>> sweepStats() {
+        return new Result<Map<String, Object>>().ok(expirySweeper.getStats());
+    }
+
     @DeleteMapping
     @Operation(summary = "删除设备")
     public Result delete(@RequestBody Long[] ids) {
@@ -0,0 +1,159 @@
+package xiaozhi.modules.device.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import xiaozhi.common.page.PageData;
+import xiaozhi.common.utils.Result;
+import xiaozhi.modules.device.constant.DeviceConstant;
+import xiaozhi.modules.device.dto.FirmwareDTO;
+import xiaozhi.modules.device.firmware.FirmwareRolloutScheduler;
+import xiaozhi.modules.device.firmware.FirmwareStorage;
+import xiaozhi.modules.device.firmware.FirmwareVersion;
+import xiaozhi.modules.device.service.FirmwareService;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 固件目录控制器
+ */
+@RestController
+@RequestMapping("/firmware")
+@Tag(name = "固件管理")
+@AllArgsConstructor
+public class FirmwareController {
+
+    private final FirmwareService firmwareService;
+    private final FirmwareStorage firmwareStorage;
+
+    @GetMapping("page")
+    @Operation(summary = "固件分页查询")
+    public Result<PageData<FirmwareDTO>> page(@RequestParam Map<String, Object> params) {
+        PageData<FirmwareDTO> page = firmwareService.page(params);
+        return new Result<PageData<FirmwareDTO>>().ok(page);
+    }
+
+    @GetMapping("{id}")
+    @Operation(summary = "获取固件详情")
+    public Result<FirmwareDTO> get(@PathVariable("id") Long id) {
+        FirmwareDTO firmware = firmwareService.get(id);
+        return new Result<FirmwareDTO>().ok(firmware);
+    }
+
+    @PostMapping
+    @Operation(summary = "发布固件")
+    public Result save(@RequestBody FirmwareDTO dto) {
+        String error = validate(dto);
+        if (error != null) {
+            return new Result().error(error);
+        }
+
+        if (dto.getStatus() == null) {
+            dto.setStatus(DeviceConstant.FirmwareStatus.ENABLED);
+        }
+        if (dto.getRolloutPercentage() == null) {
+            dto.setRolloutPercentage(100);
+        }
+        firmwareService.save(dto);
+
+        return new Result().ok(dto);
+    }
+
+    @PostMapping("upload")
+    @Operation(summary = "上传并发布固件")
+    public Result upload(@RequestParam("deviceType") String deviceType,
+                         @RequestParam("version") String version,
+                         @RequestParam(value = "rolloutPlan", required = false) String rolloutPlan,
+                         @RequestParam(value = "rolloutIntervalMinutes", required = false) Integer rolloutIntervalMinutes,
+                         @RequestParam("file") MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            return new Result().error("固件文件不能为空");
+        }
+        if (firmwareStorage.resolve(deviceType, version) == null) {
+            return new Result().error("设备类型或版本号包含非法字符");
+        }
+
+        FirmwareDTO dto = new FirmwareDTO();
+        dto.setDeviceType(deviceType);
+        dto.setVersion(version);
+        dto.setRolloutPlan(rolloutPlan);
+        dto.setRolloutIntervalMinutes(rolloutIntervalMinutes);
+        dto.setUrl(firmwareStorage.getDownloadUrl(deviceType, version));
+        String error = validate(dto);
+        if (error != null) {
+            return new Result().error(error);
+        }
+
+        // 已发布的版本不允许覆盖，正在下载的设备会拿到与校验和不一致的文件
+        if (firmwareService.exists(deviceType, version)) {
+            return new Result().error("该版本固件已存在");
+        }
+
+        // 保存文件到本地存储目录，由本服务提供下载
+        FirmwareStorage.StoredFirmware stored = firmwareStorage.stage(deviceType, version, file);
+        try {
+            dto.setSize(stored.getSize());
+            dto.setChecksum(stored.getChecksum());
+            dto.setStatus(DeviceConstant.FirmwareStatus.ENABLED);
+            dto.setRolloutPercentage(100);
+            firmwareService.upload(dto, stored);
+        } finally {
+            firmwareStorage.discard(stored);
+        }
+
+        return new Result().ok(dto);
+    }
+
+    @PutMapping
+    @Operation(summary = "更新固件")
+    public Result update(@RequestBody FirmwareDTO dto) {
+        if (dto.getId() == null) {
+            return new Result().error("固件ID不能为空");
+        }
+        String error = validate(dto);
+        if (error != null) {
+            return new Result().error(error);
+        }
+
+        firmwareService.update(dto);
+
+        return new Result();
+    }
+
+    @DeleteMapping
+    @Operation(summary = "删除固件")
+    public Result delete(@RequestBody Long[] ids) {
+        firmwareService.delete(ids);
+        return new Result();
+    }
+
+    /**
+     * 校验固件参数
+     *
+     * @return 错误信息，校验通过返回null
+     */
+    private String validate(FirmwareDTO dto) {
+        if (dto.getDeviceType() == null || dto.getDeviceType().isEmpty()) {
+            return "设备类型不能为空";
+        }
+        if (!FirmwareVersion.isOrdered(dto.getVersion())) {
+            return "固件版本号格式错误，预发布标签只支持alpha、beta、rc";
+        }
+        if (dto.getUrl() == null || dto.getUrl().isEmpty()) {
+            return "固件下载地址不能为空";
+        }
+        if (dto.getRolloutPercentage() != null
+                && (dto.getRolloutPercentage() < 0 || dto.getRolloutPercentage() > 100)) {
+            return "发布比例必须在0-100之间";
+        }
+        try {
+            FirmwareRolloutScheduler.parsePlan(dto.getRolloutPlan());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,201 @@
+package xiaozhi.modules.device.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import xiaozhi.modules.device.firmware.FirmwareCatalog;
+import xiaozhi.modules.device.firmware.FirmwareRelease;
+import xiaozhi.modules.device.firmware.FirmwareStorage;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 固件下载控制器
+ * 从磁盘直接发送固件文件：Tomcat支持时使用sendfile零拷贝，否则通过FileChannel.transferTo分段发送，
+ * 文件内容不经过堆内存。支持Range断点续传和ETag/If-None-Match缓存校验
+ */
+@RestController
+@RequestMapping(FirmwareStorage.DOWNLOAD_PATH)
+@Tag(name = "固件下载")
+@AllArgsConstructor
+@Slf4j
+public class FirmwareDownloadController {
+    /**
+     * Tomcat sendfile相关请求属性
+     */
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private final FirmwareCatalog firmwareCatalog;
+    private final FirmwareStorage firmwareStorage;
+
+    /**
+     * 下载固件
+     * 只能下载固件目录中已启用的固件
+     *
+     * @param deviceType 设备类型
+     * @param fileName   文件名：{版本号}.bin
+     */
+    @GetMapping("{deviceType}/{fileName:.+}")
+    @Operation(summary = "下载固件")
+    public void download(@PathVariable("deviceType") String deviceType,
+                         @PathVariable("fileName") String fileName,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        if (!fileName.endsWith(FirmwareStorage.FILE_EXTENSION)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String version = fileName.substring(0, fileName.length() - FirmwareStorage.FILE_EXTENSION.length());
+        FirmwareRelease release = firmwareCatalog.getIndex().find(deviceType, version);
+        Path path = release != null ? firmwareStorage.resolve(deviceType, version) : null;
+        if (path == null || !Files.isRegularFile(path)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long fileSize = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = release.getChecksum() != null && !release.getChecksum().isEmpty()
+                ? "\"" + release.getChecksum() + "\""
+                : "\"" + Long.toHexString(fileSize) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader("ETag", etag);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setDateHeader("Last-Modified", lastModified);
+
+        // 缓存校验
+        if (matchesEtag(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        // 断点续传，If-Range与当前文件不一致时返回完整文件
+        long start = 0;
+        long end = fileSize - 1;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] parsed = parseRange(range, fileSize);
+            if (parsed == null) {
+                response.setHeader("Content-Range", "bytes */" + fileSize);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (parsed.length == 2) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + fileSize);
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType("application/octet-stream");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // 交给Tomcat在请求结束后以sendfile方式发送
+            request.setAttribute(SENDFILE_FILENAME_ATTR, path.toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        } catch (IOException e) {
+            // 设备断开连接，下次通过Range续传
+            log.debug("固件下载中断: {}/{}，{}", deviceType, fileName, e.getMessage());
+        }
+    }
+
+    /**
+     * 判断If-None-Match是否与当前ETag一致
+     */
+    private boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if ("*".equals(value) || etag.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析单段Range请求头
+     *
+     * @return [start, end]；多段或格式无法识别时返回空数组（按完整文件返回）；范围无法满足返回null
+     */
+    private long[] parseRange(String range, long fileSize) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                // 后缀范围：最后N个字节
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, fileSize - suffix);
+                end = fileSize - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? fileSize - 1 : Long.parseLong(spec.substring(dash + 1));
+                end = Math.min(end, fileSize - 1);
+            }
+            if (start >= fileSize || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -6,16 +6,27 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import xiaozhi.common.annotation.LogOperation;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.utils.Result;
 import xiaozhi.modules.device.config.OtaConfig;
 import xiaozhi.modules.device.dto.OtaRequestDTO;
 import xiaozhi.modules.device.dto.OtaResponseDTO;
+import xiaozhi.modules.device.dto.WebsocketBackendReportDTO;
+import xiaozhi.modules.device.ota.WebsocketBackendPool;
 import xiaozhi.modules.device.service.OtaService;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * OTA控制器
  * 处理设备OTA请求，返回设备状态信息
@@ -26,10 +37,19 @@ import xiaozhi.modules.device.service.OtaService;
 @AllArgsConstructor
 @Slf4j
 public class OtaController {
+    /**
+     * 批量请求单次允许的最大设备数
+     */
+    private static final int MAX_BATCH_SIZE = 2000;
+    /**
+     * 批量请求每块处理的设备数
+     */
+    private static final int CHUNK_SIZE = 500;
 
     private final OtaService otaService;
     private final OtaConfig otaConfig;
     private final ObjectMapper objectMapper;
+    private final WebsocketBackendPool websocketBackendPool;
 
     /**
      * 处理设备OTA请求
@@ -54,18 +74,72 @@ public class OtaController {
             return otaService.processOtaRequest(request);
         } catch (Exception e) {
             log.error("处理OTA请求时发生错误", e);
-            // 返回空响应
-            OtaResponseDTO emptyResponse = new OtaResponseDTO();
-            // 确保即使发生错误，仍然添加服务器时间和空的固件信息
-            emptyResponse.addServerTime(System.currentTimeMillis(), 
-                    java.util.TimeZone.getDefault().getRawOffset() / (60 * 1000));
-            
-            // 添加空的固件信息
-            String currentVersion = request != null && request.getFirmwareVersion() != null 
-                    ? request.getFirmwareVersion() : "unknown";
-            emptyResponse.addFirmware(currentVersion, "");
-            
-            return emptyResponse;
+            // 返回空响应，确保即使发生错误，仍然包含服务器时间和空的固件信息
+            return otaService.createEmptyResponse(request);
+        }
+    }
+
+    /**
+     * 批量处理设备OTA请求
+     * 供代理多台设备的网关使用，响应顺序与请求顺序一致，单次最多{@link #MAX_BATCH_SIZE}台设备
+     *
+     * @param requests OTA请求DTO列表
+     * @return OTA响应对象列表，超过数量上限时返回400
+     */
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_JSON_VALUE + ";charset=UTF-8")
+    @Operation(summary = "批量设备OTA请求")
+    @LogOperation("批量设备OTA请求")
+    public ResponseEntity<List<OtaResponseDTO>> handleOtaRequests(@RequestBody List<OtaRequestDTO> requests) {
+        log.info("接收到批量OTA请求，数量: {}", requests.size());
+        // 接口无需认证，限制单次数量，避免一个请求占用大量数据库和内存
+        if (requests.size() > MAX_BATCH_SIZE) {
+            log.warn("批量OTA请求数量超过上限: {} > {}", requests.size(), MAX_BATCH_SIZE);
+            return ResponseEntity.badRequest().build();
+        }
+
+        // 按块处理，避免IN查询过长；某块失败时只有该块返回空响应，已处理的块保留实际结果
+        List<OtaResponseDTO> responses = new ArrayList<>(requests.size());
+        for (int from = 0; from < requests.size(); from += CHUNK_SIZE) {
+            List<OtaRequestDTO> chunk = requests.subList(from, Math.min(from + CHUNK_SIZE, requests.size()));
+            try {
+                responses.addAll(otaService.processOtaRequests(chunk));
+            } catch (Exception e) {
+                log.error("处理批量OTA请求时发生错误，序号: {}-{}", from, from + chunk.size() - 1, e);
+                // 与单个请求一致，每台设备返回服务器时间和空的固件信息
+                for (OtaRequestDTO request : chunk) {
+                    responses.add(otaService.createEmptyResponse(request));
+                }
+            }
+        }
+        return ResponseEntity.ok(responses);
+    }
+
+    /**
+     * WebSocket后端上报实时连接数
+     *
+     * @param secret 上报密钥
+     * @param report 上报内容
+     * @return 结果
+     */
+    @PostMapping("/backend/report")
+    @Operation(summary = "WebSocket后端上报连接数")
+    public Result<Void> reportBackend(@RequestHeader(value = "X-Report-Secret", required = false) String secret,
+                                      @RequestBody WebsocketBackendReportDTO report) {
+        String reportSecret = otaConfig.getReportSecret();
+        if (reportSecret == null || reportSecret.isEmpty()) {
+            return new Result<Void>().error(ErrorCode.UNAUTHORIZED, "未配置上报密钥");
+        }
+        // 常量时间比较，避免按响应时间逐字节猜测密钥
+        if (secret == null || !MessageDigest.isEqual(reportSecret.getBytes(StandardCharsets.UTF_8),
+                secret.getBytes(StandardCharsets.UTF_8))) {
+            return new Result<Void>().error(ErrorCode.UNAUTHORIZED, "上报密钥错误");
+        }
+        if (report.getServer() == null || report.getPort() == null || report.getConnections() == null) {
+            return new Result<Void>().error("server、port、connections不能为空");
+        }
+        if (!websocketBackendPool.report(report.getServer(), report.getPort(), report.getConnections())) {
+            return new Result<Void>().error("未配置的WebSocket后端");
         }
+        return new Result<>();
     }
-} 
\ No newline at end of file
+}
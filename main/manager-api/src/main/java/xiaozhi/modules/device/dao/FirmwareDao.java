@@ -0,0 +1,13 @@
+package xiaozhi.modules.device.dao;
+
+import org.apache.ibatis.annotations.Mapper;
+import xiaozhi.common.dao.BaseDao;
+import xiaozhi.modules.device.entity.FirmwareEntity;
+
+/**
+ * 固件DAO接口
+ */
+@Mapper
+public interface FirmwareDao extends BaseDao<FirmwareEntity> {
+    
+}
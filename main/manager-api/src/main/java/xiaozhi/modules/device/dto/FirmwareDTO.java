@@ -0,0 +1,78 @@
+package xiaozhi.modules.device.dto;
+
+import lombok.Data;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 固件DTO
+ */
+@Data
+public class FirmwareDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * id
+     */
+    private Long id;
+
+    /**
+     * 设备类型
+     */
+    private String deviceType;
+
+    /**
+     * 固件版本（语义化版本号）
+     */
+    private String version;
+
+    /**
+     * 固件下载地址
+     */
+    private String url;
+
+    /**
+     * 固件大小（字节）
+     */
+    private Long size;
+
+    /**
+     * 固件校验和
+     */
+    private String checksum;
+
+    /**
+     * 发布比例：0-100
+     */
+    private Integer rolloutPercentage;
+
+    /**
+     * 分批发布计划，逗号分隔的发布比例，如1,10,50,100
+     */
+    private String rolloutPlan;
+
+    /**
+     * 批次间隔（分钟）
+     */
+    private Integer rolloutIntervalMinutes;
+
+    /**
+     * 下一批次开始时间
+     */
+    private Date rolloutNextTime;
+
+    /**
+     * 状态：0-停用 1-启用
+     */
+    private Integer status;
+
+    /**
+     * 创建时间
+     */
+    private Date createDate;
+
+    /**
+     * 更新时间
+     */
+    private Date updateDate;
+}
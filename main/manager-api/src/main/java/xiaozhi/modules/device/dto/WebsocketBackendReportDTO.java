@@ -0,0 +1,29 @@
+package xiaozhi.modules.device.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * WebSocket后端连接数上报数据传输对象
+ * xiaozhi-server定期上报自身的实时连接数，用于OTA分配WebSocket后端
+ */
+@Data
+public class WebsocketBackendReportDTO implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * WebSocket服务器地址，需与配置的后端一致
+     */
+    private String server;
+
+    /**
+     * WebSocket服务器端口
+     */
+    private Integer port;
+
+    /**
+     * 当前连接数
+     */
+    private Long connections;
+}
@@ -24,6 +24,11 @@ public class AccessTokenEntity extends BaseEntity {
      */
     private String token;
 
+    /**
+     * 令牌SHA-256摘要，用于按令牌查询
+     */
+    private String tokenHash;
+
     /**
      * 是否已撤销：0-否 1-是
      */
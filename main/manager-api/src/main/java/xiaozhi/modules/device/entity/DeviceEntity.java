@@ -44,6 +44,11 @@ public class DeviceEntity extends BaseEntity {
      */
     private Long userId;
 
+    /**
+     * 令牌代数，撤销设备所有令牌时加一
+     */
+    private Integer tokenGeneration;
+
     /**
      * 更新时间
      */
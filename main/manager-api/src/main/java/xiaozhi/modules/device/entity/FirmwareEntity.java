@@ -0,0 +1,71 @@
+package xiaozhi.modules.device.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import xiaozhi.common.entity.BaseEntity;
+
+import java.util.Date;
+
+/**
+ * 固件实体
+ */
+@Data
+@EqualsAndHashCode(callSuper=false)
+@TableName("t_firmware")
+public class FirmwareEntity extends BaseEntity {
+    /**
+     * 设备类型
+     */
+    private String deviceType;
+
+    /**
+     * 固件版本（语义化版本号）
+     */
+    private String version;
+
+    /**
+     * 固件下载地址
+     */
+    private String url;
+
+    /**
+     * 固件大小（字节）
+     */
+    private Long size;
+
+    /**
+     * 固件校验和
+     */
+    private String checksum;
+
+    /**
+     * 发布比例：0-100
+     */
+    private Integer rolloutPercentage;
+
+    /**
+     * 分批发布计划，逗号分隔的发布比例，如1,10,50,100
+     */
+    private String rolloutPlan;
+
+    /**
+     * 批次间隔（分钟）
+     */
+    private Integer rolloutIntervalMinutes;
+
+    /**
+     * 下一批次开始时间
+     */
+    private Date rolloutNextTime;
+
+    /**
+     * 状态：0-停用 1-启用
+     */
+    private Integer status;
+
+    /**
+     * 更新时间
+     */
+    private Date updateDate;
+}
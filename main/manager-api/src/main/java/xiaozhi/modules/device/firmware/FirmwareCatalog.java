@@ -0,0 +1,67 @@
+package xiaozhi.modules.device.firmware;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import xiaozhi.modules.device.constant.DeviceConstant;
+import xiaozhi.modules.device.dao.FirmwareDao;
+import xiaozhi.modules.device.entity.FirmwareEntity;
+
+import java.util.List;
+
+/**
+ * 固件目录
+ * 持有当前的固件版本索引，启动时和目录变更时从数据库重建，
+ * 并定时刷新以同步其他节点的修改
+ */
+@Slf4j
+@Component
+public class FirmwareCatalog implements CommandLineRunner {
+
+    private final FirmwareDao firmwareDao;
+
+    private volatile FirmwareVersionIndex index = FirmwareVersionIndex.EMPTY;
+
+    public FirmwareCatalog(FirmwareDao firmwareDao) {
+        this.firmwareDao = firmwareDao;
+    }
+
+    @Override
+    public void run(String... args) {
+        reload();
+    }
+
+    /**
+     * 每5分钟刷新一次固件目录
+     */
+    @Scheduled(fixedDelay = 5 * 60 * 1000L, initialDelay = 5 * 60 * 1000L)
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * 从数据库重建固件版本索引
+     */
+    public void reload() {
+        try {
+            List<FirmwareEntity> firmwares = firmwareDao.selectList(
+                    new LambdaQueryWrapper<FirmwareEntity>()
+                            .eq(FirmwareEntity::getStatus, DeviceConstant.FirmwareStatus.ENABLED)
+            );
+            FirmwareVersionIndex newIndex = FirmwareVersionIndex.build(firmwares);
+            index = newIndex;
+            log.info("固件目录加载完成，设备类型: {}，固件数: {}", newIndex.getDeviceTypeCount(), newIndex.getReleaseCount());
+        } catch (Exception e) {
+            log.error("固件目录加载失败，继续使用现有索引", e);
+        }
+    }
+
+    /**
+     * 获取当前固件版本索引
+     */
+    public FirmwareVersionIndex getIndex() {
+        return index;
+    }
+}
@@ -0,0 +1,62 @@
+package xiaozhi.modules.device.firmware;
+
+import xiaozhi.modules.device.entity.FirmwareEntity;
+
+/**
+ * 已发布固件（不可变）
+ * 由固件目录加载时预先解析版本号，OTA请求时直接使用
+ */
+public final class FirmwareRelease {
+    private final Long id;
+    private final String deviceType;
+    private final String version;
+    private final long versionCode;
+    private final String url;
+    private final Long size;
+    private final String checksum;
+    private final int rolloutPercentage;
+
+    public FirmwareRelease(FirmwareEntity entity) {
+        this.id = entity.getId();
+        this.deviceType = entity.getDeviceType();
+        this.version = entity.getVersion();
+        this.versionCode = FirmwareVersion.encode(entity.getVersion());
+        this.url = entity.getUrl();
+        this.size = entity.getSize();
+        this.checksum = entity.getChecksum();
+        Integer percentage = entity.getRolloutPercentage();
+        this.rolloutPercentage = percentage == null ? 100 : Math.max(0, Math.min(100, percentage));
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getDeviceType() {
+        return deviceType;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public long getVersionCode() {
+        return versionCode;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public int getRolloutPercentage() {
+        return rolloutPercentage;
+    }
+}
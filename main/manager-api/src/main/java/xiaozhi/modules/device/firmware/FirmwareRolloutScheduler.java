@@ -0,0 +1,166 @@
+package xiaozhi.modules.device.firmware;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import xiaozhi.modules.device.constant.DeviceConstant;
+import xiaozhi.modules.device.dao.FirmwareDao;
+import xiaozhi.modules.device.dto.FirmwareDTO;
+import xiaozhi.modules.device.entity.FirmwareEntity;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 固件分批发布调度器
+ * 按发布计划定时推进固件的发布比例，避免新固件发布后全部设备同时下载
+ */
+@Slf4j
+@Component
+public class FirmwareRolloutScheduler {
+
+    private final FirmwareDao firmwareDao;
+    private final FirmwareCatalog firmwareCatalog;
+
+    public FirmwareRolloutScheduler(FirmwareDao firmwareDao, FirmwareCatalog firmwareCatalog) {
+        this.firmwareDao = firmwareDao;
+        this.firmwareCatalog = firmwareCatalog;
+    }
+
+    /**
+     * 初始化固件的发布批次
+     * 配置了发布计划的固件从第一批开始，未配置的按原发布比例处理
+     *
+     * @param dto 固件DTO
+     */
+    public void initRollout(FirmwareDTO dto) {
+        int[] plan = parsePlan(dto.getRolloutPlan());
+        if (plan.length == 0) {
+            dto.setRolloutPlan(null);
+            dto.setRolloutNextTime(null);
+            return;
+        }
+        dto.setRolloutPercentage(plan[0]);
+        dto.setRolloutNextTime(plan[0] < 100 ? nextTime(dto.getRolloutIntervalMinutes()) : null);
+    }
+
+    /**
+     * 更新固件时重新计算发布批次
+     * 发布计划变化时从第一批重新开始；只修改批次间隔时按新间隔重新计算下一批次的时间
+     *
+     * @param dto     固件DTO，未传发布计划表示不修改
+     * @param current 数据库中的固件
+     * @return 发布计划或下一批次时间是否变化
+     */
+    public boolean updateRollout(FirmwareDTO dto, FirmwareEntity current) {
+        if (dto.getRolloutPlan() != null
+                && !Arrays.equals(parsePlan(dto.getRolloutPlan()), parsePlan(current.getRolloutPlan()))) {
+            initRollout(dto);
+            return true;
+        }
+        Integer interval = dto.getRolloutIntervalMinutes();
+        if (interval != null && !interval.equals(current.getRolloutIntervalMinutes())
+                && current.getRolloutNextTime() != null) {
+            dto.setRolloutPlan(current.getRolloutPlan());
+            dto.setRolloutNextTime(nextTime(interval));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 每分钟检查一次需要推进的发布批次
+     */
+    @Scheduled(cron = "0 * * * * ?")
+    public void advanceRollouts() {
+        Date now = new Date();
+        List<FirmwareEntity> firmwares = firmwareDao.selectList(
+                new LambdaQueryWrapper<FirmwareEntity>()
+                        .eq(FirmwareEntity::getStatus, DeviceConstant.FirmwareStatus.ENABLED)
+                        .lt(FirmwareEntity::getRolloutPercentage, 100)
+                        .le(FirmwareEntity::getRolloutNextTime, now)
+        );
+
+        int advanced = 0;
+        for (FirmwareEntity firmware : firmwares) {
+            if (advance(firmware)) {
+                advanced++;
+            }
+        }
+
+        if (advanced > 0) {
+            firmwareCatalog.reload();
+        }
+    }
+
+    /**
+     * 推进单个固件到下一批次
+     * 以当前发布比例作为条件更新，多个节点同时执行时只有一个会成功
+     *
+     * @return 是否推进成功
+     */
+    private boolean advance(FirmwareEntity firmware) {
+        int current = firmware.getRolloutPercentage() == null ? 0 : firmware.getRolloutPercentage();
+        int next = 100;
+        for (int percentage : parsePlan(firmware.getRolloutPlan())) {
+            if (percentage > current) {
+                next = percentage;
+                break;
+            }
+        }
+        Date nextTime = next < 100 ? nextTime(firmware.getRolloutIntervalMinutes()) : null;
+
+        int rows = firmwareDao.update(null, new LambdaUpdateWrapper<FirmwareEntity>()
+                .eq(FirmwareEntity::getId, firmware.getId())
+                .eq(FirmwareEntity::getRolloutPercentage, current)
+                .set(FirmwareEntity::getRolloutPercentage, next)
+                .set(FirmwareEntity::getRolloutNextTime, nextTime)
+                .set(FirmwareEntity::getUpdateDate, new Date()));
+        if (rows > 0) {
+            log.info("固件发布推进，设备类型: {}，版本: {}，发布比例: {}% -> {}%",
+                    firmware.getDeviceType(), firmware.getVersion(), current, next);
+        }
+        return rows > 0;
+    }
+
+    /**
+     * 解析发布计划，返回递增的发布比例，最后一批补齐到100
+     *
+     * @param plan 逗号分隔的发布比例
+     * @return 发布比例数组，未配置计划返回空数组
+     */
+    public static int[] parsePlan(String plan) {
+        if (plan == null || plan.isBlank()) {
+            return new int[0];
+        }
+        String[] parts = plan.split(",");
+        int[] steps = new int[parts.length + 1];
+        int count = 0;
+        int last = 0;
+        for (String part : parts) {
+            int percentage;
+            try {
+                percentage = Integer.parseInt(part.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("发布计划格式错误: " + plan);
+            }
+            if (percentage <= last || percentage > 100) {
+                throw new IllegalArgumentException("发布计划必须是递增的0-100之间的比例: " + plan);
+            }
+            steps[count++] = percentage;
+            last = percentage;
+        }
+        if (last < 100) {
+            steps[count++] = 100;
+        }
+        return Arrays.copyOf(steps, count);
+    }
+
+    private Date nextTime(Integer intervalMinutes) {
+        int minutes = intervalMinutes == null || intervalMinutes <= 0 ? 60 : intervalMinutes;
+        return new Date(System.currentTimeMillis() + minutes * 60 * 1000L);
+    }
+}
@@ -0,0 +1,179 @@
+package xiaozhi.modules.device.firmware;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import xiaozhi.modules.device.config.FirmwareProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * 固件文件存储
+ * 固件文件按 {存储目录}/{设备类型}/{版本号}.bin 保存
+ */
+@Slf4j
+@Component
+public class FirmwareStorage {
+    /**
+     * 固件下载接口路径
+     */
+    public static final String DOWNLOAD_PATH = "/ota/firmware";
+    /**
+     * 固件文件扩展名
+     */
+    public static final String FILE_EXTENSION = ".bin";
+
+    /**
+     * 允许作为路径的设备类型和版本号，防止路径穿越
+     */
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._+-]{0,63}");
+
+    private final FirmwareProperties firmwareProperties;
+    private final Path root;
+
+    public FirmwareStorage(FirmwareProperties firmwareProperties) {
+        this.firmwareProperties = firmwareProperties;
+        this.root = Paths.get(firmwareProperties.getStoragePath()).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 获取固件文件路径
+     *
+     * @param deviceType 设备类型
+     * @param version    固件版本
+     * @return 文件路径，名称不合法返回null
+     */
+    public Path resolve(String deviceType, String version) {
+        if (!isSafeName(deviceType) || !isSafeName(version)) {
+            return null;
+        }
+        Path path = root.resolve(deviceType).resolve(version + FILE_EXTENSION).normalize();
+        return path.startsWith(root) ? path : null;
+    }
+
+    /**
+     * 获取固件下载地址
+     *
+     * @param deviceType 设备类型
+     * @param version    固件版本
+     * @return 下载地址
+     */
+    public String getDownloadUrl(String deviceType, String version) {
+        String baseUrl = firmwareProperties.getDownloadBaseUrl();
+        if (baseUrl.endsWith("/")) {
+            baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+        }
+        return baseUrl + DOWNLOAD_PATH + "/" + deviceType + "/" + version + FILE_EXTENSION;
+    }
+
+    /**
+     * 将上传的固件文件写入临时文件，同时计算大小和SHA-256校验和
+     * 临时文件在写入数据库成功后由 {@link #publish} 替换到正式路径，失败时由 {@link #discard} 删除，
+     * 上传失败或版本冲突时不会覆盖正在使用的固件文件
+     *
+     * @param deviceType 设备类型
+     * @param version    固件版本
+     * @param file       上传的文件
+     * @return 保存结果
+     */
+    public StoredFirmware stage(String deviceType, String version, MultipartFile file) throws IOException {
+        Path target = resolve(deviceType, version);
+        if (target == null) {
+            throw new IllegalArgumentException("设备类型或版本号包含非法字符");
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), version, ".tmp");
+        try {
+            file.transferTo(temp);
+            String checksum = sha256(temp);
+            long size = Files.size(temp);
+            return new StoredFirmware(size, checksum, getDownloadUrl(deviceType, version), temp, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * 将临时文件原子替换到正式路径，正在下载旧文件的设备不受影响
+     *
+     * @param stored 保存结果
+     */
+    public void publish(StoredFirmware stored) throws IOException {
+        Files.move(stored.getTemp(), stored.getTarget(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("固件文件已保存: {}，大小: {}，SHA-256: {}", stored.getTarget(), stored.getSize(), stored.getChecksum());
+    }
+
+    /**
+     * 删除未发布的临时文件，已发布时不做处理
+     *
+     * @param stored 保存结果
+     */
+    public void discard(StoredFirmware stored) {
+        try {
+            Files.deleteIfExists(stored.getTemp());
+        } catch (IOException e) {
+            log.warn("删除固件临时文件失败: {}", stored.getTemp(), e);
+        }
+    }
+
+    private boolean isSafeName(String name) {
+        return name != null && SAFE_NAME.matcher(name).matches() && !name.contains("..");
+    }
+
+    private String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 固件文件保存结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class StoredFirmware {
+        /**
+         * 文件大小（字节）
+         */
+        private final long size;
+        /**
+         * SHA-256校验和
+         */
+        private final String checksum;
+        /**
+         * 下载地址
+         */
+        private final String url;
+        /**
+         * 临时文件路径
+         */
+        private final Path temp;
+        /**
+         * 正式文件路径
+         */
+        private final Path target;
+    }
+}
@@ -0,0 +1,160 @@
+package xiaozhi.modules.device.firmware;
+
+/**
+ * 固件版本号工具类
+ * 将语义化版本号（major.minor.patch[-prerelease]）编码为可直接比较大小的long值
+ */
+public final class FirmwareVersion {
+    /**
+     * 无法识别的版本号
+     */
+    public static final long UNKNOWN = -1L;
+
+    /**
+     * 每段版本号占用位数
+     */
+    private static final int PART_BITS = 16;
+    private static final long PART_MAX = (1L << PART_BITS) - 1;
+    /**
+     * 预发布标识占用位数，高位为标签等级，低位为标签后的序号
+     */
+    private static final int PRE_BITS = 14;
+    private static final int PRE_NUMBER_BITS = 10;
+    private static final int PRE_NUMBER_MAX = (1 << PRE_NUMBER_BITS) - 1;
+    /**
+     * 正式版本的预发布标识取最大值，大于同号的所有预发布版本
+     */
+    private static final long RELEASE = (1L << PRE_BITS) - 1;
+    /**
+     * 可排序的预发布标签，按数组顺序由小到大，未列出的标签排在最前
+     */
+    private static final String[][] PRE_TAGS = {
+            {"alpha", "a"},
+            {"beta", "b"},
+            {"rc"}
+    };
+
+    private FirmwareVersion() {
+    }
+
+    /**
+     * 编码版本号，预发布版本小于同号正式版本，并按 alpha &lt; beta &lt; rc 和标签后的序号排序，
+     * 例如 1.0.0-alpha &lt; 1.0.0-beta.1 &lt; 1.0.0-beta.2 &lt; 1.0.0-rc1 &lt; 1.0.0；
+     * 无法识别的预发布标签排在同号的已知标签之前
+     *
+     * @param version 版本号，允许带v前缀，缺失的段按0处理
+     * @return 编码后的版本值，无法识别返回{@link #UNKNOWN}
+     */
+    public static long encode(String version) {
+        return encode(version, false);
+    }
+
+    /**
+     * 判断版本号能否与其他版本区分大小，发布到固件目录的版本号需满足该条件，
+     * 否则使用未知预发布标签的多个版本编码后相等，无法确定哪个更新
+     *
+     * @param version 版本号
+     * @return 可识别且预发布标签可排序返回true
+     */
+    public static boolean isOrdered(String version) {
+        return encode(version, true) != UNKNOWN;
+    }
+
+    private static long encode(String version, boolean strict) {
+        if (version == null) {
+            return UNKNOWN;
+        }
+        int length = version.length();
+        int i = 0;
+        if (i < length && (version.charAt(i) == 'v' || version.charAt(i) == 'V')) {
+            i++;
+        }
+
+        long code = 0;
+        int parts = 0;
+        boolean digits = false;
+        long part = 0;
+        long preRelease = RELEASE;
+        for (; i < length; i++) {
+            char c = version.charAt(i);
+            if (c >= '0' && c <= '9') {
+                part = Math.min(part * 10 + (c - '0'), PART_MAX);
+                digits = true;
+            } else if (c == '.' && digits && parts < 2) {
+                code = (code << PART_BITS) | part;
+                parts++;
+                part = 0;
+                digits = false;
+            } else if ((c == '-' || c == '+') && digits) {
+                if (c == '-') {
+                    int end = version.indexOf('+', i + 1);
+                    preRelease = encodePreRelease(version.substring(i + 1, end < 0 ? length : end), strict);
+                    if (preRelease == UNKNOWN) {
+                        return UNKNOWN;
+                    }
+                }
+                break;
+            } else {
+                return UNKNOWN;
+            }
+        }
+        if (!digits) {
+            return UNKNOWN;
+        }
+        code = (code << PART_BITS) | part;
+        parts++;
+        // 补齐缺失的段
+        for (; parts < 3; parts++) {
+            code <<= PART_BITS;
+        }
+        return (code << PRE_BITS) | preRelease;
+    }
+
+    /**
+     * 编码预发布标识：标签加可选的序号，如 beta、beta.2、rc1
+     *
+     * @param strict 为true时未知标签返回{@link #UNKNOWN}，否则按最小标签处理
+     */
+    private static long encodePreRelease(String identifier, boolean strict) {
+        int length = identifier.length();
+        int letters = 0;
+        while (letters < length && Character.isLetter(identifier.charAt(letters))) {
+            letters++;
+        }
+        int rank = rankOf(identifier.substring(0, letters));
+
+        int i = letters;
+        if (i < length && letters > 0 && (identifier.charAt(i) == '.' || identifier.charAt(i) == '-')) {
+            i++;
+        }
+        int number = 0;
+        for (; i < length; i++) {
+            char c = identifier.charAt(i);
+            if (c < '0' || c > '9') {
+                // 标签后还有其他内容，只能按未知标签处理
+                rank = 0;
+                number = 0;
+                break;
+            }
+            number = Math.min(number * 10 + (c - '0'), PRE_NUMBER_MAX);
+        }
+        if (rank == 0 && strict) {
+            return UNKNOWN;
+        }
+        return ((long) rank << PRE_NUMBER_BITS) | number;
+    }
+
+    /**
+     * 预发布标签的等级，从1开始，未知标签返回0
+     */
+    private static int rankOf(String tag) {
+        for (int rank = 0; rank < PRE_TAGS.length; rank++) {
+            for (String name : PRE_TAGS[rank]) {
+                if (name.equalsIgnoreCase(tag)) {
+                    return rank + 1;
+                }
+            }
+        }
+        return 0;
+    }
+}
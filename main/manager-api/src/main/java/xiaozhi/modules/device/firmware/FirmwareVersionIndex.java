@@ -0,0 +1,193 @@
+package xiaozhi.modules.device.firmware;
+
+import xiaozhi.modules.device.entity.FirmwareEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 固件版本索引（不可变）
+ * 按设备类型预先排序并解析固件版本，目录中已有的版本号直接查表得出版本值，
+ * 目录变更时整体重建后替换，读取无需加锁
+ */
+public final class FirmwareVersionIndex {
+    public static final FirmwareVersionIndex EMPTY = new FirmwareVersionIndex(Collections.emptyMap(), 0);
+
+    private final Map<String, TypeEntry> types;
+    private final int releaseCount;
+
+    private FirmwareVersionIndex(Map<String, TypeEntry> types, int releaseCount) {
+        this.types = types;
+        this.releaseCount = releaseCount;
+    }
+
+    /**
+     * 根据固件目录构建索引，版本号无法识别的固件会被忽略
+     *
+     * @param entities 已启用的固件列表
+     * @return 固件版本索引
+     */
+    public static FirmwareVersionIndex build(List<FirmwareEntity> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return EMPTY;
+        }
+        Map<String, List<FirmwareRelease>> grouped = new HashMap<>();
+        int count = 0;
+        for (FirmwareEntity entity : entities) {
+            FirmwareRelease release = new FirmwareRelease(entity);
+            if (release.getDeviceType() == null || release.getVersionCode() == FirmwareVersion.UNKNOWN) {
+                continue;
+            }
+            grouped.computeIfAbsent(release.getDeviceType(), k -> new ArrayList<>()).add(release);
+            count++;
+        }
+
+        Map<String, TypeEntry> types = new HashMap<>(grouped.size() * 2);
+        for (Map.Entry<String, List<FirmwareRelease>> entry : grouped.entrySet()) {
+            types.put(entry.getKey(), new TypeEntry(entry.getValue()));
+        }
+        return new FirmwareVersionIndex(Collections.unmodifiableMap(types), count);
+    }
+
+    /**
+     * 检查设备是否需要固件更新，只考虑已全量发布的固件
+     *
+     * @param deviceType     设备类型
+     * @param currentVersion 当前固件版本
+     * @return 是否需要更新
+     */
+    public boolean needsUpdate(String deviceType, String currentVersion) {
+        return select(deviceType, currentVersion, null) != null;
+    }
+
+    /**
+     * 为设备选择可推送的固件
+     * 从新到旧查找比当前版本新、且设备落在发布批次内的固件；
+     * 设备不在最新固件的批次内时，可获得更早的已发布固件
+     *
+     * @param deviceType     设备类型
+     * @param currentVersion 当前固件版本
+     * @param macAddress     设备MAC地址，为空时只考虑已全量发布的固件
+     * @return 可推送的固件，无需更新返回null
+     */
+    public FirmwareRelease select(String deviceType, String currentVersion, String macAddress) {
+        if (deviceType == null) {
+            return null;
+        }
+        TypeEntry entry = types.get(deviceType);
+        if (entry == null) {
+            return null;
+        }
+        long current = entry.versionCode(currentVersion);
+        if (current == FirmwareVersion.UNKNOWN) {
+            // 无法识别的版本不推送更新
+            return null;
+        }
+
+        boolean hasMac = macAddress != null && !macAddress.isEmpty();
+        long macHash = hasMac ? RolloutBucket.hash(macAddress) : 0L;
+        FirmwareRelease[] releases = entry.sortedReleases;
+        for (int i = 0; i < releases.length; i++) {
+            FirmwareRelease release = releases[i];
+            if (release.getVersionCode() <= current) {
+                return null;
+            }
+            if (release.getRolloutPercentage() >= RolloutBucket.BUCKETS
+                    || (hasMac && RolloutBucket.inRollout(macHash, release))) {
+                return release;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取设备类型的最新固件
+     *
+     * @param deviceType 设备类型
+     * @return 最新固件，不存在返回null
+     */
+    public FirmwareRelease getLatest(String deviceType) {
+        if (deviceType == null) {
+            return null;
+        }
+        TypeEntry entry = types.get(deviceType);
+        return entry != null ? entry.latest : null;
+    }
+
+    /**
+     * 按版本号查找固件
+     *
+     * @param deviceType 设备类型
+     * @param version    固件版本
+     * @return 固件，不存在返回null
+     */
+    public FirmwareRelease find(String deviceType, String version) {
+        if (deviceType == null || version == null) {
+            return null;
+        }
+        TypeEntry entry = types.get(deviceType);
+        return entry != null ? entry.byVersion.get(version) : null;
+    }
+
+    /**
+     * 获取设备类型的全部固件，按版本从新到旧排序
+     *
+     * @param deviceType 设备类型
+     * @return 固件列表
+     */
+    public List<FirmwareRelease> getReleases(String deviceType) {
+        if (deviceType == null) {
+            return Collections.emptyList();
+        }
+        TypeEntry entry = types.get(deviceType);
+        return entry != null ? entry.releases : Collections.emptyList();
+    }
+
+    public int getDeviceTypeCount() {
+        return types.size();
+    }
+
+    public int getReleaseCount() {
+        return releaseCount;
+    }
+
+    /**
+     * 单个设备类型的索引项
+     */
+    private static final class TypeEntry {
+        private final List<FirmwareRelease> releases;
+        private final FirmwareRelease[] sortedReleases;
+        private final FirmwareRelease latest;
+        /**
+         * 目录中已有版本号 -> 固件
+         */
+        private final Map<String, FirmwareRelease> byVersion;
+
+        private TypeEntry(List<FirmwareRelease> releases) {
+            releases.sort(Comparator.comparingLong(FirmwareRelease::getVersionCode).reversed());
+            this.releases = Collections.unmodifiableList(releases);
+            this.sortedReleases = releases.toArray(new FirmwareRelease[0]);
+            this.latest = sortedReleases[0];
+            Map<String, FirmwareRelease> map = new HashMap<>(releases.size() * 2);
+            for (FirmwareRelease release : releases) {
+                map.put(release.getVersion(), release);
+            }
+            this.byVersion = Collections.unmodifiableMap(map);
+        }
+
+        /**
+         * 获取版本值，目录中已有的版本直接查表，否则现场编码
+         */
+        private long versionCode(String version) {
+            if (version == null) {
+                return FirmwareVersion.UNKNOWN;
+            }
+            FirmwareRelease release = byVersion.get(version);
+            return release != null ? release.getVersionCode() : FirmwareVersion.encode(version);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package xiaozhi.modules.device.firmware;
+
+/**
+ * 固件分批发布的设备分桶
+ * 根据MAC地址计算稳定的哈希，把设备均匀分到100个桶中，桶号小于发布比例的设备进入当前批次。
+ * 同一设备的桶号不随批次变化，发布比例提高时已获得更新的设备不会被移出。
+ * 计算过程不分配对象
+ */
+public final class RolloutBucket {
+    /**
+     * 桶数量，与发布比例的取值范围对应
+     */
+    public static final int BUCKETS = 100;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private RolloutBucket() {
+    }
+
+    /**
+     * 计算MAC地址哈希，忽略大小写和分隔符
+     *
+     * @param macAddress MAC地址
+     * @return 哈希值
+     */
+    public static long hash(String macAddress) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0, length = macAddress.length(); i < length; i++) {
+            char c = macAddress.charAt(i);
+            if (c == ':' || c == '-' || c == '.') {
+                continue;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            hash ^= c;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * 计算设备在某个固件发布中的桶号
+     * 以固件版本作为盐值，不同固件的首批设备互不相同
+     *
+     * @param macHash MAC地址哈希
+     * @param salt    盐值
+     * @return 桶号，0-99
+     */
+    public static int bucket(long macHash, long salt) {
+        long h = macHash ^ (salt * 0x9e3779b97f4a7c15L);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) Long.remainderUnsigned(h, BUCKETS);
+    }
+
+    /**
+     * 判断设备是否在固件的当前发布批次中
+     *
+     * @param macHash MAC地址哈希
+     * @param release 固件
+     * @return 是否在当前批次
+     */
+    public static boolean inRollout(long macHash, FirmwareRelease release) {
+        int percentage = release.getRolloutPercentage();
+        if (percentage >= BUCKETS) {
+            return true;
+        }
+        if (percentage <= 0) {
+            return false;
+        }
+        return bucket(macHash, release.getVersionCode()) < percentage;
+    }
+}
@@ -0,0 +1,84 @@
+package xiaozhi.modules.device.migration;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 回填访问令牌摘要
+ * 按主键顺序分批计算SHA-256摘要，每批单独提交，历史令牌较多时也不会长时间锁表
+ */
+@Slf4j
+public class AccessTokenHashBackfill implements CustomTaskChange {
+    /**
+     * 每批回填的行数
+     */
+    private static final int CHUNK_SIZE = 5000;
+
+    private static final String NEXT_BOUND_SQL = "SELECT MAX(id) FROM (SELECT id FROM t_access_token"
+            + " WHERE id > ? ORDER BY id LIMIT " + CHUNK_SIZE + ") t";
+    private static final String UPDATE_SQL = "UPDATE t_access_token SET token_hash = SHA2(token, 256)"
+            + " WHERE id > ? AND id <= ? AND token_hash IS NULL";
+
+    private long updatedCount;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try (PreparedStatement next = connection.prepareStatement(NEXT_BOUND_SQL);
+             PreparedStatement update = connection.prepareStatement(UPDATE_SQL)) {
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                next.setLong(1, lastId);
+                long bound;
+                try (ResultSet rs = next.executeQuery()) {
+                    if (!rs.next()) {
+                        break;
+                    }
+                    bound = rs.getLong(1);
+                    if (rs.wasNull()) {
+                        break;
+                    }
+                }
+
+                update.setLong(1, lastId);
+                update.setLong(2, bound);
+                updatedCount += update.executeUpdate();
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+                lastId = bound;
+            }
+            log.info("访问令牌摘要回填完成，共{}行", updatedCount);
+        } catch (SQLException e) {
+            throw new CustomChangeException("访问令牌摘要回填失败", e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "访问令牌摘要回填完成，共" + updatedCount + "行";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
@@ -0,0 +1,453 @@
+package xiaozhi.modules.device.ota;
+
+import org.springframework.stereotype.Component;
+import xiaozhi.modules.device.config.OtaConfig;
+import xiaozhi.modules.device.config.OtaProperties;
+import xiaozhi.modules.device.dto.OtaResponseDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * OTA响应模板编码器
+ * 每个WebSocket后端的地址、端口、路径等静态片段预先渲染为字节，配置变化时重新渲染，
+ * 每次签到只拼接令牌、激活码、固件版本和服务器时间，不再经过Jackson序列化整个对象树
+ */
+@Component
+public class OtaResponseEncoder {
+    private static final byte[] OBJECT_START = ascii("{");
+    private static final byte[] OBJECT_END = ascii("}");
+    private static final byte[] ARRAY_START = ascii("[");
+    private static final byte[] ARRAY_END = ascii("]");
+    private static final byte[] COMMA = ascii(",");
+    private static final byte[] QUOTE = ascii("\"");
+    private static final byte[] FIRMWARE_START = ascii("\"firmware\":{");
+    private static final byte[] VERSION_FIELD = ascii("\"version\":");
+    private static final byte[] URL_FIELD = ascii("\"url\":");
+    private static final byte[] EMPTY_URL = ascii("\"url\":\"\"");
+    private static final byte[] WEBSOCKET_START = ascii("\"websocket\":{");
+    private static final byte[] ACCESS_TOKEN_FIELD = ascii("\"access_token\":");
+    private static final byte[] SERVER_FIELD = ascii("\"server\":");
+    private static final byte[] PORT_FIELD = ascii("\"port\":");
+    private static final byte[] PATH_FIELD = ascii("\"path\":");
+    private static final byte[] ACTIVATION_START = ascii("\"activation\":{");
+    private static final byte[] CODE_FIELD = ascii("\"code\":");
+    private static final byte[] MESSAGE_FIELD = ascii("\"message\":");
+    private static final byte[] SERVER_TIME_START = ascii("\"server_time\":{");
+    private static final byte[] TIMESTAMP_FIELD = ascii("\"timestamp\":");
+    private static final byte[] TIMEZONE_OFFSET_FIELD = ascii("\"timezone_offset\":");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    /**
+     * 最多保留的WebSocket模板数，超过后丢弃旧模板重新渲染
+     */
+    private static final int MAX_TEMPLATES = 64;
+
+    private final OtaConfig otaConfig;
+    private volatile Templates templates;
+
+    public OtaResponseEncoder(OtaConfig otaConfig) {
+        this.otaConfig = otaConfig;
+        this.templates = buildTemplates();
+    }
+
+    /**
+     * 将OTA响应编码为JSON字节直接写入输出流
+     * OTA接口的输出流为池化的响应缓冲区，不再先写入临时缓冲区再复制
+     *
+     * @param response OTA响应DTO
+     * @param out      输出流
+     */
+    public void encode(OtaResponseDTO response, OutputStream out) throws IOException {
+        write(response, new JsonBuffer(out));
+    }
+
+    /**
+     * 将批量OTA响应编码为JSON数组直接写入输出流
+     *
+     * @param responses OTA响应DTO列表
+     * @param out       输出流
+     */
+    public void encode(List<OtaResponseDTO> responses, OutputStream out) throws IOException {
+        JsonBuffer json = new JsonBuffer(out);
+        json.raw(ARRAY_START);
+        for (int i = 0; i < responses.size(); i++) {
+            if (i > 0) {
+                json.raw(COMMA);
+            }
+            write(responses.get(i), json);
+        }
+        json.raw(ARRAY_END);
+    }
+
+    /**
+     * 将OTA响应编码为JSON字节
+     *
+     * @param response OTA响应DTO
+     * @return UTF-8编码的JSON
+     */
+    public byte[] encode(OtaResponseDTO response) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        try {
+            encode(response, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 查找后端对应的WebSocket模板，配置变化出现新的后端时渲染新模板
+     */
+    private WebsocketTemplate findTemplate(String server, Integer port, String path) {
+        Templates current = currentTemplates();
+        for (WebsocketTemplate template : current.items) {
+            if (template.matches(server, port, path)) {
+                return template;
+            }
+        }
+        WebsocketTemplate template = new WebsocketTemplate(server, port, path);
+        WebsocketTemplate[] items;
+        if (current.items.length >= MAX_TEMPLATES) {
+            items = new WebsocketTemplate[]{template};
+        } else {
+            items = Arrays.copyOf(current.items, current.items.length + 1);
+            items[current.items.length] = template;
+        }
+        templates = new Templates(current, items);
+        return template;
+    }
+
+    /**
+     * 配置变化时按新配置重新渲染模板
+     */
+    private Templates currentTemplates() {
+        Templates current = templates;
+        if (!current.matches(otaConfig)) {
+            current = buildTemplates();
+            templates = current;
+        }
+        return current;
+    }
+
+    private Templates buildTemplates() {
+        List<WebsocketTemplate> items = new ArrayList<>();
+        items.add(new WebsocketTemplate(otaConfig.getServer(), otaConfig.getPort(), otaConfig.getPath()));
+        if (otaConfig.getBackends() != null) {
+            for (OtaProperties.WebsocketBackend backend : otaConfig.getBackends()) {
+                items.add(new WebsocketTemplate(backend.getServer(), backend.getPort(), backend.getPath()));
+            }
+        }
+        return new Templates(otaConfig, items.toArray(new WebsocketTemplate[0]));
+    }
+
+    private void write(OtaResponseDTO response, JsonBuffer json) throws IOException {
+        json.raw(OBJECT_START);
+        boolean first = true;
+
+        OtaResponseDTO.FirmwareInfo firmware = response.getFirmware();
+        if (firmware != null) {
+            json.raw(FIRMWARE_START);
+            boolean field = json.stringField(VERSION_FIELD, firmware.getVersion(), true);
+            if ("".equals(firmware.getUrl())) {
+                if (field) {
+                    json.raw(COMMA);
+                }
+                json.raw(EMPTY_URL);
+            } else {
+                json.stringField(URL_FIELD, firmware.getUrl(), !field);
+            }
+            json.raw(OBJECT_END);
+            first = false;
+        }
+
+        OtaResponseDTO.WebsocketInfo websocket = response.getWebsocket();
+        if (websocket != null) {
+            if (!first) {
+                json.raw(COMMA);
+            }
+            if (websocket.getAccess_token() != null) {
+                // 只拼接令牌，其余部分使用预渲染片段
+                WebsocketTemplate template = findTemplate(websocket.getServer(), websocket.getPort(), websocket.getPath());
+                json.raw(template.prefix);
+                json.string(websocket.getAccess_token());
+                json.raw(template.suffix);
+            } else {
+                json.raw(WEBSOCKET_START);
+                boolean field = json.stringField(ACCESS_TOKEN_FIELD, websocket.getAccess_token(), true);
+                field |= json.stringField(SERVER_FIELD, websocket.getServer(), !field);
+                if (websocket.getPort() != null) {
+                    if (field) {
+                        json.raw(COMMA);
+                    }
+                    json.raw(PORT_FIELD);
+                    json.number(websocket.getPort());
+                    field = true;
+                }
+                json.stringField(PATH_FIELD, websocket.getPath(), !field);
+                json.raw(OBJECT_END);
+            }
+            first = false;
+        }
+
+        OtaResponseDTO.ActivationInfo activation = response.getActivation();
+        if (activation != null) {
+            if (!first) {
+                json.raw(COMMA);
+            }
+            json.raw(ACTIVATION_START);
+            boolean field = json.stringField(CODE_FIELD, activation.getCode(), true);
+            json.stringField(MESSAGE_FIELD, activation.getMessage(), !field);
+            json.raw(OBJECT_END);
+            first = false;
+        }
+
+        OtaResponseDTO.ServerTimeInfo serverTime = response.getServer_time();
+        if (serverTime != null) {
+            if (!first) {
+                json.raw(COMMA);
+            }
+            json.raw(SERVER_TIME_START);
+            boolean field = false;
+            if (serverTime.getTimestamp() != null) {
+                json.raw(TIMESTAMP_FIELD);
+                json.number(serverTime.getTimestamp());
+                field = true;
+            }
+            if (serverTime.getTimezone_offset() != null) {
+                if (field) {
+                    json.raw(COMMA);
+                }
+                json.raw(TIMEZONE_OFFSET_FIELD);
+                json.number(serverTime.getTimezone_offset());
+            }
+            json.raw(OBJECT_END);
+        }
+
+        json.raw(OBJECT_END);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 按配置渲染的模板集合，记录渲染时的配置以判断是否需要重建
+     */
+    private static final class Templates {
+        private final List<OtaProperties.WebsocketBackend> sourceBackends;
+        private final String sourceServer;
+        private final Integer sourcePort;
+        private final String sourcePath;
+        private final WebsocketTemplate[] items;
+
+        private Templates(OtaConfig config, WebsocketTemplate[] items) {
+            this.sourceBackends = config.getBackends();
+            this.sourceServer = config.getServer();
+            this.sourcePort = config.getPort();
+            this.sourcePath = config.getPath();
+            this.items = items;
+        }
+
+        private Templates(Templates source, WebsocketTemplate[] items) {
+            this.sourceBackends = source.sourceBackends;
+            this.sourceServer = source.sourceServer;
+            this.sourcePort = source.sourcePort;
+            this.sourcePath = source.sourcePath;
+            this.items = items;
+        }
+
+        private boolean matches(OtaConfig config) {
+            return sourceBackends == config.getBackends()
+                    && sourceServer == config.getServer()
+                    && Objects.equals(sourcePort, config.getPort())
+                    && sourcePath == config.getPath();
+        }
+    }
+
+    /**
+     * 预渲染的WebSocket片段：令牌之前与之后的部分
+     */
+    private static final class WebsocketTemplate {
+        private final String server;
+        private final Integer port;
+        private final String path;
+        private final byte[] prefix;
+        private final byte[] suffix;
+
+        private WebsocketTemplate(String server, Integer port, String path) {
+            this.server = server;
+            this.port = port;
+            this.path = path;
+
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                JsonBuffer json = new JsonBuffer(out);
+                json.raw(WEBSOCKET_START);
+                json.raw(ACCESS_TOKEN_FIELD);
+                this.prefix = out.toByteArray();
+
+                out.reset();
+                json.stringField(SERVER_FIELD, server, false);
+                if (port != null) {
+                    json.raw(COMMA);
+                    json.raw(PORT_FIELD);
+                    json.number(port);
+                }
+                json.stringField(PATH_FIELD, path, false);
+                json.raw(OBJECT_END);
+                this.suffix = out.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean matches(String server, Integer port, String path) {
+            return Objects.equals(this.server, server)
+                    && Objects.equals(this.port, port)
+                    && Objects.equals(this.path, path);
+        }
+    }
+
+    /**
+     * JSON写入器，直接写入目标输出流
+     */
+    private static final class JsonBuffer {
+        private final OutputStream out;
+        /**
+         * 数字转换用的临时空间，long最多20个字符
+         */
+        private final byte[] digits = new byte[20];
+
+        private JsonBuffer(OutputStream out) {
+            this.out = out;
+        }
+
+        private void raw(byte[] value) throws IOException {
+            out.write(value, 0, value.length);
+        }
+
+        /**
+         * 写入字符串字段，值为null时跳过
+         *
+         * @param first 是否为对象中的第一个字段
+         * @return 是否写入了字段
+         */
+        private boolean stringField(byte[] name, String value, boolean first) throws IOException {
+            if (value == null) {
+                return false;
+            }
+            if (!first) {
+                raw(COMMA);
+            }
+            raw(name);
+            string(value);
+            return true;
+        }
+
+        private void number(long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                raw(ascii(Long.toString(value)));
+                return;
+            }
+            if (value < 0) {
+                out.write('-');
+                value = -value;
+            }
+            // 从低位向高位填充，再一次写出
+            int start = digits.length;
+            do {
+                digits[--start] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            out.write(digits, start, digits.length - start);
+        }
+
+        private void string(String value) throws IOException {
+            raw(QUOTE);
+            int length = value.length();
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                    continue;
+                }
+                plain(value, start, i);
+                if (c < 0x80) {
+                    escape(c);
+                    start = i + 1;
+                } else {
+                    // 非ASCII字符（如中文提示）交给JDK按UTF-8编码剩余部分
+                    utf8(value, i);
+                    start = length;
+                    break;
+                }
+            }
+            plain(value, start, length);
+            raw(QUOTE);
+        }
+
+        /**
+         * 写出不需要转义的ASCII片段
+         */
+        private void plain(String value, int from, int to) throws IOException {
+            for (int i = from; i < to; i++) {
+                out.write(value.charAt(i));
+            }
+        }
+
+        private void utf8(String value, int from) throws IOException {
+            int length = value.length();
+            int start = from;
+            for (int i = from; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x20 || c == '"' || c == '\\') {
+                    raw(value.substring(start, i).getBytes(StandardCharsets.UTF_8));
+                    escape(c);
+                    start = i + 1;
+                }
+            }
+            raw(value.substring(start).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void escape(char c) throws IOException {
+            out.write('\\');
+            switch (c) {
+                case '"':
+                    out.write('"');
+                    break;
+                case '\\':
+                    out.write('\\');
+                    break;
+                case '\n':
+                    out.write('n');
+                    break;
+                case '\r':
+                    out.write('r');
+                    break;
+                case '\t':
+                    out.write('t');
+                    break;
+                case '\b':
+                    out.write('b');
+                    break;
+                case '\f':
+                    out.write('f');
+                    break;
+                default:
+                    out.write('u');
+                    out.write('0');
+                    out.write('0');
+                    out.write(HEX[(c >> 4) & 0xF]);
+                    out.write(HEX[c & 0xF]);
+            }
+        }
+    }
+}
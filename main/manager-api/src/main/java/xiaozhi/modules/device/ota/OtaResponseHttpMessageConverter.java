@@ -0,0 +1,86 @@
+package xiaozhi.modules.device.ota;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import xiaozhi.modules.device.dto.OtaResponseDTO;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * OTA响应消息转换器
+ * 只负责输出OtaResponseDTO及其列表（批量签到），使用预渲染模板编码，其余类型仍由Jackson处理
+ */
+public class OtaResponseHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    private final OtaResponseEncoder encoder;
+
+    public OtaResponseHttpMessageConverter(OtaResponseEncoder encoder) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        setDefaultCharset(StandardCharsets.UTF_8);
+        this.encoder = encoder;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return OtaResponseDTO.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return isOtaResponseType(type != null ? type : clazz) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("不支持读取OTA响应", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("不支持读取OTA响应", inputMessage);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (value instanceof OtaResponseDTO response) {
+            encoder.encode(response, outputMessage.getBody());
+        } else {
+            encoder.encode((List<OtaResponseDTO>) value, outputMessage.getBody());
+        }
+    }
+
+    /**
+     * 是否为OtaResponseDTO或List&lt;OtaResponseDTO&gt;
+     */
+    private static boolean isOtaResponseType(Type type) {
+        if (type == OtaResponseDTO.class) {
+            return true;
+        }
+        if (type instanceof ParameterizedType parameterizedType
+                && parameterizedType.getRawType() instanceof Class<?> rawType
+                && List.class.isAssignableFrom(rawType)) {
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            return arguments.length == 1 && arguments[0] == OtaResponseDTO.class;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,324 @@
+package xiaozhi.modules.device.ota;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import xiaozhi.modules.device.config.OtaConfig;
+import xiaozhi.modules.device.config.OtaProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebSocket后端节点池
+ * 按设备ID在一致性哈希环上选择后端，同时参考各后端上报的实时连接数：
+ * 当哈希命中的节点负载超过按权重计算的上限时，顺时针选择下一个未过载的节点
+ */
+@Slf4j
+@Component
+public class WebsocketBackendPool {
+    /**
+     * 每单位权重在哈希环上的虚拟节点数
+     */
+    private static final int VIRTUAL_NODES_PER_WEIGHT = 160;
+    /**
+     * 节点负载上限相对平均负载的倍数
+     */
+    private static final double LOAD_FACTOR = 1.25;
+
+    private final OtaConfig otaConfig;
+    private volatile Ring ring;
+
+    public WebsocketBackendPool(OtaConfig otaConfig) {
+        this.otaConfig = otaConfig;
+        this.ring = buildRing();
+    }
+
+    /**
+     * 为设备选择WebSocket后端
+     *
+     * @param deviceId 设备ID
+     * @return 后端节点
+     */
+    public Backend select(Long deviceId) {
+        Ring current = currentRing();
+        Backend[] backends = current.backends;
+        if (backends.length == 1 || deviceId == null) {
+            return backends[0];
+        }
+
+        long now = System.currentTimeMillis();
+        long timeout = otaConfig.getReportTimeoutSeconds() * 1000L;
+        long totalLoad = 0;
+        int totalWeight = 0;
+        for (Backend backend : backends) {
+            if (backend.isAlive(now, timeout)) {
+                totalLoad += backend.getLoad();
+                totalWeight += backend.weight;
+            }
+        }
+
+        int start = current.locate(mix(deviceId));
+        Backend fallback = null;
+        for (int i = 0; i < current.owners.length; i++) {
+            Backend backend = backends[current.owners[(start + i) % current.owners.length]];
+            if (!backend.isAlive(now, timeout)) {
+                continue;
+            }
+            if (fallback == null) {
+                fallback = backend;
+            }
+            // 按权重分摊的负载上限，新设备计入后再比较
+            double limit = Math.ceil((totalLoad + 1) * LOAD_FACTOR * backend.weight / totalWeight);
+            if (backend.getLoad() + 1 <= limit) {
+                backend.onAssigned(deviceId);
+                return backend;
+            }
+        }
+        // 全部节点离线时仍返回哈希命中的节点，由设备自行重试
+        Backend backend = fallback != null ? fallback : backends[current.owners[start]];
+        backend.onAssigned(deviceId);
+        return backend;
+    }
+
+    /**
+     * 记录后端上报的实时连接数
+     *
+     * @param server      后端地址
+     * @param port        后端端口
+     * @param connections 当前连接数
+     * @return 是否为已配置的后端
+     */
+    public boolean report(String server, int port, long connections) {
+        for (Backend backend : currentRing().backends) {
+            if (backend.server.equals(server) && backend.port == port) {
+                backend.connections = Math.max(connections, 0);
+                backend.assigned.clear();
+                backend.lastReportTime = System.currentTimeMillis();
+                return true;
+            }
+        }
+        log.warn("收到未配置的WebSocket后端上报: {}:{}", server, port);
+        return false;
+    }
+
+    /**
+     * 获取所有后端
+     */
+    public List<Backend> getBackends() {
+        return List.of(currentRing().backends);
+    }
+
+    /**
+     * 获取各后端的负载统计
+     */
+    public List<Map<String, Object>> getStats() {
+        long now = System.currentTimeMillis();
+        long timeout = otaConfig.getReportTimeoutSeconds() * 1000L;
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Backend backend : currentRing().backends) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("server", backend.server);
+            item.put("port", backend.port);
+            item.put("path", backend.path);
+            item.put("weight", backend.weight);
+            item.put("connections", backend.connections);
+            item.put("assigned", backend.assigned.size());
+            item.put("lastReportTime", backend.lastReportTime);
+            item.put("alive", backend.isAlive(now, timeout));
+            stats.add(item);
+        }
+        return stats;
+    }
+
+    /**
+     * 配置变化时重建哈希环
+     */
+    private Ring currentRing() {
+        Ring current = ring;
+        if (!current.matches(otaConfig)) {
+            current = buildRing();
+            ring = current;
+        }
+        return current;
+    }
+
+    private Ring buildRing() {
+        List<OtaProperties.WebsocketBackend> configured = otaConfig.getBackends();
+        List<Backend> backends = new ArrayList<>();
+        if (configured != null) {
+            for (OtaProperties.WebsocketBackend item : configured) {
+                if (item.getServer() == null || item.getServer().isEmpty()) {
+                    continue;
+                }
+                backends.add(new Backend(item.getServer(), item.getPort(),
+                        item.getPath(), Math.max(item.getWeight(), 1)));
+            }
+        }
+        if (backends.isEmpty()) {
+            backends.add(new Backend(otaConfig.getServer(), otaConfig.getPort(), otaConfig.getPath(), 1));
+        }
+        // 保留已有节点的上报数据
+        Ring previous = ring;
+        if (previous != null) {
+            for (int i = 0; i < backends.size(); i++) {
+                for (Backend old : previous.backends) {
+                    Backend backend = backends.get(i);
+                    if (old.server.equals(backend.server) && old.port == backend.port) {
+                        backend.connections = old.connections;
+                        backend.lastReportTime = old.lastReportTime;
+                    }
+                }
+            }
+        }
+        log.info("WebSocket后端节点池: {}", backends);
+        return new Ring(otaConfig, backends.toArray(new Backend[0]));
+    }
+
+    /**
+     * 64位混淆函数，使相邻的设备ID均匀分布在环上
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * WebSocket后端节点
+     */
+    public static final class Backend {
+        private final String server;
+        private final int port;
+        private final String path;
+        private final int weight;
+        /**
+         * 最近一次上报的连接数
+         */
+        private volatile long connections;
+        /**
+         * 最近一次上报的时间，0表示从未上报
+         */
+        private volatile long lastReportTime;
+        /**
+         * 上次上报之后分配到该节点的设备，同一设备重复签到只计一次
+         */
+        private final Set<Long> assigned = ConcurrentHashMap.newKeySet();
+
+        private Backend(String server, int port, String path, int weight) {
+            this.server = server;
+            this.port = port;
+            this.path = path;
+            this.weight = weight;
+        }
+
+        public String getServer() {
+            return server;
+        }
+
+        public Integer getPort() {
+            return port;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * 估算当前负载：上报的连接数加上之后新分配的设备数
+         */
+        private long getLoad() {
+            return connections + assigned.size();
+        }
+
+        /**
+         * 只对上报过连接数的节点累计分配的设备，下次上报时清零；
+         * 未部署上报时保持纯一致性哈希，同一设备总是分配到同一节点
+         */
+        private void onAssigned(Long deviceId) {
+            if (lastReportTime != 0) {
+                assigned.add(deviceId);
+            }
+        }
+
+        /**
+         * 从未上报的节点视为在线，曾经上报但超时的节点视为离线
+         */
+        private boolean isAlive(long now, long timeout) {
+            return lastReportTime == 0 || now - lastReportTime <= timeout;
+        }
+
+        @Override
+        public String toString() {
+            return server + ":" + port + path + "(weight=" + weight + ")";
+        }
+    }
+
+    /**
+     * 不可变的哈希环
+     */
+    private static final class Ring {
+        private final List<OtaProperties.WebsocketBackend> sourceBackends;
+        private final String sourceServer;
+        private final Integer sourcePort;
+        private final String sourcePath;
+        private final Backend[] backends;
+        private final long[] points;
+        private final int[] owners;
+
+        private Ring(OtaConfig config, Backend[] backends) {
+            this.sourceBackends = config.getBackends();
+            this.sourceServer = config.getServer();
+            this.sourcePort = config.getPort();
+            this.sourcePath = config.getPath();
+            this.backends = backends;
+
+            int total = 0;
+            for (Backend backend : backends) {
+                total += backend.weight * VIRTUAL_NODES_PER_WEIGHT;
+            }
+            long[] keys = new long[total];
+            int index = 0;
+            for (int i = 0; i < backends.length; i++) {
+                long seed = ((long) backends[i].server.hashCode() << 32) ^ backends[i].port;
+                for (int v = 0; v < backends[i].weight * VIRTUAL_NODES_PER_WEIGHT; v++) {
+                    // 高位存放哈希点，低位存放节点下标，排序后可同时得到点和归属
+                    keys[index++] = (mix(seed * 31 + v) & 0xFFFFFFFFFFFF0000L) | i;
+                }
+            }
+            Arrays.sort(keys);
+            this.points = new long[total];
+            this.owners = new int[total];
+            for (int i = 0; i < total; i++) {
+                points[i] = keys[i] & 0xFFFFFFFFFFFF0000L;
+                owners[i] = (int) (keys[i] & 0xFFFF);
+            }
+        }
+
+        /**
+         * 查找哈希值顺时针方向的第一个虚拟节点
+         */
+        private int locate(long hash) {
+            int index = Arrays.binarySearch(points, hash & 0xFFFFFFFFFFFF0000L);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index == points.length ? 0 : index;
+        }
+
+        private boolean matches(OtaConfig config) {
+            return sourceBackends == config.getBackends()
+                    && sourceServer == config.getServer()
+                    && Objects.equals(sourcePort, config.getPort())
+                    && sourcePath == config.getPath();
+        }
+    }
+}
@@ -2,8 +2,12 @@ package xiaozhi.modules.device.service;
 
 import xiaozhi.common.service.CrudService;
 import xiaozhi.modules.device.dto.AccessTokenDTO;
+import xiaozhi.modules.device.dto.DeviceDTO;
 import xiaozhi.modules.device.entity.AccessTokenEntity;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * 访问令牌服务接口
  */
@@ -19,6 +23,8 @@ public interface AccessTokenService extends CrudService<AccessTokenEntity, Acces
     
     /**
      * 验证令牌
+     * 开启无状态验证时，未命中撤销过滤器的令牌不查询数据库，返回的DTO只包含令牌中的信息：
+     * ID为空，创建时间为令牌签发时间
      * @param token 令牌
      * @return 访问令牌DTO，如果无效则返回null
      */
@@ -60,4 +66,13 @@ public interface AccessTokenService extends CrudService<AccessTokenEntity, Acces
      * @return 访问令牌字符串
      */
     String getOrCreateToken(Long deviceId);
-} 
\ No newline at end of file
+    
+    /**
+     * 批量获取或创建设备访问令牌
+     * 有效令牌一次查询获取，缺少令牌的设备一次批量插入新令牌
+     * 
+     * @param devices 已激活的设备
+     * @return 设备ID -> 访问令牌字符串
+     */
+    Map<Long, String> getOrCreateTokens(Collection<DeviceDTO> devices);
+}
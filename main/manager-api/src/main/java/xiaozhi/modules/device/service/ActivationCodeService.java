@@ -4,6 +4,9 @@ import xiaozhi.common.service.CrudService;
 import xiaozhi.modules.device.dto.ActivationCodeDTO;
 import xiaozhi.modules.device.entity.ActivationCodeEntity;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * 激活码服务接口
  */
@@ -45,4 +48,22 @@ public interface ActivationCodeService extends CrudService<ActivationCodeEntity,
      * @return 有效激活碼，如果沒有則返回null
      */
     ActivationCodeDTO getValidCodeByDeviceId(Long deviceId);
-} 
\ No newline at end of file
+    
+    /**
+     * 批量獲取設備的有效激活碼（單條IN查詢）
+     * 
+     * @param deviceIds 設備ID集合
+     * @return 設備ID -> 有效激活碼，沒有有效激活碼的設備不包含在內
+     */
+    Map<Long, ActivationCodeDTO> getValidCodesByDeviceIds(Collection<Long> deviceIds);
+    
+    /**
+     * 批量生成激活碼，一次批量插入
+     * 調用方需保證設備已存在
+     * 
+     * @param deviceIds 設備ID集合
+     * @param expireMinutes 過期時間（分鐘）
+     * @return 設備ID -> 新激活碼
+     */
+    Map<Long, ActivationCodeDTO> generateCodes(Collection<Long> deviceIds, int expireMinutes);
+}
@@ -4,6 +4,10 @@ import xiaozhi.common.service.CrudService;
 import xiaozhi.modules.device.dto.DeviceDTO;
 import xiaozhi.modules.device.entity.DeviceEntity;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 设备服务接口
  */
@@ -37,4 +41,24 @@ public interface DeviceService extends CrudService<DeviceEntity, DeviceDTO> {
      */
     void update(Long id, Long userId);
     
+    /**
+     * 根据MAC地址批量查询设备（单条IN查询）
+     * @param macAddresses MAC地址集合
+     * @return MAC地址 -> 设备信息，不存在的设备不包含在内
+     */
+    Map<String, DeviceDTO> getByMacAddresses(Collection<String> macAddresses);
+    
+    /**
+     * 批量保存设备，保存后DTO中包含生成的ID
+     * @param devices 设备列表
+     */
+    void saveBatch(List<DeviceDTO> devices);
+    
+    /**
+     * 批量更新设备状态
+     * @param ids 设备ID集合
+     * @param status 新状态
+     */
+    void updateStatusBatch(Collection<Long> ids, Integer status);
+    
 } 
\ No newline at end of file
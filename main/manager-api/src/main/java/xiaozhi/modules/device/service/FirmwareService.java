@@ -0,0 +1,30 @@
+package xiaozhi.modules.device.service;
+
+import xiaozhi.common.service.CrudService;
+import xiaozhi.modules.device.dto.FirmwareDTO;
+import xiaozhi.modules.device.entity.FirmwareEntity;
+import xiaozhi.modules.device.firmware.FirmwareStorage;
+
+/**
+ * 固件服务接口
+ * 固件目录的增删改在事务提交后重建内存中的固件版本索引
+ */
+public interface FirmwareService extends CrudService<FirmwareEntity, FirmwareDTO> {
+
+    /**
+     * 判断设备类型的指定版本是否已发布
+     *
+     * @param deviceType 设备类型
+     * @param version    固件版本
+     * @return 已存在返回true
+     */
+    boolean exists(String deviceType, String version);
+
+    /**
+     * 发布上传的固件，写入数据库成功后再替换固件文件
+     *
+     * @param dto    固件DTO
+     * @param stored 已写入临时文件的固件
+     */
+    void upload(FirmwareDTO dto, FirmwareStorage.StoredFirmware stored);
+}
@@ -3,6 +3,8 @@ package xiaozhi.modules.device.service;
 import xiaozhi.modules.device.dto.OtaRequestDTO;
 import xiaozhi.modules.device.dto.OtaResponseDTO;
 
+import java.util.List;
+
 /**
  * OTA服务接口
  * 处理设备OTA请求，根据设备状态返回不同响应
@@ -17,6 +19,24 @@ public interface OtaService {
      */
     OtaResponseDTO processOtaRequest(OtaRequestDTO request);
     
+    /**
+     * 批量处理OTA请求
+     * 所有设备一次查询，缺少的令牌和激活码各一次批量插入
+     * 
+     * @param requests OTA请求DTO列表
+     * @return OTA响应DTO列表，与请求一一对应
+     */
+    List<OtaResponseDTO> processOtaRequests(List<OtaRequestDTO> requests);
+    
+    /**
+     * 创建包含基本信息的空响应
+     * 只包含服务器时间和空的固件信息，处理失败时返回给设备
+     * 
+     * @param request OTA请求DTO
+     * @return OTA响应DTO
+     */
+    OtaResponseDTO createEmptyResponse(OtaRequestDTO request);
+    
     /**
      * 处理未注册设备
      * 注册设备并生成激活码
@@ -56,6 +76,7 @@ public interface OtaService {
     
     /**
      * 检查是否需要固件更新
+     * 仅考虑已全量发布的固件
      * 
      * @param deviceType 设备类型
      * @param currentVersion 当前固件版本
@@ -70,4 +91,13 @@ public interface OtaService {
      * @return OTA响应DTO (仅包含固件信息)
      */
     OtaResponseDTO getFirmwareUpdateInfo(String deviceType);
+    
+    /**
+     * 获取设备可推送的固件更新信息
+     * 分批发布的固件按MAC地址分桶，只推送给落入当前批次的设备
+     * 
+     * @param request OTA请求DTO
+     * @return OTA响应DTO (仅包含固件信息)，无需更新返回null
+     */
+    OtaResponseDTO getFirmwareUpdateInfo(OtaRequestDTO request);
 } 
\ No newline at end of file
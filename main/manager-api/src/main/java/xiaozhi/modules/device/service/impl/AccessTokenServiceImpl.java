@@ -2,13 +2,21 @@ package xiaozhi.modules.device.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import io.jsonwebtoken.Claims;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import xiaozhi.common.redis.RedisBatch;
 import xiaozhi.common.redis.RedisKeys;
 import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.service.impl.CrudServiceImpl;
+import xiaozhi.common.utils.ConvertUtils;
+import xiaozhi.modules.device.cache.AccessTokenCodec;
+import xiaozhi.modules.device.cache.DeviceCheckinCache;
+import xiaozhi.modules.device.cache.RevokedTokenStore;
+import xiaozhi.modules.device.cache.TokenGenerationCache;
+import xiaozhi.modules.device.cache.TokenRevocationFilter;
 import xiaozhi.modules.device.constant.DeviceConstant;
 import xiaozhi.modules.device.dao.AccessTokenDao;
 import xiaozhi.modules.device.dto.AccessTokenDTO;
@@ -16,10 +24,17 @@ import xiaozhi.modules.device.dto.DeviceDTO;
 import xiaozhi.modules.device.entity.AccessTokenEntity;
 import xiaozhi.modules.device.service.AccessTokenService;
 import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.device.task.ExpirySweeper;
+import xiaozhi.modules.security.config.JwtConfig;
 import xiaozhi.modules.security.jwt.JwtTokenProvider;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -35,6 +50,12 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
     private final JwtTokenProvider jwtTokenProvider;
     private final RedisUtils redisUtils;
     private final DeviceService deviceService;
+    private final DeviceCheckinCache deviceCheckinCache;
+    private final ExpirySweeper expirySweeper;
+    private final TokenRevocationFilter tokenRevocationFilter;
+    private final RevokedTokenStore revokedTokenStore;
+    private final TokenGenerationCache tokenGenerationCache;
+    private final JwtConfig jwtConfig;
 
     /**
      * 生成設備訪問令牌
@@ -57,20 +78,23 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
             throw new RuntimeException("設備未激活，無法生成令牌");
         }
 
-        // 撤銷該設備之前的所有令牌
-        revokeAllTokensByDevice(deviceId);
+        // 撤銷該設備之前的所有令牌，新令牌攜帶撤銷後的代數
+        // 代數緩存在事務提交後才更新，不能在此時從緩存讀取
+        int generation = revokeAll(deviceId);
 
         // 計算過期時間
         Date expireTime = calculateExpireTime(expireHours);
 
         // 生成JWT令牌
         long expirationSeconds = expireHours * 3600L;
-        String jwtToken = jwtTokenProvider.generateToken(deviceId, deviceDTO.getMacAddress(), expirationSeconds);
+        String jwtToken = jwtTokenProvider.generateToken(deviceId, deviceDTO.getMacAddress(), expirationSeconds,
+                generation);
 
         // 創建訪問令牌實體並保存
         AccessTokenEntity entity = new AccessTokenEntity();
         entity.setDeviceId(deviceId);
         entity.setToken(jwtToken);
+        entity.setTokenHash(JwtTokenProvider.hashToken(jwtToken));
         entity.setIsRevoked(DeviceConstant.TokenRevoked.NO);
         entity.setExpireTime(expireTime);
 
@@ -95,12 +119,32 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
         }
 
         // 首先驗證JWT令牌的簽名和過期時間
-        if (!jwtTokenProvider.validateToken(token)) {
+        Claims claims = jwtTokenProvider.getValidClaims(token);
+        if (claims == null) {
             return null;
         }
 
+        // 令牌代數小於設備當前代數，說明設備的所有令牌已被撤銷
+        Long deviceId = getDeviceId(claims);
+        if (!tokenGenerationCache.isCurrent(deviceId, JwtTokenProvider.getGeneration(claims))) {
+            return null;
+        }
+
+        // 無狀態驗證：未命中撤銷過濾器的令牌直接通過，不查詢Redis和數據庫，返回的令牌信息不含ID
+        if (jwtConfig.isStatelessValidation()) {
+            if (!tokenRevocationFilter.mightBeRevoked(deviceId, claims.getIssuedAt(), claims.getExpiration())) {
+                AccessTokenDTO dto = new AccessTokenDTO();
+                dto.setDeviceId(deviceId);
+                dto.setToken(token);
+                dto.setIsRevoked(DeviceConstant.TokenRevoked.NO);
+                dto.setExpireTime(claims.getExpiration());
+                dto.setCreateDate(claims.getIssuedAt());
+                return dto;
+            }
+        }
+
         // 檢查令牌是否已被撤銷
-        if (isTokenRevoked(token)) {
+        if (revokedTokenStore.contains(token, claims.getExpiration())) {
             return null;
         }
 
@@ -135,10 +179,11 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
             baseDao.updateById(entity);
 
             // 將令牌添加到已撤銷令牌集合
-            addToRevokedTokens(entity.getToken());
+            revokedTokenStore.add(entity.getToken());
 
             // 從設備活躍令牌緩存中刪除
             removeFromActiveTokens(entity.getDeviceId());
+            tokenRevocationFilter.revoke(entity.getDeviceId(), entity.getCreateDate());
         }
     }
 
@@ -150,58 +195,52 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void revokeAllTokensByDevice(Long deviceId) {
+        revokeAll(deviceId);
+    }
+
+    /**
+     * 刪除令牌記錄
+     * 刪除後的令牌無法再從數據庫確認，需同時記錄到撤銷過濾器
+     *
+     * @param ids 令牌ID
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void delete(Serializable[] ids) {
         List<AccessTokenEntity> tokens = baseDao.selectList(
                 new LambdaQueryWrapper<AccessTokenEntity>()
-                        .eq(AccessTokenEntity::getDeviceId, deviceId)
-                        .eq(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.NO)
+                        .select(AccessTokenEntity::getDeviceId, AccessTokenEntity::getCreateDate)
+                        .in(AccessTokenEntity::getId, Arrays.asList(ids))
         );
-
-        if (!tokens.isEmpty()) {
-            // 批量更新數據庫
-            baseDao.update(null, new LambdaUpdateWrapper<AccessTokenEntity>()
-                    .eq(AccessTokenEntity::getDeviceId, deviceId)
-                    .eq(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.NO)
-                    .set(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.YES));
-
-            // 將所有令牌添加到已撤銷令牌集合
-            for (AccessTokenEntity token : tokens) {
-                addToRevokedTokens(token.getToken());
-            }
-
-            // 從設備活躍令牌緩存中刪除
-            removeFromActiveTokens(deviceId);
+        super.delete(ids);
+        for (AccessTokenEntity token : tokens) {
+            removeFromActiveTokens(token.getDeviceId());
+            tokenRevocationFilter.revoke(token.getDeviceId(), token.getCreateDate());
         }
     }
 
     /**
      * 清理過期令牌
-     * 
+     * 每批直接更新最多ExpirySweeper.CHUNK_SIZE個過期令牌並單獨提交，不再逐個查詢和撤銷；
+     * 過期令牌的簽名校驗本身已失效，設備活躍令牌緩存也會隨過期時間自動失效，無需加入已撤銷集合
+     *
      * @return 清理的令牌數量
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public int cleanExpiredTokens() {
         Date now = new Date();
-        
-        // 查詢所有已過期但未撤銷的令牌
-        List<AccessTokenEntity> expiredTokens = baseDao.selectList(
-                new LambdaQueryWrapper<AccessTokenEntity>()
+        int count = expirySweeper.sweep("accessToken", limit -> baseDao.update(null,
+                new LambdaUpdateWrapper<AccessTokenEntity>()
                         .eq(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.NO)
                         .lt(AccessTokenEntity::getExpireTime, now)
-        );
+                        .set(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.YES)
+                        .last("LIMIT " + limit)));
 
-        int count = expiredTokens.size();
         if (count > 0) {
-            log.info("發現{}個過期令牌需要清理", count);
-            
-            for (AccessTokenEntity token : expiredTokens) {
-                // 撤銷令牌
-                revokeToken(token.getId());
-            }
+            log.info("共清理{}個過期令牌", count);
         } else {
             log.info("沒有發現過期令牌");
         }
-        
         return count;
     }
 
@@ -213,7 +252,7 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
         // 根據參數添加查詢條件
         if (params != null) {
             if (params.containsKey("token")) {
-                wrapper.eq("token", params.get("token"));
+                wrapper.eq("token_hash", JwtTokenProvider.hashToken(params.get("token").toString()));
             }
             
             if (params.containsKey("deviceId")) {
@@ -233,7 +272,7 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
     
     /**
      * 獲取設備的有效訪問令牌
-     * 如果有多個有效令牌，返回過期時間最晚的一個
+     * 如果有多個有效令牌，返回過期時間最晚的一個；當前密鑰不接受的令牌（如切換簽名算法前簽發）視為無效
      *
      * @param deviceId 設備ID
      * @return 有效訪問令牌，如果沒有則返回null
@@ -262,6 +301,10 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
         }
         
         AccessTokenEntity entity = tokens.get(0);
+        if (!isAccepted(entity)) {
+            log.info("設備令牌不被當前密鑰接受，需重新簽發，設備ID: {}, 令牌ID: {}", deviceId, entity.getId());
+            return null;
+        }
         log.info("獲取到設備有效訪問令牌，設備ID: {}, 令牌ID: {}", deviceId, entity.getId());
         
         return convertEntity(entity);
@@ -281,18 +324,149 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
         
         if (validToken != null) {
             log.info("使用现有访问令牌，设备ID: {}", deviceId);
+            deviceCheckinCache.putToken(deviceId, validToken.getToken(), validToken.getExpireTime());
             return validToken.getToken();
         }
         
         // 如果没有有效令牌，生成新的
         AccessTokenDTO newToken = generateToken(deviceId, DeviceConstant.DEFAULT_TOKEN_EXPIRE_HOURS);
         log.info("生成新的访问令牌，设备ID: {}", deviceId);
+        deviceCheckinCache.putToken(deviceId, newToken.getToken(), newToken.getExpireTime());
         
         return newToken.getToken();
     }
 
+    /**
+     * 批量获取或创建设备访问令牌
+     *
+     * @param devices 已激活的设备
+     * @return 设备ID -> 访问令牌字符串
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Map<Long, String> getOrCreateTokens(Collection<DeviceDTO> devices) {
+        Map<Long, String> result = new HashMap<>();
+        if (devices == null || devices.isEmpty()) {
+            return result;
+        }
+
+        List<Long> deviceIds = new ArrayList<>(devices.size());
+        for (DeviceDTO device : devices) {
+            deviceIds.add(device.getId());
+        }
+
+        // 一次查询所有设备未撤销且未过期的令牌，每个设备保留当前密钥接受且过期时间最晚的一个
+        List<AccessTokenEntity> validTokens = baseDao.selectList(
+                new LambdaQueryWrapper<AccessTokenEntity>()
+                        .in(AccessTokenEntity::getDeviceId, deviceIds)
+                        .eq(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.NO)
+                        .gt(AccessTokenEntity::getExpireTime, new Date())
+        );
+        Map<Long, AccessTokenEntity> latest = new HashMap<>();
+        for (AccessTokenEntity token : validTokens) {
+            if (!isAccepted(token)) {
+                continue;
+            }
+            AccessTokenEntity current = latest.get(token.getDeviceId());
+            if (current == null || current.getExpireTime().before(token.getExpireTime())) {
+                latest.put(token.getDeviceId(), token);
+            }
+        }
+        for (AccessTokenEntity token : latest.values()) {
+            deviceCheckinCache.putToken(token.getDeviceId(), token.getToken(), token.getExpireTime());
+            result.put(token.getDeviceId(), token.getToken());
+        }
+
+        // 为没有有效令牌的设备批量生成新令牌
+        List<DeviceDTO> missing = new ArrayList<>();
+        for (DeviceDTO device : devices) {
+            if (!latest.containsKey(device.getId())) {
+                missing.add(device);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<Long> missingIds = new ArrayList<>(missing.size());
+        for (DeviceDTO device : missing) {
+            missingIds.add(device.getId());
+        }
+        revokeAllTokensByDevices(missingIds);
+
+        Map<Long, Integer> generations = tokenGenerationCache.getAll(missingIds);
+        int expireHours = DeviceConstant.DEFAULT_TOKEN_EXPIRE_HOURS;
+        Date expireTime = calculateExpireTime(expireHours);
+        List<AccessTokenEntity> entities = new ArrayList<>(missing.size());
+        for (DeviceDTO device : missing) {
+            AccessTokenEntity entity = new AccessTokenEntity();
+            entity.setDeviceId(device.getId());
+            entity.setToken(jwtTokenProvider.generateToken(device.getId(), device.getMacAddress(), expireHours * 3600L,
+                    generations.get(device.getId())));
+            entity.setTokenHash(JwtTokenProvider.hashToken(entity.getToken()));
+            entity.setIsRevoked(DeviceConstant.TokenRevoked.NO);
+            entity.setExpireTime(expireTime);
+            entities.add(entity);
+        }
+        insertBatch(entities);
+
+        redisUtils.executePipelined(batch -> {
+            for (AccessTokenEntity entity : entities) {
+                cacheToken(batch, entity);
+            }
+        });
+        for (AccessTokenEntity entity : entities) {
+            deviceCheckinCache.putToken(entity.getDeviceId(), entity.getToken(), entity.getExpireTime());
+            result.put(entity.getDeviceId(), entity.getToken());
+        }
+        log.info("批量生成访问令牌，数量: {}", entities.size());
+
+        return result;
+    }
+
     // ========== 輔助方法 ==========
+
+    /**
+     * 撤銷設備的所有令牌
+     *
+     * @return 撤銷後設備的令牌代數，有令牌被撤銷時為加一後的代數
+     */
+    private int revokeAll(Long deviceId) {
+        // 一條語句更新數據庫，不再逐個查詢和記錄令牌
+        int count = baseDao.update(null, new LambdaUpdateWrapper<AccessTokenEntity>()
+                .eq(AccessTokenEntity::getDeviceId, deviceId)
+                .eq(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.NO)
+                .set(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.YES));
+
+        if (count == 0) {
+            return tokenGenerationCache.get(deviceId);
+        }
+        // 令牌代數加一，之前簽發的令牌驗證時即被拒絕
+        int generation = tokenGenerationCache.increment(deviceId);
+
+        // 從設備活躍令牌緩存中刪除
+        removeFromActiveTokens(deviceId);
+        return generation;
+    }
+
+    /**
+     * 批量撤銷設備的所有令牌
+     * 僅用於沒有有效令牌的設備，未撤銷的令牌均已過期或不被當前密鑰接受，驗證時已被拒絕，只需更新數據庫
+     */
+    private void revokeAllTokensByDevices(Collection<Long> deviceIds) {
+        baseDao.update(null, new LambdaUpdateWrapper<AccessTokenEntity>()
+                .in(AccessTokenEntity::getDeviceId, deviceIds)
+                .eq(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.NO)
+                .set(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.YES));
+    }
     
+    /**
+     * 令牌是否被當前密鑰接受，簽名算法切換或遷移期結束後之前簽發的令牌需重新簽發
+     */
+    private boolean isAccepted(AccessTokenEntity entity) {
+        return jwtTokenProvider.getValidClaims(entity.getToken()) != null;
+    }
+
     /**
      * 計算過期時間
      */
@@ -306,32 +480,20 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
      * 緩存令牌
      */
     private void cacheToken(AccessTokenEntity entity) {
+        redisUtils.executePipelined(batch -> cacheToken(batch, entity));
+    }
+
+    /**
+     * 緩存令牌，令牌及其元數據編碼為一個二進制值，和過期時間以一條SET EX命令寫入
+     */
+    private void cacheToken(RedisBatch batch, AccessTokenEntity entity) {
         // 緩存設備的活躍令牌，在驗證時快速查找
         String activeTokenKey = RedisKeys.getDeviceActiveTokenKey(entity.getDeviceId());
-        redisUtils.set(activeTokenKey, entity.getToken());
-        
+        AccessTokenDTO dto = ConvertUtils.sourceToTarget(entity, AccessTokenDTO.class);
+
         // 設置緩存過期時間比令牌過期時間稍長一些
         long ttlMillis = entity.getExpireTime().getTime() - System.currentTimeMillis() + 60000; // 額外1分鐘
-        if (ttlMillis > 0) {
-            redisUtils.expire(activeTokenKey, ttlMillis / 1000);
-        }
-    }
-    
-    /**
-     * 檢查令牌是否已被撤銷
-     */
-    private boolean isTokenRevoked(String token) {
-        return redisUtils.sIsMember(RedisKeys.getRevokedTokensKey(), token);
-    }
-    
-    /**
-     * 將令牌添加到已撤銷令牌集合
-     */
-    private void addToRevokedTokens(String token) {
-        redisUtils.sAdd(RedisKeys.getRevokedTokensKey(), token);
-        
-        // 令牌最長有效期為一周，因此我們可以設置緩存過期時間為一周
-        redisUtils.expire(RedisKeys.getRevokedTokensKey(), 7 * 24 * 3600);
+        batch.setBytes(activeTokenKey, AccessTokenCodec.encode(dto), ttlMillis > 0 ? ttlMillis / 1000 : RedisUtils.DEFAULT_EXPIRE);
     }
     
     /**
@@ -339,15 +501,28 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
      */
     private void removeFromActiveTokens(Long deviceId) {
         redisUtils.delete(RedisKeys.getDeviceActiveTokenKey(deviceId));
+        deviceCheckinCache.invalidate(deviceId);
     }
     
+    /**
+     * 從聲明中獲取設備ID
+     */
+    private Long getDeviceId(Claims claims) {
+        try {
+            return Long.parseLong(claims.getSubject());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * 根據令牌查詢實體
+     * 令牌列為TEXT類型無索引，按摘要走唯一索引查詢
      */
     private AccessTokenEntity getEntityByToken(String token) {
         return baseDao.selectOne(
                 new LambdaQueryWrapper<AccessTokenEntity>()
-                        .eq(AccessTokenEntity::getToken, token)
+                        .eq(AccessTokenEntity::getTokenHash, JwtTokenProvider.hashToken(token))
                         .eq(AccessTokenEntity::getIsRevoked, DeviceConstant.TokenRevoked.NO)
         );
     }
@@ -359,8 +534,7 @@ public class AccessTokenServiceImpl extends CrudServiceImpl<AccessTokenDao, Acce
         if (entity == null) {
             return null;
         }
-        AccessTokenDTO dto = new AccessTokenDTO();
-        org.springframework.beans.BeanUtils.copyProperties(entity, dto);
+        AccessTokenDTO dto = ConvertUtils.sourceToTarget(entity, AccessTokenDTO.class);
         
         // 如果需要，還可以填充設備信息
         if (entity.getDeviceId() != null) {
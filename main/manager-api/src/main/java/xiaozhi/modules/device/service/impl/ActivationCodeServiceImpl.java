@@ -1,21 +1,29 @@
 package xiaozhi.modules.device.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import lombok.AllArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.redis.RedisBatch;
 import xiaozhi.common.redis.RedisKeys;
 import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.common.service.impl.CrudServiceImpl;
+import xiaozhi.common.utils.TransactionUtils;
+import xiaozhi.modules.device.activation.ActivationCodeAllocator;
+import xiaozhi.modules.device.cache.ActivationCodeCodec;
 import xiaozhi.modules.device.constant.DeviceConstant;
 import xiaozhi.modules.device.dao.ActivationCodeDao;
 import xiaozhi.modules.device.dto.ActivationCodeDTO;
 import xiaozhi.modules.device.entity.ActivationCodeEntity;
 import xiaozhi.modules.device.service.ActivationCodeService;
 import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.device.task.ExpirySweeper;
 
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -27,6 +35,13 @@ public class ActivationCodeServiceImpl extends CrudServiceImpl<ActivationCodeDao
 
     private final RedisUtils redisUtils;
     private final DeviceService deviceService;
+    private final ActivationCodeAllocator activationCodeAllocator;
+    private final ExpirySweeper expirySweeper;
+
+    /**
+     * 激活码被其他实例占用时的最大重试次数
+     */
+    private static final int MAX_ALLOCATE_ATTEMPTS = 5;
 
     /**
      * 生成激活码
@@ -46,20 +61,31 @@ public class ActivationCodeServiceImpl extends CrudServiceImpl<ActivationCodeDao
         // 失效之前的激活码
         invalidateExistingCodes(deviceId);
 
-        // 生成新的激活码
-        String code = generateUniqueCode();
         Date expireTime = calculateExpireTime(expireMinutes);
 
         // 创建激活码实体
         ActivationCodeEntity entity = new ActivationCodeEntity();
-        entity.setCode(code);
         entity.setDeviceId(deviceId);
         entity.setStatus(DeviceConstant.ActivationStatus.VALID);
         entity.setExpireTime(expireTime);
         entity.setCreateDate(new Date());
 
-        // 保存到数据库
-        baseDao.insert(entity);
+        // 从分配器获取激活码并保存到数据库，唯一约束冲突说明已被其他实例占用，换一个重试
+        for (int attempt = 1; ; attempt++) {
+            String code = activationCodeAllocator.allocate();
+            entity.setCode(code);
+            try {
+                baseDao.insert(entity);
+                TransactionUtils.afterCommit(() -> activationCodeAllocator.confirm(code));
+                break;
+            } catch (DuplicateKeyException e) {
+                activationCodeAllocator.conflict(code);
+                if (attempt >= MAX_ALLOCATE_ATTEMPTS) {
+                    throw e;
+                }
+                entity.setId(null);
+            }
+        }
 
         // 保存到Redis缓存
         saveToRedis(entity);
@@ -83,13 +109,9 @@ public class ActivationCodeServiceImpl extends CrudServiceImpl<ActivationCodeDao
         }
 
         // 首先从Redis缓存获取
-        Map<String, Object> codeMap = redisUtils.hGetAll(RedisKeys.getActivationCodeKey(code));
-        ActivationCodeDTO dto = null;
+        ActivationCodeDTO dto = ActivationCodeCodec.decode(redisUtils.getBytes(RedisKeys.getActivationCodeKey(code)));
 
-        if (codeMap != null && !codeMap.isEmpty()) {
-            // 从Redis获取激活码信息
-            dto = mapToDto(codeMap);
-        } else {
+        if (dto == null) {
             // 如果Redis中不存在，则从数据库查询
             ActivationCodeEntity entity = getByCode(code);
             if (entity != null) {
@@ -145,27 +167,45 @@ public class ActivationCodeServiceImpl extends CrudServiceImpl<ActivationCodeDao
 
     /**
      * 清理过期激活码
+     * 每批按主键更新最多ExpirySweeper.CHUNK_SIZE个过期激活码并单独提交，提交后批量删除Redis缓存并释放激活码
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public void cleanExpiredCodes() {
         Date now = new Date();
-        
-        // 查询所有已过期但状态仍为有效的激活码
-        List<ActivationCodeEntity> expiredCodes = baseDao.selectList(
-                new LambdaQueryWrapper<ActivationCodeEntity>()
-                        .eq(ActivationCodeEntity::getStatus, DeviceConstant.ActivationStatus.VALID)
-                        .lt(ActivationCodeEntity::getExpireTime, now)
-        );
+        expirySweeper.sweep("activationCode", limit -> {
+            List<ActivationCodeEntity> expiredCodes = baseDao.selectList(
+                    new LambdaQueryWrapper<ActivationCodeEntity>()
+                            .select(ActivationCodeEntity::getId, ActivationCodeEntity::getCode)
+                            .eq(ActivationCodeEntity::getStatus, DeviceConstant.ActivationStatus.VALID)
+                            .lt(ActivationCodeEntity::getExpireTime, now)
+                            .last("LIMIT " + limit)
+            );
+            if (expiredCodes.isEmpty()) {
+                return 0;
+            }
 
-        for (ActivationCodeEntity code : expiredCodes) {
-            // 更新状态为已过期
-            code.setStatus(DeviceConstant.ActivationStatus.EXPIRED);
-            baseDao.updateById(code);
-            
-            // 从Redis中删除
-            redisUtils.delete(RedisKeys.getActivationCodeKey(code.getCode()));
-        }
+            List<Long> ids = new ArrayList<>(expiredCodes.size());
+            List<String> keys = new ArrayList<>(expiredCodes.size());
+            for (ActivationCodeEntity code : expiredCodes) {
+                ids.add(code.getId());
+                keys.add(RedisKeys.getActivationCodeKey(code.getCode()));
+            }
+
+            // 一条语句更新本批状态为已过期
+            baseDao.update(null, new LambdaUpdateWrapper<ActivationCodeEntity>()
+                    .in(ActivationCodeEntity::getId, ids)
+                    .eq(ActivationCodeEntity::getStatus, DeviceConstant.ActivationStatus.VALID)
+                    .set(ActivationCodeEntity::getStatus, DeviceConstant.ActivationStatus.EXPIRED));
+
+            // 提交后从Redis中批量删除，并释放激活码以便重新分配
+            TransactionUtils.afterCommit(() -> {
+                redisUtils.delete(keys);
+                for (ActivationCodeEntity code : expiredCodes) {
+                    activationCodeAllocator.release(code.getCode());
+                }
+            });
+            return expiredCodes.size();
+        });
     }
 
     @Override
@@ -217,8 +257,154 @@ public class ActivationCodeServiceImpl extends CrudServiceImpl<ActivationCodeDao
         return convertEntity(codes.get(0));
     }
 
+    /**
+     * 批量獲取設備的有效激活碼
+     *
+     * @param deviceIds 設備ID集合
+     * @return 設備ID -> 有效激活碼
+     */
+    @Override
+    public Map<Long, ActivationCodeDTO> getValidCodesByDeviceIds(Collection<Long> deviceIds) {
+        Map<Long, ActivationCodeDTO> result = new HashMap<>();
+        if (deviceIds == null || deviceIds.isEmpty()) {
+            return result;
+        }
+
+        List<ActivationCodeEntity> codes = baseDao.selectList(
+                new LambdaQueryWrapper<ActivationCodeEntity>()
+                        .in(ActivationCodeEntity::getDeviceId, deviceIds)
+                        .eq(ActivationCodeEntity::getStatus, DeviceConstant.ActivationStatus.VALID)
+                        .gt(ActivationCodeEntity::getExpireTime, new Date())
+        );
+
+        // 每個設備保留過期時間最晚的一個
+        for (ActivationCodeEntity code : codes) {
+            ActivationCodeDTO current = result.get(code.getDeviceId());
+            if (current == null || current.getExpireTime().before(code.getExpireTime())) {
+                result.put(code.getDeviceId(), convertEntity(code));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量生成激活碼
+     *
+     * @param deviceIds     設備ID集合
+     * @param expireMinutes 過期時間（分鐘）
+     * @return 設備ID -> 新激活碼
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Map<Long, ActivationCodeDTO> generateCodes(Collection<Long> deviceIds, int expireMinutes) {
+        Map<Long, ActivationCodeDTO> result = new HashMap<>();
+        if (deviceIds == null || deviceIds.isEmpty()) {
+            return result;
+        }
+
+        // 失效這些設備之前的激活碼
+        invalidateExistingCodes(deviceIds);
+
+        // 生成新的激活碼並一次批量插入
+        List<String> codes = generateUniqueCodes(deviceIds.size());
+        Date expireTime = calculateExpireTime(expireMinutes);
+        Date now = new Date();
+        List<ActivationCodeEntity> entities = new ArrayList<>(deviceIds.size());
+        int index = 0;
+        for (Long deviceId : deviceIds) {
+            ActivationCodeEntity entity = new ActivationCodeEntity();
+            entity.setCode(codes.get(index++));
+            entity.setDeviceId(deviceId);
+            entity.setStatus(DeviceConstant.ActivationStatus.VALID);
+            entity.setExpireTime(expireTime);
+            entity.setCreateDate(now);
+            entities.add(entity);
+        }
+        insertBatch(entities);
+
+        redisUtils.executePipelined(batch -> {
+            for (ActivationCodeEntity entity : entities) {
+                saveToRedis(batch, entity);
+            }
+        });
+        TransactionUtils.afterCommit(() -> {
+            for (String code : codes) {
+                activationCodeAllocator.confirm(code);
+            }
+        });
+        for (ActivationCodeEntity entity : entities) {
+            result.put(entity.getDeviceId(), convertEntity(entity));
+        }
+
+        // 更新設備狀態為等待激活
+        deviceService.updateStatusBatch(deviceIds, DeviceConstant.Status.WAITING);
+
+        return result;
+    }
+
     // ========== 辅助方法 ==========
 
+    /**
+     * 批量失效設備之前的激活碼
+     */
+    private void invalidateExistingCodes(Collection<Long> deviceIds) {
+        List<ActivationCodeEntity> existingCodes = baseDao.selectList(
+                new LambdaQueryWrapper<ActivationCodeEntity>()
+                        .select(ActivationCodeEntity::getId, ActivationCodeEntity::getCode)
+                        .in(ActivationCodeEntity::getDeviceId, deviceIds)
+                        .eq(ActivationCodeEntity::getStatus, DeviceConstant.ActivationStatus.VALID)
+        );
+        if (existingCodes.isEmpty()) {
+            return;
+        }
+
+        baseDao.update(null, new LambdaUpdateWrapper<ActivationCodeEntity>()
+                .in(ActivationCodeEntity::getDeviceId, deviceIds)
+                .eq(ActivationCodeEntity::getStatus, DeviceConstant.ActivationStatus.VALID)
+                .set(ActivationCodeEntity::getStatus, DeviceConstant.ActivationStatus.EXPIRED));
+
+        List<String> keys = new ArrayList<>(existingCodes.size());
+        for (ActivationCodeEntity code : existingCodes) {
+            keys.add(RedisKeys.getActivationCodeKey(code.getCode()));
+        }
+        redisUtils.delete(keys);
+        // 提交后释放，事务回滚时激活码仍然有效
+        TransactionUtils.afterCommit(() -> {
+            for (ActivationCodeEntity code : existingCodes) {
+                activationCodeAllocator.release(code.getCode());
+            }
+        });
+    }
+
+    /**
+     * 從分配器批量獲取激活碼，一次查詢排除已被其他實例佔用的有效激活碼
+     */
+    private List<String> generateUniqueCodes(int count) {
+        List<String> codes = new ArrayList<>(count);
+        for (int attempt = 1; codes.size() < count; attempt++) {
+            Set<String> candidates = new HashSet<>();
+            while (candidates.size() < count - codes.size()) {
+                candidates.add(activationCodeAllocator.allocate());
+            }
+
+            List<ActivationCodeEntity> existing = baseDao.selectList(
+                    new LambdaQueryWrapper<ActivationCodeEntity>()
+                            .select(ActivationCodeEntity::getCode)
+                            .in(ActivationCodeEntity::getCode, candidates)
+                            .eq(ActivationCodeEntity::getStatus, DeviceConstant.ActivationStatus.VALID)
+            );
+            for (ActivationCodeEntity entity : existing) {
+                activationCodeAllocator.conflict(entity.getCode());
+                candidates.remove(entity.getCode());
+            }
+            codes.addAll(candidates);
+            if (attempt >= MAX_ALLOCATE_ATTEMPTS && codes.size() < count) {
+                throw new RenException(ErrorCode.ACTIVATION_CODE_EXHAUSTED);
+            }
+        }
+        return codes;
+    }
+
     /**
      * 失效该设备之前的激活码
      */
@@ -233,38 +419,24 @@ public class ActivationCodeServiceImpl extends CrudServiceImpl<ActivationCodeDao
             code.setStatus(DeviceConstant.ActivationStatus.EXPIRED);
             baseDao.updateById(code);
             
-            // 从Redis中删除
+            // 从Redis中删除，并在提交后释放激活码以便重新分配
             redisUtils.delete(RedisKeys.getActivationCodeKey(code.getCode()));
+            TransactionUtils.afterCommit(() -> activationCodeAllocator.release(code.getCode()));
         }
     }
 
-    /**
-     * 生成唯一的6位数字激活码
-     */
-    private String generateUniqueCode() {
-        String code;
-        boolean isUnique = false;
-        
-        do {
-            // 生成6位随机数字
-            int randomNum = ThreadLocalRandom.current().nextInt(100000, 1000000);
-            code = String.valueOf(randomNum);
-            
-            // 检查是否已存在
-            isUnique = getByCode(code) == null;
-        } while (!isUnique);
-        
-        return code;
-    }
-
     /**
      * 根据code查询激活码
      */
     private ActivationCodeEntity getByCode(String code) {
-        return baseDao.selectOne(
+        // 激活码过期后可被重新分配，同一激活码可能有多条记录，取最新的一条
+        List<ActivationCodeEntity> codes = baseDao.selectList(
                 new LambdaQueryWrapper<ActivationCodeEntity>()
                         .eq(ActivationCodeEntity::getCode, code)
+                        .orderByDesc(ActivationCodeEntity::getCreateDate)
+                        .last("LIMIT 1")
         );
+        return codes.isEmpty() ? null : codes.get(0);
     }
 
     /**
@@ -283,34 +455,25 @@ public class ActivationCodeServiceImpl extends CrudServiceImpl<ActivationCodeDao
         if (entity == null) {
             return;
         }
-        
+        redisUtils.executePipelined(batch -> saveToRedis(batch, entity));
+    }
+
+    /**
+     * 保存激活码到Redis，编码为一个二进制值，和过期时间以一条SET EX命令写入
+     */
+    private void saveToRedis(RedisBatch batch, ActivationCodeEntity entity) {
         String key = RedisKeys.getActivationCodeKey(entity.getCode());
-        Map<String, Object> map = new HashMap<>();
-        
-        map.put("id", entity.getId());
-        map.put("code", entity.getCode());
-        map.put("deviceId", entity.getDeviceId());
-        map.put("status", entity.getStatus());
-        map.put("expireTime", entity.getExpireTime().getTime());
-        
+
         // 添加createDate为null的检查
-        if (entity.getCreateDate() != null) {
-            map.put("createDate", entity.getCreateDate().getTime());
-        } else {
-            Date now = new Date();
-            entity.setCreateDate(now);
-            map.put("createDate", now.getTime());
+        if (entity.getCreateDate() == null) {
+            entity.setCreateDate(new Date());
         }
 
-        // 保存到Redis，设置过期时间
-        redisUtils.hMSet(key, map);
-        
         // 设置Redis过期时间比激活码过期时间稍长一些
         long ttl = (entity.getExpireTime().getTime() - System.currentTimeMillis()) + 60000; // 额外1分钟
-        if (ttl > 0) {
-            // 将毫秒转换为秒，因为RedisUtils.expire接受的是秒
-            redisUtils.expire(key, ttl / 1000);
-        }
+
+        // 保存到Redis，过期时间单位为秒
+        batch.setBytes(key, ActivationCodeCodec.encode(convertEntity(entity)), ttl > 0 ? ttl / 1000 : RedisUtils.DEFAULT_EXPIRE);
     }
 
     /**
@@ -322,9 +485,10 @@ public class ActivationCodeServiceImpl extends CrudServiceImpl<ActivationCodeDao
             entity.setStatus(status);
             baseDao.updateById(entity);
             
-            // 如果是标记为过期或已使用，则从Redis中删除
+            // 如果是标记为过期或已使用，则从Redis中删除并在提交后释放激活码
             if (status != DeviceConstant.ActivationStatus.VALID) {
                 redisUtils.delete(RedisKeys.getActivationCodeKey(entity.getCode()));
+                TransactionUtils.afterCommit(() -> activationCodeAllocator.release(entity.getCode()));
             } else {
                 // 否则更新Redis缓存
                 saveToRedis(entity);
@@ -332,20 +496,6 @@ public class ActivationCodeServiceImpl extends CrudServiceImpl<ActivationCodeDao
         }
     }
 
-    /**
-     * 将Redis的Map转换为DTO对象
-     */
-    private ActivationCodeDTO mapToDto(Map<String, Object> map) {
-        ActivationCodeDTO dto = new ActivationCodeDTO();
-        dto.setId(Long.parseLong(map.get("id").toString()));
-        dto.setCode(map.get("code").toString());
-        dto.setDeviceId(Long.parseLong(map.get("deviceId").toString()));
-        dto.setStatus(Integer.parseInt(map.get("status").toString()));
-        dto.setExpireTime(new Date(Long.parseLong(map.get("expireTime").toString())));
-        dto.setCreateDate(new Date(Long.parseLong(map.get("createDate").toString())));
-        return dto;
-    }
-
     /**
      * 绑定设备到用户
      */
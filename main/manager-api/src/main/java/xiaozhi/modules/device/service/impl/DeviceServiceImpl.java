@@ -6,12 +6,19 @@ import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import xiaozhi.common.service.impl.CrudServiceImpl;
+import xiaozhi.common.utils.ConvertUtils;
+import xiaozhi.modules.device.cache.DeviceCheckinCache;
 import xiaozhi.modules.device.dao.DeviceDao;
 import xiaozhi.modules.device.dto.DeviceDTO;
 import xiaozhi.modules.device.entity.DeviceEntity;
 import xiaozhi.modules.device.service.DeviceService;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -21,6 +28,8 @@ import java.util.Map;
 @AllArgsConstructor
 public class DeviceServiceImpl extends CrudServiceImpl<DeviceDao, DeviceEntity, DeviceDTO> implements DeviceService {
 
+    private final DeviceCheckinCache deviceCheckinCache;
+
     /**
      * 根据MAC地址查询设备
      *
@@ -80,6 +89,96 @@ public class DeviceServiceImpl extends CrudServiceImpl<DeviceDao, DeviceEntity,
         entity.setUpdateDate(new Date());
 
         baseDao.updateById(entity);
+
+        // 设备状态变更，失效签到缓存
+        deviceCheckinCache.invalidate(id);
+    }
+
+    /**
+     * 根据MAC地址批量查询设备
+     *
+     * @param macAddresses MAC地址集合
+     * @return MAC地址 -> 设备信息
+     */
+    @Override
+    public Map<String, DeviceDTO> getByMacAddresses(Collection<String> macAddresses) {
+        Map<String, DeviceDTO> devices = new HashMap<>();
+        if (macAddresses == null || macAddresses.isEmpty()) {
+            return devices;
+        }
+
+        List<DeviceEntity> entities = baseDao.selectList(
+                new LambdaQueryWrapper<DeviceEntity>()
+                        .in(DeviceEntity::getMacAddress, macAddresses)
+        );
+        for (DeviceEntity entity : entities) {
+            devices.put(entity.getMacAddress(), convertEntity(entity));
+        }
+        return devices;
+    }
+
+    /**
+     * 批量保存设备
+     *
+     * @param devices 设备列表
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void saveBatch(List<DeviceDTO> devices) {
+        if (devices == null || devices.isEmpty()) {
+            return;
+        }
+
+        List<DeviceEntity> entities = ConvertUtils.sourceToTarget(devices, DeviceEntity.class);
+        insertBatch(entities);
+
+        // 回写生成的ID和创建时间
+        for (int i = 0; i < devices.size(); i++) {
+            devices.get(i).setId(entities.get(i).getId());
+            devices.get(i).setCreateDate(entities.get(i).getCreateDate());
+        }
+    }
+
+    /**
+     * 批量更新设备状态
+     *
+     * @param ids    设备ID集合
+     * @param status 新状态
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void updateStatusBatch(Collection<Long> ids, Integer status) {
+        if (ids == null || ids.isEmpty() || status == null) {
+            return;
+        }
+
+        baseDao.update(null, new LambdaUpdateWrapper<DeviceEntity>()
+                .in(DeviceEntity::getId, ids)
+                .set(DeviceEntity::getStatus, status)
+                .set(DeviceEntity::getUpdateDate, new Date()));
+
+        // 设备状态变更，失效签到缓存
+        deviceCheckinCache.invalidate(ids);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void update(DeviceDTO dto) {
+        super.update(dto);
+
+        deviceCheckinCache.invalidate(dto.getId());
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void delete(Serializable[] ids) {
+        super.delete(ids);
+
+        List<Long> deviceIds = new ArrayList<>(ids.length);
+        for (Serializable id : ids) {
+            deviceIds.add((Long) id);
+        }
+        deviceCheckinCache.invalidate(deviceIds);
     }
 
     /**
@@ -0,0 +1,117 @@
+package xiaozhi.modules.device.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import xiaozhi.common.exception.RenException;
+import xiaozhi.common.service.impl.CrudServiceImpl;
+import xiaozhi.common.utils.TransactionUtils;
+import xiaozhi.modules.device.dao.FirmwareDao;
+import xiaozhi.modules.device.dto.FirmwareDTO;
+import xiaozhi.modules.device.entity.FirmwareEntity;
+import xiaozhi.modules.device.firmware.FirmwareCatalog;
+import xiaozhi.modules.device.firmware.FirmwareRolloutScheduler;
+import xiaozhi.modules.device.firmware.FirmwareStorage;
+import xiaozhi.modules.device.service.FirmwareService;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 固件服务实现类
+ */
+@Service
+@AllArgsConstructor
+public class FirmwareServiceImpl extends CrudServiceImpl<FirmwareDao, FirmwareEntity, FirmwareDTO> implements FirmwareService {
+
+    private final FirmwareCatalog firmwareCatalog;
+    private final FirmwareRolloutScheduler firmwareRolloutScheduler;
+    private final FirmwareStorage firmwareStorage;
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void save(FirmwareDTO dto) {
+        // 配置了发布计划的固件从第一批开始发布
+        firmwareRolloutScheduler.initRollout(dto);
+        dto.setUpdateDate(new Date());
+        super.save(dto);
+
+        // 提交后重建，否则读不到本事务的修改
+        TransactionUtils.afterCommit(firmwareCatalog::reload);
+    }
+
+    @Override
+    public boolean exists(String deviceType, String version) {
+        return baseDao.exists(new LambdaQueryWrapper<FirmwareEntity>()
+                .eq(FirmwareEntity::getDeviceType, deviceType)
+                .eq(FirmwareEntity::getVersion, version));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void upload(FirmwareDTO dto, FirmwareStorage.StoredFirmware stored) {
+        // 唯一索引保证并发上传同一版本时只有一个能写入数据库，写入成功后才替换固件文件
+        save(dto);
+        try {
+            firmwareStorage.publish(stored);
+        } catch (IOException e) {
+            throw new RenException("固件文件保存失败", e);
+        }
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void update(FirmwareDTO dto) {
+        // 发布计划变化时重新计算发布批次
+        FirmwareEntity current = baseDao.selectById(dto.getId());
+        boolean rolloutChanged = current != null && firmwareRolloutScheduler.updateRollout(dto, current);
+        dto.setUpdateDate(new Date());
+        super.update(dto);
+        if (rolloutChanged) {
+            // 按ID更新会忽略空值，取消发布计划时需要显式置空计划和下一批次时间
+            baseDao.update(null, new LambdaUpdateWrapper<FirmwareEntity>()
+                    .eq(FirmwareEntity::getId, dto.getId())
+                    .set(FirmwareEntity::getRolloutPlan, dto.getRolloutPlan())
+                    .set(FirmwareEntity::getRolloutNextTime, dto.getRolloutNextTime()));
+        }
+
+        // 提交后重建，否则读不到本事务的修改
+        TransactionUtils.afterCommit(firmwareCatalog::reload);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void delete(Serializable[] ids) {
+        super.delete(ids);
+
+        // 提交后重建，否则读不到本事务的修改
+        TransactionUtils.afterCommit(firmwareCatalog::reload);
+    }
+
+    @Override
+    public QueryWrapper<FirmwareEntity> getWrapper(Map<String, Object> params) {
+        // 创建查询包装器
+        QueryWrapper<FirmwareEntity> wrapper = new QueryWrapper<>();
+        
+        // 根据参数添加查询条件
+        if (params != null) {
+            if (params.containsKey("deviceType")) {
+                wrapper.eq("device_type", params.get("deviceType"));
+            }
+            
+            if (params.containsKey("status")) {
+                wrapper.eq("status", params.get("status"));
+            }
+        }
+        
+        // 添加默认排序
+        wrapper.orderByDesc("create_date");
+        
+        return wrapper;
+    }
+}
@@ -4,18 +4,25 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import xiaozhi.modules.device.config.OtaConfig;
+import xiaozhi.modules.device.cache.DeviceCheckinCache;
 import xiaozhi.modules.device.constant.DeviceConstant;
 import xiaozhi.modules.device.dto.ActivationCodeDTO;
 import xiaozhi.modules.device.dto.DeviceDTO;
 import xiaozhi.modules.device.dto.OtaRequestDTO;
 import xiaozhi.modules.device.dto.OtaResponseDTO;
+import xiaozhi.modules.device.firmware.FirmwareCatalog;
+import xiaozhi.modules.device.firmware.FirmwareRelease;
+import xiaozhi.modules.device.ota.WebsocketBackendPool;
 import xiaozhi.modules.device.service.AccessTokenService;
 import xiaozhi.modules.device.service.ActivationCodeService;
 import xiaozhi.modules.device.service.DeviceService;
 import xiaozhi.modules.device.service.OtaService;
 
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 /**
@@ -31,7 +38,9 @@ public class OtaServiceImpl implements OtaService {
     private final DeviceService deviceService;
     private final ActivationCodeService activationCodeService;
     private final AccessTokenService accessTokenService;
-    private final OtaConfig otaConfig;
+    private final DeviceCheckinCache deviceCheckinCache;
+    private final FirmwareCatalog firmwareCatalog;
+    private final WebsocketBackendPool websocketBackendPool;
 
     /**
      * 处理OTA请求
@@ -65,6 +74,14 @@ public class OtaServiceImpl implements OtaService {
         String currentVersion = request.getFirmwareVersion() != null ? request.getFirmwareVersion() : "unknown";
         response.addFirmware(currentVersion, "");
 
+        // 已激活设备重复签到，直接从缓存返回令牌，无需访问数据库
+        DeviceCheckinCache.Checkin checkin = deviceCheckinCache.getActiveCheckin(request.getMacAddress());
+        if (checkin != null) {
+            response.setWebsocket(buildWebsocketResponse(checkin.getDeviceId(), checkin.getToken()).getWebsocket());
+            applyFirmwareUpdate(response, request);
+            return response;
+        }
+
         // 检查设备是否已注册
         DeviceDTO device = deviceService.getByMacAddress(request.getMacAddress());
         
@@ -76,10 +93,7 @@ public class OtaServiceImpl implements OtaService {
             response.setActivation(activationResponse.getActivation());
             
             // 检查是否需要固件更新
-            if (needsFirmwareUpdate(request.getDeviceType(), request.getFirmwareVersion())) {
-                OtaResponseDTO firmwareResponse = getFirmwareUpdateInfo(request.getDeviceType());
-                response.setFirmware(firmwareResponse.getFirmware());
-            }
+            applyFirmwareUpdate(response, request);
             
             return response;
         }
@@ -102,6 +116,7 @@ public class OtaServiceImpl implements OtaService {
                 log.info("设备已激活, ID: {}", device.getId());
                 OtaResponseDTO activeResponse = handleActiveDevice(device.getId(), request.getMacAddress());
                 response.setWebsocket(activeResponse.getWebsocket());
+                deviceCheckinCache.bindActiveDevice(request.getMacAddress(), device.getId());
                 break;
                 
             default:
@@ -109,18 +124,150 @@ public class OtaServiceImpl implements OtaService {
         }
         
         // 检查是否需要固件更新
-        if (needsFirmwareUpdate(request.getDeviceType(), request.getFirmwareVersion())) {
-            OtaResponseDTO firmwareResponse = getFirmwareUpdateInfo(request.getDeviceType());
-            response.setFirmware(firmwareResponse.getFirmware());
-        }
+        applyFirmwareUpdate(response, request);
         
         return response;
     }
 
+    /**
+     * 批量处理OTA请求
+     *
+     * @param requests OTA请求DTO列表
+     * @return OTA响应DTO列表，与请求一一对应
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public List<OtaResponseDTO> processOtaRequests(List<OtaRequestDTO> requests) {
+        log.info("收到批量OTA请求，数量: {}", requests.size());
+
+        List<OtaResponseDTO> responses = new ArrayList<>(requests.size());
+        // MAC地址 -> 需要访问数据库的请求（同一MAC多次出现只处理一次）
+        Map<String, OtaRequestDTO> pending = new LinkedHashMap<>();
+        for (OtaRequestDTO request : requests) {
+            OtaResponseDTO response = createEmptyResponse(request);
+            responses.add(response);
+            if (!isValidRequest(request)) {
+                continue;
+            }
+
+            // 已激活设备重复签到，直接从缓存返回令牌
+            DeviceCheckinCache.Checkin checkin = deviceCheckinCache.getActiveCheckin(request.getMacAddress());
+            if (checkin != null) {
+                response.setWebsocket(buildWebsocketResponse(checkin.getDeviceId(), checkin.getToken()).getWebsocket());
+            } else {
+                pending.putIfAbsent(request.getMacAddress(), request);
+            }
+        }
+
+        Map<String, DeviceDTO> devices = new HashMap<>();
+        Map<Long, ActivationCodeDTO> codes = new HashMap<>();
+        Map<Long, String> tokens = new HashMap<>();
+        if (!pending.isEmpty()) {
+            // 一次IN查询获取所有设备
+            devices = deviceService.getByMacAddresses(pending.keySet());
+
+            // 批量注册新设备
+            List<DeviceDTO> newDevices = new ArrayList<>();
+            for (OtaRequestDTO request : pending.values()) {
+                if (!devices.containsKey(request.getMacAddress())) {
+                    DeviceDTO deviceDTO = new DeviceDTO();
+                    deviceDTO.setMacAddress(request.getMacAddress());
+                    deviceDTO.setClientId(request.getClientId());
+                    deviceDTO.setType(request.getDeviceType());
+                    deviceDTO.setName(request.getDeviceName());
+                    deviceDTO.setStatus(DeviceConstant.Status.INACTIVE);
+                    newDevices.add(deviceDTO);
+                }
+            }
+            if (!newDevices.isEmpty()) {
+                log.info("批量注册新设备，数量: {}", newDevices.size());
+                deviceService.saveBatch(newDevices);
+                for (DeviceDTO device : newDevices) {
+                    devices.put(device.getMacAddress(), device);
+                }
+            }
+
+            // 按状态分组
+            List<Long> needCodeIds = new ArrayList<>();
+            List<Long> waitingIds = new ArrayList<>();
+            List<DeviceDTO> activeDevices = new ArrayList<>();
+            for (DeviceDTO device : devices.values()) {
+                switch (device.getStatus()) {
+                    case DeviceConstant.Status.INACTIVE:
+                        needCodeIds.add(device.getId());
+                        break;
+                    case DeviceConstant.Status.WAITING:
+                        waitingIds.add(device.getId());
+                        break;
+                    case DeviceConstant.Status.ACTIVE:
+                        activeDevices.add(device);
+                        break;
+                    default:
+                        log.warn("设备状态未知: {}", device.getStatus());
+                }
+            }
+
+            // 等待激活的设备复用有效激活码，没有的与未激活设备一起批量生成
+            codes.putAll(activationCodeService.getValidCodesByDeviceIds(waitingIds));
+            for (Long deviceId : waitingIds) {
+                if (!codes.containsKey(deviceId)) {
+                    needCodeIds.add(deviceId);
+                }
+            }
+            codes.putAll(activationCodeService.generateCodes(needCodeIds,
+                    DeviceConstant.DEFAULT_ACTIVATION_EXPIRE_MINUTES));
+
+            // 已激活设备一次查询令牌，缺少的批量生成
+            tokens = accessTokenService.getOrCreateTokens(activeDevices);
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            OtaRequestDTO request = requests.get(i);
+            if (!isValidRequest(request)) {
+                continue;
+            }
+            OtaResponseDTO response = responses.get(i);
+            DeviceDTO device = response.getWebsocket() == null ? devices.get(request.getMacAddress()) : null;
+            if (device != null) {
+                ActivationCodeDTO code = codes.get(device.getId());
+                String token = tokens.get(device.getId());
+                if (code != null) {
+                    response.addActivation(code.getCode(), ACTIVATION_CODE_INSTRUCTION);
+                } else if (token != null) {
+                    response.setWebsocket(buildWebsocketResponse(device.getId(), token).getWebsocket());
+                    deviceCheckinCache.bindActiveDevice(request.getMacAddress(), device.getId());
+                }
+            }
+            applyFirmwareUpdate(response, request);
+        }
+
+        return responses;
+    }
+
+    /**
+     * 检查请求是否包含MAC地址和设备UUID
+     */
+    private boolean isValidRequest(OtaRequestDTO request) {
+        return request != null
+                && request.getMacAddress() != null && !request.getMacAddress().isEmpty()
+                && request.getClientId() != null && !request.getClientId().isEmpty();
+    }
+
+    /**
+     * 如果设备在固件的当前发布批次中，将固件信息写入响应
+     */
+    private void applyFirmwareUpdate(OtaResponseDTO response, OtaRequestDTO request) {
+        OtaResponseDTO firmwareResponse = getFirmwareUpdateInfo(request);
+        if (firmwareResponse != null) {
+            response.setFirmware(firmwareResponse.getFirmware());
+        }
+    }
+
     /**
      * 创建包含基本信息的空响应
      */
-    private OtaResponseDTO createEmptyResponse(OtaRequestDTO request) {
+    @Override
+    public OtaResponseDTO createEmptyResponse(OtaRequestDTO request) {
         OtaResponseDTO response = new OtaResponseDTO();
         
         // 添加服务器时间（确保timestamp是数字类型）
@@ -128,7 +275,8 @@ public class OtaServiceImpl implements OtaService {
                 TimeZone.getDefault().getRawOffset() / (60 * 1000));
         
         // 添加空的固件信息
-        String currentVersion = request.getFirmwareVersion() != null ? request.getFirmwareVersion() : "unknown";
+        String currentVersion = request != null && request.getFirmwareVersion() != null 
+                ? request.getFirmwareVersion() : "unknown";
         response.addFirmware(currentVersion, "");
         
         return response;
@@ -230,21 +378,30 @@ public class OtaServiceImpl implements OtaService {
         // 检查是否有有效的令牌，如果没有则生成新令牌
         String token = accessTokenService.getOrCreateToken(deviceId);
         
-        // 获取WebSocket连接信息
-        String server = otaConfig.getServer();
-        Integer port = otaConfig.getPort();
-        String path = otaConfig.getPath();
+        return buildWebsocketResponse(deviceId, token);
+    }
+
+    /**
+     * 构建WebSocket连接信息响应
+     *
+     * @param deviceId 设备ID
+     * @param token 访问令牌
+     * @return OTA响应DTO (仅包含WebSocket信息)
+     */
+    private OtaResponseDTO buildWebsocketResponse(Long deviceId, String token) {
+        // 按设备ID从后端节点池中分配WebSocket服务器
+        WebsocketBackendPool.Backend backend = websocketBackendPool.select(deviceId);
         
         return OtaResponseDTO.withWebsocket(
             token, 
-            server, 
-            port, 
-            path
+            backend.getServer(), 
+            backend.getPort(), 
+            backend.getPath()
         );
     }
 
     /**
-     * 检查是否需要固件更新
+     * 检查是否需要固件更新（仅考虑已全量发布的固件）
      *
      * @param deviceType 设备类型
      * @param currentVersion 当前固件版本
@@ -252,9 +409,8 @@ public class OtaServiceImpl implements OtaService {
      */
     @Override
     public boolean needsFirmwareUpdate(String deviceType, String currentVersion) {
-        // TODO: 实现固件版本检查逻辑
-        // 目前仅为占位符
-        return false;
+        // 内存索引查找，不访问数据库
+        return firmwareCatalog.getIndex().needsUpdate(deviceType, currentVersion);
     }
 
     /**
@@ -265,11 +421,33 @@ public class OtaServiceImpl implements OtaService {
      */
     @Override
     public OtaResponseDTO getFirmwareUpdateInfo(String deviceType) {
-        // TODO: 从数据库或配置中获取最新的固件信息
-        // 目前仅为占位符
+        FirmwareRelease latest = firmwareCatalog.getIndex().getLatest(deviceType);
+        if (latest == null) {
+            return new OtaResponseDTO();
+        }
+        return OtaResponseDTO.withFirmware(
+            latest.getVersion(), 
+            latest.getUrl()
+        );
+    }
+
+    /**
+     * 获取设备可推送的固件更新信息
+     *
+     * @param request OTA请求DTO
+     * @return OTA响应DTO (仅包含固件信息)，无需更新返回null
+     */
+    @Override
+    public OtaResponseDTO getFirmwareUpdateInfo(OtaRequestDTO request) {
+        // 按MAC地址分桶，只有落入当前发布批次的设备才获得新固件
+        FirmwareRelease release = firmwareCatalog.getIndex().select(
+                request.getDeviceType(), request.getFirmwareVersion(), request.getMacAddress());
+        if (release == null) {
+            return null;
+        }
         return OtaResponseDTO.withFirmware(
-            "1.0.6", 
-            "https://firmware.example.com/v1.0.6.bin"
+            release.getVersion(), 
+            release.getUrl()
         );
     }
 } 
\ No newline at end of file
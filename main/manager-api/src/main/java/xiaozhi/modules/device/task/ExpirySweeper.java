@@ -0,0 +1,140 @@
+package xiaozhi.modules.device.task;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 过期数据分批清理
+ * 每批最多处理CHUNK_SIZE行并单独提交事务，积压数十万行时也不会长时间锁表或一次性加载到内存，
+ * 同一类清理同时只运行一个，并记录进度供查询
+ */
+@Slf4j
+@Component
+public class ExpirySweeper {
+    /**
+     * 每批处理的行数
+     */
+    public static final int CHUNK_SIZE = 1000;
+    /**
+     * 单次清理的最大批数，防止异常情况下无限循环
+     */
+    private static final int MAX_CHUNKS = 10000;
+
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Progress> progresses = new ConcurrentHashMap<>();
+
+    public ExpirySweeper(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // 每批使用独立事务，即使调用方处于事务中也逐批提交
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 分批清理
+     *
+     * @param name  清理名称
+     * @param chunk 单批清理逻辑，返回本批处理的行数，少于CHUNK_SIZE时结束
+     * @return 本次清理的总行数，已有同名清理在运行时返回0
+     */
+    public int sweep(String name, Chunk chunk) {
+        Progress progress = progresses.computeIfAbsent(name, key -> new Progress());
+        if (!progress.running.compareAndSet(false, true)) {
+            log.info("{}清理正在运行，跳过本次执行", name);
+            return 0;
+        }
+        long start = System.currentTimeMillis();
+        progress.lastStartTime = start;
+        progress.currentCount = 0;
+        progress.currentChunks = 0;
+        int total = 0;
+        try {
+            for (int i = 0; i < MAX_CHUNKS; i++) {
+                Integer count = transactionTemplate.execute(status -> chunk.run(CHUNK_SIZE));
+                int affected = count != null ? count : 0;
+                total += affected;
+                progress.currentCount = total;
+                progress.currentChunks = i + 1;
+                progress.totalCount.add(affected);
+                progress.totalChunks.increment();
+                if (affected < CHUNK_SIZE) {
+                    break;
+                }
+            }
+            progress.lastError = null;
+        } catch (RuntimeException e) {
+            progress.failureCount.increment();
+            progress.lastError = e.getMessage();
+            log.error("{}清理失败，已清理{}行", name, total, e);
+            throw e;
+        } finally {
+            long duration = System.currentTimeMillis() - start;
+            progress.lastCount = total;
+            progress.lastDuration = duration;
+            progress.lastFinishTime = System.currentTimeMillis();
+            progress.running.set(false);
+            log.info("{}清理完成，共{}行，{}批，耗时{}ms", name, total, progress.currentChunks, duration);
+        }
+        return total;
+    }
+
+    /**
+     * 获取各清理的进度统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        progresses.forEach((name, progress) -> {
+            Map<String, Object> item = new HashMap<>();
+            item.put("running", progress.running.get());
+            item.put("currentCount", progress.currentCount);
+            item.put("currentChunks", progress.currentChunks);
+            item.put("lastStartTime", progress.lastStartTime);
+            item.put("lastFinishTime", progress.lastFinishTime);
+            item.put("lastCount", progress.lastCount);
+            item.put("lastDuration", progress.lastDuration);
+            item.put("lastError", progress.lastError);
+            item.put("totalCount", progress.totalCount.sum());
+            item.put("totalChunks", progress.totalChunks.sum());
+            item.put("failureCount", progress.failureCount.sum());
+            stats.put(name, item);
+        });
+        return stats;
+    }
+
+    /**
+     * 单批清理逻辑
+     */
+    @FunctionalInterface
+    public interface Chunk {
+        /**
+         * 在独立事务中清理一批数据
+         *
+         * @param limit 本批最多处理的行数
+         * @return 本批处理的行数
+         */
+        int run(int limit);
+    }
+
+    private static final class Progress {
+        private final AtomicBoolean running = new AtomicBoolean();
+        private volatile long currentCount;
+        private volatile int currentChunks;
+        private volatile long lastStartTime;
+        private volatile long lastFinishTime;
+        private volatile long lastCount;
+        private volatile long lastDuration;
+        private volatile String lastError;
+        private final LongAdder totalCount = new LongAdder();
+        private final LongAdder totalChunks = new LongAdder();
+        private final LongAdder failureCount = new LongAdder();
+    }
+}
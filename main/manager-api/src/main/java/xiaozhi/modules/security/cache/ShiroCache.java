@@ -0,0 +1,181 @@
+package xiaozhi.modules.security.cache;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shiro.cache.Cache;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shiro两级缓存
+ * 本地缓存在前，开启Redis且缓存有编码时以Redis为第二级，供其他实例和重启后的实例复用。
+ * 缓存键使用摘要，避免令牌原文出现在Redis键和失效通知中；Redis中的值由编码转换为JSON，不使用Java序列化
+ */
+@Slf4j
+public class ShiroCache<K, V> implements Cache<K, V> {
+    private final String name;
+    private final RedisUtils redisUtils;
+    private final boolean redisEnabled;
+    private final long redisExpire;
+    /**
+     * Redis中的值编码，为null时只使用本地缓存
+     */
+    private final ShiroCacheCodec<K, V> codec;
+
+    /**
+     * 键摘要 -> 缓存值
+     */
+    private final com.google.common.cache.Cache<String, V> local;
+
+    private final LongAdder localHitCount = new LongAdder();
+    private final LongAdder redisHitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictCount = new LongAdder();
+
+    ShiroCache(String name, RedisUtils redisUtils, boolean redisEnabled, ShiroCacheCodec<K, V> codec,
+               long maximumSize, long localExpire, long redisExpire) {
+        this.name = name;
+        this.redisUtils = redisUtils;
+        this.redisEnabled = redisEnabled && codec != null;
+        this.codec = codec;
+        this.redisExpire = redisExpire;
+        this.local = com.google.common.cache.CacheBuilder.newBuilder()
+                .maximumSize(maximumSize).expireAfterWrite(localExpire, TimeUnit.SECONDS).build();
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            return null;
+        }
+        String digest = digest(key);
+        V value = local.getIfPresent(digest);
+        if (value != null) {
+            localHitCount.increment();
+            return value;
+        }
+        if (redisEnabled) {
+            value = decode(key, redisUtils.get(RedisKeys.getShiroCacheKey(name, digest)));
+            if (value != null) {
+                redisHitCount.increment();
+                local.put(digest, value);
+                return value;
+            }
+        }
+        missCount.increment();
+        return null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (key == null || value == null) {
+            return null;
+        }
+        String digest = digest(key);
+        V previous = local.getIfPresent(digest);
+        local.put(digest, value);
+        if (redisEnabled) {
+            String encoded = codec.encode(value);
+            if (encoded != null) {
+                redisUtils.set(RedisKeys.getShiroCacheKey(name, digest), encoded, redisExpire);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            return null;
+        }
+        String digest = digest(key);
+        V previous = local.getIfPresent(digest);
+        local.invalidate(digest);
+        evictCount.increment();
+        if (redisEnabled) {
+            redisUtils.delete(RedisKeys.getShiroCacheKey(name, digest));
+            redisUtils.publish(RedisKeys.getShiroCacheEvictChannel(), name + ":" + digest);
+        }
+        return previous;
+    }
+
+    /**
+     * 只清空本地缓存并通知其他实例，Redis中的条目按过期时间淘汰
+     */
+    @Override
+    public void clear() {
+        local.invalidateAll();
+        if (redisEnabled) {
+            redisUtils.publish(RedisKeys.getShiroCacheEvictChannel(), name + ":" + ShiroCacheManager.ALL_KEYS);
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) local.size();
+    }
+
+    /**
+     * 本地缓存的键为摘要，无法还原原始键
+     */
+    @Override
+    public Set<K> keys() {
+        return Set.of();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new ArrayList<>(local.asMap().values());
+    }
+
+    /**
+     * 处理其他实例的失效通知，只清除本地缓存
+     *
+     * @param digest 键摘要
+     */
+    void evictLocal(String digest) {
+        if (ShiroCacheManager.ALL_KEYS.equals(digest)) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(digest);
+        }
+    }
+
+    long getLocalHitCount() {
+        return localHitCount.sum();
+    }
+
+    long getRedisHitCount() {
+        return redisHitCount.sum();
+    }
+
+    long getMissCount() {
+        return missCount.sum();
+    }
+
+    long getEvictCount() {
+        return evictCount.sum();
+    }
+
+    private static String digest(Object key) {
+        return DigestUtil.sha256Hex(String.valueOf(key), StandardCharsets.UTF_8.name());
+    }
+
+    private V decode(K key, Object cached) {
+        if (!(cached instanceof String json)) {
+            return null;
+        }
+        V value = codec.decode(key, json);
+        if (value == null) {
+            log.warn("无法读取Shiro缓存: {}", name);
+        }
+        return value;
+    }
+}
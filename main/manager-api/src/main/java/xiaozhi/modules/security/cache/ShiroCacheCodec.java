@@ -0,0 +1,26 @@
+package xiaozhi.modules.security.cache;
+
+/**
+ * Shiro缓存值在Redis中的编码
+ * 只保存还原缓存值所需的最少字段，编码为JSON字符串，不使用Java序列化；
+ * 没有编码的缓存只使用本地缓存
+ */
+public interface ShiroCacheCodec<K, V> {
+
+    /**
+     * 编码缓存值
+     *
+     * @param value 缓存值
+     * @return JSON字符串，不能保存到Redis时返回null
+     */
+    String encode(V value);
+
+    /**
+     * 解码缓存值
+     *
+     * @param key  缓存键，令牌原文不保存到Redis，由键还原
+     * @param json JSON字符串
+     * @return 缓存值，数据无效时返回null
+     */
+    V decode(K key, String json);
+}
@@ -0,0 +1,104 @@
+package xiaozhi.modules.security.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+import org.apache.shiro.cache.CacheManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.security.oauth2.Oauth2AuthenticationCodec;
+import xiaozhi.modules.security.oauth2.Oauth2Realm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shiro缓存管理
+ * 缓存认证和授权信息，同一令牌的后续请求不再查询令牌和用户。
+ * 条目在退出、修改密码和修改用户时主动失效，开启Redis时通过Redis发布通知同步到其他实例
+ */
+@Slf4j
+@Component
+public class ShiroCacheManager implements CacheManager {
+    /**
+     * 清空整个缓存的失效通知
+     */
+    static final String ALL_KEYS = "*";
+
+    /**
+     * 每个缓存的最大条目数
+     */
+    private static final long MAXIMUM_SIZE = 10000;
+    /**
+     * 本地缓存过期时间（秒），兜底丢失的失效通知
+     */
+    private static final long LOCAL_EXPIRE = 5 * 60;
+    /**
+     * Redis缓存过期时间（秒）
+     */
+    private static final long REDIS_EXPIRE = 30 * 60;
+
+    private final RedisUtils redisUtils;
+    private final boolean redisEnabled;
+    private final ConcurrentMap<String, ShiroCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    public ShiroCacheManager(RedisUtils redisUtils, @Value("${renren.redis.open:false}") boolean redisEnabled) {
+        this.redisUtils = redisUtils;
+        this.redisEnabled = redisEnabled;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Cache<K, V> getCache(String name) throws CacheException {
+        return (Cache<K, V>) caches.computeIfAbsent(name,
+                key -> new ShiroCache<>(key, redisUtils, redisEnabled, getCodec(key), MAXIMUM_SIZE, LOCAL_EXPIRE, REDIS_EXPIRE));
+    }
+
+    /**
+     * 只有认证缓存保存到Redis，授权信息由权限引擎按用户缓存，只使用本地缓存
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ShiroCacheCodec getCodec(String name) {
+        if (Oauth2Realm.AUTHENTICATION_CACHE.equals(name)) {
+            return new Oauth2AuthenticationCodec();
+        }
+        return null;
+    }
+
+    /**
+     * 处理其他实例发布的失效通知
+     *
+     * @param message 缓存名:键摘要
+     */
+    public void onMessage(String message) {
+        int index = message == null ? -1 : message.lastIndexOf(':');
+        if (index <= 0) {
+            log.warn("无效的Shiro缓存失效通知: {}", message);
+            return;
+        }
+        ShiroCache<?, ?> cache = caches.get(message.substring(0, index));
+        if (cache != null) {
+            cache.evictLocal(message.substring(index + 1));
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        caches.forEach((name, cache) -> {
+            Map<String, Object> cacheStats = new LinkedHashMap<>();
+            cacheStats.put("size", cache.size());
+            cacheStats.put("localHitCount", cache.getLocalHitCount());
+            cacheStats.put("redisHitCount", cache.getRedisHitCount());
+            cacheStats.put("missCount", cache.getMissCount());
+            cacheStats.put("evictCount", cache.getEvictCount());
+            stats.put(name, cacheStats);
+        });
+        return stats;
+    }
+}
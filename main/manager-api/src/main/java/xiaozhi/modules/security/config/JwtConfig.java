@@ -29,6 +29,34 @@ public class JwtConfig {
      */
     private String header = "Authorization";
 
+    /**
+     * 設備令牌無狀態驗證：簽名和過期時間有效且未命中撤銷過濾器時不再查詢Redis和數據庫，
+     * 此時驗證結果不含令牌ID，創建時間為令牌簽發時間
+     */
+    private boolean statelessValidation = true;
+
+    /**
+     * 設備令牌簽名算法：HS256使用密鑰對稱簽名，EdDSA或ES256使用數據庫中輪換的非對稱密鑰簽名並發布公鑰
+     */
+    private String algorithm = "HS256";
+
+    /**
+     * 非對稱簽名密鑰輪換週期（天）
+     */
+    private int keyRotationDays = 30;
+
+    /**
+     * 切換為非對稱算法後是否繼續接受未攜帶密鑰ID的HMAC令牌，
+     * 僅在首個非對稱密鑰生成後的令牌最長有效期內接受，遷移期過後拒絕
+     */
+    private boolean legacyHmacAccepted = true;
+
+    /**
+     * 加密數據庫中非對稱私鑰的密鑰（任意長度字符串，經SHA-256派生為AES-256密鑰），
+     * 未配置時私鑰以未加密的PKCS#8編碼保存
+     */
+    private String keyEncryptionKey;
+
     public String getSecret() {
         return secret;
     }
@@ -60,4 +88,44 @@ public class JwtConfig {
     public void setHeader(String header) {
         this.header = header;
     }
-} 
\ No newline at end of file
+
+    public boolean isStatelessValidation() {
+        return statelessValidation;
+    }
+
+    public void setStatelessValidation(boolean statelessValidation) {
+        this.statelessValidation = statelessValidation;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public int getKeyRotationDays() {
+        return keyRotationDays;
+    }
+
+    public void setKeyRotationDays(int keyRotationDays) {
+        this.keyRotationDays = keyRotationDays;
+    }
+
+    public boolean isLegacyHmacAccepted() {
+        return legacyHmacAccepted;
+    }
+
+    public void setLegacyHmacAccepted(boolean legacyHmacAccepted) {
+        this.legacyHmacAccepted = legacyHmacAccepted;
+    }
+
+    public String getKeyEncryptionKey() {
+        return keyEncryptionKey;
+    }
+
+    public void setKeyEncryptionKey(String keyEncryptionKey) {
+        this.keyEncryptionKey = keyEncryptionKey;
+    }
+}
@@ -0,0 +1,38 @@
+package xiaozhi.modules.security.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.modules.security.cache.ShiroCacheManager;
+import xiaozhi.modules.security.permission.PermissionEngine;
+
+/**
+ * Shiro缓存失效和用户权限变更通知订阅配置
+ * 注册到共用的Redis监听容器；仅在开启Redis时订阅，未开启Redis时为单实例部署，本地缓存即可
+ */
+@Configuration
+@AllArgsConstructor
+@ConditionalOnProperty(prefix = "renren.redis", name = "open", havingValue = "true")
+public class ShiroCacheListenerConfig {
+    private final RedisMessageListenerContainer container;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ShiroCacheManager shiroCacheManager;
+    private final PermissionEngine permissionEngine;
+
+    @PostConstruct
+    public void subscribe() {
+        container.addMessageListener((message, pattern) -> {
+            Object value = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            shiroCacheManager.onMessage(value != null ? value.toString() : null);
+        }, new ChannelTopic(RedisKeys.getShiroCacheEvictChannel()));
+        container.addMessageListener((message, pattern) -> {
+            Object value = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            permissionEngine.onMessage(value != null ? value.toString() : null);
+        }, new ChannelTopic(RedisKeys.getPermissionRefreshChannel()));
+    }
+}
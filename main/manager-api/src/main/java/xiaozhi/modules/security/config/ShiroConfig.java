@@ -1,5 +1,6 @@
 package xiaozhi.modules.security.config;
 
+import xiaozhi.modules.security.cache.ShiroCacheManager;
 import xiaozhi.modules.security.oauth2.Oauth2Filter;
 import xiaozhi.modules.security.oauth2.Oauth2Realm;
 import jakarta.servlet.Filter;
@@ -36,8 +37,10 @@ public class ShiroConfig {
     }
 
     @Bean("securityManager")
-    public SecurityManager securityManager(Oauth2Realm oAuth2Realm, SessionManager sessionManager) {
+    public SecurityManager securityManager(Oauth2Realm oAuth2Realm, SessionManager sessionManager,
+                                           ShiroCacheManager shiroCacheManager) {
         DefaultWebSecurityManager securityManager = new DefaultWebSecurityManager();
+        securityManager.setCacheManager(shiroCacheManager);
         securityManager.setRealm(oAuth2Realm);
         securityManager.setSessionManager(sessionManager);
         securityManager.setRememberMeManager(null);
@@ -100,6 +103,7 @@ public class ShiroConfig {
         filterMap.put("/xiaozhi/ota", "anon"); // 允許OTA接口公開訪問
         filterMap.put("/xiaozhi/ota/**", "anon"); // 允許OTA相關接口
         filterMap.put("/ota/**", "anon"); // 允許OTA相關接口
+        filterMap.put("/.well-known/jwks.json", "anon"); // 允許獲取設備令牌驗證公鑰
         
         // 允許用戶註冊公開訪問
         filterMap.put("/sys/user/register", "anon");
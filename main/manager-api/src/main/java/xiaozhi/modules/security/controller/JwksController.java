@@ -0,0 +1,33 @@
+package xiaozhi.modules.security.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import xiaozhi.modules.security.jwt.JwtKeyManager;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备令牌验证公钥
+ * 按JWKS标准格式返回，其他服务缓存后即可在本地验证设备令牌，无需调用本服务
+ */
+@AllArgsConstructor
+@RestController
+@Tag(name = "设备令牌公钥")
+public class JwksController {
+    private final JwtKeyManager jwtKeyManager;
+
+    @GetMapping(".well-known/jwks.json")
+    @Operation(summary = "获取设备令牌验证公钥")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        // 验证方遇到未知的密钥ID时应重新获取，缓存时间只影响退役密钥的清理
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(10, TimeUnit.MINUTES).cachePublic())
+                .body(jwtKeyManager.getJwks());
+    }
+}
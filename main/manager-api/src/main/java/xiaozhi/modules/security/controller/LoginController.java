@@ -15,14 +15,18 @@ import xiaozhi.common.utils.PropertiesUtils;
 import xiaozhi.common.utils.Result;
 import xiaozhi.common.validator.AssertUtils;
 import xiaozhi.modules.security.dto.LoginDTO;
-import xiaozhi.modules.security.password.PasswordUtils;
+import xiaozhi.modules.security.permission.PermissionEngine;
+import xiaozhi.modules.security.password.PasswordVerifier;
 import xiaozhi.modules.security.service.CaptchaService;
 import xiaozhi.modules.security.service.SysUserTokenService;
+import xiaozhi.modules.security.user.SecurityUser;
 import xiaozhi.modules.sys.dto.SysUserDTO;
+import xiaozhi.modules.sys.enums.SuperAdminEnum;
 import xiaozhi.modules.sys.service.SysParamsService;
 import xiaozhi.modules.sys.service.SysUserService;
 
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * 登录
@@ -37,6 +41,8 @@ public class LoginController {
     private final RedisUtils redisUtils;
     private final SysParamsService sysParamsService;
     private final PropertiesUtils propertiesUtils;
+    private final PermissionEngine permissionEngine;
+    private final PasswordVerifier passwordVerifier;
 
     @GetMapping("captcha")
     @Operation(summary = "验证码")
@@ -55,12 +61,13 @@ public class LoginController {
         
         // 根据用户名获取用户
         SysUserDTO user = sysUserService.getByUsername(login.getUsername());
-        if (user == null) {
-            return new Result().error(ErrorCode.ACCOUNT_PASSWORD_ERROR);
-        }
-        
-        // 密码验证
-        if (!PasswordUtils.matches(login.getPassword(), user.getPassword())) {
+
+        // 密码验证，用户不存在时同样验证一次，耗时与失败计数和用户存在时一致
+        // 限流使用连接的远端地址（经可信代理解析），不直接信任客户端可伪造的X-Forwarded-For
+        boolean matches = passwordVerifier.verify(login.getUsername(), request.getRemoteAddr(),
+                login.getPassword(), user != null ? user.getPassword() : null,
+                password -> sysUserService.rehashPassword(user.getId(), password));
+        if (!matches) {
             return new Result().error(ErrorCode.ACCOUNT_PASSWORD_ERROR);
         }
         
@@ -73,4 +80,15 @@ public class LoginController {
         return sysUserTokenService.createToken(user.getId());
     }
 
+    @PostMapping("auth/permission/refresh")
+    @Operation(summary = "刷新用户权限（角色或菜单变更后调用）")
+    public Result<Map<String, Object>> refreshPermissions() {
+        Integer superAdmin = SecurityUser.getUser().getSuperAdmin();
+        if (superAdmin == null || superAdmin != SuperAdminEnum.YES.value()) {
+            return new Result<Map<String, Object>>().error(ErrorCode.FORBIDDEN);
+        }
+        permissionEngine.refreshAll();
+        return new Result<Map<String, Object>>().ok(permissionEngine.getStats());
+    }
+
 }
\ No newline at end of file
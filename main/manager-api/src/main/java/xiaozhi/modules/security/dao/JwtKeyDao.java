@@ -0,0 +1,13 @@
+package xiaozhi.modules.security.dao;
+
+import org.apache.ibatis.annotations.Mapper;
+import xiaozhi.common.dao.BaseDao;
+import xiaozhi.modules.security.entity.JwtKeyEntity;
+
+/**
+ * 设备令牌签名密钥
+ */
+@Mapper
+public interface JwtKeyDao extends BaseDao<JwtKeyEntity> {
+
+}
@@ -0,0 +1,54 @@
+package xiaozhi.modules.security.entity;
+
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 设备令牌签名密钥
+ */
+@Data
+@TableName("sys_jwt_key")
+public class JwtKeyEntity implements Serializable {
+
+    /**
+     * id
+     */
+    @TableId
+    private Long id;
+    /**
+     * 密钥ID，写入令牌头部的kid
+     */
+    private String kid;
+    /**
+     * 签名算法：EdDSA、ES256
+     */
+    private String algorithm;
+    /**
+     * 公钥，X.509编码后Base64
+     */
+    private String publicKey;
+    /**
+     * 私钥，PKCS#8编码后Base64；配置了jwt.key-encryption-key时为v1:前缀的AES-GCM密文
+     */
+    private String privateKey;
+    /**
+     * 状态：0-签名中 1-已退役 2-待启用
+     */
+    private Integer status;
+    /**
+     * 退役时间
+     */
+    private Date retireTime;
+    /**
+     * 创建时间
+     */
+    @TableField(fill = FieldFill.INSERT)
+    private Date createDate;
+
+}
@@ -0,0 +1,453 @@
+package xiaozhi.modules.security.jwt;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import xiaozhi.modules.device.constant.DeviceConstant;
+import xiaozhi.modules.security.config.JwtConfig;
+import xiaozhi.modules.security.dao.JwtKeyDao;
+import xiaozhi.modules.security.entity.JwtKeyEntity;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 设备令牌签名密钥管理
+ * 非对称签名密钥保存在数据库中供所有实例共用，按配置的天数轮换：
+ * 新密钥先作为待启用密钥在JWKS中发布，超过{@link #PUBLISH_LEAD}后才开始签名，
+ * 缓存JWKS的服务在新密钥签发令牌之前已能取得其公钥；启用后旧密钥退役，只用于验证，
+ * 退役超过令牌最长有效期后不再发布。
+ * 配置jwt.key-encryption-key时私钥以AES-GCM加密保存，否则以未加密的PKCS#8编码保存
+ */
+@Slf4j
+@Component
+public class JwtKeyManager implements CommandLineRunner {
+    public static final String ALGORITHM_EDDSA = "EdDSA";
+    public static final String ALGORITHM_ES256 = "ES256";
+
+    private static final int STATUS_ACTIVE = 0;
+    private static final int STATUS_RETIRED = 1;
+    private static final int STATUS_PENDING = 2;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    /**
+     * 遇到未知密钥ID时重新加载的最小间隔（毫秒），防止伪造的kid击穿到数据库
+     */
+    private static final long RELOAD_INTERVAL = 30 * 1000L;
+    /**
+     * 新密钥发布后到开始签名的最短时间（毫秒），需大于JWKS响应的缓存时间与各实例定期加载的间隔之和
+     */
+    public static final long PUBLISH_LEAD = 60 * 60 * 1000L;
+    /**
+     * 加密私钥的前缀，没有前缀的为未加密的旧数据
+     */
+    private static final String ENCRYPTED_PREFIX = "v1:";
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    private final JwtKeyDao jwtKeyDao;
+    private final JwtConfig jwtConfig;
+    private final long maxTokenLifetime;
+    /**
+     * 私钥加密密钥，未配置为null
+     */
+    private final SecretKey keyEncryptionKey;
+    private final SecureRandom random = new SecureRandom();
+
+    private volatile KeySet keySet;
+    private volatile long lastReloadTime;
+    /**
+     * 首个非对称密钥的生成时间，0表示尚未生成
+     */
+    private volatile long firstKeyTime;
+
+    public JwtKeyManager(JwtKeyDao jwtKeyDao, JwtConfig jwtConfig) {
+        this.jwtKeyDao = jwtKeyDao;
+        this.jwtConfig = jwtConfig;
+        this.maxTokenLifetime = Math.max(DeviceConstant.DEFAULT_TOKEN_EXPIRE_HOURS * 3600L,
+                jwtConfig.getExpiration()) * 1000L;
+        this.keyEncryptionKey = deriveKeyEncryptionKey(jwtConfig.getKeyEncryptionKey());
+    }
+
+    @Override
+    public void run(String... args) {
+        if (isAsymmetric() && keyEncryptionKey == null) {
+            log.warn("未配置jwt.key-encryption-key，令牌签名私钥将以未加密的形式保存在数据库中");
+        }
+        rotate();
+    }
+
+    /**
+     * 是否使用非对称签名
+     */
+    public boolean isAsymmetric() {
+        return ALGORITHM_EDDSA.equals(jwtConfig.getAlgorithm()) || ALGORITHM_ES256.equals(jwtConfig.getAlgorithm());
+    }
+
+    /**
+     * 获取当前签名密钥
+     *
+     * @return 签名密钥，未使用非对称签名返回null
+     */
+    public SigningKey getSigningKey() {
+        if (!isAsymmetric()) {
+            return null;
+        }
+        KeySet current = keySet;
+        if (current == null || current.signingKey == null
+                || !current.signingKey.algorithm.equals(jwtConfig.getAlgorithm())) {
+            rotate();
+            current = keySet;
+        }
+        return current.signingKey;
+    }
+
+    /**
+     * 按密钥ID获取验证公钥，本地没有时从数据库重新加载，以识别其他实例轮换的新密钥
+     *
+     * @param kid 密钥ID
+     * @return 公钥，不存在返回null
+     */
+    public PublicKey getPublicKey(String kid) {
+        KeySet current = keySet;
+        PublicKey key = current != null ? current.publicKeys.get(kid) : null;
+        if (key == null && System.currentTimeMillis() - lastReloadTime > RELOAD_INTERVAL) {
+            reload();
+            key = keySet.publicKeys.get(kid);
+        }
+        return key;
+    }
+
+    /**
+     * 是否接受未携带密钥ID的HMAC令牌：使用HS256时始终接受；
+     * 使用非对称签名时只在开启迁移且首个非对称密钥生成后未超过令牌最长有效期时接受
+     */
+    public boolean acceptsLegacyHmac() {
+        if (!isAsymmetric()) {
+            return true;
+        }
+        if (!jwtConfig.isLegacyHmacAccepted()) {
+            return false;
+        }
+        long since = firstKeyTime;
+        return since == 0 || System.currentTimeMillis() < since + maxTokenLifetime;
+    }
+
+    /**
+     * 获取JWKS格式的公钥集合，包含签名中、待启用和尚未过期的退役密钥
+     */
+    public Map<String, Object> getJwks() {
+        KeySet current = keySet;
+        if (current == null) {
+            reload();
+            current = keySet;
+        }
+        Map<String, Object> jwks = new LinkedHashMap<>();
+        jwks.put("keys", current.jwks);
+        return jwks;
+    }
+
+    /**
+     * 轮换签名密钥：
+     * 没有可用的签名密钥（首次启动或切换了算法）时立即生成并开始签名；
+     * 距离轮换周期不足{@link #PUBLISH_LEAD}时生成待启用密钥并发布，发布满{@link #PUBLISH_LEAD}后启用，旧密钥退役
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000L, initialDelay = 60 * 60 * 1000L)
+    public synchronized void rotate() {
+        reload();
+        if (!isAsymmetric()) {
+            return;
+        }
+        KeySet current = keySet;
+        SigningKey signingKey = current.signingKey;
+        long now = System.currentTimeMillis();
+        if (signingKey == null || !signingKey.algorithm.equals(jwtConfig.getAlgorithm())) {
+            JwtKeyEntity entity = generate(jwtConfig.getAlgorithm(), STATUS_ACTIVE);
+            jwtKeyDao.update(null, new LambdaUpdateWrapper<JwtKeyEntity>()
+                    .in(JwtKeyEntity::getStatus, STATUS_ACTIVE, STATUS_PENDING)
+                    .set(JwtKeyEntity::getStatus, STATUS_RETIRED)
+                    .set(JwtKeyEntity::getRetireTime, new Date(now)));
+            jwtKeyDao.insert(entity);
+            log.info("生成新的令牌签名密钥，kid: {}, 算法: {}", entity.getKid(), entity.getAlgorithm());
+            reload();
+            return;
+        }
+
+        long rotateAfter = Math.max(jwtConfig.getKeyRotationDays(), 1) * DAY_MILLIS;
+        if (now - signingKey.createTime < rotateAfter - PUBLISH_LEAD) {
+            return;
+        }
+        JwtKeyEntity pending = current.pendingKey;
+        if (pending == null) {
+            JwtKeyEntity entity = generate(jwtConfig.getAlgorithm(), STATUS_PENDING);
+            jwtKeyDao.insert(entity);
+            log.info("发布待启用的令牌签名密钥，kid: {}, 算法: {}", entity.getKid(), entity.getAlgorithm());
+            reload();
+            return;
+        }
+        if (now - pending.getCreateDate().getTime() < PUBLISH_LEAD) {
+            return;
+        }
+
+        // 先启用新密钥再让旧密钥退役，期间同时存在两个签名中的密钥时取最新的一个
+        pending.setStatus(STATUS_ACTIVE);
+        jwtKeyDao.updateById(pending);
+        JwtKeyEntity retired = new JwtKeyEntity();
+        retired.setId(signingKey.id);
+        retired.setStatus(STATUS_RETIRED);
+        retired.setRetireTime(new Date(now));
+        jwtKeyDao.updateById(retired);
+        log.info("启用令牌签名密钥，kid: {}, 退役kid: {}", pending.getKid(), signingKey.kid);
+        reload();
+    }
+
+    /**
+     * 从数据库加载签名中、待启用和退役未超过令牌最长有效期的密钥
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000L, initialDelay = 10 * 60 * 1000L)
+    public void reload() {
+        lastReloadTime = System.currentTimeMillis();
+        Date retiredAfter = new Date(System.currentTimeMillis() - maxTokenLifetime - DAY_MILLIS);
+        List<JwtKeyEntity> entities = jwtKeyDao.selectList(new LambdaQueryWrapper<JwtKeyEntity>()
+                .and(wrapper -> wrapper.in(JwtKeyEntity::getStatus, STATUS_ACTIVE, STATUS_PENDING)
+                        .or().gt(JwtKeyEntity::getRetireTime, retiredAfter))
+                .orderByDesc(JwtKeyEntity::getCreateDate));
+
+        Map<String, PublicKey> publicKeys = new HashMap<>();
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        SigningKey signingKey = null;
+        JwtKeyEntity pendingKey = null;
+        for (JwtKeyEntity entity : entities) {
+            try {
+                PublicKey publicKey = decodePublicKey(entity.getAlgorithm(), entity.getPublicKey());
+                publicKeys.put(entity.getKid(), publicKey);
+                jwks.add(toJwk(entity.getKid(), entity.getAlgorithm(), publicKey));
+                // 多个实例同时轮换时可能存在多个签名中的密钥，取最新的一个
+                if (signingKey == null && entity.getStatus() == STATUS_ACTIVE) {
+                    signingKey = new SigningKey(entity.getId(), entity.getKid(), entity.getAlgorithm(),
+                            decodePrivateKey(entity.getAlgorithm(), decryptPrivateKey(entity)),
+                            entity.getCreateDate() != null ? entity.getCreateDate().getTime() : 0L);
+                }
+                // 只启用与当前算法一致的待启用密钥，算法切换后由rotate立即生成签名密钥
+                if (pendingKey == null && entity.getStatus() == STATUS_PENDING && entity.getCreateDate() != null
+                        && entity.getAlgorithm().equals(jwtConfig.getAlgorithm())) {
+                    pendingKey = entity;
+                }
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                log.error("无法加载令牌签名密钥，kid: {}", entity.getKid(), e);
+            }
+        }
+        keySet = new KeySet(signingKey, pendingKey, publicKeys, jwks);
+
+        if (firstKeyTime == 0) {
+            JwtKeyEntity first = jwtKeyDao.selectOne(new LambdaQueryWrapper<JwtKeyEntity>()
+                    .select(JwtKeyEntity::getCreateDate)
+                    .orderByAsc(JwtKeyEntity::getCreateDate)
+                    .last("LIMIT 1"));
+            if (first != null && first.getCreateDate() != null) {
+                firstKeyTime = first.getCreateDate().getTime();
+            }
+        }
+    }
+
+    private JwtKeyEntity generate(String algorithm, int status) {
+        try {
+            KeyPairGenerator generator;
+            if (ALGORITHM_ES256.equals(algorithm)) {
+                generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+            } else {
+                generator = KeyPairGenerator.getInstance("Ed25519");
+            }
+            KeyPair keyPair = generator.generateKeyPair();
+
+            JwtKeyEntity entity = new JwtKeyEntity();
+            entity.setKid(UUID.randomUUID().toString().replace("-", ""));
+            entity.setAlgorithm(algorithm);
+            entity.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+            entity.setPrivateKey(encryptPrivateKey(entity.getKid(), keyPair.getPrivate().getEncoded()));
+            entity.setStatus(status);
+            entity.setCreateDate(new Date());
+            return entity;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("无法生成令牌签名密钥: " + algorithm, e);
+        }
+    }
+
+    /**
+     * 加密私钥，以密钥ID作为附加数据，防止不同行的密文互换
+     */
+    private String encryptPrivateKey(String kid, byte[] encoded) throws GeneralSecurityException {
+        if (keyEncryptionKey == null) {
+            return Base64.getEncoder().encodeToString(encoded);
+        }
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+        byte[] ciphertext = cipher.doFinal(encoded);
+        byte[] payload = new byte[iv.length + ciphertext.length];
+        System.arraycopy(iv, 0, payload, 0, iv.length);
+        System.arraycopy(ciphertext, 0, payload, iv.length, ciphertext.length);
+        return ENCRYPTED_PREFIX + Base64.getEncoder().encodeToString(payload);
+    }
+
+    /**
+     * 解密私钥，未加密的旧数据直接返回
+     *
+     * @return PKCS#8编码后Base64
+     */
+    private String decryptPrivateKey(JwtKeyEntity entity) throws GeneralSecurityException {
+        String stored = entity.getPrivateKey();
+        if (!stored.startsWith(ENCRYPTED_PREFIX)) {
+            return stored;
+        }
+        if (keyEncryptionKey == null) {
+            throw new GeneralSecurityException("私钥已加密，但未配置jwt.key-encryption-key");
+        }
+        byte[] payload = Base64.getDecoder().decode(stored.substring(ENCRYPTED_PREFIX.length()));
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(GCM_TAG_BITS, payload, 0, GCM_IV_LENGTH));
+        cipher.updateAAD(entity.getKid().getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(
+                cipher.doFinal(payload, GCM_IV_LENGTH, payload.length - GCM_IV_LENGTH));
+    }
+
+    private static SecretKey deriveKeyEncryptionKey(String secret) {
+        if (secret == null || secret.isBlank()) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            return new SecretKeySpec(digest, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("无法派生私钥加密密钥", e);
+        }
+    }
+
+    private static String keyFactoryAlgorithm(String algorithm) {
+        return ALGORITHM_ES256.equals(algorithm) ? "EC" : "Ed25519";
+    }
+
+    private static PublicKey decodePublicKey(String algorithm, String encoded) throws GeneralSecurityException {
+        return KeyFactory.getInstance(keyFactoryAlgorithm(algorithm))
+                .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+    }
+
+    private static PrivateKey decodePrivateKey(String algorithm, String encoded) throws GeneralSecurityException {
+        return KeyFactory.getInstance(keyFactoryAlgorithm(algorithm))
+                .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+    }
+
+    /**
+     * 转换为JWK（RFC 7517/8037）
+     */
+    static Map<String, Object> toJwk(String kid, String algorithm, PublicKey publicKey) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", algorithm);
+        if (publicKey instanceof ECPublicKey ecKey) {
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("x", encoder.encodeToString(toUnsigned(ecKey.getW().getAffineX(), 32)));
+            jwk.put("y", encoder.encodeToString(toUnsigned(ecKey.getW().getAffineY(), 32)));
+        } else {
+            // X.509编码的Ed25519公钥末尾32字节即为原始公钥
+            byte[] encoded = publicKey.getEncoded();
+            jwk.put("kty", "OKP");
+            jwk.put("crv", "Ed25519");
+            jwk.put("x", encoder.encodeToString(Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length)));
+        }
+        return jwk;
+    }
+
+    private static byte[] toUnsigned(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        byte[] result = new byte[length];
+        int copy = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - copy, result, length - copy, copy);
+        return result;
+    }
+
+    /**
+     * 签名密钥
+     */
+    public static final class SigningKey {
+        private final Long id;
+        private final String kid;
+        private final String algorithm;
+        private final PrivateKey privateKey;
+        private final long createTime;
+
+        private SigningKey(Long id, String kid, String algorithm, PrivateKey privateKey, long createTime) {
+            this.id = id;
+            this.kid = kid;
+            this.algorithm = algorithm;
+            this.privateKey = privateKey;
+            this.createTime = createTime;
+        }
+
+        public String getKid() {
+            return kid;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public PrivateKey getPrivateKey() {
+            return privateKey;
+        }
+    }
+
+    /**
+     * 不可变的密钥集合
+     */
+    private static final class KeySet {
+        private final SigningKey signingKey;
+        /**
+         * 已发布、尚未开始签名的密钥，没有为null
+         */
+        private final JwtKeyEntity pendingKey;
+        private final Map<String, PublicKey> publicKeys;
+        private final List<Map<String, Object>> jwks;
+
+        private KeySet(SigningKey signingKey, JwtKeyEntity pendingKey, Map<String, PublicKey> publicKeys,
+                       List<Map<String, Object>> jwks) {
+            this.signingKey = signingKey;
+            this.pendingKey = pendingKey;
+            this.publicKeys = publicKeys;
+            this.jwks = jwks;
+        }
+    }
+}
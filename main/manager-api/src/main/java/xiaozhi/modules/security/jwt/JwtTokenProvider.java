@@ -1,17 +1,24 @@
 package xiaozhi.modules.security.jwt;
 
+import cn.hutool.crypto.digest.DigestUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import xiaozhi.modules.security.config.JwtConfig;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT工具類
@@ -19,13 +26,47 @@ import java.util.Map;
 @Slf4j
 @Component
 public class JwtTokenProvider {
+    /**
+     * 令牌代數聲明
+     */
+    public static final String GENERATION_CLAIM = "gen";
+
+    /**
+     * 已驗證聲明的最大緩存數
+     */
+    private static final long CLAIMS_CACHE_SIZE = 10000;
 
     private final JwtConfig jwtConfig;
     private final SecretKey secretKey;
+    /**
+     * 非對稱簽名密鑰，為null時只使用HMAC密鑰
+     */
+    private final JwtKeyManager keyManager;
+    /**
+     * 線程安全，可重複使用
+     */
+    private final JwtParser parser;
+    /**
+     * 令牌摘要 -> 已驗證的聲明，同一令牌短時間內多次驗證或取值時只需驗證一次簽名
+     */
+    private final Cache<String, Claims> claimsCache = CacheBuilder.newBuilder()
+            .maximumSize(CLAIMS_CACHE_SIZE).expireAfterWrite(10, TimeUnit.MINUTES).build();
 
     public JwtTokenProvider(JwtConfig jwtConfig) {
+        this(jwtConfig, null);
+    }
+
+    @Autowired
+    public JwtTokenProvider(JwtConfig jwtConfig, JwtKeyManager keyManager) {
         this.jwtConfig = jwtConfig;
         this.secretKey = Keys.hmacShaKeyFor(jwtConfig.getSecret().getBytes(StandardCharsets.UTF_8));
+        this.keyManager = keyManager;
+        this.parser = Jwts.parser().keyLocator(new LocatorAdapter<Key>() {
+            @Override
+            protected Key locate(JwsHeader header) {
+                return locateKey(header);
+            }
+        }).build();
     }
 
     /**
@@ -37,19 +78,41 @@ public class JwtTokenProvider {
      * @return JWT令牌
      */
     public String generateToken(Long deviceId, String macAddress, Long expiration) {
+        return generateToken(deviceId, macAddress, expiration, 0);
+    }
+
+    /**
+     * 生成JWT令牌
+     *
+     * @param deviceId   設備ID
+     * @param macAddress 設備MAC地址
+     * @param expiration 過期時間（秒）
+     * @param generation 設備當前令牌代數
+     * @return JWT令牌
+     */
+    public String generateToken(Long deviceId, String macAddress, Long expiration, int generation) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + expiration * 1000);
 
         Map<String, Object> claims = new HashMap<>();
         claims.put("deviceId", deviceId);
         claims.put("macAddress", macAddress);
+        claims.put(GENERATION_CLAIM, generation);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(deviceId.toString())
                 .issuedAt(now)
-                .expiration(expiryDate)
-                .signWith(secretKey)
+                .expiration(expiryDate);
+
+        JwtKeyManager.SigningKey signingKey = keyManager != null ? keyManager.getSigningKey() : null;
+        if (signingKey == null) {
+            return builder.signWith(secretKey).compact();
+        }
+        return builder.header().keyId(signingKey.getKid()).and()
+                .signWith(signingKey.getPrivateKey(), JwtKeyManager.ALGORITHM_ES256.equals(signingKey.getAlgorithm())
+                        ? Jwts.SIG.ES256 : Jwts.SIG.EdDSA)
                 .compact();
     }
 
@@ -64,6 +127,28 @@ public class JwtTokenProvider {
         return generateToken(deviceId, macAddress, jwtConfig.getExpiration());
     }
 
+    /**
+     * 計算令牌摘要
+     * 與數據庫SHA2(token, 256)的結果一致，用於按令牌建立索引和查詢
+     *
+     * @param token JWT令牌
+     * @return 64位小寫十六進制SHA-256摘要
+     */
+    public static String hashToken(String token) {
+        return DigestUtil.sha256Hex(token, StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * 從聲明中獲取令牌代數，未包含代數的舊令牌視為第0代
+     *
+     * @param claims 聲明
+     * @return 令牌代數
+     */
+    public static int getGeneration(Claims claims) {
+        Object generation = claims.get(GENERATION_CLAIM);
+        return generation instanceof Number ? ((Number) generation).intValue() : 0;
+    }
+
     /**
      * 從JWT令牌中獲取設備ID
      *
@@ -71,7 +156,7 @@ public class JwtTokenProvider {
      * @return 設備ID
      */
     public Long getDeviceIdFromToken(String token) {
-        Claims claims = parseToken(token);
+        Claims claims = getValidClaims(token);
         if (claims != null) {
             return Long.parseLong(claims.getSubject());
         }
@@ -85,13 +170,34 @@ public class JwtTokenProvider {
      * @return MAC地址
      */
     public String getMacAddressFromToken(String token) {
-        Claims claims = parseToken(token);
+        Claims claims = getValidClaims(token);
         if (claims != null) {
             return claims.get("macAddress", String.class);
         }
         return null;
     }
 
+    /**
+     * 從JWT令牌中獲取過期時間，已過期的令牌同樣返回
+     *
+     * @param token JWT令牌
+     * @return 過期時間，簽名無效返回null
+     */
+    public Date getExpirationFromToken(String token) {
+        Claims cached = getCachedClaims(cacheKey(token));
+        if (cached != null) {
+            return cached.getExpiration();
+        }
+        try {
+            return parser.parseSignedClaims(token).getPayload().getExpiration();
+        } catch (ExpiredJwtException e) {
+            return e.getClaims().getExpiration();
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("無法解析JWT令牌: {}", e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * 驗證JWT令牌
      *
@@ -99,12 +205,27 @@ public class JwtTokenProvider {
      * @return 是否有效
      */
     public boolean validateToken(String token) {
+        return getValidClaims(token) != null;
+    }
+
+    /**
+     * 驗證JWT令牌並返回聲明
+     *
+     * @param token JWT令牌
+     * @return 聲明，簽名無效或已過期返回null
+     */
+    public Claims getValidClaims(String token) {
+        String key = cacheKey(token);
+        Claims cached = getCachedClaims(key);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            Jwts.parser()
-                    .verifyWith(secretKey)
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            if (key != null && claims.getExpiration() != null) {
+                claimsCache.put(key, claims);
+            }
+            return claims;
         } catch (SignatureException e) {
             log.error("JWT令牌簽名無效: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -113,26 +234,49 @@ public class JwtTokenProvider {
             log.error("不支持的JWT令牌: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             log.error("JWT令牌為空或無效: {}", e.getMessage());
+        } catch (JwtException e) {
+            log.error("JWT令牌格式錯誤: {}", e.getMessage());
         }
-        return false;
+        return null;
     }
 
     /**
-     * 解析JWT令牌
+     * 查找驗證簽名的密鑰：未攜帶密鑰ID的令牌為HMAC簽名，僅在使用HS256或非對稱算法的遷移期內接受，
+     * 攜帶密鑰ID的令牌使用對應的公鑰驗證，簽名算法與密鑰類型不匹配時由解析器拒絕
      *
-     * @param token JWT令牌
-     * @return 聲明
+     * @param header 令牌頭
+     * @return 密鑰，找不到或不接受時返回null
      */
-    private Claims parseToken(String token) {
-        try {
-            return Jwts.parser()
-                    .verifyWith(secretKey)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-        } catch (Exception e) {
-            log.error("無法解析JWT令牌: {}", e.getMessage());
+    private Key locateKey(JwsHeader header) {
+        String kid = header.getKeyId();
+        if (kid == null) {
+            return keyManager == null || keyManager.acceptsLegacyHmac() ? secretKey : null;
+        }
+        return keyManager != null ? keyManager.getPublicKey(kid) : null;
+    }
+
+    /**
+     * 聲明緩存的鍵，使用令牌摘要避免在內存中保留令牌原文
+     */
+    private static String cacheKey(String token) {
+        return token == null || token.isEmpty() ? null : hashToken(token);
+    }
+
+    /**
+     * 獲取緩存的已驗證聲明，緩存不超過令牌的過期時間
+     *
+     * @param key 令牌摘要
+     * @return 聲明，未緩存或已過期返回null
+     */
+    private Claims getCachedClaims(String key) {
+        if (key == null) {
+            return null;
+        }
+        Claims claims = claimsCache.getIfPresent(key);
+        if (claims != null && claims.getExpiration().getTime() <= System.currentTimeMillis()) {
+            claimsCache.invalidate(key);
             return null;
         }
+        return claims;
     }
 } 
\ No newline at end of file
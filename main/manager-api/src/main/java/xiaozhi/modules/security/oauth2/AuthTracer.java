@@ -0,0 +1,145 @@
+package xiaozhi.modules.security.oauth2;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 认证过程跟踪
+ * 每次认证按结果计数；日志按级别采样后交给后台线程输出，不在请求线程上做控制台I/O：
+ * 成功的认证只在DEBUG级别按比例采样，失败的认证在WARN级别按结果限速，超出的部分只计数
+ */
+@Slf4j
+@Component
+public class AuthTracer {
+    /**
+     * 成功认证的日志采样间隔，每N次输出一次
+     */
+    private static final long SUCCESS_SAMPLE_INTERVAL = 100;
+    /**
+     * 每种失败结果每秒最多输出的日志条数
+     */
+    private static final int FAILURE_LOGS_PER_SECOND = 5;
+    /**
+     * 待输出日志的最大数量，队列满时丢弃
+     */
+    private static final int QUEUE_CAPACITY = 1000;
+
+    /**
+     * 认证结果
+     */
+    public enum Outcome {
+        SUCCESS, TOKEN_NOT_FOUND, TOKEN_EXPIRED, USER_NOT_FOUND, ACCOUNT_LOCKED
+    }
+
+    private final Map<Outcome, LongAdder> counters = new EnumMap<>(Outcome.class);
+    private final Map<Outcome, RateWindow> windows = new EnumMap<>(Outcome.class);
+    private final LongAdder sampledCount = new LongAdder();
+    private final LongAdder suppressedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                Thread thread = new Thread(runnable, "auth-tracer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public AuthTracer() {
+        for (Outcome outcome : Outcome.values()) {
+            counters.put(outcome, new LongAdder());
+            windows.put(outcome, new RateWindow());
+        }
+    }
+
+    /**
+     * 记录一次认证结果
+     *
+     * @param outcome 认证结果
+     * @param token   访问令牌，日志中只输出前缀
+     * @param userId  用户ID，未知时为null
+     */
+    public void trace(Outcome outcome, String token, Long userId) {
+        LongAdder counter = counters.get(outcome);
+        counter.increment();
+
+        if (outcome == Outcome.SUCCESS) {
+            if (!log.isDebugEnabled() || counter.sum() % SUCCESS_SAMPLE_INTERVAL != 0) {
+                return;
+            }
+        } else if (!log.isWarnEnabled()) {
+            return;
+        } else if (!windows.get(outcome).tryAcquire()) {
+            suppressedCount.increment();
+            return;
+        }
+
+        sampledCount.increment();
+        String maskedToken = mask(token);
+        try {
+            executor.execute(() -> {
+                if (outcome == Outcome.SUCCESS) {
+                    log.debug("认证成功（每{}次采样一次），用户ID: {}, 令牌: {}", SUCCESS_SAMPLE_INTERVAL, userId, maskedToken);
+                } else {
+                    log.warn("认证失败: {}, 用户ID: {}, 令牌: {}", outcome, userId, maskedToken);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            droppedCount.increment();
+        }
+    }
+
+    /**
+     * 获取认证统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        counters.forEach((outcome, counter) -> stats.put(outcome.name(), counter.sum()));
+        stats.put("sampledCount", sampledCount.sum());
+        stats.put("suppressedCount", suppressedCount.sum());
+        stats.put("droppedCount", droppedCount.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 令牌只保留前6位，避免日志泄露可用的令牌
+     */
+    private static String mask(String token) {
+        if (token == null || token.isEmpty()) {
+            return "";
+        }
+        return token.length() <= 6 ? "***" : token.substring(0, 6) + "***";
+    }
+
+    /**
+     * 每秒固定条数的限速窗口
+     */
+    private static final class RateWindow {
+        private final AtomicLong second = new AtomicLong();
+        private final AtomicLong count = new AtomicLong();
+
+        boolean tryAcquire() {
+            long now = System.currentTimeMillis() / 1000;
+            long current = second.get();
+            if (current != now && second.compareAndSet(current, now)) {
+                count.set(0);
+            }
+            return count.incrementAndGet() <= FAILURE_LOGS_PER_SECOND;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package xiaozhi.modules.security.oauth2;
+
+import lombok.Data;
+import org.apache.shiro.authc.AuthenticationInfo;
+import xiaozhi.common.user.UserDetail;
+import xiaozhi.common.utils.JsonUtils;
+import xiaozhi.modules.security.cache.ShiroCacheCodec;
+
+/**
+ * 认证缓存在Redis中的编码
+ * 只保存用户ID、用户名、状态、是否超级管理员、部门和令牌过期时间，不保存密码和令牌；
+ * 令牌由缓存键还原
+ */
+public class Oauth2AuthenticationCodec implements ShiroCacheCodec<Object, AuthenticationInfo> {
+
+    @Override
+    public String encode(AuthenticationInfo value) {
+        if (!(value instanceof Oauth2AuthenticationInfo info)
+                || !(info.getPrincipals().getPrimaryPrincipal() instanceof UserDetail user)) {
+            return null;
+        }
+        CachedAuthentication cached = new CachedAuthentication();
+        cached.setId(user.getId());
+        cached.setUsername(user.getUsername());
+        cached.setStatus(user.getStatus());
+        cached.setSuperAdmin(user.getSuperAdmin());
+        cached.setDeptId(user.getDeptId());
+        cached.setRealmName(info.getPrincipals().getRealmNames().iterator().next());
+        cached.setExpireTime(info.getExpireTime());
+        return JsonUtils.toJsonString(cached);
+    }
+
+    @Override
+    public AuthenticationInfo decode(Object key, String json) {
+        if (!(key instanceof String accessToken)) {
+            return null;
+        }
+        CachedAuthentication cached;
+        try {
+            cached = JsonUtils.parseObject(json, CachedAuthentication.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (cached == null || cached.getId() == null || cached.getRealmName() == null || cached.getExpireTime() == null) {
+            return null;
+        }
+        UserDetail user = new UserDetail();
+        user.setId(cached.getId());
+        user.setUsername(cached.getUsername());
+        user.setStatus(cached.getStatus());
+        user.setSuperAdmin(cached.getSuperAdmin());
+        user.setDeptId(cached.getDeptId());
+        user.setToken(accessToken);
+        return new Oauth2AuthenticationInfo(user, accessToken, cached.getRealmName(), cached.getExpireTime());
+    }
+
+    @Data
+    public static class CachedAuthentication {
+        private Long id;
+        private String username;
+        private Integer status;
+        private Integer superAdmin;
+        private Long deptId;
+        private String realmName;
+        private Long expireTime;
+    }
+}
@@ -0,0 +1,24 @@
+package xiaozhi.modules.security.oauth2;
+
+import org.apache.shiro.authc.SimpleAuthenticationInfo;
+
+/**
+ * 认证信息，附带令牌过期时间，从缓存取得时同样可以检查令牌是否过期
+ */
+public class Oauth2AuthenticationInfo extends SimpleAuthenticationInfo {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 令牌过期时间（毫秒）
+     */
+    private final long expireTime;
+
+    public Oauth2AuthenticationInfo(Object principal, Object credentials, String realmName, long expireTime) {
+        super(principal, credentials, realmName);
+        this.expireTime = expireTime;
+    }
+
+    public long getExpireTime() {
+        return expireTime;
+    }
+}
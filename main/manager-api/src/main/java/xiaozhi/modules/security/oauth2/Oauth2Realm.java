@@ -11,6 +11,7 @@ import jakarta.annotation.Resource;
 import org.apache.shiro.authc.*;
 import org.apache.shiro.authz.AuthorizationInfo;
 import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.realm.AuthorizingRealm;
 import org.apache.shiro.subject.PrincipalCollection;
 import org.springframework.context.annotation.Lazy;
@@ -26,9 +27,27 @@ import java.util.Set;
  */
 @Component
 public class Oauth2Realm extends AuthorizingRealm {
+    /**
+     * 认证缓存名，保存到Redis
+     */
+    public static final String AUTHENTICATION_CACHE = "oauth2.authc";
+    /**
+     * 授权缓存名，只使用本地缓存
+     */
+    public static final String AUTHORIZATION_CACHE = "oauth2.authz";
+
     @Lazy
     @Resource
     private ShiroService shiroService;
+    @Resource
+    private AuthTracer authTracer;
+
+    public Oauth2Realm() {
+        // 认证和授权信息都按令牌缓存，缓存管理器由SecurityManager设置
+        setAuthenticationCachingEnabled(true);
+        setAuthenticationCacheName(AUTHENTICATION_CACHE);
+        setAuthorizationCacheName(AUTHORIZATION_CACHE);
+    }
 
     @Override
     public boolean supports(AuthenticationToken token) {
@@ -50,41 +69,41 @@ public class Oauth2Realm extends AuthorizingRealm {
         return info;
     }
 
+    /**
+     * 按编译后的用户权限集合判断，不为每次检查解析通配符权限
+     */
+    @Override
+    public boolean isPermitted(PrincipalCollection principals, String permission) {
+        UserDetail user = (UserDetail) principals.getPrimaryPrincipal();
+        return shiroService.isPermitted(user, permission);
+    }
+
     /**
      * 认证(登录时调用)
      */
     @Override
     protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
         String accessToken = (String) token.getPrincipal();
-        
-        System.out.println("=====================================");
-        System.out.println("Oauth2Realm.doGetAuthenticationInfo - 开始验证令牌: " + accessToken);
 
         //根据accessToken，查询用户信息
         SysUserTokenEntity tokenEntity = shiroService.getByToken(accessToken);
-        
         if (tokenEntity == null) {
-            System.out.println("令牌验证失败: 令牌不存在于数据库中");
+            authTracer.trace(AuthTracer.Outcome.TOKEN_NOT_FOUND, accessToken, null);
             throw new IncorrectCredentialsException(MessageUtils.getMessage(ErrorCode.TOKEN_INVALID));
         }
-        
-        System.out.println("数据库中找到令牌信息: userId=" + tokenEntity.getUserId() + ", 过期时间=" + tokenEntity.getExpireDate());
-        
+
         //token失效
         if (tokenEntity.getExpireDate().getTime() < System.currentTimeMillis()) {
-            System.out.println("令牌验证失败: 令牌已过期，当前时间: " + System.currentTimeMillis() + ", 过期时间: " + tokenEntity.getExpireDate().getTime());
+            authTracer.trace(AuthTracer.Outcome.TOKEN_EXPIRED, accessToken, tokenEntity.getUserId());
             throw new IncorrectCredentialsException(MessageUtils.getMessage(ErrorCode.TOKEN_INVALID));
         }
 
         //查询用户信息
         SysUserEntity userEntity = shiroService.getUser(tokenEntity.getUserId());
-        
         if (userEntity == null) {
-            System.out.println("令牌验证失败: 找不到用户信息，userId: " + tokenEntity.getUserId());
+            authTracer.trace(AuthTracer.Outcome.USER_NOT_FOUND, accessToken, tokenEntity.getUserId());
             throw new UnknownAccountException(MessageUtils.getMessage(ErrorCode.UNAUTHORIZED));
         }
-        
-        System.out.println("找到用户信息: " + userEntity.getUsername() + ", 状态: " + userEntity.getStatus());
 
         //转换成UserDetail对象
         UserDetail userDetail = ConvertUtils.sourceToTarget(userEntity, UserDetail.class);
@@ -92,18 +111,60 @@ public class Oauth2Realm extends AuthorizingRealm {
         //获取用户对应的部门数据权限
         userDetail.setDeptIdList(null);
         userDetail.setToken(accessToken);
+        // 登录后的请求不需要密码，需要时从数据库读取
+        userDetail.setPassword(null);
 
         //账号锁定
         if (userDetail.getStatus() == 0) {
-            System.out.println("令牌验证失败: 账号已锁定");
+            authTracer.trace(AuthTracer.Outcome.ACCOUNT_LOCKED, accessToken, userDetail.getId());
             throw new LockedAccountException(MessageUtils.getMessage(ErrorCode.ACCOUNT_LOCK));
         }
 
-        System.out.println("令牌验证成功!");
-        System.out.println("=====================================");
-        
-        SimpleAuthenticationInfo info = new SimpleAuthenticationInfo(userDetail, accessToken, getName());
-        return info;
+        authTracer.trace(AuthTracer.Outcome.SUCCESS, accessToken, userDetail.getId());
+        return new Oauth2AuthenticationInfo(userDetail, accessToken, getName(), tokenEntity.getExpireDate().getTime());
+    }
+
+    /**
+     * 从缓存取得的认证信息同样需要检查令牌是否过期
+     */
+    @Override
+    protected void assertCredentialsMatch(AuthenticationToken token, AuthenticationInfo info) throws AuthenticationException {
+        super.assertCredentialsMatch(token, info);
+        if (info instanceof Oauth2AuthenticationInfo
+                && ((Oauth2AuthenticationInfo) info).getExpireTime() < System.currentTimeMillis()) {
+            String accessToken = (String) token.getPrincipal();
+            clearCache(accessToken);
+            authTracer.trace(AuthTracer.Outcome.TOKEN_EXPIRED, accessToken, null);
+            throw new IncorrectCredentialsException(MessageUtils.getMessage(ErrorCode.TOKEN_INVALID));
+        }
+    }
+
+    /**
+     * 认证缓存按令牌存取，退出时按同一个键清除
+     */
+    @Override
+    protected Object getAuthenticationCacheKey(PrincipalCollection principals) {
+        return ((UserDetail) principals.getPrimaryPrincipal()).getToken();
+    }
+
+    @Override
+    protected Object getAuthorizationCacheKey(PrincipalCollection principals) {
+        return ((UserDetail) principals.getPrimaryPrincipal()).getToken();
+    }
+
+    /**
+     * 清除令牌的认证和授权缓存
+     * 直接通过缓存管理器清除，本实例尚未使用过的缓存在Redis中的条目同样会被清除
+     *
+     * @param accessToken 令牌
+     */
+    public void clearCache(String accessToken) {
+        CacheManager cacheManager = getCacheManager();
+        if (cacheManager == null || accessToken == null) {
+            return;
+        }
+        cacheManager.getCache(getAuthenticationCacheName()).remove(accessToken);
+        cacheManager.getCache(getAuthorizationCacheName()).remove(accessToken);
     }
 
 }
\ No newline at end of file
@@ -6,7 +6,13 @@ package xiaozhi.modules.security.password;
  * Website: https://www.renren.io
  */
 public class PasswordUtils {
-    private static PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    /**
+     * BCrypt默认强度
+     */
+    public static final int DEFAULT_STRENGTH = 10;
+
+    private static volatile PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(DEFAULT_STRENGTH);
+    private static volatile int strength = DEFAULT_STRENGTH;
 
     /**
      * 加密
@@ -30,6 +36,43 @@ public class PasswordUtils {
         return passwordEncoder.matches(str, password);
     }
 
+    /**
+     * 设置新密码使用的BCrypt强度，已有密码在下次登录时重新加密
+     *
+     * @param newStrength 强度，4到31
+     */
+    public static void setStrength(int newStrength) {
+        passwordEncoder = new BCryptPasswordEncoder(newStrength);
+        strength = newStrength;
+    }
+
+    public static int getStrength() {
+        return strength;
+    }
+
+    /**
+     * 获取加密后密码的BCrypt强度
+     *
+     * @param password 加密后密码
+     * @return 强度，不是BCrypt格式返回-1
+     */
+    public static int getStrength(String password) {
+        // 格式为$2a$10$...
+        if (password == null || password.length() < 7 || password.charAt(0) != '$') {
+            return -1;
+        }
+        int end = password.indexOf('$', 1);
+        if (end < 0 || end + 3 >= password.length() || password.charAt(end + 3) != '$') {
+            return -1;
+        }
+        char high = password.charAt(end + 1);
+        char low = password.charAt(end + 2);
+        if (!Character.isDigit(high) || !Character.isDigit(low)) {
+            return -1;
+        }
+        return (high - '0') * 10 + (low - '0');
+    }
+
 
     public static void main(String[] args) {
         String str = "admin";
@@ -0,0 +1,257 @@
+package xiaozhi.modules.security.password;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 登录密码验证
+ * BCrypt验证在按CPU核数配置的线程池中执行，排队已满时直接拒绝，避免登录高峰或撞库占满请求线程；
+ * 同一IP对同一用户名或同一IP连续失败过多时不再验证，其他IP仍可正常登录该用户，避免按用户名锁定他人账号。
+ * 启动时按目标耗时校准BCrypt强度，强度低于当前值的密码在登录成功后重新加密，写入数据库在单独的线程中执行
+ */
+@Slf4j
+@Component
+public class PasswordVerifier {
+    /**
+     * 单次验证的目标耗时（毫秒）
+     */
+    private static final long TARGET_MILLIS = 250;
+    /**
+     * 校准的强度范围，不低于原有的默认强度
+     */
+    private static final int MIN_STRENGTH = PasswordUtils.DEFAULT_STRENGTH;
+    private static final int MAX_STRENGTH = 14;
+    /**
+     * 失败计数窗口（分钟），窗口内同一IP对同一用户名和同一IP的最大失败次数
+     */
+    private static final long FAILURE_WINDOW_MINUTES = 15;
+    private static final int MAX_USERNAME_FAILURES = 5;
+    private static final int MAX_IP_FAILURES = 20;
+    /**
+     * 等待写入的重新加密密码数，超过时丢弃，下次登录成功时重试
+     */
+    private static final int REHASH_QUEUE_SIZE = 100;
+    /**
+     * 每个验证线程最多排队的请求数
+     */
+    private static final int QUEUE_PER_THREAD = 8;
+    /**
+     * 请求等待验证结果的最长时间（秒）
+     */
+    private static final long WAIT_SECONDS = 5;
+
+    private final ThreadPoolExecutor executor;
+    /**
+     * 写入重新加密的密码，不占用BCrypt验证线程
+     */
+    private final ThreadPoolExecutor rehashExecutor;
+
+    /**
+     * IP和用户名、IP -> 窗口内的失败次数，窗口从第一次失败开始计算
+     */
+    private final Cache<String, AtomicInteger> usernameFailures = CacheBuilder.newBuilder()
+            .maximumSize(100000).expireAfterWrite(FAILURE_WINDOW_MINUTES, TimeUnit.MINUTES).build();
+    private final Cache<String, AtomicInteger> ipFailures = CacheBuilder.newBuilder()
+            .maximumSize(100000).expireAfterWrite(FAILURE_WINDOW_MINUTES, TimeUnit.MINUTES).build();
+
+    /**
+     * 用户不存在时用于验证的密码，使耗时与用户存在时一致
+     */
+    private volatile String dummyPassword;
+
+    private final LongAdder verifyCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder throttledCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder rehashCount = new LongAdder();
+
+    public PasswordVerifier() {
+        this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors() * QUEUE_PER_THREAD);
+    }
+
+    PasswordVerifier(int threads, int queueSize) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new ThreadFactory("password-verifier-"));
+        this.rehashExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REHASH_QUEUE_SIZE), new ThreadFactory("password-rehash-"),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * 按目标耗时校准BCrypt强度：强度每加一耗时翻倍。
+     * 用户不存在时验证的密码使用默认强度，与大多数已有密码的耗时一致
+     */
+    @PostConstruct
+    public void calibrate() {
+        String password = "calibrate";
+        // 预热
+        PasswordUtils.matches(password, new BCryptPasswordEncoder(MIN_STRENGTH).encode(password));
+
+        String encoded = new BCryptPasswordEncoder(MIN_STRENGTH).encode(password);
+        long begin = System.nanoTime();
+        PasswordUtils.matches(password, encoded);
+        long elapsed = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), 1);
+
+        int strength = MIN_STRENGTH;
+        while (strength < MAX_STRENGTH && elapsed * 2 <= TARGET_MILLIS) {
+            strength++;
+            elapsed *= 2;
+        }
+        PasswordUtils.setStrength(strength);
+        dummyPassword = encoded;
+        log.info("BCrypt强度校准为{}，预计验证耗时{}ms", strength, elapsed);
+    }
+
+    /**
+     * 验证登录密码
+     *
+     * @param username    用户名
+     * @param ip          客户端IP
+     * @param rawPassword 明文密码
+     * @param password    加密后密码，用户不存在时为null
+     * @param rehash      强度低于当前值时接收重新加密后的密码，在单独的线程中异步调用
+     * @return 密码是否正确
+     * @throws RenException 失败次数过多或服务器繁忙
+     */
+    public boolean verify(String username, String ip, String rawPassword, String password, Consumer<String> rehash) {
+        String usernameKey = username != null ? ip + "|" + username : null;
+        if (isThrottled(usernameFailures, usernameKey, MAX_USERNAME_FAILURES)
+                || isThrottled(ipFailures, ip, MAX_IP_FAILURES)) {
+            throttledCount.increment();
+            throw new RenException(ErrorCode.LOGIN_TOO_FREQUENT);
+        }
+
+        boolean exists = password != null;
+        String encoded = exists ? password : dummyPassword;
+        Future<Boolean> future;
+        try {
+            future = executor.submit(() -> {
+                boolean matches = rawPassword != null && PasswordUtils.matches(rawPassword, encoded);
+                if (matches && exists && rehash != null && needsRehash(encoded)) {
+                    String rehashed = PasswordUtils.encode(rawPassword);
+                    rehashExecutor.execute(() -> {
+                        try {
+                            rehash.accept(rehashed);
+                            rehashCount.increment();
+                        } catch (Exception e) {
+                            log.error("密码重新加密失败，用户名: {}", username, e);
+                        }
+                    });
+                }
+                return matches;
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            throw new RenException(ErrorCode.SERVER_BUSY);
+        }
+
+        boolean matches;
+        try {
+            matches = future.get(WAIT_SECONDS, TimeUnit.SECONDS) && exists;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCount.increment();
+            throw new RenException(ErrorCode.SERVER_BUSY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RenException(ErrorCode.SERVER_BUSY);
+        } catch (ExecutionException e) {
+            log.error("密码验证失败", e.getCause());
+            matches = false;
+        }
+
+        verifyCount.increment();
+        if (matches) {
+            if (usernameKey != null) {
+                usernameFailures.invalidate(usernameKey);
+            }
+        } else {
+            failureCount.increment();
+            recordFailure(usernameFailures, usernameKey);
+            recordFailure(ipFailures, ip);
+        }
+        return matches;
+    }
+
+    /**
+     * 获取验证统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("strength", PasswordUtils.getStrength());
+        stats.put("activeCount", executor.getActiveCount());
+        stats.put("queueSize", executor.getQueue().size());
+        stats.put("rehashQueueSize", rehashExecutor.getQueue().size());
+        stats.put("verifyCount", verifyCount.sum());
+        stats.put("failureCount", failureCount.sum());
+        stats.put("throttledCount", throttledCount.sum());
+        stats.put("rejectedCount", rejectedCount.sum());
+        stats.put("rehashCount", rehashCount.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        rehashExecutor.shutdown();
+    }
+
+    private static boolean needsRehash(String password) {
+        int strength = PasswordUtils.getStrength(password);
+        return strength >= 0 && strength < PasswordUtils.getStrength();
+    }
+
+    private static boolean isThrottled(Cache<String, AtomicInteger> failures, String key, int max) {
+        if (key == null) {
+            return false;
+        }
+        AtomicInteger count = failures.getIfPresent(key);
+        return count != null && count.get() >= max;
+    }
+
+    private static void recordFailure(Cache<String, AtomicInteger> failures, String key) {
+        if (key == null) {
+            return;
+        }
+        try {
+            failures.get(key, AtomicInteger::new).incrementAndGet();
+        } catch (ExecutionException e) {
+            // 构造计数器不会失败
+        }
+    }
+
+    private static final class ThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger sequence = new AtomicInteger();
+
+        private ThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package xiaozhi.modules.security.permission;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.common.user.UserDetail;
+import xiaozhi.modules.sys.dao.SysMenuDao;
+import xiaozhi.modules.sys.enums.SuperAdminEnum;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户权限解析
+ * 用户权限为其所有角色关联菜单的授权标识，按用户编译为位图后缓存，
+ * 用户删除时刷新该用户，角色或菜单在数据库中变更后由超级管理员调用 /auth/permission/refresh 刷新全部用户，
+ * 开启Redis时通过Redis发布通知同步到其他实例，并定期重建兜底
+ */
+@Slf4j
+@Component
+public class PermissionEngine {
+    /**
+     * 刷新全部用户的通知
+     */
+    private static final String ALL_USERS = "*";
+    /**
+     * 最大缓存用户数
+     */
+    private static final long MAXIMUM_SIZE = 10000;
+
+    private final SysMenuDao sysMenuDao;
+    private final RedisUtils redisUtils;
+
+    private volatile PermissionSet.Index index;
+
+    /**
+     * 用户ID -> 编译后的权限集合，定期过期以弥补丢失的变更通知
+     */
+    private final Cache<Long, PermissionSet> userPermissions = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE).expireAfterWrite(10, TimeUnit.MINUTES).build();
+
+    private final LongAdder compileCount = new LongAdder();
+    private final LongAdder rebuildCount = new LongAdder();
+
+    public PermissionEngine(SysMenuDao sysMenuDao, RedisUtils redisUtils) {
+        this.sysMenuDao = sysMenuDao;
+        this.redisUtils = redisUtils;
+    }
+
+    /**
+     * 判断用户是否拥有权限，授权标识按完整字符串匹配
+     *
+     * @param user       用户
+     * @param permission 授权标识
+     */
+    public boolean isPermitted(UserDetail user, String permission) {
+        if (isSuperAdmin(user)) {
+            return true;
+        }
+        return getPermissionSet(user.getId()).isPermitted(permission);
+    }
+
+    /**
+     * 获取用户权限集合，超级管理员拥有全部权限
+     *
+     * @param user 用户
+     */
+    public PermissionSet getPermissionSet(UserDetail user) {
+        if (isSuperAdmin(user)) {
+            return getIndex().all();
+        }
+        return getPermissionSet(user.getId());
+    }
+
+    /**
+     * 用户权限变更，例如用户角色变更或用户删除
+     *
+     * @param userId 用户ID
+     */
+    public void refreshUser(Long userId) {
+        userPermissions.invalidate(userId);
+        redisUtils.publish(RedisKeys.getPermissionRefreshChannel(), String.valueOf(userId));
+    }
+
+    /**
+     * 角色或菜单变更，重建权限索引并清除所有用户的权限集合
+     */
+    public void refreshAll() {
+        rebuild();
+        redisUtils.publish(RedisKeys.getPermissionRefreshChannel(), ALL_USERS);
+    }
+
+    /**
+     * 处理其他实例发布的权限变更通知
+     *
+     * @param message 用户ID，或*表示全部用户
+     */
+    public void onMessage(String message) {
+        if (ALL_USERS.equals(message)) {
+            rebuild();
+            return;
+        }
+        try {
+            userPermissions.invalidate(Long.parseLong(message));
+        } catch (NumberFormatException e) {
+            log.warn("无效的权限变更通知: {}", message);
+        }
+    }
+
+    /**
+     * 定期重建，兜底丢失的变更通知
+     */
+    @Scheduled(fixedDelay = 10 * 60 * 1000L, initialDelay = 10 * 60 * 1000L)
+    public void rebuild() {
+        index = PermissionSet.Index.of(sysMenuDao.getPermissionsList());
+        userPermissions.invalidateAll();
+        rebuildCount.increment();
+    }
+
+    /**
+     * 获取权限统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        PermissionSet.Index current = index;
+        stats.put("permissionCount", current != null ? current.size() : 0);
+        stats.put("userCount", userPermissions.size());
+        stats.put("compileCount", compileCount.sum());
+        stats.put("rebuildCount", rebuildCount.sum());
+        return stats;
+    }
+
+    private PermissionSet getPermissionSet(Long userId) {
+        PermissionSet permissionSet = userPermissions.getIfPresent(userId);
+        if (permissionSet != null) {
+            return permissionSet;
+        }
+        try {
+            return userPermissions.get(userId, () -> compile(userId));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("无法加载用户权限: " + userId, e.getCause());
+        }
+    }
+
+    private PermissionSet compile(Long userId) {
+        compileCount.increment();
+        List<String> permissionsList = sysMenuDao.getUserPermissionsList(userId);
+        PermissionSet permissionSet = getIndex().compile(permissionsList);
+        if (permissionSet == null) {
+            // 菜单在索引建立之后新增了授权标识
+            index = PermissionSet.Index.of(sysMenuDao.getPermissionsList());
+            rebuildCount.increment();
+            permissionSet = index.compile(permissionsList);
+        }
+        if (permissionSet == null) {
+            // 菜单在两次查询之间被修改，本次合并用户的授权标识建立索引
+            List<String> merged = sysMenuDao.getPermissionsList();
+            merged.addAll(permissionsList);
+            permissionSet = PermissionSet.Index.of(merged).compile(permissionsList);
+        }
+        return permissionSet;
+    }
+
+    private PermissionSet.Index getIndex() {
+        PermissionSet.Index current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    index = PermissionSet.Index.of(sysMenuDao.getPermissionsList());
+                }
+                current = index;
+            }
+        }
+        return current;
+    }
+
+    private static boolean isSuperAdmin(UserDetail user) {
+        return user.getSuperAdmin() != null && user.getSuperAdmin() == SuperAdminEnum.YES.value();
+    }
+}
@@ -0,0 +1,143 @@
+package xiaozhi.modules.security.permission;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 编译后的用户权限集合，不可变
+ * 每个授权标识在权限索引中有固定位置，用户权限为对应位置置位的位图，
+ * 判断权限只需一次哈希查找和一次位运算，不分配对象
+ */
+public final class PermissionSet {
+    /**
+     * 拥有全部权限，用于超级管理员
+     */
+    private static final long[] ALL_BITS = new long[0];
+
+    private final Index index;
+    private final long[] bits;
+
+    private PermissionSet(Index index, long[] bits) {
+        this.index = index;
+        this.bits = bits;
+    }
+
+    /**
+     * 是否拥有权限
+     *
+     * @param permission 授权标识
+     */
+    public boolean isPermitted(String permission) {
+        if (bits == ALL_BITS) {
+            return true;
+        }
+        Integer position = index.positions.get(permission);
+        if (position == null) {
+            return false;
+        }
+        int i = position;
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * 是否拥有全部权限
+     */
+    public boolean isAll() {
+        return bits == ALL_BITS;
+    }
+
+    /**
+     * 转换为授权标识集合
+     */
+    public Set<String> toSet() {
+        if (bits == ALL_BITS) {
+            return new LinkedHashSet<>(Arrays.asList(index.names));
+        }
+        Set<String> permissions = new LinkedHashSet<>();
+        for (int i = 0; i < index.names.length; i++) {
+            if ((bits[i >>> 6] & (1L << i)) != 0) {
+                permissions.add(index.names[i]);
+            }
+        }
+        return permissions;
+    }
+
+    /**
+     * 授权标识索引，为每个授权标识分配固定位置
+     * 索引重建后旧索引编译的集合仍然引用旧索引，位置保持一致
+     */
+    static final class Index {
+        private final Map<String, Integer> positions;
+        private final String[] names;
+
+        private Index(String[] names) {
+            this.names = names;
+            Map<String, Integer> positions = new HashMap<>(names.length * 2);
+            for (int i = 0; i < names.length; i++) {
+                positions.put(names[i], i);
+            }
+            this.positions = Collections.unmodifiableMap(positions);
+        }
+
+        /**
+         * 从菜单授权字段建立索引
+         *
+         * @param permissionsList 授权字段，每个字段为逗号分隔的授权标识
+         */
+        static Index of(Collection<String> permissionsList) {
+            Set<String> names = new TreeSet<>();
+            for (String permissions : permissionsList) {
+                split(permissions, names);
+            }
+            return new Index(names.toArray(new String[0]));
+        }
+
+        int size() {
+            return names.length;
+        }
+
+        /**
+         * 编译权限集合
+         *
+         * @param permissionsList 授权字段
+         * @return 权限集合，包含索引中不存在的授权标识时返回null
+         */
+        PermissionSet compile(Collection<String> permissionsList) {
+            long[] bits = new long[(names.length + 63) >>> 6];
+            Set<String> granted = new TreeSet<>();
+            for (String permissions : permissionsList) {
+                split(permissions, granted);
+            }
+            for (String permission : granted) {
+                Integer position = positions.get(permission);
+                if (position == null) {
+                    return null;
+                }
+                bits[position >>> 6] |= 1L << position;
+            }
+            return new PermissionSet(this, bits);
+        }
+
+        PermissionSet all() {
+            return new PermissionSet(this, ALL_BITS);
+        }
+
+        private static void split(String permissions, Set<String> target) {
+            if (permissions == null) {
+                return;
+            }
+            for (String permission : permissions.split(",")) {
+                permission = permission.trim();
+                if (!permission.isEmpty()) {
+                    target.add(permission);
+                }
+            }
+        }
+    }
+}
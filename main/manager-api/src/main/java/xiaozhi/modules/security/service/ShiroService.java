@@ -18,6 +18,11 @@ public interface ShiroService {
      */
     Set<String> getUserPermissions(UserDetail user);
 
+    /**
+     * 判断用户是否拥有权限
+     */
+    boolean isPermitted(UserDetail user, String permission);
+
     SysUserTokenEntity getByToken(String token);
 
     /**
@@ -28,4 +28,11 @@ public interface SysUserTokenService extends BaseService<SysUserTokenEntity> {
      */
     void logout(Long userId);
 
+    /**
+     * 清除用户令牌的认证和授权缓存，用户信息或状态变更后调用
+     *
+     * @param userId 用户ID
+     */
+    void clearCache(Long userId);
+
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package xiaozhi.modules.security.service.impl;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.wf.captcha.SpecCaptcha;
 import com.wf.captcha.base.Captcha;
 import xiaozhi.common.redis.RedisKeys;
@@ -10,11 +8,9 @@ import xiaozhi.modules.security.service.CaptchaService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 验证码
@@ -23,12 +19,6 @@ import java.util.concurrent.TimeUnit;
 public class CaptchaServiceImpl implements CaptchaService {
     @Resource
     private RedisUtils redisUtils;
-    @Value("${renren.redis.open}")
-    private boolean open;
-    /**
-     * Local Cache  5分钟过期
-     */
-    Cache<String, String> localCache = CacheBuilder.newBuilder().maximumSize(1000).expireAfterAccess(5, TimeUnit.MINUTES).build();
 
     @Override
     public void create(HttpServletResponse response, String uuid) throws IOException {
@@ -64,31 +54,18 @@ public class CaptchaServiceImpl implements CaptchaService {
     }
 
     private void setCache(String key, String value) {
-        if (open) {
-            key = RedisKeys.getCaptchaKey(key);
-            redisUtils.set(key, value, 300);
-        } else {
-            localCache.put(key, value);
-        }
+        key = RedisKeys.getCaptchaKey(key);
+        redisUtils.set(key, value, 300);
     }
 
     private String getCache(String key) {
-        if (open) {
-            key = RedisKeys.getCaptchaKey(key);
-            String captcha = (String) redisUtils.get(key);
-            //删除验证码
-            if (captcha != null) {
-                redisUtils.delete(key);
-            }
-
-            return captcha;
-        }
-
-        String captcha = localCache.getIfPresent(key);
+        key = RedisKeys.getCaptchaKey(key);
+        String captcha = (String) redisUtils.get(key);
         //删除验证码
         if (captcha != null) {
-            localCache.invalidate(key);
+            redisUtils.delete(key);
         }
+
         return captcha;
     }
 }
\ No newline at end of file
@@ -7,8 +7,10 @@ import xiaozhi.common.utils.HttpContextUtils;
 import xiaozhi.common.utils.Result;
 import xiaozhi.modules.security.dao.SysUserTokenDao;
 import xiaozhi.modules.security.entity.SysUserTokenEntity;
+import xiaozhi.modules.security.oauth2.Oauth2Realm;
 import xiaozhi.modules.security.oauth2.TokenGenerator;
 import xiaozhi.modules.security.service.SysUserTokenService;
+import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
@@ -20,6 +22,9 @@ public class SysUserTokenServiceImpl extends BaseServiceImpl<SysUserTokenDao, Sy
      */
     private final static int EXPIRE = 3600 * 12;
 
+    @Resource
+    private Oauth2Realm oauth2Realm;
+
     @Override
     public Result createToken(Long userId) {
         //用户token
@@ -45,6 +50,8 @@ public class SysUserTokenServiceImpl extends BaseServiceImpl<SysUserTokenDao, Sy
             //保存token
             this.insert(tokenEntity);
         } else {
+            String oldToken = tokenEntity.getToken();
+
             //判断token是否过期
             if (tokenEntity.getExpireDate().getTime() < System.currentTimeMillis()) {
                 //token过期，重新生成token
@@ -59,6 +66,9 @@ public class SysUserTokenServiceImpl extends BaseServiceImpl<SysUserTokenDao, Sy
 
             //更新token
             this.updateById(tokenEntity);
+
+            //缓存中的过期时间已变更
+            oauth2Realm.clearCache(oldToken);
         }
 
         String clientHash = HttpContextUtils.getClientCode();
@@ -75,5 +85,14 @@ public class SysUserTokenServiceImpl extends BaseServiceImpl<SysUserTokenDao, Sy
     public void logout(Long userId) {
         Date expireDate = DateUtil.offsetMinute(new Date(), -1);
         baseDao.logout(userId, expireDate);
+        clearCache(userId);
+    }
+
+    @Override
+    public void clearCache(Long userId) {
+        SysUserTokenEntity tokenEntity = baseDao.getByUserId(userId);
+        if (tokenEntity != null) {
+            oauth2Realm.clearCache(tokenEntity.getToken());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package xiaozhi.modules.sys.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.utils.Result;
+import xiaozhi.modules.security.cache.ShiroCacheManager;
+import xiaozhi.modules.security.oauth2.AuthTracer;
+import xiaozhi.modules.security.password.PasswordVerifier;
+import xiaozhi.modules.security.permission.PermissionEngine;
+import xiaozhi.modules.security.user.SecurityUser;
+import xiaozhi.modules.sys.enums.SuperAdminEnum;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 认证统计，仅超级管理员可查看
+ */
+@AllArgsConstructor
+@RestController
+@RequestMapping("/sys/auth")
+@Tag(name = "认证统计")
+public class SysAuthController {
+    private final AuthTracer authTracer;
+    private final ShiroCacheManager shiroCacheManager;
+    private final PermissionEngine permissionEngine;
+    private final PasswordVerifier passwordVerifier;
+
+    @GetMapping("stats")
+    @Operation(summary = "令牌认证统计")
+    public Result<Map<String, Object>> authStats() {
+        return superAdminOnly(authTracer::getStats);
+    }
+
+    @GetMapping("cache/stats")
+    @Operation(summary = "认证缓存统计")
+    public Result<Map<String, Object>> authCacheStats() {
+        return superAdminOnly(shiroCacheManager::getStats);
+    }
+
+    @GetMapping("permission/stats")
+    @Operation(summary = "用户权限统计")
+    public Result<Map<String, Object>> permissionStats() {
+        return superAdminOnly(permissionEngine::getStats);
+    }
+
+    @GetMapping("password/stats")
+    @Operation(summary = "登录密码验证统计")
+    public Result<Map<String, Object>> passwordStats() {
+        return superAdminOnly(passwordVerifier::getStats);
+    }
+
+    private static Result<Map<String, Object>> superAdminOnly(Supplier<Map<String, Object>> stats) {
+        Integer superAdmin = SecurityUser.getUser().getSuperAdmin();
+        if (superAdmin == null || superAdmin != SuperAdminEnum.YES.value()) {
+            return new Result<Map<String, Object>>().error(ErrorCode.FORBIDDEN);
+        }
+        return new Result<Map<String, Object>>().ok(stats.get());
+    }
+}
@@ -0,0 +1,45 @@
+package xiaozhi.modules.sys.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import xiaozhi.common.redis.LocalRedisStore;
+import xiaozhi.common.redis.NearCache;
+import xiaozhi.common.redis.RedisCircuitBreaker;
+import xiaozhi.common.utils.Result;
+
+import java.util.Map;
+
+/**
+ * 缓存管理
+ */
+@AllArgsConstructor
+@RestController
+@RequestMapping("/sys/cache")
+@Tag(name = "缓存管理")
+public class SysCacheController {
+    private final NearCache nearCache;
+    private final LocalRedisStore localRedisStore;
+    private final RedisCircuitBreaker redisCircuitBreaker;
+
+    @GetMapping("stats")
+    @Operation(summary = "近端缓存命中统计")
+    public Result<Map<String, Object>> stats() {
+        return new Result<Map<String, Object>>().ok(nearCache.getStats());
+    }
+
+    @GetMapping("local/stats")
+    @Operation(summary = "本地内存存储统计（未开启Redis时使用）")
+    public Result<Map<String, Object>> localStats() {
+        return new Result<Map<String, Object>>().ok(localRedisStore.getStats());
+    }
+
+    @GetMapping("circuit/stats")
+    @Operation(summary = "Redis熔断状态")
+    public Result<Map<String, Object>> circuitStats() {
+        return new Result<Map<String, Object>>().ok(redisCircuitBreaker.getStats());
+    }
+}
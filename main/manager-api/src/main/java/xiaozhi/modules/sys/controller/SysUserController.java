@@ -6,7 +6,6 @@ import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.exception.RenException;
 import xiaozhi.common.page.PageData;
 import xiaozhi.common.user.UserDetail;
-import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.common.utils.Result;
 import xiaozhi.common.validator.AssertUtils;
 import xiaozhi.common.validator.ValidatorUtils;
@@ -69,7 +68,8 @@ public class SysUserController {
     @GetMapping("info")
     @Operation(summary = "登录用户信息")
     public Result<SysUserDTO> info() {
-        SysUserDTO data = ConvertUtils.sourceToTarget(SecurityUser.getUser(), SysUserDTO.class);
+        // 认证缓存中的用户只有必要字段，从数据库读取完整信息
+        SysUserDTO data = sysUserService.get(SecurityUser.getUserId());
         return new Result<SysUserDTO>().ok(data);
     }
 
@@ -90,8 +90,9 @@ public class SysUserController {
             return new Result().error(ErrorCode.PASSWORD_WEAK_ERROR);
         }
         UserDetail user = SecurityUser.getUser();
-        //原密码不正确
-        if (!PasswordUtils.matches(dto.getPassword(), user.getPassword())) {
+        //原密码不正确，登录用户信息中不含密码，从数据库读取
+        SysUserDTO current = sysUserService.get(user.getId());
+        if (current == null || !PasswordUtils.matches(dto.getPassword(), current.getPassword())) {
             return new Result().error(ErrorCode.PASSWORD_ERROR);
         }
 
@@ -0,0 +1,24 @@
+package xiaozhi.modules.sys.dao;
+
+import xiaozhi.common.dao.BaseDao;
+import xiaozhi.modules.sys.entity.SysMenuEntity;
+import org.apache.ibatis.annotations.Mapper;
+
+import java.util.List;
+
+/**
+ * 菜单
+ */
+@Mapper
+public interface SysMenuDao extends BaseDao<SysMenuEntity> {
+
+    /**
+     * 查询所有菜单的授权标识
+     */
+    List<String> getPermissionsList();
+
+    /**
+     * 查询用户所有角色关联菜单的授权标识
+     */
+    List<String> getUserPermissionsList(Long userId);
+}
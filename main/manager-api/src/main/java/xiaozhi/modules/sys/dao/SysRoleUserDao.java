@@ -0,0 +1,13 @@
+package xiaozhi.modules.sys.dao;
+
+import xiaozhi.common.dao.BaseDao;
+import xiaozhi.modules.sys.entity.SysRoleUserEntity;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 角色用户关系
+ */
+@Mapper
+public interface SysRoleUserDao extends BaseDao<SysRoleUserEntity> {
+
+}
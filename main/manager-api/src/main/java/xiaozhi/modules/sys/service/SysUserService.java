@@ -38,6 +38,14 @@ public interface SysUserService extends BaseService<SysUserEntity> {
      */
     void updatePassword(Long id, String newPassword);
 
+    /**
+     * 更新已加密的密码，用于登录成功后按当前BCrypt强度重新加密，不影响已登录的令牌
+     *
+     * @param id       用户ID
+     * @param password 加密后密码
+     */
+    void rehashPassword(Long id, String password);
+
     /**
      * 根据部门ID，查询用户数
      */
@@ -1,5 +1,6 @@
 package xiaozhi.modules.sys.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import xiaozhi.common.exception.ErrorCode;
 import xiaozhi.common.exception.RenException;
@@ -10,9 +11,13 @@ import xiaozhi.common.service.impl.BaseServiceImpl;
 import xiaozhi.common.user.UserDetail;
 import xiaozhi.common.utils.ConvertUtils;
 import xiaozhi.modules.security.password.PasswordUtils;
+import xiaozhi.modules.security.permission.PermissionEngine;
+import xiaozhi.modules.security.service.SysUserTokenService;
 import xiaozhi.modules.security.user.SecurityUser;
+import xiaozhi.modules.sys.dao.SysRoleUserDao;
 import xiaozhi.modules.sys.dao.SysUserDao;
 import xiaozhi.modules.sys.dto.SysUserDTO;
+import xiaozhi.modules.sys.entity.SysRoleUserEntity;
 import xiaozhi.modules.sys.entity.SysUserEntity;
 import xiaozhi.modules.sys.enums.SuperAdminEnum;
 import xiaozhi.modules.sys.service.SysUserService;
@@ -35,6 +40,9 @@ import java.util.regex.Pattern;
 @Service
 public class SysUserServiceImpl extends BaseServiceImpl<SysUserDao, SysUserEntity> implements SysUserService {
     private final RedisUtils redisUtils;
+    private final SysUserTokenService sysUserTokenService;
+    private final PermissionEngine permissionEngine;
+    private final SysRoleUserDao sysRoleUserDao;
 
     @Override
     public PageData<SysUserDTO> page(Map<String, Object> params) {
@@ -109,6 +117,9 @@ public class SysUserServiceImpl extends BaseServiceImpl<SysUserDao, SysUserEntit
 
         //更新用户
         updateById(entity);
+
+        //状态或密码可能已变更
+        sysUserTokenService.clearCache(entity.getId());
     }
 
     @Override
@@ -122,13 +133,20 @@ public class SysUserServiceImpl extends BaseServiceImpl<SysUserDao, SysUserEntit
         entity.setEmail(dto.getEmail());
 
         updateById(entity);
+        sysUserTokenService.clearCache(entity.getId());
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void delete(Long[] ids) {
-        //删除用户
+        //删除用户及其角色关系
         baseDao.deleteBatchIds(Arrays.asList(ids));
+        sysRoleUserDao.delete(new LambdaQueryWrapper<SysRoleUserEntity>()
+                .in(SysRoleUserEntity::getUserId, Arrays.asList(ids)));
+        for (Long id : ids) {
+            sysUserTokenService.clearCache(id);
+            permissionEngine.refreshUser(id);
+        }
     }
 
     @Override
@@ -137,6 +155,12 @@ public class SysUserServiceImpl extends BaseServiceImpl<SysUserDao, SysUserEntit
         newPassword = PasswordUtils.encode(newPassword);
 
         baseDao.updatePassword(id, newPassword);
+        sysUserTokenService.clearCache(id);
+    }
+
+    @Override
+    public void rehashPassword(Long id, String password) {
+        baseDao.updatePassword(id, password);
     }
 
     @Override
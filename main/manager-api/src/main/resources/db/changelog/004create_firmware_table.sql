@@ -0,0 +1,17 @@
+-- 固件目录表
+CREATE TABLE t_firmware (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键',
+    device_type VARCHAR(50) NOT NULL COMMENT '设备类型',
+    version VARCHAR(50) NOT NULL COMMENT '固件版本（语义化版本号）',
+    url VARCHAR(500) NOT NULL COMMENT '固件下载地址',
+    size BIGINT COMMENT '固件大小（字节）',
+    checksum VARCHAR(128) COMMENT '固件校验和',
+    rollout_percentage TINYINT DEFAULT 100 COMMENT '发布比例：0-100',
+    status TINYINT DEFAULT 1 COMMENT '状态：0-停用 1-启用',
+    creator BIGINT COMMENT '创建者',
+    create_date DATETIME COMMENT '创建时间',
+    updater BIGINT COMMENT '更新者',
+    update_date DATETIME COMMENT '更新时间',
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_type_version (device_type, version)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='固件目录表';
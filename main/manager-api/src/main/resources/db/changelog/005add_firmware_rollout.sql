@@ -0,0 +1,5 @@
+-- 固件分批发布计划
+ALTER TABLE t_firmware ADD COLUMN rollout_plan VARCHAR(100) COMMENT '分批发布计划，逗号分隔的发布比例，如1,10,50,100' AFTER rollout_percentage;
+ALTER TABLE t_firmware ADD COLUMN rollout_interval_minutes INT COMMENT '批次间隔（分钟）' AFTER rollout_plan;
+ALTER TABLE t_firmware ADD COLUMN rollout_next_time DATETIME COMMENT '下一批次开始时间' AFTER rollout_interval_minutes;
+ALTER TABLE t_firmware ADD KEY idx_rollout_next_time (rollout_next_time);
@@ -0,0 +1,6 @@
+-- 激活码只要求在有效期内唯一，过期或已使用的激活码可被重新分配
+-- 唯一约束改为建立在仅对有效激活码取值的虚拟列上（其余行为NULL，不参与唯一性检查）
+ALTER TABLE t_activation_code DROP INDEX uk_code;
+ALTER TABLE t_activation_code ADD COLUMN valid_code VARCHAR(6) GENERATED ALWAYS AS (IF(status = 0, code, NULL)) VIRTUAL COMMENT '有效激活码，仅用于唯一约束';
+ALTER TABLE t_activation_code ADD UNIQUE KEY uk_valid_code (valid_code);
+ALTER TABLE t_activation_code ADD INDEX idx_code (code);
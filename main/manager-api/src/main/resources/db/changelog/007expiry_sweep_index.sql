@@ -0,0 +1,3 @@
+-- 过期清理按状态和过期时间分批扫描，避免全表扫描
+ALTER TABLE t_activation_code ADD INDEX idx_status_expire_time (status, expire_time);
+ALTER TABLE t_access_token ADD INDEX idx_revoked_expire_time (is_revoked, expire_time);
@@ -0,0 +1,2 @@
+-- 令牌摘要列，令牌为TEXT类型无法建立索引，按令牌查询改为按SHA-256摘要查询
+ALTER TABLE t_access_token ADD COLUMN token_hash CHAR(64) COMMENT '令牌SHA-256摘要' AFTER token;
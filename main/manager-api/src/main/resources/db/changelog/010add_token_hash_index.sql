@@ -0,0 +1,7 @@
+-- 历史数据中同一秒内为同一设备重复签发的令牌内容相同，只保留最新一行的摘要，其余置空后再建立唯一索引
+UPDATE t_access_token t
+    JOIN (SELECT token_hash, MAX(id) AS keep_id FROM t_access_token
+          WHERE token_hash IS NOT NULL GROUP BY token_hash HAVING COUNT(*) > 1) d
+    ON t.token_hash = d.token_hash AND t.id <> d.keep_id
+SET t.token_hash = NULL;
+ALTER TABLE t_access_token ADD UNIQUE KEY uk_token_hash (token_hash);
@@ -0,0 +1,2 @@
+-- 设备令牌代数，撤销设备所有令牌时加一，代数小于当前值的令牌视为已撤销
+ALTER TABLE t_device ADD COLUMN token_generation INT NOT NULL DEFAULT 0 COMMENT '令牌代数';
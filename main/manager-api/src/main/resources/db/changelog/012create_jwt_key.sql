@@ -0,0 +1,13 @@
+-- 设备令牌签名密钥，支持非对称签名和密钥轮换，公钥通过JWKS接口发布
+CREATE TABLE sys_jwt_key (
+  id bigint NOT NULL COMMENT 'id',
+  kid varchar(64) NOT NULL COMMENT '密钥ID',
+  algorithm varchar(16) NOT NULL COMMENT '签名算法：EdDSA、ES256',
+  public_key text NOT NULL COMMENT '公钥，X.509编码后Base64',
+  private_key text NOT NULL COMMENT '私钥，PKCS#8编码后Base64',
+  status tinyint NOT NULL DEFAULT 0 COMMENT '状态：0-签名中 1-已退役',
+  retire_time datetime COMMENT '退役时间',
+  create_date datetime COMMENT '创建时间',
+  PRIMARY KEY (id),
+  UNIQUE KEY uk_kid (kid)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='设备令牌签名密钥';
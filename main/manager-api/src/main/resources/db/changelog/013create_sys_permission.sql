@@ -0,0 +1,51 @@
+-- 角色、菜单和权限，用户权限为其所有角色关联菜单的授权标识之和
+CREATE TABLE sys_role (
+  id bigint NOT NULL COMMENT 'id',
+  name varchar(32) COMMENT '角色名称',
+  remark varchar(100) COMMENT '备注',
+  creator bigint COMMENT '创建者',
+  create_date datetime COMMENT '创建时间',
+  updater bigint COMMENT '更新者',
+  update_date datetime COMMENT '更新时间',
+  PRIMARY KEY (id),
+  KEY idx_create_date (create_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='角色管理';
+
+CREATE TABLE sys_menu (
+  id bigint NOT NULL COMMENT 'id',
+  pid bigint COMMENT '上级ID，一级菜单为0',
+  name varchar(200) COMMENT '名称',
+  url varchar(200) COMMENT '菜单URL',
+  permissions varchar(500) COMMENT '授权(多个用逗号分隔，如：sys:user:list,sys:user:save)',
+  menu_type tinyint unsigned COMMENT '类型   0：菜单   1：按钮',
+  icon varchar(50) COMMENT '菜单图标',
+  sort int COMMENT '排序',
+  creator bigint COMMENT '创建者',
+  create_date datetime COMMENT '创建时间',
+  updater bigint COMMENT '更新者',
+  update_date datetime COMMENT '更新时间',
+  PRIMARY KEY (id),
+  KEY idx_pid (pid)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='菜单管理';
+
+CREATE TABLE sys_role_menu (
+  id bigint NOT NULL COMMENT 'id',
+  role_id bigint COMMENT '角色ID',
+  menu_id bigint COMMENT '菜单ID',
+  creator bigint COMMENT '创建者',
+  create_date datetime COMMENT '创建时间',
+  PRIMARY KEY (id),
+  KEY idx_role_id (role_id),
+  KEY idx_menu_id (menu_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='角色菜单关系';
+
+CREATE TABLE sys_role_user (
+  id bigint NOT NULL COMMENT 'id',
+  role_id bigint COMMENT '角色ID',
+  user_id bigint COMMENT '用户ID',
+  creator bigint COMMENT '创建者',
+  create_date datetime COMMENT '创建时间',
+  PRIMARY KEY (id),
+  KEY idx_role_id (role_id),
+  KEY idx_user_id (user_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='角色用户关系';
@@ -0,0 +1,2 @@
+-- 新增待启用状态：轮换生成的密钥先在JWKS中发布，一段时间后才开始签名
+ALTER TABLE sys_jwt_key MODIFY COLUMN status tinyint NOT NULL DEFAULT 0 COMMENT '状态：0-签名中 1-已退役 2-待启用';
@@ -0,0 +1,77 @@
+package xiaozhi.common.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 响应缓冲区池单元测试
+ */
+public class ResponseBufferPoolTest {
+
+    /**
+     * 测试归还的缓冲区清空后再次借出
+     */
+    @Test
+    public void testReuse() throws IOException {
+        ResponseBufferPool pool = new ResponseBufferPool(4, 64, 2);
+        ResponseBufferPool.Buffer buffer = pool.acquire();
+        buffer.write("hello".getBytes(StandardCharsets.UTF_8));
+        buffer.write('!');
+        assertEquals(6, buffer.size(), "超过初始大小时应自动扩容");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        assertEquals("hello!", out.toString(StandardCharsets.UTF_8));
+
+        pool.release(buffer);
+        assertEquals(1, pool.size());
+        ResponseBufferPool.Buffer reused = pool.acquire();
+        assertSame(buffer, reused, "应复用归还的缓冲区");
+        assertEquals(0, reused.size(), "借出的缓冲区应已清空");
+        assertEquals(0, pool.size());
+
+        assertNotSame(reused, pool.acquire(), "池为空时应新建");
+    }
+
+    /**
+     * 测试池中缓冲区数量不超过上限，过大的缓冲区不放回池中
+     */
+    @Test
+    public void testReleaseBound() {
+        ResponseBufferPool pool = new ResponseBufferPool(4, 64, 2);
+        List<ResponseBufferPool.Buffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            buffers.add(pool.acquire());
+        }
+        buffers.forEach(pool::release);
+        assertEquals(2, pool.size(), "池已满时应丢弃");
+
+        ResponseBufferPool.Buffer large = new ResponseBufferPool(4, 64, 2).acquire();
+        large.write(new byte[65], 0, 65);
+        pool.acquire();
+        pool.release(large);
+        assertEquals(1, pool.size(), "过大的缓冲区不应放回池中");
+
+        pool.release(null);
+        assertEquals(1, pool.size());
+    }
+
+    /**
+     * 测试写入越界时抛出异常，不改变已写入的内容
+     */
+    @Test
+    public void testWriteBounds() {
+        ResponseBufferPool.Buffer buffer = new ResponseBufferPool().acquire();
+        buffer.write(new byte[]{1, 2, 3}, 1, 2);
+        assertEquals(2, buffer.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.write(new byte[3], 2, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> buffer.write(new byte[3], -1, 1));
+        assertEquals(2, buffer.size());
+    }
+}
@@ -0,0 +1,157 @@
+package xiaozhi.common.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地内存存储单元测试
+ */
+public class LocalRedisStoreTest {
+
+    /**
+     * 测试过期时间：读取时检查，不大于0时删除键，集合类型保留原过期时间
+     */
+    @Test
+    public void testExpire() {
+        LocalRedisStore store = new LocalRedisStore();
+        store.set("a", "1", RedisUtils.NOT_EXPIRE);
+        store.set("b", "2", RedisUtils.DEFAULT_EXPIRE);
+        store.expireAt("b", new Date(System.currentTimeMillis() - 1));
+        assertEquals("1", store.get("a"));
+        assertNull(store.get("b"), "已过期的键应读不到");
+
+        store.expire("a", 0);
+        assertNull(store.get("a"), "过期时长不大于0时应删除键");
+
+        store.sAdd("s", "x");
+        store.expire("s", 60);
+        store.sAdd("s", "y");
+        assertTrue(store.sIsMember("s", "x"));
+        store.expireAt("s", new Date(System.currentTimeMillis() - 1));
+        assertFalse(store.sIsMember("s", "y"));
+
+        // 已过期的集合再次写入时重新创建
+        store.sAdd("s", "z");
+        assertFalse(store.sIsMember("s", "x"));
+        assertTrue(store.sIsMember("s", "z"));
+
+        store.set("c", "3", RedisUtils.DEFAULT_EXPIRE);
+        store.expireAt("c", new Date(System.currentTimeMillis() - 1));
+        store.sweep();
+        assertEquals(3L, store.getStats().get("expiredCount"));
+    }
+
+    /**
+     * 测试类型：类型不符时与Redis的WRONGTYPE一致抛出异常，集合类型为空时删除键
+     */
+    @Test
+    public void testTypes() {
+        LocalRedisStore store = new LocalRedisStore();
+        store.set("k", "v", RedisUtils.NOT_EXPIRE);
+        assertThrows(IllegalStateException.class, () -> store.hGet("k", "f"));
+        assertThrows(IllegalStateException.class, () -> store.sAdd("k", "x"));
+        assertEquals("v", store.get("k"), "类型不符的写入不应改变原值");
+
+        store.hPut("h", "f1", 1);
+        store.hPutAll("h", Map.of("f2", 2));
+        assertEquals(Map.of("f1", 1, "f2", 2), store.hGetAll("h"));
+        assertThrows(IllegalStateException.class, () -> store.get("h"));
+        store.hDel("h", "f1", "f2");
+        assertNull(store.get("h"), "哈希为空时应删除键");
+
+        store.leftPush("l", 1);
+        store.leftPush("l", 2);
+        assertEquals(1, store.rightPop("l"));
+        assertEquals(2, store.rightPop("l"));
+        assertNull(store.rightPop("l"));
+        assertNull(store.get("l"), "列表为空时应删除键");
+
+        assertEquals(2L, store.sAdd("s", "x", "y", "x"));
+        assertEquals(0L, store.sAdd("s", "y"));
+    }
+
+    /**
+     * 测试只在键不存在或当前值更小时写入
+     */
+    @Test
+    public void testSetIfGreater() {
+        LocalRedisStore store = new LocalRedisStore();
+        assertTrue(store.setIfGreater("g", 2, RedisUtils.NOT_EXPIRE));
+        assertFalse(store.setIfGreater("g", 2, RedisUtils.NOT_EXPIRE));
+        assertFalse(store.setIfGreater("g", 1, RedisUtils.NOT_EXPIRE));
+        assertEquals(2L, store.get("g"));
+        assertTrue(store.setIfGreater("g", 3, RedisUtils.NOT_EXPIRE));
+        assertEquals(3L, store.get("g"));
+
+        // 已过期的值视为不存在
+        store.expireAt("g", new Date(System.currentTimeMillis() - 1));
+        assertTrue(store.setIfGreater("g", 1, RedisUtils.NOT_EXPIRE));
+        assertEquals(1L, store.get("g"));
+
+        store.set("s", "text", RedisUtils.NOT_EXPIRE);
+        assertThrows(IllegalStateException.class, () -> store.setIfGreater("s", 1, RedisUtils.NOT_EXPIRE));
+    }
+
+    /**
+     * 测试单个集合的元素数上限：超过时拒绝写入，已撤销令牌集合不限制
+     */
+    @Test
+    public void testCollectionLimit() {
+        LocalRedisStore store = new LocalRedisStore();
+        Map<String, Object> fields = new HashMap<>();
+        for (int i = 0; i < LocalRedisStore.MAXIMUM_COLLECTION_SIZE; i++) {
+            fields.put("f" + i, i);
+        }
+        store.hPutAll("h", fields);
+        // 覆盖已有字段不增加元素数
+        store.hPut("h", "f0", -1);
+        assertThrows(IllegalStateException.class, () -> store.hPut("h", "extra", 1));
+        assertEquals(LocalRedisStore.MAXIMUM_COLLECTION_SIZE, store.hGetAll("h").size());
+        assertEquals(1L, store.getStats().get("rejectedCount"));
+
+        String revoked = RedisKeys.getRevokedTokensKey(1);
+        Object[] hashes = new Object[LocalRedisStore.MAXIMUM_COLLECTION_SIZE + 1];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = "hash" + i;
+        }
+        assertEquals(hashes.length, store.sAdd(revoked, hashes));
+        assertTrue(store.sIsMember(revoked, "hash" + LocalRedisStore.MAXIMUM_COLLECTION_SIZE));
+    }
+
+    /**
+     * 测试键数超过上限时淘汰，已撤销令牌和令牌代数不参与淘汰
+     */
+    @Test
+    public void testPinnedKeysNotEvicted() {
+        LocalRedisStore store = new LocalRedisStore();
+        String revoked = RedisKeys.getRevokedTokensKey(1);
+        String generation = RedisKeys.getDeviceTokenGenerationKey(1L);
+        store.sAdd(revoked, "hash");
+        store.expire(revoked, 60);
+        store.setIfGreater(generation, 5, RedisUtils.NOT_EXPIRE);
+        for (int i = 0; i < 200000; i++) {
+            store.set("k" + i, i, RedisUtils.NOT_EXPIRE);
+        }
+
+        Map<String, Object> stats = store.getStats();
+        assertTrue((Long) stats.get("evictionCount") > 0);
+        assertTrue((Long) stats.get("size") <= (Long) stats.get("maximumSize"));
+        assertEquals(2, stats.get("pinnedSize"));
+        assertTrue(store.sIsMember(revoked, "hash"), "已撤销令牌不应被淘汰");
+        assertEquals(5L, store.get(generation), "令牌代数不应被淘汰");
+
+        // 不参与淘汰的键仍按过期时间删除
+        store.expireAt(revoked, new Date(System.currentTimeMillis() - 1));
+        store.sweep();
+        assertFalse(store.sIsMember(revoked, "hash"));
+        store.delete(List.of(generation));
+        assertNull(store.get(generation));
+        assertEquals(0, store.getStats().get("pinnedSize"));
+    }
+}
@@ -0,0 +1,111 @@
+package xiaozhi.common.redis;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Redis近端缓存单元测试
+ */
+public class NearCacheTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final NearCache nearCache = new NearCache(redisTemplate, true, true);
+
+    /**
+     * 测试只缓存配置的命名空间
+     */
+    @Test
+    public void testNamespaces() {
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("v", nearCache.get("sys:params", () -> load(loads, "v")));
+        assertEquals("v", nearCache.get("sys:params", () -> load(loads, "v")));
+        assertEquals(1, loads.get(), "命中本地缓存时不应访问Redis");
+
+        nearCache.get("other:key", () -> load(loads, "v"));
+        nearCache.get("other:key", () -> load(loads, "v"));
+        assertEquals(3, loads.get(), "未配置的命名空间不应缓存");
+
+        NearCache disabled = new NearCache(redisTemplate, false, true);
+        disabled.get("sys:params", () -> load(loads, "v"));
+        disabled.get("sys:params", () -> load(loads, "v"));
+        assertEquals(5, loads.get(), "未开启Redis时不应缓存");
+    }
+
+    /**
+     * 测试加载期间发生失效时不缓存加载到的旧值
+     */
+    @Test
+    public void testInvalidateDuringLoad() {
+        String key = RedisKeys.getActivationCodeKey("123456");
+        assertEquals("old", nearCache.get(key, () -> {
+            // 其他线程在Redis读取返回前写入并失效
+            nearCache.invalidate(key);
+            return "old";
+        }));
+        assertEquals("new", nearCache.get(key, () -> "new"), "加载期间失效的旧值不应缓存");
+        assertEquals("new", nearCache.get(key, () -> "other"));
+
+        assertEquals(1, nearCache.hGet(key, "f", () -> {
+            nearCache.onMessage(key);
+            return 1;
+        }));
+        assertEquals(2, nearCache.hGet(key, "f", () -> 2), "收到失效通知后加载的旧字段不应缓存");
+
+        Map<String, Object> hash = nearCache.hGetAll("sys:params", () -> {
+            nearCache.invalidate(List.of("sys:params"));
+            return Map.of("f", "old");
+        });
+        assertEquals("old", hash.get("f"));
+        assertEquals("new", nearCache.hGetAll("sys:params", () -> Map.of("f", "new")).get("f"));
+    }
+
+    /**
+     * 测试多个键的失效合并为一条通知，收到通知时逐个失效
+     */
+    @Test
+    public void testMultiKeyInvalidation() {
+        String codeKey = RedisKeys.getActivationCodeKey("123456");
+        nearCache.get("sys:params", () -> "v1");
+        nearCache.get(codeKey, () -> "v1");
+
+        nearCache.invalidate(List.of("sys:params", codeKey, "other:key"));
+        verify(redisTemplate).convertAndSend(RedisKeys.getNearCacheInvalidateChannel(), "sys:params\n" + codeKey);
+        assertEquals("v2", nearCache.get("sys:params", () -> "v2"));
+        assertEquals("v2", nearCache.get(codeKey, () -> "v2"));
+
+        // 只有未缓存命名空间的键时不发送通知
+        nearCache.invalidate(List.of("other:key"));
+        verify(redisTemplate, times(1)).convertAndSend(anyString(), any());
+
+        // 其他实例的通知只失效本地缓存，不再发送
+        nearCache.onMessage("sys:params\n" + codeKey);
+        assertEquals("v3", nearCache.get("sys:params", () -> "v3"));
+        assertEquals("v3", nearCache.get(codeKey, () -> "v3"));
+        verify(redisTemplate, times(1)).convertAndSend(anyString(), any());
+    }
+
+    /**
+     * 测试通知发送失败不影响本地失效
+     */
+    @Test
+    public void testPublishFailure() {
+        when(redisTemplate.convertAndSend(anyString(), any())).thenThrow(new IllegalStateException("down"));
+        nearCache.get("sys:params", () -> "v1");
+        nearCache.invalidate("sys:params");
+        assertEquals("v2", nearCache.get("sys:params", () -> "v2"));
+    }
+
+    private static Object load(AtomicInteger loads, Object value) {
+        loads.incrementAndGet();
+        return value;
+    }
+}
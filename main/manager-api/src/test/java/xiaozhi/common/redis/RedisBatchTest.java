@@ -0,0 +1,123 @@
+package xiaozhi.common.redis;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Redis批量命令单元测试
+ */
+@SuppressWarnings("unchecked")
+public class RedisBatchTest {
+
+    private final RedisOperations<String, Object> operations = mock(RedisOperations.class);
+    private final ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+    private final HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+    private final ListOperations<String, Object> listOperations = mock(ListOperations.class);
+    private final SetOperations<String, Object> setOperations = mock(SetOperations.class);
+
+    {
+        when(operations.opsForValue()).thenReturn(valueOperations);
+        when(operations.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(operations.opsForList()).thenReturn(listOperations);
+        when(operations.opsForSet()).thenReturn(setOperations);
+    }
+
+    /**
+     * 测试写入和设置过期时间放在同一个MULTI中
+     */
+    @Test
+    public void testWriteAndExpireInMulti() {
+        List<String> keys = new ArrayList<>();
+        RedisBatch batch = new RedisBatch(operations, keys);
+        Map<String, Object> map = Map.of("f", 1);
+        Date expireAt = new Date(System.currentTimeMillis() + 60 * 1000L);
+        batch.hMSet("h", map, 60).hSet("h2", "f", 1, 0).leftPush("l", "v", 60).sAdd("s", expireAt, "a", "b");
+
+        InOrder order = inOrder(operations, hashOperations, listOperations, setOperations);
+        order.verify(operations).multi();
+        order.verify(hashOperations).putAll("h", map);
+        order.verify(operations).expire("h", 60, TimeUnit.SECONDS);
+        order.verify(operations).exec();
+        order.verify(operations).multi();
+        order.verify(hashOperations).put("h2", "f", 1);
+        // 过期时长至少为1秒
+        order.verify(operations).expire("h2", 1, TimeUnit.SECONDS);
+        order.verify(operations).exec();
+        order.verify(operations).multi();
+        order.verify(listOperations).leftPush("l", "v");
+        order.verify(operations).expire("l", 60, TimeUnit.SECONDS);
+        order.verify(operations).exec();
+        order.verify(operations).multi();
+        order.verify(setOperations).add("s", "a", "b");
+        order.verify(operations).expireAt("s", expireAt);
+        order.verify(operations).exec();
+        assertEquals(List.of("h", "h2", "l", "s"), keys);
+    }
+
+    /**
+     * 测试不过期或单条命令即可完成时不使用MULTI
+     */
+    @Test
+    public void testSingleCommandWithoutMulti() {
+        List<String> keys = new ArrayList<>();
+        RedisBatch batch = new RedisBatch(operations, keys);
+        batch.hMSet("h", Map.of("f", 1), RedisUtils.NOT_EXPIRE)
+                .leftPush("l", "v", RedisUtils.NOT_EXPIRE)
+                .set("k", "v", 60)
+                .set("p", "v", RedisUtils.NOT_EXPIRE)
+                .delete("d");
+
+        verify(hashOperations).putAll("h", Map.of("f", 1));
+        verify(listOperations).leftPush("l", "v");
+        verify(valueOperations).set("k", "v", 60, TimeUnit.SECONDS);
+        verify(valueOperations).set("p", "v");
+        verify(operations).delete("d");
+        verify(operations, never()).multi();
+        verify(operations, never()).expire(any(), anyLong(), any());
+        assertEquals(List.of("h", "l", "k", "p", "d"), keys);
+    }
+
+    /**
+     * 测试只记录键时不执行命令
+     */
+    @Test
+    public void testKeysOf() {
+        List<String> keys = RedisBatch.keysOf(batch -> batch.set("k", "v", 60)
+                .sAdd("s", new Date(), "a")
+                .delete(List.of("d1", "d2")));
+        assertEquals(List.of("k", "s", "d1", "d2"), keys);
+    }
+
+    /**
+     * 测试未开启Redis时写入本地内存存储并设置过期时间
+     */
+    @Test
+    public void testLocalStore() {
+        LocalRedisStore store = new LocalRedisStore();
+        RedisBatch batch = new RedisBatch(store);
+        batch.hSet("h", "f", 1, 60)
+                .sAdd("s", new Date(System.currentTimeMillis() - 1), "a")
+                .set("k", "v", RedisUtils.NOT_EXPIRE);
+
+        assertEquals(1, store.hGet("h", "f"));
+        assertFalse(store.sIsMember("s", "a"), "过期时间点已过的集合应删除");
+        assertEquals("v", store.get("k"));
+        verifyNoInteractions(operations);
+    }
+}
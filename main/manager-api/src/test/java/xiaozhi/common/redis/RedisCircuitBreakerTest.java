@@ -0,0 +1,231 @@
+package xiaozhi.common.redis;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Redis熔断器单元测试
+ */
+public class RedisCircuitBreakerTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final NearCache nearCache = mock(NearCache.class);
+
+    /**
+     * 测试状态转换：连续失败熔断，探测失败继续熔断，探测成功恢复
+     */
+    @Test
+    public void testStateMachine() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(redisTemplate, nearCache, 0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState(), "未达到阈值不应熔断");
+
+        // 成功调用清零连续失败次数
+        breaker.onSuccess();
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState(), "连续失败5次应熔断");
+
+        // 熔断超时后只放行一次探测
+        assertTrue(breaker.tryAcquire());
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(), "探测期间其他调用应降级");
+
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState(), "探测失败应继续熔断");
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState(), "探测成功应恢复");
+        assertEquals(10L, breaker.getFailureCount());
+    }
+
+    /**
+     * 测试熔断时间未到时不放行探测
+     */
+    @Test
+    public void testOpenWindow() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(redisTemplate, nearCache, 60 * 1000L);
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure();
+        }
+        assertFalse(breaker.tryAcquire());
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1L, breaker.getStats().get("degradedCount"));
+    }
+
+    /**
+     * 测试放弃探测：只有探测线程可以放弃，放弃后下一次调用立即重新探测
+     */
+    @Test
+    public void testReleaseProbe() throws InterruptedException {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(redisTemplate, nearCache, 0);
+        for (int i = 0; i < 5; i++) {
+            breaker.onFailure();
+        }
+        assertTrue(breaker.tryAcquire());
+
+        Thread other = new Thread(breaker::releaseProbe);
+        other.start();
+        other.join();
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState(), "非探测线程不应放弃探测");
+
+        breaker.releaseProbe();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire(), "放弃探测后应立即重新探测");
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    /**
+     * 测试待失效的键：未熔断时下一次成功调用即删除，删除失败时保留
+     */
+    @Test
+    public void testPendingKeysFlushedWhileClosed() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(redisTemplate, nearCache, 0, Runnable::run);
+        breaker.onFailure();
+        breaker.addPending(List.of("sys:params", "token:active:bin:1"));
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.getState());
+
+        when(redisTemplate.delete(anyCollection())).thenThrow(new IllegalStateException("down")).thenReturn(2L);
+        breaker.onSuccess();
+        assertEquals(2, breaker.getStats().get("pendingKeys"), "删除失败时应保留待失效的键");
+
+        breaker.onSuccess();
+        assertEquals(0, breaker.getStats().get("pendingKeys"));
+        verify(redisTemplate, times(2)).delete(anyCollection());
+        verify(nearCache).invalidate(anyCollection());
+
+        // 没有待失效的键时不访问Redis
+        breaker.onSuccess();
+        verify(redisTemplate, times(2)).delete(anyCollection());
+    }
+
+    /**
+     * 测试待失效的键超过上限后按命名空间扫描删除
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPendingOverflowInvalidatesNamespace() {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(redisTemplate, nearCache, 0, Runnable::run);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            keys.add("sys:captcha:" + i);
+        }
+        breaker.addPending(keys);
+        breaker.addPending(List.of("token:active:bin:1", "token:active:bin:2", "sys:params"));
+        assertEquals(10000, breaker.getStats().get("pendingKeys"));
+        assertEquals(2, breaker.getStats().get("pendingNamespaces"), "超过上限的键应按命名空间记录");
+        assertEquals(true, breaker.getStats().get("pendingOverflow"));
+
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenReturn(true, true, false);
+        when(cursor.next()).thenReturn("token:active:bin:1", "token:active:bin:9");
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+        List<Collection<String>> deleted = new ArrayList<>();
+        when(redisTemplate.delete(anyCollection())).thenAnswer(invocation -> {
+            deleted.add(new ArrayList<>((Collection<String>) invocation.getArgument(0)));
+            return 0L;
+        });
+
+        breaker.onSuccess();
+        assertEquals(0, breaker.getStats().get("pendingKeys"));
+        assertEquals(0, breaker.getStats().get("pendingNamespaces"));
+        assertEquals(false, breaker.getStats().get("pendingOverflow"));
+        assertTrue(deleted.contains(List.of("token:active:bin:1", "token:active:bin:9")), "应删除命名空间下扫描到的键");
+        verify(redisTemplate, times(2)).scan(any(ScanOptions.class));
+        verify(cursor, atLeastOnce()).close();
+    }
+
+    /**
+     * 测试待失效的键在后台线程删除，不占用调用线程
+     */
+    @Test
+    public void testFlushInBackground() throws InterruptedException {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(redisTemplate, nearCache, 0);
+        try {
+            breaker.addPending(List.of("token:active:bin:1"));
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            AtomicReference<Thread> flusher = new AtomicReference<>();
+            when(redisTemplate.delete(anyCollection())).thenAnswer(invocation -> {
+                flusher.set(Thread.currentThread());
+                release.await(5, TimeUnit.SECONDS);
+                return 1L;
+            });
+            doAnswer(invocation -> {
+                done.countDown();
+                return null;
+            }).when(nearCache).invalidate(anyCollection());
+
+            // 删除阻塞时调用线程立即返回
+            breaker.onSuccess();
+            assertEquals(1, breaker.getStats().get("pendingKeys"));
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), flusher.get(), "应在后台线程删除");
+        } finally {
+            breaker.shutdown();
+        }
+    }
+
+    /**
+     * 测试命名空间的划分
+     */
+    @Test
+    public void testNamespaceOf() {
+        assertEquals("token:active:bin:", RedisCircuitBreaker.namespaceOf("token:active:bin:1"));
+        assertEquals("sys:shiro:oauth2.authc:", RedisCircuitBreaker.namespaceOf("sys:shiro:oauth2.authc:abc"));
+        assertEquals("sys:params", RedisCircuitBreaker.namespaceOf("sys:params"));
+        assertEquals("plain", RedisCircuitBreaker.namespaceOf("plain"));
+    }
+
+    /**
+     * 测试并发删除待失效的键时只有一个线程执行
+     */
+    @Test
+    public void testSingleFlusher() throws InterruptedException {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(redisTemplate, nearCache, 0, Runnable::run);
+        breaker.addPending(List.of("token:active:bin:1"));
+        AtomicBoolean inside = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        when(redisTemplate.delete(anyCollection())).thenAnswer(invocation -> {
+            if (!inside.compareAndSet(false, true)) {
+                overlapped.set(true);
+            }
+            Thread.sleep(50);
+            inside.set(false);
+            return 1L;
+        });
+
+        Thread first = new Thread(breaker::onSuccess);
+        Thread second = new Thread(breaker::onSuccess);
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+        assertFalse(overlapped.get(), "不应并发删除");
+        assertEquals(0, breaker.getStats().get("pendingKeys"));
+    }
+}
@@ -0,0 +1,132 @@
+package xiaozhi.modules.device;
+
+import org.junit.jupiter.api.Test;
+import xiaozhi.modules.device.cache.AccessTokenCodec;
+import xiaozhi.modules.device.dto.AccessTokenDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 设备令牌缓存二进制编码单元测试
+ */
+public class AccessTokenCodecTest {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    /**
+     * 测试标准JWT按三段原始字节保存，解码后与原令牌一致
+     */
+    @Test
+    public void testCompactToken() {
+        String header = "{\"alg\":\"HS256\"}";
+        String payload = "{\"sub\":\"1\",\"exp\":1700000000}";
+        String token = jwt(header, payload, new byte[32]);
+        AccessTokenDTO dto = createDto(token);
+        byte[] bytes = AccessTokenCodec.encode(dto);
+        // 每段为一个字节的长度加原始字节
+        assertEquals(encodedLengthWithoutToken() + 3 + header.length() + payload.length() + 32, bytes.length,
+                "标准JWT应按原始字节保存");
+        assertDto(dto, AccessTokenCodec.decode(bytes));
+    }
+
+    /**
+     * 测试非标准的令牌按字符串保存，解码后与原令牌一致
+     */
+    @Test
+    public void testNonCanonicalToken() {
+        String[] tokens = {
+                // 带填充
+                "eyJhbGciOiJIUzI1NiJ9.eyJzdWIiOiIxIn0=.c2ln",
+                // 末尾多余的位，解码后重新编码为YQ
+                "eyJhbGciOiJIUzI1NiJ9.YR.c2ln",
+                // 段数不是三段
+                "eyJhbGciOiJIUzI1NiJ9.eyJzdWIiOiIxIn0",
+                "a.b.c.d",
+                // 不是Base64URL字符
+                "eyJhbGciOiJIUzI1NiJ9.eyJzdWIi+/==.c2ln",
+                "opaque-token"
+        };
+        for (String token : tokens) {
+            AccessTokenDTO dto = createDto(token);
+            byte[] bytes = AccessTokenCodec.encode(dto);
+            assertEquals(encodedLengthWithoutToken() + 1 + token.length(), bytes.length, "非标准的令牌应按字符串保存: " + token);
+            assertDto(dto, AccessTokenCodec.decode(bytes));
+        }
+    }
+
+    /**
+     * 测试字段为空时不写入，解码后仍为空
+     */
+    @Test
+    public void testNullFields() {
+        AccessTokenDTO dto = new AccessTokenDTO();
+        dto.setDeviceId(1L);
+        dto.setExpireTime(new Date(1700000000000L));
+        AccessTokenDTO decoded = AccessTokenCodec.decode(AccessTokenCodec.encode(dto));
+        assertDto(dto, decoded);
+
+        decoded = AccessTokenCodec.decode(AccessTokenCodec.encode(new AccessTokenDTO()));
+        assertNotNull(decoded);
+        assertNull(decoded.getDeviceId());
+        assertNull(decoded.getToken());
+    }
+
+    /**
+     * 测试数据不完整、有多余数据或版本不识别时返回null，按缓存未命中处理
+     */
+    @Test
+    public void testCorruptedData() {
+        String token = jwt("{\"alg\":\"HS256\"}", "{\"sub\":\"1\"}", new byte[32]);
+        byte[] bytes = AccessTokenCodec.encode(createDto(token));
+        for (int length = 0; length < bytes.length; length++) {
+            assertNull(AccessTokenCodec.decode(Arrays.copyOf(bytes, length)), "不完整的数据应返回null，长度: " + length);
+        }
+        assertNull(AccessTokenCodec.decode(Arrays.copyOf(bytes, bytes.length + 1)), "有多余数据时应返回null");
+
+        byte[] unknownVersion = bytes.clone();
+        unknownVersion[0] = 2;
+        assertNull(AccessTokenCodec.decode(unknownVersion), "版本不识别时应返回null");
+        assertNull(AccessTokenCodec.decode(null));
+
+        // 长度前缀超出数据范围
+        assertNull(AccessTokenCodec.decode(new byte[]{1, 1 << 2, 127}));
+    }
+
+    private static String jwt(String header, String payload, byte[] signature) {
+        return ENCODER.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + '.'
+                + ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + '.'
+                + ENCODER.encodeToString(signature);
+    }
+
+    /**
+     * 不含令牌时的编码长度
+     */
+    private static int encodedLengthWithoutToken() {
+        return AccessTokenCodec.encode(createDto(null)).length;
+    }
+
+    private static AccessTokenDTO createDto(String token) {
+        AccessTokenDTO dto = new AccessTokenDTO();
+        dto.setId(1234567890123L);
+        dto.setDeviceId(42L);
+        dto.setToken(token);
+        dto.setIsRevoked(0);
+        dto.setCreateDate(new Date(1700000000000L));
+        dto.setExpireTime(new Date(1700000000000L + 30L * 24 * 60 * 60 * 1000));
+        return dto;
+    }
+
+    private static void assertDto(AccessTokenDTO expected, AccessTokenDTO actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getDeviceId(), actual.getDeviceId());
+        assertEquals(expected.getToken(), actual.getToken());
+        assertEquals(expected.getIsRevoked(), actual.getIsRevoked());
+        assertEquals(expected.getCreateDate(), actual.getCreateDate());
+        assertEquals(expected.getExpireTime(), actual.getExpireTime());
+    }
+}
@@ -1,8 +1,31 @@
 package xiaozhi.modules.device;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import xiaozhi.modules.device.activation.ActivationCodeAllocator;
+import xiaozhi.modules.device.cache.ActivationCodeCodec;
+import xiaozhi.modules.device.dao.ActivationCodeDao;
+import xiaozhi.modules.device.dto.ActivationCodeDTO;
+import xiaozhi.modules.device.entity.ActivationCodeEntity;
+import xiaozhi.modules.device.task.ExpirySweeper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * 激活码服务简单测试 - 不依赖Spring上下文
@@ -18,4 +41,150 @@ public class ActivationCodeTest {
         assertTrue(true, "基本断言应该通过");
         assertEquals("123456", "12" + "3456", "字符串连接应该正确");
     }
-} 
\ No newline at end of file
+
+    /**
+     * 测试分配器从数据库初始化、释放后可重新分配
+     */
+    @Test
+    public void testAllocatorSeedAndRelease() {
+        ActivationCodeDao dao = mock(ActivationCodeDao.class);
+        ActivationCodeEntity existing = new ActivationCodeEntity();
+        existing.setCode("123456");
+        when(dao.selectList(any())).thenReturn(List.of(existing));
+
+        ActivationCodeAllocator allocator = new ActivationCodeAllocator(dao);
+        String code = allocator.allocate();
+        assertEquals(6, code.length(), "激活码应为6位");
+        assertNotEquals("123456", code, "数据库中的有效激活码不应被分配");
+        assertEquals(2L, allocator.getStats().get("allocated"));
+
+        allocator.release(code);
+        allocator.release("123456");
+        assertEquals(0L, allocator.getStats().get("allocated"), "释放后应无占用");
+    }
+
+    /**
+     * 压力测试：多线程并发分配，不应出现重复激活码
+     */
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+        ActivationCodeDao dao = mock(ActivationCodeDao.class);
+        when(dao.selectList(any())).thenReturn(new ArrayList<>());
+        ActivationCodeAllocator allocator = new ActivationCodeAllocator(dao);
+
+        int threads = 16;
+        int perThread = 20000;
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    String code = allocator.allocate();
+                    int value = Integer.parseInt(code);
+                    if (value < 100000 || value > 999999 || !codes.add(code)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS), "分配应在60秒内完成");
+
+        int total = threads * perThread;
+        assertEquals(0, duplicates.get(), "不应出现重复或越界的激活码");
+        assertEquals(total, codes.size());
+        assertEquals((long) total, allocator.getStats().get("allocated"));
+    }
+
+    /**
+     * 测试对账读取数据库期间的分配和释放在替换位图前重放，不会被数据库快照覆盖
+     */
+    @Test
+    public void testReconcileReplaysChanges() throws Exception {
+        ActivationCodeDao dao = mock(ActivationCodeDao.class);
+        ActivationCodeEntity existing = new ActivationCodeEntity();
+        existing.setCode("123456");
+        AtomicBoolean block = new AtomicBoolean();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        when(dao.selectList(any())).thenAnswer(invocation -> {
+            if (block.get()) {
+                loading.countDown();
+                assertTrue(changed.await(5, TimeUnit.SECONDS));
+            }
+            // 快照早于下面的分配和释放
+            return List.of(existing);
+        });
+        ActivationCodeAllocator allocator = new ActivationCodeAllocator(dao);
+        allocator.reconcile();
+
+        block.set(true);
+        Thread reconciler = new Thread(allocator::reconcile);
+        reconciler.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        String code = allocator.allocate();
+        allocator.confirm(code);
+        allocator.release("123456");
+        changed.countDown();
+        reconciler.join();
+
+        assertEquals(1L, allocator.getStats().get("allocated"));
+        assertEquals(0, allocator.getStats().get("pending"));
+        allocator.release(code);
+        assertEquals(0L, allocator.getStats().get("allocated"), "对账期间分配的激活码应保留，释放的激活码不应恢复占用");
+    }
+
+    /**
+     * 测试过期清理按批执行，不足一批时结束
+     */
+    @Test
+    public void testExpirySweeperChunks() {
+        ExpirySweeper sweeper = new ExpirySweeper(mock(PlatformTransactionManager.class));
+        int backlog = ExpirySweeper.CHUNK_SIZE * 2 + 300;
+        AtomicInteger remaining = new AtomicInteger(backlog);
+        AtomicInteger chunks = new AtomicInteger();
+
+        int count = sweeper.sweep("test", limit -> {
+            chunks.incrementAndGet();
+            int affected = Math.min(limit, remaining.get());
+            remaining.addAndGet(-affected);
+            return affected;
+        });
+
+        assertEquals(backlog, count);
+        assertEquals(0, remaining.get());
+        assertEquals(3, chunks.get(), "最后一批不足CHUNK_SIZE时应结束");
+        Map<?, ?> stats = (Map<?, ?>) sweeper.getStats().get("test");
+        assertEquals(false, stats.get("running"));
+        assertEquals((long) backlog, stats.get("totalCount"));
+    }
+
+    /**
+     * 测试激活码缓存二进制编码往返一致，并且比逐字段保存的哈希更小
+     */
+    @Test
+    public void testActivationCodeCodec() {
+        ActivationCodeDTO dto = CacheCodecBenchmark.createDto();
+        byte[] binary = ActivationCodeCodec.encode(dto);
+        ActivationCodeDTO decoded = ActivationCodeCodec.decode(binary);
+
+        assertEquals(dto, decoded, "解码结果应与原对象一致");
+        assertEquals("012345", decoded.getCode(), "激活码的前导零应保留");
+
+        int hashSize = 0;
+        for (Map.Entry<byte[], byte[]> entry : CacheCodecBenchmark.encodeHash(dto).entrySet()) {
+            hashSize += entry.getKey().length + entry.getValue().length;
+        }
+        assertTrue(binary.length < hashSize, "二进制值应小于哈希");
+
+        assertNull(ActivationCodeCodec.decode(Arrays.copyOf(binary, binary.length - 1)), "数据不完整时应按未命中处理");
+        binary[0] = 99;
+        assertNull(ActivationCodeCodec.decode(binary), "版本不识别时应按未命中处理");
+    }
+}
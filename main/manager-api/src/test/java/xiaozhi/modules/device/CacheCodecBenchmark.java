@@ -0,0 +1,131 @@
+package xiaozhi.modules.device;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import xiaozhi.modules.device.cache.ActivationCodeCodec;
+import xiaozhi.modules.device.dto.ActivationCodeDTO;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 激活码缓存编码性能基准测试
+ * 对比逐字段JSON序列化的哈希（优化前，与RedisTemplate写入HMSET时的序列化一致）与单个二进制值（优化后）
+ * 的编码、解码耗时，main方法先输出两种格式的数据大小。
+ * 运行方式：在IDE中直接运行main方法，或 mvn test-compile 后以测试类路径运行本类
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheCodecBenchmark {
+    private static final RedisSerializer<String> KEY_SERIALIZER = RedisSerializer.string();
+    private static final RedisSerializer<Object> VALUE_SERIALIZER = RedisSerializer.json();
+
+    private ActivationCodeDTO dto;
+    private Map<byte[], byte[]> hash;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        dto = createDto();
+        hash = encodeHash(dto);
+        binary = ActivationCodeCodec.encode(dto);
+    }
+
+    /**
+     * 优化前：构造装箱字段的Map，逐字段序列化
+     */
+    @Benchmark
+    public void hashEncode(Blackhole blackhole) {
+        blackhole.consume(encodeHash(dto));
+    }
+
+    /**
+     * 优化前：逐字段反序列化，再通过toString和parseLong还原
+     */
+    @Benchmark
+    public void hashDecode(Blackhole blackhole) {
+        blackhole.consume(decodeHash(hash));
+    }
+
+    /**
+     * 优化后：编码为一个二进制值
+     */
+    @Benchmark
+    public void binaryEncode(Blackhole blackhole) {
+        blackhole.consume(ActivationCodeCodec.encode(dto));
+    }
+
+    /**
+     * 优化后：从二进制值解码
+     */
+    @Benchmark
+    public void binaryDecode(Blackhole blackhole) {
+        blackhole.consume(ActivationCodeCodec.decode(binary));
+    }
+
+    static ActivationCodeDTO createDto() {
+        ActivationCodeDTO dto = new ActivationCodeDTO();
+        dto.setId(1890000000000000001L);
+        dto.setCode("012345");
+        dto.setDeviceId(1890000000000000002L);
+        dto.setStatus(0);
+        long now = System.currentTimeMillis();
+        dto.setCreateDate(new Date(now));
+        dto.setExpireTime(new Date(now + 24 * 60 * 60 * 1000L));
+        return dto;
+    }
+
+    static Map<byte[], byte[]> encodeHash(ActivationCodeDTO dto) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", dto.getId());
+        map.put("code", dto.getCode());
+        map.put("deviceId", dto.getDeviceId());
+        map.put("status", dto.getStatus());
+        map.put("expireTime", dto.getExpireTime().getTime());
+        map.put("createDate", dto.getCreateDate().getTime());
+
+        Map<byte[], byte[]> hash = new HashMap<>();
+        map.forEach((field, value) -> hash.put(KEY_SERIALIZER.serialize(field), VALUE_SERIALIZER.serialize(value)));
+        return hash;
+    }
+
+    static ActivationCodeDTO decodeHash(Map<byte[], byte[]> hash) {
+        Map<String, Object> map = new HashMap<>();
+        hash.forEach((field, value) -> map.put(KEY_SERIALIZER.deserialize(field), VALUE_SERIALIZER.deserialize(value)));
+
+        ActivationCodeDTO dto = new ActivationCodeDTO();
+        dto.setId(Long.parseLong(map.get("id").toString()));
+        dto.setCode(map.get("code").toString());
+        dto.setDeviceId(Long.parseLong(map.get("deviceId").toString()));
+        dto.setStatus(Integer.parseInt(map.get("status").toString()));
+        dto.setExpireTime(new Date(Long.parseLong(map.get("expireTime").toString())));
+        dto.setCreateDate(new Date(Long.parseLong(map.get("createDate").toString())));
+        return dto;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ActivationCodeDTO dto = createDto();
+        int hashSize = 0;
+        for (Map.Entry<byte[], byte[]> entry : encodeHash(dto).entrySet()) {
+            hashSize += entry.getKey().length + entry.getValue().length;
+        }
+        System.out.println("哈希字段和值总大小: " + hashSize + " 字节（不含Redis每个字段的额外开销）");
+        System.out.println("二进制值大小: " + ActivationCodeCodec.encode(dto).length + " 字节");
+
+        Options options = new OptionsBuilder()
+                .include(CacheCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,157 @@
+package xiaozhi.modules.device;
+
+import org.junit.jupiter.api.Test;
+import xiaozhi.modules.device.dto.FirmwareDTO;
+import xiaozhi.modules.device.entity.FirmwareEntity;
+import xiaozhi.modules.device.firmware.FirmwareRelease;
+import xiaozhi.modules.device.firmware.FirmwareRolloutScheduler;
+import xiaozhi.modules.device.firmware.FirmwareVersion;
+import xiaozhi.modules.device.firmware.FirmwareVersionIndex;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 固件版本索引測試
+ */
+public class FirmwareVersionIndexTest {
+
+    /**
+     * 測試版本號編碼後的大小順序
+     */
+    @Test
+    public void testVersionEncode() {
+        assertTrue(FirmwareVersion.encode("1.0.5") < FirmwareVersion.encode("1.0.6"));
+        assertTrue(FirmwareVersion.encode("1.0.10") > FirmwareVersion.encode("1.0.9"));
+        assertTrue(FirmwareVersion.encode("1.9.9") < FirmwareVersion.encode("2.0.0"));
+        assertTrue(FirmwareVersion.encode("1.0.0-beta") < FirmwareVersion.encode("1.0.0"));
+        // 預發布標籤按 alpha < beta < rc 和序號排序
+        assertTrue(FirmwareVersion.encode("1.0.0-alpha") < FirmwareVersion.encode("1.0.0-beta"));
+        assertTrue(FirmwareVersion.encode("1.0.0-beta") < FirmwareVersion.encode("1.0.0-beta.1"));
+        assertTrue(FirmwareVersion.encode("1.0.0-beta.2") < FirmwareVersion.encode("1.0.0-beta.10"));
+        assertTrue(FirmwareVersion.encode("1.0.0-beta.10") < FirmwareVersion.encode("1.0.0-rc"));
+        assertTrue(FirmwareVersion.encode("1.0.0-rc.2") < FirmwareVersion.encode("1.0.0"));
+        assertTrue(FirmwareVersion.encode("1.0.0") < FirmwareVersion.encode("1.0.1-alpha"));
+        assertEquals(FirmwareVersion.encode("1.0.0-rc.1"), FirmwareVersion.encode("1.0.0-RC1"));
+        // 未知標籤可以比較但不能發布到目錄
+        assertTrue(FirmwareVersion.encode("1.0.0-dev") < FirmwareVersion.encode("1.0.0-alpha"));
+        assertFalse(FirmwareVersion.isOrdered("1.0.0-dev"));
+        assertFalse(FirmwareVersion.isOrdered("1.0.0-beta.x"));
+        assertTrue(FirmwareVersion.isOrdered("1.0.0-rc.1+build5"));
+        assertEquals(FirmwareVersion.encode("1.2"), FirmwareVersion.encode("v1.2.0"));
+        assertEquals(FirmwareVersion.encode("1.2.3"), FirmwareVersion.encode("1.2.3+build5"));
+        assertEquals(FirmwareVersion.UNKNOWN, FirmwareVersion.encode(null));
+        assertEquals(FirmwareVersion.UNKNOWN, FirmwareVersion.encode("unknown"));
+        assertEquals(FirmwareVersion.UNKNOWN, FirmwareVersion.encode("1.2.3.4"));
+    }
+
+    /**
+     * 測試固件更新判斷
+     */
+    @Test
+    public void testNeedsUpdate() {
+        List<FirmwareEntity> firmwares = new ArrayList<>();
+        firmwares.add(firmware("ESP32", "1.0.5"));
+        firmwares.add(firmware("ESP32", "1.0.6"));
+        firmwares.add(firmware("ESP32-S3", "2.0.0"));
+        FirmwareVersionIndex index = FirmwareVersionIndex.build(firmwares);
+
+        assertEquals("1.0.6", index.getLatest("ESP32").getVersion(), "應返回最新版本");
+        assertTrue(index.needsUpdate("ESP32", "1.0.5"), "目錄中的舊版本需要更新");
+        assertFalse(index.needsUpdate("ESP32", "1.0.6"), "最新版本無需更新");
+        assertTrue(index.needsUpdate("ESP32", "1.0.0"), "目錄外的舊版本需要更新");
+        assertFalse(index.needsUpdate("ESP32", "1.1.0"), "更高版本無需更新");
+        assertFalse(index.needsUpdate("ESP32", "unknown"), "無法識別的版本不推送更新");
+        assertFalse(index.needsUpdate("ESP8266", "0.0.1"), "目錄中沒有的設備類型無需更新");
+        assertFalse(index.needsUpdate(null, "1.0.0"), "設備類型為空無需更新");
+    }
+
+    /**
+     * 測試分批發布：按MAC地址穩定分桶，提高發布比例時已獲得更新的設備不會被移出
+     */
+    @Test
+    public void testStagedRollout() {
+        List<FirmwareEntity> firmwares = new ArrayList<>();
+        firmwares.add(firmware("ESP32", "1.0.5"));
+        FirmwareEntity staged = firmware("ESP32", "1.0.6");
+        staged.setRolloutPercentage(10);
+        firmwares.add(staged);
+        FirmwareVersionIndex wave1 = FirmwareVersionIndex.build(firmwares);
+        staged.setRolloutPercentage(50);
+        FirmwareVersionIndex wave2 = FirmwareVersionIndex.build(firmwares);
+
+        int devices = 10000;
+        int inWave1 = 0;
+        int inWave2 = 0;
+        for (int i = 0; i < devices; i++) {
+            String mac = String.format("AA:BB:CC:%02X:%02X:%02X", (i >> 16) & 0xFF, (i >> 8) & 0xFF, i & 0xFF);
+            FirmwareRelease release1 = wave1.select("ESP32", "1.0.0", mac);
+            FirmwareRelease release2 = wave2.select("ESP32", "1.0.0", mac);
+            // 不在批次內的設備仍可獲得已全量發布的舊固件
+            assertNotNull(release1);
+            if ("1.0.6".equals(release1.getVersion())) {
+                inWave1++;
+                assertEquals("1.0.6", release2.getVersion(), "第一批設備在第二批中仍應獲得更新");
+                assertEquals(release1, wave1.select("ESP32", "1.0.0", mac.toLowerCase()), "分桶應忽略MAC大小寫");
+            }
+            if ("1.0.6".equals(release2.getVersion())) {
+                inWave2++;
+            }
+        }
+
+        assertTrue(inWave1 > devices * 0.08 && inWave1 < devices * 0.12, "第一批應約為10%: " + inWave1);
+        assertTrue(inWave2 > devices * 0.47 && inWave2 < devices * 0.53, "第二批應約為50%: " + inWave2);
+        assertFalse(wave1.needsUpdate("ESP32", "1.0.5"), "無MAC地址時只考慮已全量發布的固件");
+    }
+
+    /**
+     * 測試更新固件時重新計算發布批次：計劃變化時從第一批重新開始，只修改間隔時重新計算下一批次時間
+     */
+    @Test
+    public void testUpdateRollout() {
+        FirmwareRolloutScheduler scheduler = new FirmwareRolloutScheduler(null, null);
+        FirmwareEntity current = firmware("ESP32", "1.0.6");
+        current.setRolloutPlan("10,50");
+        current.setRolloutPercentage(50);
+        current.setRolloutIntervalMinutes(60);
+        current.setRolloutNextTime(new Date(System.currentTimeMillis() + 30 * 60 * 1000L));
+
+        FirmwareDTO unchanged = new FirmwareDTO();
+        unchanged.setRolloutPlan("10, 50");
+        assertFalse(scheduler.updateRollout(unchanged, current), "計劃未變化時不應重新計算");
+        assertNull(unchanged.getRolloutNextTime());
+
+        FirmwareDTO replanned = new FirmwareDTO();
+        replanned.setRolloutPlan("1,20");
+        replanned.setRolloutIntervalMinutes(10);
+        assertTrue(scheduler.updateRollout(replanned, current));
+        assertEquals(1, (int) replanned.getRolloutPercentage(), "計劃變化時應從第一批開始");
+        assertNotNull(replanned.getRolloutNextTime());
+        assertTrue(replanned.getRolloutNextTime().getTime() <= System.currentTimeMillis() + 10 * 60 * 1000L);
+
+        FirmwareDTO cancelled = new FirmwareDTO();
+        cancelled.setRolloutPlan("");
+        assertTrue(scheduler.updateRollout(cancelled, current));
+        assertNull(cancelled.getRolloutPlan());
+        assertNull(cancelled.getRolloutNextTime(), "取消計劃時應清空下一批次時間");
+
+        FirmwareDTO interval = new FirmwareDTO();
+        interval.setRolloutIntervalMinutes(5);
+        assertTrue(scheduler.updateRollout(interval, current));
+        assertEquals("10,50", interval.getRolloutPlan());
+        assertTrue(interval.getRolloutNextTime().getTime() <= System.currentTimeMillis() + 5 * 60 * 1000L,
+                "只修改間隔時應按新間隔計算下一批次時間");
+    }
+
+    private FirmwareEntity firmware(String deviceType, String version) {
+        FirmwareEntity entity = new FirmwareEntity();
+        entity.setDeviceType(deviceType);
+        entity.setVersion(version);
+        entity.setUrl("https://firmware.example.com/" + deviceType + "/" + version + ".bin");
+        entity.setRolloutPercentage(100);
+        return entity;
+    }
+}
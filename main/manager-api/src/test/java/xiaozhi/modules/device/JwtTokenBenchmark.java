@@ -0,0 +1,75 @@
+package xiaozhi.modules.device;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xiaozhi.modules.security.config.JwtConfig;
+import xiaozhi.modules.security.jwt.JwtTokenProvider;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT令牌驗證性能基準測試
+ * 對比每次新建解析器並重複驗證簽名（優化前）與複用解析器和已驗證聲明緩存（優化後）的每秒驗證次數。
+ * 一次驗證包括驗證令牌、獲取設備ID和獲取MAC地址，與設備連接時的調用方式一致。
+ * 運行方式：在IDE中直接運行main方法，或 mvn test-compile 後以測試類路徑運行本類
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtTokenBenchmark {
+    private static final String SECRET = "test_secret_key_for_jwt_token_test_case_execution";
+
+    private SecretKey secretKey;
+    private JwtTokenProvider tokenProvider;
+    private String token;
+
+    @Setup
+    public void setup() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret(SECRET);
+        secretKey = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        tokenProvider = new JwtTokenProvider(jwtConfig);
+        token = tokenProvider.generateToken(1L, "00:11:22:33:44:55", 3600L);
+    }
+
+    /**
+     * 優化前：每次調用新建解析器，三次調用驗證三次簽名
+     */
+    @Benchmark
+    public void uncachedParser(Blackhole blackhole) {
+        blackhole.consume(Jwts.parser().verifyWith(secretKey).build().parseSignedClaims(token));
+        Claims claims = Jwts.parser().verifyWith(secretKey).build().parseSignedClaims(token).getPayload();
+        blackhole.consume(Long.parseLong(claims.getSubject()));
+        claims = Jwts.parser().verifyWith(secretKey).build().parseSignedClaims(token).getPayload();
+        blackhole.consume(claims.get("macAddress", String.class));
+    }
+
+    /**
+     * 優化後：複用解析器，聲明緩存命中時不再驗證簽名
+     */
+    @Benchmark
+    public void cachedClaims(Blackhole blackhole) {
+        blackhole.consume(tokenProvider.validateToken(token));
+        blackhole.consume(tokenProvider.getDeviceIdFromToken(token));
+        blackhole.consume(tokenProvider.getMacAddressFromToken(token));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtTokenBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
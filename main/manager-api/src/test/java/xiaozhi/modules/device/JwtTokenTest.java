@@ -1,14 +1,46 @@
 package xiaozhi.modules.device;
 
+import io.jsonwebtoken.Claims;
 import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import xiaozhi.common.redis.RedisCircuitBreaker;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
+import xiaozhi.modules.device.cache.DeviceCheckinCache;
+import xiaozhi.modules.device.cache.RevokedTokenStore;
+import xiaozhi.modules.device.cache.TokenGenerationCache;
+import xiaozhi.modules.device.cache.TokenRevocationFilter;
+import xiaozhi.modules.device.constant.DeviceConstant;
+import xiaozhi.modules.device.dao.AccessTokenDao;
+import xiaozhi.modules.device.dao.DeviceDao;
+import xiaozhi.modules.device.dto.DeviceDTO;
+import xiaozhi.modules.device.entity.AccessTokenEntity;
+import xiaozhi.modules.device.entity.DeviceEntity;
+import xiaozhi.modules.device.service.DeviceService;
+import xiaozhi.modules.device.service.impl.AccessTokenServiceImpl;
+import xiaozhi.modules.device.task.ExpirySweeper;
 import xiaozhi.modules.security.config.JwtConfig;
+import xiaozhi.modules.security.dao.JwtKeyDao;
+import xiaozhi.modules.security.entity.JwtKeyEntity;
+import xiaozhi.modules.security.jwt.JwtKeyManager;
 import xiaozhi.modules.security.jwt.JwtTokenProvider;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 /**
  * JWT令牌單元測試
@@ -49,4 +81,454 @@ public class JwtTokenTest {
         
         System.out.println("JWT令牌測試成功！");
     }
-} 
\ No newline at end of file
+
+    /**
+     * 測試已驗證聲明緩存不超過令牌的過期時間
+     */
+    @Test
+    public void testClaimsCacheExpiry() throws InterruptedException {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("test_secret_key_for_jwt_token_test_case_execution");
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(jwtConfig);
+
+        String token = tokenProvider.generateToken(1L, "00:11:22:33:44:55", 1L);
+        assertTrue(tokenProvider.validateToken(token), "令牌應該是有效的");
+        assertSame(tokenProvider.getValidClaims(token), tokenProvider.getValidClaims(token), "重複驗證應命中緩存");
+        assertEquals(1L, tokenProvider.getDeviceIdFromToken(token));
+
+        Thread.sleep(2100);
+        assertFalse(tokenProvider.validateToken(token), "令牌過期後緩存不應再返回聲明");
+        assertNull(tokenProvider.getDeviceIdFromToken(token));
+    }
+
+    /**
+     * 測試令牌摘要：與數據庫SHA2(token, 256)一致，同一設備同一秒簽發的令牌也不相同
+     */
+    @Test
+    public void testTokenHash() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                JwtTokenProvider.hashToken("abc"), "應為小寫十六進制SHA-256摘要");
+
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("test_secret_key_for_jwt_token_test_case_execution");
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(jwtConfig);
+        String first = tokenProvider.generateToken(1L, "00:11:22:33:44:55", 3600L);
+        String second = tokenProvider.generateToken(1L, "00:11:22:33:44:55", 3600L);
+        assertNotEquals(first, second, "令牌應包含唯一ID");
+        assertEquals(64, JwtTokenProvider.hashToken(first).length());
+        assertNotEquals(JwtTokenProvider.hashToken(first), JwtTokenProvider.hashToken(second));
+    }
+
+    /**
+     * 測試已撤銷令牌按過期日期分片，已過期的令牌不再記錄
+     */
+    @Test
+    public void testRevokedTokenStore() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("test_secret_key_for_jwt_token_test_case_execution");
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(jwtConfig);
+        RedisUtils redisUtils = mock(RedisUtils.class);
+        RevokedTokenStore store = new RevokedTokenStore(redisUtils, tokenProvider);
+
+        String live = tokenProvider.generateToken(1L, "00:11:22:33:44:55", 3600L);
+        String expired = tokenProvider.generateToken(2L, "00:11:22:33:44:66", -3600L);
+        Date expireTime = tokenProvider.getValidClaims(live).getExpiration();
+        String shardKey = RedisKeys.getRevokedTokensKey(expireTime.getTime() / (24 * 60 * 60 * 1000L));
+
+        store.addAll(Arrays.asList(live, expired));
+        verify(redisUtils, times(1)).sAdd(eq(shardKey), eq(JwtTokenProvider.hashToken(live)));
+        verify(redisUtils, times(1)).sAdd(anyString(), any());
+        verify(redisUtils).expireAt(eq(shardKey), any(Date.class));
+
+        when(redisUtils.sIsMember(shardKey, JwtTokenProvider.hashToken(live))).thenReturn(true);
+        assertTrue(store.contains(live, expireTime), "已撤銷的令牌應在其過期日期的分片中");
+    }
+
+    /**
+     * 測試令牌代數：代數加一後之前簽發的令牌失效
+     */
+    @Test
+    public void testTokenGeneration() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("test_secret_key_for_jwt_token_test_case_execution");
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(jwtConfig);
+        DeviceDao deviceDao = mock(DeviceDao.class);
+        TokenGenerationCache cache = new TokenGenerationCache(deviceDao, mock(RedisUtils.class));
+
+        DeviceEntity first = new DeviceEntity();
+        first.setTokenGeneration(0);
+        DeviceEntity second = new DeviceEntity();
+        second.setTokenGeneration(1);
+        when(deviceDao.selectOne(any())).thenReturn(first, second);
+
+        Claims legacy = tokenProvider.getValidClaims(tokenProvider.generateToken(1L, "00:11:22:33:44:55", 3600L));
+        assertEquals(0, JwtTokenProvider.getGeneration(legacy), "未攜帶代數的令牌應視為第0代");
+        assertTrue(cache.isCurrent(1L, JwtTokenProvider.getGeneration(legacy)));
+
+        assertEquals(1, cache.increment(1L));
+        assertFalse(cache.isCurrent(1L, JwtTokenProvider.getGeneration(legacy)), "代數加一後舊令牌應失效");
+
+        Claims current = tokenProvider.getValidClaims(tokenProvider.generateToken(1L, "00:11:22:33:44:55", 3600L, cache.get(1L)));
+        assertTrue(cache.isCurrent(1L, JwtTokenProvider.getGeneration(current)), "新令牌應攜帶當前代數");
+
+        // 其他實例的代數變更通知
+        cache.onMessage("1:2");
+        assertFalse(cache.isCurrent(1L, JwtTokenProvider.getGeneration(current)));
+        cache.onMessage("1:1");
+        assertEquals(2, cache.get(1L), "代數不應回退");
+
+        // 只有第一次讀取回源，其餘讀取命中本地緩存
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(1L, stats.get("missCount"));
+        assertEquals(5L, stats.get("hitCount"));
+        assertEquals(2L, stats.get("staleCount"));
+        assertEquals(1L, stats.get("incrementCount"));
+    }
+
+    /**
+     * 測試令牌代數在事務提交後才更新緩存和通知其他實例，回源時只寫入更大的代數
+     */
+    @Test
+    public void testTokenGenerationAfterCommit() {
+        DeviceDao deviceDao = mock(DeviceDao.class);
+        RedisUtils redisUtils = mock(RedisUtils.class);
+        TokenGenerationCache cache = new TokenGenerationCache(deviceDao, redisUtils);
+        DeviceEntity stale = new DeviceEntity();
+        stale.setTokenGeneration(0);
+        DeviceEntity updated = new DeviceEntity();
+        updated.setTokenGeneration(1);
+        when(deviceDao.selectOne(any())).thenReturn(stale, updated);
+
+        assertEquals(0, cache.get(1L));
+        verify(redisUtils).setIfGreater(RedisKeys.getDeviceTokenGenerationKey(1L), 0L, RedisUtils.DEFAULT_EXPIRE);
+        verify(redisUtils, never()).set(anyString(), any());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertEquals(1, cache.increment(1L));
+            assertEquals(0, cache.get(1L), "提交前不應更新緩存");
+            verify(redisUtils, never()).publish(anyString(), any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(1, cache.get(1L));
+        verify(redisUtils).setIfGreater(RedisKeys.getDeviceTokenGenerationKey(1L), 1L, RedisUtils.DEFAULT_EXPIRE);
+        verify(redisUtils).publish(RedisKeys.getTokenGenerationChannel(), "1:1");
+    }
+
+    /**
+     * 測試重新生成令牌：設備代數已緩存時，新令牌攜帶撤銷後的代數，提交後仍然有效
+     */
+    @Test
+    public void testRegenerateTokenWithCachedGeneration() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("test_secret_key_for_jwt_token_test_case_execution");
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(jwtConfig);
+        DeviceDao deviceDao = mock(DeviceDao.class);
+        RedisUtils redisUtils = mock(RedisUtils.class);
+        TokenGenerationCache cache = new TokenGenerationCache(deviceDao, redisUtils);
+        DeviceEntity before = new DeviceEntity();
+        before.setTokenGeneration(0);
+        DeviceEntity after = new DeviceEntity();
+        after.setTokenGeneration(1);
+        when(deviceDao.selectOne(any())).thenReturn(before, after);
+        assertEquals(0, cache.get(1L));
+
+        DeviceService deviceService = mock(DeviceService.class);
+        DeviceDTO device = new DeviceDTO();
+        device.setId(1L);
+        device.setMacAddress("00:11:22:33:44:55");
+        device.setStatus(DeviceConstant.Status.ACTIVE);
+        when(deviceService.get(1L)).thenReturn(device);
+        AccessTokenDao accessTokenDao = mock(AccessTokenDao.class);
+        // 設備有未撤銷的令牌
+        when(accessTokenDao.update(any(), any())).thenReturn(1);
+        AccessTokenServiceImpl service = new AccessTokenServiceImpl(tokenProvider, redisUtils, deviceService,
+                mock(DeviceCheckinCache.class), mock(ExpirySweeper.class), mock(TokenRevocationFilter.class),
+                mock(RevokedTokenStore.class), cache, jwtConfig);
+        ReflectionTestUtils.setField(service, "baseDao", accessTokenDao);
+
+        TransactionSynchronizationManager.initSynchronization();
+        String token;
+        try {
+            token = service.generateToken(1L, 24).getToken();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        Claims claims = tokenProvider.getValidClaims(token);
+        assertEquals(1, JwtTokenProvider.getGeneration(claims), "新令牌應攜帶撤銷後的代數");
+        assertEquals(1, cache.get(1L));
+        assertTrue(cache.isCurrent(1L, JwtTokenProvider.getGeneration(claims)), "提交後新令牌應仍然有效");
+    }
+
+    /**
+     * 測試當前密鑰不接受的令牌視為無效，獲取令牌時重新簽發
+     */
+    @Test
+    public void testReissueUnacceptedToken() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("test_secret_key_for_jwt_token_test_case_execution");
+        String hmacToken = new JwtTokenProvider(jwtConfig).generateToken(1L, "00:11:22:33:44:55", 3600L);
+
+        // 切換為非對稱算法且未開啟遷移
+        jwtConfig.setAlgorithm(JwtKeyManager.ALGORITHM_EDDSA);
+        jwtConfig.setLegacyHmacAccepted(false);
+        JwtKeyDao jwtKeyDao = mock(JwtKeyDao.class);
+        List<JwtKeyEntity> keys = new ArrayList<>();
+        when(jwtKeyDao.insert(any(JwtKeyEntity.class))).thenAnswer(invocation -> {
+            keys.add(0, invocation.getArgument(0));
+            return 1;
+        });
+        when(jwtKeyDao.selectList(any())).thenAnswer(invocation -> new ArrayList<>(keys));
+        JwtKeyManager keyManager = new JwtKeyManager(jwtKeyDao, jwtConfig);
+        keyManager.rotate();
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(jwtConfig, keyManager);
+
+        AccessTokenEntity stored = new AccessTokenEntity();
+        stored.setId(1L);
+        stored.setDeviceId(1L);
+        stored.setToken(hmacToken);
+        stored.setIsRevoked(DeviceConstant.TokenRevoked.NO);
+        stored.setExpireTime(new Date(System.currentTimeMillis() + 3600 * 1000L));
+        AccessTokenDao accessTokenDao = mock(AccessTokenDao.class);
+        when(accessTokenDao.selectList(any())).thenReturn(List.of(stored));
+        AccessTokenServiceImpl service = new AccessTokenServiceImpl(tokenProvider, mock(RedisUtils.class),
+                mock(DeviceService.class), mock(DeviceCheckinCache.class), mock(ExpirySweeper.class),
+                mock(TokenRevocationFilter.class), mock(RevokedTokenStore.class), mock(TokenGenerationCache.class),
+                jwtConfig);
+        ReflectionTestUtils.setField(service, "baseDao", accessTokenDao);
+        assertNull(service.getValidTokenByDeviceId(1L), "當前密鑰不接受的令牌應重新簽發");
+
+        stored.setToken(tokenProvider.generateToken(1L, "00:11:22:33:44:55", 3600L));
+        assertNotNull(service.getValidTokenByDeviceId(1L));
+    }
+
+    /**
+     * 測試撤銷過濾器：撤銷前簽發的令牌命中過濾器，其餘令牌直接通過
+     */
+    @Test
+    public void testTokenRevocationFilter() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("test_secret_key_for_jwt_token_test_case_execution");
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(jwtConfig);
+        TokenRevocationFilter filter = new TokenRevocationFilter(mock(AccessTokenDao.class), mock(RedisUtils.class),
+                new RedisCircuitBreaker(null, null), jwtConfig);
+
+        Claims first = tokenProvider.getValidClaims(tokenProvider.generateToken(1L, "00:11:22:33:44:55", 3600L));
+        Claims second = tokenProvider.getValidClaims(tokenProvider.generateToken(2L, "00:11:22:33:44:66", 3600L));
+        assertFalse(filter.mightBeRevoked(1L, first.getIssuedAt(), first.getExpiration()), "未撤銷的令牌應直接通過");
+
+        // 本實例撤銷，以被撤銷令牌的創建時間為準
+        Date createDate = new Date(first.getIssuedAt().getTime() + 500);
+        filter.revoke(1L, createDate);
+        assertTrue(filter.mightBeRevoked(1L, first.getIssuedAt(), first.getExpiration()), "撤銷前簽發的令牌應命中過濾器");
+        assertFalse(filter.mightBeRevoked(2L, second.getIssuedAt(), second.getExpiration()), "其他設備不受影響");
+        Date rotated = new Date(first.getIssuedAt().getTime() + 1000);
+        assertFalse(filter.mightBeRevoked(1L, rotated, new Date(rotated.getTime() + 3600 * 1000L)),
+                "撤銷後重新簽發的令牌應直接通過");
+
+        // 不知道創建時間時按當前時間加餘量撤銷
+        filter.revoke(5L, null);
+        assertTrue(filter.mightBeRevoked(5L, rotated, new Date(rotated.getTime() + 3600 * 1000L)));
+
+        // 其他實例的撤銷通知，撤銷時間早於簽發時間的令牌不受影響
+        filter.onMessage("2:" + (second.getIssuedAt().getTime() - 1000));
+        assertFalse(filter.mightBeRevoked(2L, second.getIssuedAt(), second.getExpiration()), "撤銷之後簽發的令牌應直接通過");
+        filter.onMessage("2:" + System.currentTimeMillis());
+        assertTrue(filter.mightBeRevoked(2L, second.getIssuedAt(), second.getExpiration()), "撤銷通知應同步到過濾器");
+        filter.onMessage("invalid");
+
+        // 有效期超過上限的令牌總是查詢數據庫
+        Claims longLived = tokenProvider.getValidClaims(tokenProvider.generateToken(3L, "00:11:22:33:44:77", 3650 * 24 * 3600L));
+        assertTrue(filter.mightBeRevoked(3L, longLived.getIssuedAt(), longLived.getExpiration()));
+
+        // 未撤銷設備的令牌無狀態驗證通過
+        Claims fourth = tokenProvider.getValidClaims(tokenProvider.generateToken(4L, "00:11:22:33:44:88", 3600L));
+        assertFalse(filter.mightBeRevoked(4L, fourth.getIssuedAt(), fourth.getExpiration()));
+
+        Map<String, Object> stats = filter.getStats();
+        assertEquals(5L, stats.get("passCount"));
+        assertEquals(4L, stats.get("hitCount"));
+        assertEquals(2L, stats.get("revokeCount"));
+        assertEquals(2L, stats.get("messageCount"), "無效的通知不應計數");
+        assertEquals(3, stats.get("deviceSize"));
+    }
+
+    /**
+     * 測試撤銷過濾器在Redis熔斷期間強制查詢數據庫，恢復後立即重建
+     */
+    @Test
+    public void testTokenRevocationFilterDegraded() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("test_secret_key_for_jwt_token_test_case_execution");
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(jwtConfig);
+        AccessTokenDao accessTokenDao = mock(AccessTokenDao.class);
+        when(accessTokenDao.selectList(any())).thenReturn(new ArrayList<>());
+        RedisCircuitBreaker circuitBreaker = mock(RedisCircuitBreaker.class);
+        when(circuitBreaker.getState()).thenReturn(RedisCircuitBreaker.State.CLOSED);
+        TokenRevocationFilter filter = new TokenRevocationFilter(accessTokenDao, mock(RedisUtils.class), circuitBreaker, jwtConfig);
+
+        Claims claims = tokenProvider.getValidClaims(tokenProvider.generateToken(1L, "00:11:22:33:44:55", 3600L));
+        assertFalse(filter.mightBeRevoked(1L, claims.getIssuedAt(), claims.getExpiration()));
+        verify(accessTokenDao, never()).selectList(any());
+
+        // 熔斷期間撤銷通知可能丟失，所有令牌都應查詢數據庫
+        when(circuitBreaker.getState()).thenReturn(RedisCircuitBreaker.State.OPEN);
+        when(circuitBreaker.getFailureCount()).thenReturn(5L);
+        assertTrue(filter.mightBeRevoked(1L, claims.getIssuedAt(), claims.getExpiration()), "熔斷期間應查詢數據庫");
+        assertEquals(1L, filter.getStats().get("degradedCount"));
+
+        // 恢復後只重建一次
+        when(circuitBreaker.getState()).thenReturn(RedisCircuitBreaker.State.CLOSED);
+        assertFalse(filter.mightBeRevoked(1L, claims.getIssuedAt(), claims.getExpiration()));
+        assertFalse(filter.mightBeRevoked(1L, claims.getIssuedAt(), claims.getExpiration()));
+        verify(accessTokenDao, times(1)).selectList(any());
+    }
+
+    /**
+     * 測試非對稱簽名：輪換後舊密鑰簽發的令牌仍然有效，切換前的HMAC令牌僅在開啟遷移時有效
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAsymmetricSigning() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("test_secret_key_for_jwt_token_test_case_execution");
+        jwtConfig.setAlgorithm(JwtKeyManager.ALGORITHM_EDDSA);
+        jwtConfig.setLegacyHmacAccepted(true);
+        jwtConfig.setKeyEncryptionKey("test_key_encryption_key");
+
+        // 模擬數據庫中的密鑰表
+        List<JwtKeyEntity> keys = new ArrayList<>();
+        JwtKeyDao jwtKeyDao = mock(JwtKeyDao.class);
+        when(jwtKeyDao.insert(any(JwtKeyEntity.class))).thenAnswer(invocation -> {
+            keys.add(0, invocation.getArgument(0));
+            return 1;
+        });
+        when(jwtKeyDao.update(any(), any())).thenAnswer(invocation -> {
+            keys.forEach(key -> {
+                key.setStatus(1);
+                key.setRetireTime(new Date());
+            });
+            return keys.size();
+        });
+        when(jwtKeyDao.selectList(any())).thenAnswer(invocation -> new ArrayList<>(keys));
+        when(jwtKeyDao.selectOne(any())).thenAnswer(invocation -> keys.isEmpty() ? null : keys.get(keys.size() - 1));
+
+        String hmacToken = new JwtTokenProvider(jwtConfig).generateToken(1L, "00:11:22:33:44:55", 3600L);
+        JwtKeyManager keyManager = new JwtKeyManager(jwtKeyDao, jwtConfig);
+        keyManager.rotate();
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(jwtConfig, keyManager);
+
+        String edToken = tokenProvider.generateToken(2L, "00:11:22:33:44:66", 3600L);
+        assertEquals(2L, tokenProvider.getDeviceIdFromToken(edToken));
+        assertEquals(1L, tokenProvider.getDeviceIdFromToken(hmacToken), "遷移期內切換算法前簽發的HMAC令牌應仍然有效");
+        assertTrue(keys.get(0).getPrivateKey().startsWith("v1:"), "配置加密密鑰時私鑰應加密保存");
+
+        // 未開啟遷移時拒絕未攜帶密鑰ID的HMAC令牌
+        jwtConfig.setLegacyHmacAccepted(false);
+        assertNull(new JwtTokenProvider(jwtConfig, keyManager).getDeviceIdFromToken(hmacToken));
+        jwtConfig.setLegacyHmacAccepted(true);
+
+        List<Map<String, Object>> jwks = (List<Map<String, Object>>) keyManager.getJwks().get("keys");
+        assertEquals(1, jwks.size());
+        assertEquals("OKP", jwks.get(0).get("kty"));
+        assertEquals(43, ((String) jwks.get(0).get("x")).length(), "Ed25519公鑰應為32字節");
+
+        // 切換為ES256，舊密鑰退役但仍可驗證
+        jwtConfig.setAlgorithm(JwtKeyManager.ALGORITHM_ES256);
+        String esToken = tokenProvider.generateToken(3L, "00:11:22:33:44:77", 3600L);
+        assertEquals(3L, tokenProvider.getDeviceIdFromToken(esToken));
+        assertEquals(2L, new JwtTokenProvider(jwtConfig, keyManager).getDeviceIdFromToken(edToken), "退役密鑰簽發的令牌應仍然有效");
+        jwks = (List<Map<String, Object>>) keyManager.getJwks().get("keys");
+        assertEquals(2, jwks.size());
+        assertEquals("EC", jwks.get(0).get("kty"));
+
+        // 未配置非對稱密鑰時拒絕攜帶密鑰ID的令牌
+        assertNull(new JwtTokenProvider(jwtConfig).getDeviceIdFromToken(esToken));
+
+        // 首個非對稱密鑰生成超過令牌最長有效期後，遷移期結束
+        keys.get(keys.size() - 1).setCreateDate(new Date(System.currentTimeMillis() - 365L * 24 * 3600 * 1000));
+        JwtKeyManager expiredManager = new JwtKeyManager(jwtKeyDao, jwtConfig);
+        expiredManager.reload();
+        JwtTokenProvider expiredProvider = new JwtTokenProvider(jwtConfig, expiredManager);
+        assertNull(expiredProvider.getDeviceIdFromToken(hmacToken), "遷移期結束後應拒絕HMAC令牌");
+        assertEquals(3L, expiredProvider.getDeviceIdFromToken(esToken), "加密保存的私鑰對應的公鑰應可驗證令牌");
+
+        // 密鑰加密密鑰不一致時無法加載簽名私鑰
+        JwtConfig otherConfig = new JwtConfig();
+        otherConfig.setAlgorithm(JwtKeyManager.ALGORITHM_ES256);
+        otherConfig.setKeyEncryptionKey("another_key_encryption_key");
+        JwtKeyManager otherManager = new JwtKeyManager(jwtKeyDao, otherConfig);
+        otherManager.reload();
+        assertNotNull(otherManager.getPublicKey(keys.get(0).getKid()), "公鑰未加密，應仍可驗證");
+    }
+
+    /**
+     * 測試密鑰輪換：新密鑰先在JWKS中發布，發布超過提前時間後才開始簽名
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testKeyPrePublication() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret("test_secret_key_for_jwt_token_test_case_execution");
+        jwtConfig.setAlgorithm(JwtKeyManager.ALGORITHM_EDDSA);
+        jwtConfig.setKeyRotationDays(1);
+
+        List<JwtKeyEntity> keys = new ArrayList<>();
+        JwtKeyDao jwtKeyDao = mock(JwtKeyDao.class);
+        when(jwtKeyDao.insert(any(JwtKeyEntity.class))).thenAnswer(invocation -> {
+            JwtKeyEntity entity = invocation.getArgument(0);
+            entity.setId((long) keys.size() + 1);
+            keys.add(0, entity);
+            return 1;
+        });
+        when(jwtKeyDao.updateById(any(JwtKeyEntity.class))).thenAnswer(invocation -> {
+            JwtKeyEntity update = invocation.getArgument(0);
+            keys.stream().filter(key -> key.getId().equals(update.getId())).forEach(key -> {
+                key.setStatus(update.getStatus());
+                if (update.getRetireTime() != null) {
+                    key.setRetireTime(update.getRetireTime());
+                }
+            });
+            return 1;
+        });
+        when(jwtKeyDao.selectList(any())).thenAnswer(invocation -> new ArrayList<>(keys));
+
+        JwtKeyManager keyManager = new JwtKeyManager(jwtKeyDao, jwtConfig);
+        keyManager.rotate();
+        JwtTokenProvider tokenProvider = new JwtTokenProvider(jwtConfig, keyManager);
+        String oldKid = keyManager.getSigningKey().getKid();
+        String oldToken = tokenProvider.generateToken(1L, "00:11:22:33:44:55", 3600L);
+
+        // 距離輪換週期不足提前時間，生成待啟用密鑰並發布，仍使用舊密鑰簽名
+        long dayMillis = 24 * 3600 * 1000L;
+        keys.get(0).setCreateDate(new Date(System.currentTimeMillis() - dayMillis + JwtKeyManager.PUBLISH_LEAD / 2));
+        keyManager.rotate();
+        assertEquals(2, keys.size());
+        assertEquals(2, keys.get(0).getStatus(), "新密鑰應為待啟用");
+        assertEquals(oldKid, keyManager.getSigningKey().getKid(), "發布期內應仍使用舊密鑰簽名");
+        List<Map<String, Object>> jwks = (List<Map<String, Object>>) keyManager.getJwks().get("keys");
+        assertEquals(2, jwks.size(), "待啟用密鑰應在JWKS中發布");
+        String newKid = keys.get(0).getKid();
+        assertTrue(jwks.stream().anyMatch(jwk -> newKid.equals(jwk.get("kid"))));
+
+        // 發布未超過提前時間，不重複生成也不啟用
+        keyManager.rotate();
+        assertEquals(2, keys.size());
+        assertEquals(oldKid, keyManager.getSigningKey().getKid());
+
+        // 發布超過提前時間後啟用，舊密鑰退役但仍可驗證
+        keys.get(0).setCreateDate(new Date(System.currentTimeMillis() - JwtKeyManager.PUBLISH_LEAD - 1000));
+        keyManager.rotate();
+        assertEquals(2, keys.size());
+        assertEquals(newKid, keyManager.getSigningKey().getKid());
+        assertEquals(1, keys.get(1).getStatus(), "舊密鑰應退役");
+        assertEquals(1L, tokenProvider.getDeviceIdFromToken(oldToken), "退役密鑰簽發的令牌應仍然有效");
+        String newToken = tokenProvider.generateToken(2L, "00:11:22:33:44:66", 3600L);
+        assertEquals(2L, new JwtTokenProvider(jwtConfig, keyManager).getDeviceIdFromToken(newToken));
+    }
+}
@@ -1,8 +1,16 @@
 package xiaozhi.modules.device;
 
 import org.junit.jupiter.api.Test;
+import xiaozhi.common.redis.RedisKeys;
+import xiaozhi.common.redis.RedisUtils;
 import xiaozhi.modules.device.dto.OtaRequestDTO;
 import xiaozhi.modules.device.dto.OtaResponseDTO;
+import xiaozhi.modules.device.cache.DeviceCheckinCache;
+import xiaozhi.modules.device.dao.FirmwareDao;
+import xiaozhi.modules.device.firmware.FirmwareCatalog;
+import xiaozhi.modules.device.ota.OtaResponseEncoder;
+import xiaozhi.modules.device.ota.WebsocketBackendPool;
+import xiaozhi.modules.device.config.OtaProperties;
 import xiaozhi.modules.device.config.OtaConfig;
 import xiaozhi.modules.device.service.DeviceService;
 import xiaozhi.modules.device.service.ActivationCodeService;
@@ -16,7 +24,16 @@ import xiaozhi.modules.device.dto.AccessTokenDTO;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * OTA API測試
@@ -65,7 +82,7 @@ public class OtaApiTest {
         when(activationCodeService.generateCode(eq(1L), anyInt())).thenReturn(activationCode);
         
         // 創建OTA服務實例
-        OtaServiceImpl otaService = new OtaServiceImpl(deviceService, activationCodeService, accessTokenService, otaConfig);
+        OtaServiceImpl otaService = new OtaServiceImpl(deviceService, activationCodeService, accessTokenService, new DeviceCheckinCache(mock(RedisUtils.class)), new FirmwareCatalog(mock(FirmwareDao.class)), new WebsocketBackendPool(otaConfig));
         
         // 創建測試請求
         OtaRequestDTO request = new OtaRequestDTO();
@@ -119,7 +136,7 @@ public class OtaApiTest {
         when(accessTokenService.getOrCreateToken(eq(1L))).thenReturn("test-token");
         
         // 創建OTA服務實例
-        OtaServiceImpl otaService = new OtaServiceImpl(deviceService, activationCodeService, accessTokenService, otaConfig);
+        OtaServiceImpl otaService = new OtaServiceImpl(deviceService, activationCodeService, accessTokenService, new DeviceCheckinCache(mock(RedisUtils.class)), new FirmwareCatalog(mock(FirmwareDao.class)), new WebsocketBackendPool(otaConfig));
         
         // 執行測試
         OtaResponseDTO response = otaService.handleActiveDevice(1L, "00:11:22:33:44:55");
@@ -158,7 +175,7 @@ public class OtaApiTest {
         when(accessTokenService.getOrCreateToken(eq(1L))).thenReturn("test-token");
         
         // 創建OTA服務實例
-        OtaServiceImpl otaService = new OtaServiceImpl(deviceService, activationCodeService, accessTokenService, otaConfig);
+        OtaServiceImpl otaService = new OtaServiceImpl(deviceService, activationCodeService, accessTokenService, new DeviceCheckinCache(mock(RedisUtils.class)), new FirmwareCatalog(mock(FirmwareDao.class)), new WebsocketBackendPool(otaConfig));
         
         // 創建測試請求
         OtaRequestDTO request = new OtaRequestDTO();
@@ -185,4 +202,227 @@ public class OtaApiTest {
         assertTrue(response.getServer_time().getTimestamp() > 0, "時間戳應為正數");
         assertNotNull(response.getServer_time().getTimezone_offset(), "時區偏移不應為空");
     }
-} 
\ No newline at end of file
+
+    /**
+     * 測試已激活設備重複簽到命中緩存，不再訪問數據庫
+     */
+    @Test
+    public void testActiveDeviceCheckinCache() {
+        DeviceService deviceService = mock(DeviceService.class);
+        ActivationCodeService activationCodeService = mock(ActivationCodeService.class);
+        AccessTokenService accessTokenService = mock(AccessTokenService.class);
+        OtaConfig otaConfig = new OtaConfig();
+        RedisUtils redisUtils = mock(RedisUtils.class);
+        DeviceCheckinCache checkinCache = new DeviceCheckinCache(redisUtils);
+        
+        DeviceDTO deviceDTO = new DeviceDTO();
+        deviceDTO.setId(1L);
+        deviceDTO.setMacAddress("00:11:22:33:44:55");
+        deviceDTO.setStatus(DeviceConstant.Status.ACTIVE);
+        
+        when(deviceService.getByMacAddress(anyString())).thenReturn(deviceDTO);
+        // 模擬令牌服務在獲取令牌時寫入緩存
+        when(accessTokenService.getOrCreateToken(eq(1L))).thenAnswer(invocation -> {
+            checkinCache.putToken(1L, "test-token", new Date(System.currentTimeMillis() + 3600000));
+            return "test-token";
+        });
+        
+        OtaServiceImpl otaService = new OtaServiceImpl(deviceService, activationCodeService, accessTokenService, checkinCache, new FirmwareCatalog(mock(FirmwareDao.class)), new WebsocketBackendPool(otaConfig));
+        
+        OtaRequestDTO request = new OtaRequestDTO();
+        request.setMacAddress("00:11:22:33:44:55");
+        request.setClientId("test-client-id");
+        request.setFirmwareVersion("1.0.0");
+        
+        // 第一次簽到未命中，第二次簽到命中
+        OtaResponseDTO first = otaService.processOtaRequest(request);
+        OtaResponseDTO second = otaService.processOtaRequest(request);
+        
+        assertEquals("test-token", first.getWebsocket().getAccess_token(), "首次簽到應返回令牌");
+        assertEquals("test-token", second.getWebsocket().getAccess_token(), "緩存簽到應返回相同令牌");
+        assertNotNull(second.getServer_time(), "服務器時間不應為空");
+        verify(deviceService, times(1)).getByMacAddress(anyString());
+        verify(accessTokenService, times(1)).getOrCreateToken(eq(1L));
+        assertEquals(1L, checkinCache.getStats().get("hitCount"));
+        
+        // 設備狀態變更後緩存失效，MAC地址映射一併刪除並通知其他實例
+        checkinCache.invalidate(1L);
+        assertEquals(0L, checkinCache.getStats().get("deviceSize"), "MAC地址映射應一併失效");
+        verify(redisUtils).publish(RedisKeys.getDeviceCheckinInvalidateChannel(), "1");
+        otaService.processOtaRequest(request);
+        verify(deviceService, times(2)).getByMacAddress(anyString());
+
+        // 其他實例的失效通知
+        assertNotNull(checkinCache.getActiveCheckin("00:11:22:33:44:55"));
+        checkinCache.onMessage("2,1");
+        checkinCache.onMessage("invalid");
+        assertNull(checkinCache.getActiveCheckin("00:11:22:33:44:55"), "失效通知應同步到本地緩存");
+        assertEquals(1L, checkinCache.getStats().get("messageCount"));
+    }
+
+    /**
+     * 測試模板編碼器輸出與Jackson序列化結果一致
+     */
+    @Test
+    public void testOtaResponseEncoder() throws Exception {
+        OtaConfig otaConfig = new OtaConfig();
+        OtaResponseEncoder encoder = new OtaResponseEncoder(otaConfig);
+        ObjectMapper objectMapper = new ObjectMapper();
+        
+        OtaResponseDTO response = new OtaResponseDTO();
+        response.addServerTime(1700000000000L, 480);
+        response.addFirmware("1.0.0", "");
+        response.addWebsocket("token.with\"quote", otaConfig.getServer(), otaConfig.getPort(), otaConfig.getPath());
+        response.addActivation("123456", "請在網頁輸入激活碼");
+        
+        String json = new String(encoder.encode(response), StandardCharsets.UTF_8);
+        assertEquals(objectMapper.valueToTree(response), objectMapper.readTree(json), "模板編碼結果應與Jackson一致");
+        
+        // 配置變化後重新渲染模板
+        otaConfig.setServer("ws.example.com");
+        otaConfig.setPort(443);
+        response.addWebsocket("test-token", otaConfig.getServer(), otaConfig.getPort(), otaConfig.getPath());
+        JsonNode websocket = objectMapper.readTree(encoder.encode(response)).get("websocket");
+        assertEquals("ws.example.com", websocket.get("server").asText());
+        assertEquals(443, websocket.get("port").asInt());
+        assertEquals("test-token", websocket.get("access_token").asText());
+        
+        // 只有部分字段的響應
+        OtaResponseDTO empty = new OtaResponseDTO();
+        empty.addFirmware(null, "");
+        assertEquals(objectMapper.valueToTree(empty), objectMapper.readTree(encoder.encode(empty)));
+        
+        // 直接寫入輸出流，批量響應為JSON數組
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(List.of(response, empty), out);
+        assertEquals(objectMapper.valueToTree(List.of(response, empty)), objectMapper.readTree(out.toByteArray()));
+    }
+
+    /**
+     * 測試WebSocket後端節點池的一致性哈希與負載均衡
+     */
+    @Test
+    public void testWebsocketBackendPool() {
+        OtaConfig otaConfig = new OtaConfig();
+        List<OtaProperties.WebsocketBackend> backends = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            OtaProperties.WebsocketBackend backend = new OtaProperties.WebsocketBackend();
+            backend.setServer("10.0.0." + i);
+            backend.setPort(8000);
+            backends.add(backend);
+        }
+        otaConfig.setBackends(backends);
+        WebsocketBackendPool pool = new WebsocketBackendPool(otaConfig);
+        
+        // 未上報連接數時，同一設備總是分配到同一節點，且各節點分配大致均勻
+        Map<String, Integer> counts = new HashMap<>();
+        for (long deviceId = 1; deviceId <= 30000; deviceId++) {
+            String server = pool.select(deviceId).getServer();
+            assertEquals(server, pool.select(deviceId).getServer(), "同一設備應分配到同一節點");
+            counts.merge(server, 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 8000 && count < 12000, "節點分配應大致均勻"));
+        
+        // 過載節點不再接收新設備
+        pool.report("10.0.0.1", 8000, 10000);
+        pool.report("10.0.0.2", 8000, 0);
+        pool.report("10.0.0.3", 8000, 0);
+        for (long deviceId = 1; deviceId <= 3000; deviceId++) {
+            assertNotEquals("10.0.0.1", pool.select(deviceId).getServer(), "過載節點不應分配新設備");
+        }
+
+        // 同一設備重複簽到只計一次分配
+        pool.report("10.0.0.2", 8000, 0);
+        pool.report("10.0.0.3", 8000, 0);
+        for (int i = 0; i < 10; i++) {
+            pool.select(1L);
+        }
+        long assigned = pool.getStats().stream().mapToLong(item -> ((Number) item.get("assigned")).longValue()).sum();
+        assertEquals(1, assigned, "重複簽到不應重複計入負載");
+        
+        // 增加節點只會遷移部分設備
+        Map<Long, String> before = new HashMap<>();
+        WebsocketBackendPool stablePool = new WebsocketBackendPool(otaConfig);
+        for (long deviceId = 1; deviceId <= 10000; deviceId++) {
+            before.put(deviceId, stablePool.select(deviceId).getServer());
+        }
+        OtaProperties.WebsocketBackend added = new OtaProperties.WebsocketBackend();
+        added.setServer("10.0.0.4");
+        added.setPort(8000);
+        List<OtaProperties.WebsocketBackend> expanded = new ArrayList<>(backends);
+        expanded.add(added);
+        otaConfig.setBackends(expanded);
+        int moved = 0;
+        for (long deviceId = 1; deviceId <= 10000; deviceId++) {
+            if (!before.get(deviceId).equals(stablePool.select(deviceId).getServer())) {
+                moved++;
+            }
+        }
+        assertTrue(moved > 1500 && moved < 3500, "新增節點應只遷移約四分之一的設備");
+    }
+
+    /**
+     * 測試批量簽到：每類數據只訪問一次服務
+     */
+    @Test
+    public void testProcessOtaRequests() {
+        DeviceService deviceService = mock(DeviceService.class);
+        ActivationCodeService activationCodeService = mock(ActivationCodeService.class);
+        AccessTokenService accessTokenService = mock(AccessTokenService.class);
+        OtaConfig otaConfig = new OtaConfig();
+        
+        DeviceDTO active = new DeviceDTO();
+        active.setId(1L);
+        active.setMacAddress("00:00:00:00:00:01");
+        active.setStatus(DeviceConstant.Status.ACTIVE);
+        DeviceDTO waiting = new DeviceDTO();
+        waiting.setId(2L);
+        waiting.setMacAddress("00:00:00:00:00:02");
+        waiting.setStatus(DeviceConstant.Status.WAITING);
+        Map<String, DeviceDTO> existing = new HashMap<>();
+        existing.put(active.getMacAddress(), active);
+        existing.put(waiting.getMacAddress(), waiting);
+        
+        when(deviceService.getByMacAddresses(anyCollection())).thenReturn(existing);
+        // 模擬批量保存後回寫ID
+        doAnswer(invocation -> {
+            List<DeviceDTO> devices = invocation.getArgument(0);
+            devices.forEach(device -> device.setId(3L));
+            return null;
+        }).when(deviceService).saveBatch(anyList());
+        ActivationCodeDTO waitingCode = new ActivationCodeDTO();
+        waitingCode.setCode("222222");
+        when(activationCodeService.getValidCodesByDeviceIds(anyCollection())).thenReturn(new HashMap<>(Map.of(2L, waitingCode)));
+        ActivationCodeDTO newCode = new ActivationCodeDTO();
+        newCode.setCode("333333");
+        when(activationCodeService.generateCodes(anyCollection(), anyInt())).thenReturn(Map.of(3L, newCode));
+        when(accessTokenService.getOrCreateTokens(anyCollection())).thenReturn(Map.of(1L, "token-1"));
+        
+        OtaServiceImpl otaService = new OtaServiceImpl(deviceService, activationCodeService, accessTokenService, new DeviceCheckinCache(mock(RedisUtils.class)), new FirmwareCatalog(mock(FirmwareDao.class)), new WebsocketBackendPool(otaConfig));
+        
+        List<OtaRequestDTO> requests = new ArrayList<>();
+        for (String mac : new String[]{"00:00:00:00:00:01", "00:00:00:00:00:02", "00:00:00:00:00:03", ""}) {
+            OtaRequestDTO request = new OtaRequestDTO();
+            request.setMacAddress(mac);
+            request.setClientId("client-" + mac);
+            request.setFirmwareVersion("1.0.0");
+            requests.add(request);
+        }
+        
+        List<OtaResponseDTO> responses = otaService.processOtaRequests(requests);
+        
+        assertEquals(4, responses.size(), "響應數量應與請求一致");
+        assertEquals("token-1", responses.get(0).getWebsocket().getAccess_token());
+        assertEquals("222222", responses.get(1).getActivation().getCode());
+        assertEquals("333333", responses.get(2).getActivation().getCode());
+        assertNull(responses.get(3).getActivation(), "無效請求只返回基本信息");
+        assertNotNull(responses.get(3).getServer_time());
+        
+        verify(deviceService, times(1)).getByMacAddresses(anyCollection());
+        verify(deviceService, times(1)).saveBatch(anyList());
+        verify(activationCodeService, times(1)).generateCodes(eq(List.of(3L)), anyInt());
+        verify(accessTokenService, times(1)).getOrCreateTokens(anyCollection());
+        verify(deviceService, never()).getByMacAddress(anyString());
+    }
+}
@@ -0,0 +1,70 @@
+package xiaozhi.modules.security.oauth2;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 认证过程跟踪单元测试
+ */
+public class AuthTracerTest {
+
+    /**
+     * 测试成功的认证全部计数，日志只在DEBUG级别每100次采样一次
+     */
+    @Test
+    public void testSuccessSampling() {
+        AuthTracer tracer = new AuthTracer();
+        try {
+            for (int i = 0; i < 250; i++) {
+                tracer.trace(AuthTracer.Outcome.SUCCESS, "token" + i, 1L);
+            }
+            Map<String, Object> stats = tracer.getStats();
+            assertEquals(250L, stats.get("SUCCESS"));
+            long expected = LoggerFactory.getLogger(AuthTracer.class).isDebugEnabled() ? 2L : 0L;
+            assertEquals(expected, stats.get("sampledCount"));
+            assertEquals(0L, stats.get("suppressedCount"), "成功的认证不参与限速");
+        } finally {
+            tracer.shutdown();
+        }
+    }
+
+    /**
+     * 测试失败的认证按结果限速，每种结果每秒最多输出5条，超出的部分只计数
+     */
+    @Test
+    public void testFailureRateLimit() throws InterruptedException {
+        AuthTracer tracer = new AuthTracer();
+        try {
+            // 在同一秒内完成，避免跨秒重置限速窗口
+            long millis = System.currentTimeMillis() % 1000;
+            if (millis > 500) {
+                Thread.sleep(1000 - millis);
+            }
+            for (int i = 0; i < 20; i++) {
+                tracer.trace(AuthTracer.Outcome.TOKEN_EXPIRED, "expired-token", null);
+            }
+            for (int i = 0; i < 3; i++) {
+                tracer.trace(AuthTracer.Outcome.TOKEN_NOT_FOUND, null, null);
+            }
+
+            Map<String, Object> stats = tracer.getStats();
+            assertEquals(20L, stats.get("TOKEN_EXPIRED"));
+            assertEquals(3L, stats.get("TOKEN_NOT_FOUND"));
+            assertEquals(0L, stats.get("USER_NOT_FOUND"));
+            assertEquals(8L, stats.get("sampledCount"), "每种结果独立限速");
+            assertEquals(15L, stats.get("suppressedCount"));
+            assertEquals(0L, stats.get("droppedCount"));
+
+            // 下一秒重新放行
+            Thread.sleep(1000);
+            tracer.trace(AuthTracer.Outcome.TOKEN_EXPIRED, "expired-token", null);
+            assertEquals(9L, tracer.getStats().get("sampledCount"));
+        } finally {
+            tracer.shutdown();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package xiaozhi.modules.security.password;
+
+import org.junit.jupiter.api.Test;
+import xiaozhi.common.exception.ErrorCode;
+import xiaozhi.common.exception.RenException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 登录密码验证单元测试
+ */
+public class PasswordVerifierTest {
+    private static final String PASSWORD = "secret";
+    /**
+     * 低强度加密，测试中验证耗时可以忽略
+     */
+    private static final String ENCODED = new BCryptPasswordEncoder(4).encode(PASSWORD);
+
+    /**
+     * 测试限流：同一IP对同一用户名失败过多时拒绝，其他IP不受影响
+     */
+    @Test
+    public void testThrottling() {
+        PasswordVerifier verifier = new PasswordVerifier(1, 8);
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertFalse(verifier.verify("admin", "10.0.0.1", "wrong", ENCODED, null));
+            }
+            RenException e = assertThrows(RenException.class,
+                    () -> verifier.verify("admin", "10.0.0.1", PASSWORD, ENCODED, null));
+            assertEquals(ErrorCode.LOGIN_TOO_FREQUENT, e.getCode());
+
+            // 其他IP仍可登录同一用户，失败不会锁定他人账号
+            assertTrue(verifier.verify("admin", "10.0.0.2", PASSWORD, ENCODED, null), "其他IP不应被限流");
+
+            // 同一IP对不同用户名失败过多时按IP拒绝
+            for (int i = 0; i < 15; i++) {
+                assertFalse(verifier.verify("user" + i, "10.0.0.3", "wrong", ENCODED, null));
+            }
+            for (int i = 0; i < 5; i++) {
+                assertFalse(verifier.verify("other" + i, "10.0.0.3", "wrong", ENCODED, null));
+            }
+            e = assertThrows(RenException.class,
+                    () -> verifier.verify("admin", "10.0.0.3", PASSWORD, ENCODED, null));
+            assertEquals(ErrorCode.LOGIN_TOO_FREQUENT, e.getCode());
+            assertEquals(2L, verifier.getStats().get("throttledCount"));
+        } finally {
+            verifier.shutdown();
+        }
+    }
+
+    /**
+     * 测试登录成功后清零同一IP对该用户名的失败次数
+     */
+    @Test
+    public void testSuccessResetsFailures() {
+        PasswordVerifier verifier = new PasswordVerifier(1, 8);
+        try {
+            for (int i = 0; i < 4; i++) {
+                assertFalse(verifier.verify("admin", "10.0.0.1", "wrong", ENCODED, null));
+            }
+            assertTrue(verifier.verify("admin", "10.0.0.1", PASSWORD, ENCODED, null));
+            for (int i = 0; i < 4; i++) {
+                assertFalse(verifier.verify("admin", "10.0.0.1", "wrong", ENCODED, null));
+            }
+            assertTrue(verifier.verify("admin", "10.0.0.1", PASSWORD, ENCODED, null), "成功后应重新计数");
+        } finally {
+            verifier.shutdown();
+        }
+    }
+
+    /**
+     * 测试验证线程和队列已满时直接拒绝
+     */
+    @Test
+    public void testRejectedWhenBusy() throws Exception {
+        PasswordVerifier verifier = new PasswordVerifier(1, 1);
+        // 高强度加密使验证线程保持忙碌
+        String slow = new BCryptPasswordEncoder(13).encode(PASSWORD);
+        Thread running = new Thread(() -> verifier.verify("a", "10.0.0.1", PASSWORD, slow, null));
+        Thread queued = new Thread(() -> verifier.verify("b", "10.0.0.2", PASSWORD, slow, null));
+        try {
+            running.start();
+            waitFor(verifier, "activeCount", 1);
+            queued.start();
+            waitFor(verifier, "queueSize", 1);
+
+            RenException e = assertThrows(RenException.class,
+                    () -> verifier.verify("c", "10.0.0.3", PASSWORD, ENCODED, null));
+            assertEquals(ErrorCode.SERVER_BUSY, e.getCode());
+            assertEquals(1L, verifier.getStats().get("rejectedCount"));
+        } finally {
+            running.join();
+            queued.join();
+            verifier.shutdown();
+        }
+    }
+
+    /**
+     * 测试强度低于当前值的密码在登录成功后重新加密，写入在单独的线程中执行
+     */
+    @Test
+    public void testRehash() throws InterruptedException {
+        PasswordVerifier verifier = new PasswordVerifier(1, 8);
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            AtomicReference<String> rehashed = new AtomicReference<>();
+            AtomicReference<String> threadName = new AtomicReference<>();
+            assertTrue(verifier.verify("admin", "10.0.0.1", PASSWORD, ENCODED, password -> {
+                rehashed.set(password);
+                threadName.set(Thread.currentThread().getName());
+                latch.countDown();
+            }));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            waitFor(verifier, "rehashCount", 1);
+            assertEquals(PasswordUtils.getStrength(), PasswordUtils.getStrength(rehashed.get()));
+            assertTrue(PasswordUtils.matches(PASSWORD, rehashed.get()));
+            assertTrue(threadName.get().startsWith("password-rehash-"), "不应占用验证线程写入数据库");
+
+            // 密码错误或强度已是当前值时不重新加密
+            String current = PasswordUtils.encode(PASSWORD);
+            assertFalse(verifier.verify("admin", "10.0.0.1", "wrong", ENCODED, rehashed::set));
+            assertTrue(verifier.verify("admin", "10.0.0.1", PASSWORD, current, rehashed::set));
+            assertEquals(1L, verifier.getStats().get("rehashCount"));
+        } finally {
+            verifier.shutdown();
+        }
+    }
+
+    private static void waitFor(PasswordVerifier verifier, String stat, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (((Number) verifier.getStats().get(stat)).intValue() < expected) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待" + stat + "超时");
+            Thread.sleep(5);
+        }
+    }
+}